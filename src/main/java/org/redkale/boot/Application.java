@@ -42,6 +42,7 @@ import org.redkale.locked.spi.LockedModuleEngine;
 import org.redkale.mq.spi.MessageAgent;
 import org.redkale.mq.spi.MessageModuleEngine;
 import org.redkale.net.*;
+import org.redkale.net.client.ClientBalancer;
 import org.redkale.net.http.*;
 import org.redkale.net.sncp.*;
 import org.redkale.props.spi.PropertiesModule;
@@ -862,6 +863,11 @@ public final class Application {
                 throw new RedkaleException("Not supported Transport Protocol " + conf.getValue("protocol"));
             }
             SncpRpcGroup rg = sncpRpcGroups.computeIfAbsent(group, protocol);
+            String balancer = conf.getValue("balancer");
+            if (Utility.isNotBlank(balancer)) {
+                ClientBalancer.create(balancer.trim()); // 校验策略名
+                rg.setBalancer(balancer.trim());
+            }
             String nodes = conf.getValue("nodes");
             if (Utility.isNotEmpty(nodes)) {
                 for (String node : nodes.replace(',', ';').split(";")) {
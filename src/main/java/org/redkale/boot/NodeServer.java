@@ -25,6 +25,7 @@ import org.redkale.mq.spi.MessageAgent;
 import org.redkale.net.*;
 import org.redkale.net.Filter;
 import org.redkale.net.client.ClientAddress;
+import org.redkale.net.client.ClientCircuitBreaker;
 import org.redkale.net.sncp.*;
 import org.redkale.service.*;
 import org.redkale.source.*;
@@ -189,6 +190,8 @@ public abstract class NodeServer {
                     server.getNetprotocol(),
                     Utility.cpus(),
                     1000);
+            this.sncpClient.setCircuitBreaker(
+                    ClientCircuitBreaker.create(this.serverConf.getAnyValue("circuitbreaker")));
         }
 
         // --------------------- 注册 Local AutoLoad(false) Service ---------------------
@@ -5,14 +5,14 @@
 package org.redkale.cached.spi;
 
 import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
 import java.util.logging.Level;
@@ -22,8 +22,12 @@ import org.redkale.annotation.Nullable;
 import org.redkale.convert.ConvertDisabled;
 import org.redkale.convert.json.JsonConvert;
 import org.redkale.convert.json.JsonFactory;
+import org.redkale.convert.pb.ProtobufConvert;
+import org.redkale.convert.pb.ProtobufFactory;
 import org.redkale.service.Service;
 import org.redkale.util.AnyValue;
+import org.redkale.util.FrequencySketch;
+import org.redkale.util.TimerWheel;
 import org.redkale.util.Utility;
 
 /**
@@ -44,30 +48,30 @@ public class CachedLocalSource implements Service {
     // key: name
     private final ConcurrentHashMap<String, CacheMap> container = new ConcurrentHashMap<>();
 
+    // 数据的存储方式
+    private StoreMode storeMode = StoreMode.JSON;
+
+    private ProtobufConvert protobufConvert;
+
     private ScheduledThreadPoolExecutor scheduler;
 
     @Override
     public void init(AnyValue conf) {
+        if (conf != null) {
+            String mode = conf.getValue("localstore", "");
+            if (!mode.isEmpty()) {
+                setStoreMode(StoreMode.valueOf(mode.trim().toUpperCase()));
+            }
+        }
         if (scheduler == null) {
             this.scheduler = Utility.newScheduledExecutor(
                     1, "Redkale-" + CachedLocalSource.class.getSimpleName() + "-Expirer-Thread");
-            final List<String> keys = new ArrayList<>();
-            int interval = 15;
+            int interval = 1;
             scheduler.scheduleWithFixedDelay(
                     () -> {
                         try {
-                            container.forEach((n, m) -> {
-                                keys.clear();
-                                long now = System.currentTimeMillis();
-                                m.forEach((k, x) -> {
-                                    if (x.isExpired(now)) {
-                                        keys.add(k);
-                                    }
-                                });
-                                for (String key : keys) {
-                                    m.remove(key);
-                                }
-                            });
+                            long now = System.currentTimeMillis();
+                            container.forEach((n, m) -> m.expire(now));
                         } catch (Throwable t) {
                             logger.log(
                                     Level.SEVERE,
@@ -90,20 +94,52 @@ public class CachedLocalSource implements Service {
         }
     }
 
+    public StoreMode getStoreMode() {
+        return storeMode;
+    }
+
+    /**
+     * 设置数据的存储方式, 只影响之后写入的数据
+     *
+     * @param storeMode StoreMode
+     */
+    public void setStoreMode(StoreMode storeMode) {
+        Objects.requireNonNull(storeMode);
+        if (storeMode == StoreMode.PROTOBUF && protobufConvert == null) {
+            ProtobufFactory factory = ProtobufFactory.create();
+            factory.skipAllIgnore(true);
+            this.protobufConvert = factory.getConvert();
+        }
+        this.storeMode = storeMode;
+    }
+
     public <T> void set(String name, String key, int localLimit, long millis, Type type, T value) {
         // millis > 0 才需要过期设置
-        String json = convert.convertTo(type, value);
-        container
-                .computeIfAbsent(name, n -> new CacheMap(localLimit))
-                .computeIfAbsent(key, json)
-                .set(json, millis);
+        StoreMode mode = this.storeMode;
+        Object val;
+        if (mode == StoreMode.OBJECT) {
+            val = value;
+        } else if (mode == StoreMode.PROTOBUF) {
+            val = protobufConvert.convertTo(type, value);
+        } else {
+            val = convert.convertTo(type, value);
+        }
+        container.computeIfAbsent(name, n -> new CacheMap(localLimit)).put(key, mode, val, millis);
     }
 
     public <T> T get(String name, String key, Type type) {
         CacheMap map = container.get(name);
         CacheItem item = map == null ? null : map.get(key);
-        String json = item == null || item.isExpired() ? null : item.getValue();
-        return json == null ? null : convert.convertFrom(type, json);
+        Object val = item == null ? null : item.getValue();
+        if (val == null) {
+            return null;
+        } else if (item.mode == StoreMode.OBJECT) {
+            return (T) val;
+        } else if (item.mode == StoreMode.PROTOBUF) {
+            return protobufConvert.convertFrom(type, (byte[]) val);
+        } else {
+            return convert.convertFrom(type, (String) val);
+        }
     }
 
     public long del(String name, String key) {
@@ -134,49 +170,150 @@ public class CachedLocalSource implements Service {
         if (map == null) {
             return -1;
         }
-        int old = map.limit;
-        map.limit = limit;
-        map.checkLimit();
-        return old;
+        return map.updateLimit(limit);
+    }
+
+    /**
+     * 获取指定缓存名称的统计信息
+     *
+     * @param name 缓存名称
+     * @return CacheStats, 不存在返回null
+     */
+    @Nullable
+    public CacheStats getStats(String name) {
+        CacheMap map = container.get(name);
+        return map == null ? null : map.stats(name);
+    }
+
+    /**
+     * 获取所有缓存名称的统计信息
+     *
+     * @return key为缓存名称
+     */
+    public Map<String, CacheStats> getStats() {
+        Map<String, CacheStats> rs = new TreeMap<>();
+        container.forEach((n, m) -> rs.put(n, m.stats(n)));
+        return rs;
     }
 
+    /**
+     * 单个缓存名称的数据集合 <br>
+     * 设置了数量上限时使用W-TinyLFU策略: 新数据先进入窗口区(LRU, 占1%), 溢出后进入主区的试用区, 与试用区最久未访问的数据按访问频率比较,
+     * 频率低的被淘汰; 试用区的数据再次被访问后升级到保护区(占主区80%)。过期由时间轮管理, 读取时也会检查是否过期。
+     */
     protected static class CacheMap {
 
         protected final ReentrantLock lock = new ReentrantLock();
 
         protected final ConcurrentHashMap<String, CacheItem> map = new ConcurrentHashMap<>();
 
-        protected int limit;
+        protected final TimerWheel<CacheItem> timerWheel = new TimerWheel<>();
+
+        protected final LongAdder hits = new LongAdder();
+
+        protected final LongAdder misses = new LongAdder();
+
+        protected final LongAdder evictions = new LongAdder();
+
+        // 窗口区
+        private final ItemDeque windowDeque = new ItemDeque();
+
+        // 主区的试用区
+        private final ItemDeque probationDeque = new ItemDeque();
+
+        // 主区的保护区
+        private final ItemDeque protectedDeque = new ItemDeque();
+
+        // 访问频率, limit大于0时才有值
+        private FrequencySketch sketch;
+
+        private int windowMax;
+
+        private int protectedMax;
+
+        protected volatile int limit;
 
         public CacheMap(int limit) {
-            this.limit = limit;
+            configLimit(limit);
         }
 
         public void forEach(BiConsumer<String, CacheItem> action) {
             map.forEach(action);
         }
 
-        public CacheItem remove(String key) {
-            return map.remove(key);
+        public CacheItem get(String key) {
+            CacheItem item = map.get(key);
+            if (item == null) {
+                misses.increment();
+                if (limit > 0 && lock.tryLock()) { // 未命中的key也需计入频率
+                    try {
+                        sketch.increment(key.hashCode());
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                return null;
+            }
+            if (item.isExpired()) {
+                misses.increment();
+                lock.lock();
+                try {
+                    if (map.remove(item.getKey(), item)) {
+                        detach(item);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                return null;
+            }
+            hits.increment();
+            // 读操作不阻塞, 竞争时放弃本次访问记录
+            if (limit > 0 && lock.tryLock()) {
+                try {
+                    sketch.increment(item.hash);
+                    onAccess(item);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return item;
         }
 
-        public CacheItem get(String key) {
-            return map.get(key);
+        public void put(String key, StoreMode mode, Object value, long millis) {
+            lock.lock();
+            try {
+                CacheItem item = map.get(key);
+                if (item == null) {
+                    item = new CacheItem(key, mode, value);
+                    map.put(key, item);
+                    if (limit > 0) {
+                        sketch.increment(item.hash);
+                        item.queue = CacheItem.WINDOW;
+                        windowDeque.addLast(item);
+                    }
+                } else if (limit > 0) {
+                    onAccess(item);
+                }
+                item.set(mode, value, millis);
+                timerWheel.schedule(item, item.endMillis);
+                if (limit > 0) {
+                    evictEntries();
+                }
+            } finally {
+                lock.unlock();
+            }
         }
 
-        public CacheItem computeIfAbsent(String key, String json) {
-            if (limit > 0) {
-                AtomicBoolean added = new AtomicBoolean();
-                CacheItem item = map.computeIfAbsent(key, k -> {
-                    added.set(true);
-                    return new CacheItem(key, json);
-                });
-                if (added.get()) {
-                    checkLimit();
+        public CacheItem remove(String key) {
+            lock.lock();
+            try {
+                CacheItem item = map.remove(key);
+                if (item != null) {
+                    detach(item);
                 }
                 return item;
-            } else {
-                return map.computeIfAbsent(key, k -> new CacheItem(key, json));
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -184,40 +321,309 @@ public class CachedLocalSource implements Service {
             return map.size();
         }
 
-        protected void checkLimit() {
-            int l = limit;
-            if (l > 0 && map.size() > l) {
-                lock.lock();
-                try {
-                    if (l > 0 && map.size() > l) {
-                        List<CacheItem> items = new ArrayList<>(map.values());
-                        Collections.sort(items);
-                        int count = map.size() - l;
-                        for (int i = 0; i < count; i++) {
-                            map.remove(items.get(i).getKey());
+        /**
+         * 清除已过期的数据
+         *
+         * @param now 当前时间点
+         */
+        public void expire(long now) {
+            lock.lock();
+            try {
+                timerWheel.advance(now, item -> {
+                    if (map.remove(item.getKey(), item)) {
+                        unlinkQueue(item);
+                    }
+                });
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int updateLimit(int newLimit) {
+            lock.lock();
+            try {
+                int old = this.limit;
+                if (newLimit > 0 && old <= 0) { // 原有数据都放入试用区
+                    configLimit(newLimit);
+                    for (CacheItem item : map.values()) {
+                        if (item.queue == CacheItem.NONE) {
+                            item.queue = CacheItem.PROBATION;
+                            probationDeque.addLast(item);
                         }
                     }
-                } finally {
-                    lock.unlock();
+                } else if (newLimit <= 0) {
+                    for (CacheItem item : map.values()) {
+                        unlinkQueue(item);
+                    }
+                    configLimit(newLimit);
+                } else {
+                    configLimit(newLimit);
+                }
+                if (newLimit > 0) {
+                    evictEntries();
+                }
+                return old;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public CacheStats stats(String name) {
+            return new CacheStats(name, size(), limit, hits.sum(), misses.sum(), evictions.sum());
+        }
+
+        private void configLimit(int newLimit) {
+            this.limit = newLimit;
+            if (newLimit > 0) {
+                this.windowMax = Math.max(1, newLimit / 100);
+                this.protectedMax = (int) ((newLimit - windowMax) * 0.8);
+                if (sketch == null) {
+                    sketch = new FrequencySketch(newLimit);
+                } else {
+                    sketch.ensureCapacity(newLimit);
                 }
             }
         }
+
+        // 需在lock内调用
+        private void onAccess(CacheItem item) {
+            if (item.queue == CacheItem.WINDOW) {
+                windowDeque.moveToLast(item);
+            } else if (item.queue == CacheItem.PROBATION) {
+                probationDeque.remove(item);
+                item.queue = CacheItem.PROTECTED;
+                protectedDeque.addLast(item);
+                while (protectedDeque.size > protectedMax) {
+                    CacheItem demoted = protectedDeque.pollFirst();
+                    demoted.queue = CacheItem.PROBATION;
+                    probationDeque.addLast(demoted);
+                }
+            } else if (item.queue == CacheItem.PROTECTED) {
+                protectedDeque.moveToLast(item);
+            }
+        }
+
+        // 需在lock内调用
+        private void evictEntries() {
+            // 窗口区溢出的数据作为候选者进入试用区末尾
+            CacheItem candidate = null;
+            while (windowDeque.size > windowMax) {
+                CacheItem item = windowDeque.pollFirst();
+                item.queue = CacheItem.PROBATION;
+                probationDeque.addLast(item);
+                if (candidate == null) {
+                    candidate = item;
+                }
+            }
+            while (map.size() > limit) {
+                CacheItem victim = probationDeque.head;
+                if (victim == null) {
+                    victim = protectedDeque.head != null ? protectedDeque.head : windowDeque.head;
+                }
+                if (victim == null) {
+                    break;
+                }
+                if (candidate != null && candidate != victim && candidate.queue == CacheItem.PROBATION) {
+                    if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                        evict(victim);
+                    } else {
+                        CacheItem next = candidate.next;
+                        evict(candidate);
+                        candidate = next;
+                    }
+                } else {
+                    if (victim == candidate) {
+                        candidate = null;
+                    }
+                    evict(victim);
+                }
+            }
+        }
+
+        private void evict(CacheItem item) {
+            if (map.remove(item.getKey(), item)) {
+                evictions.increment();
+            }
+            detach(item);
+        }
+
+        private void detach(CacheItem item) {
+            unlinkQueue(item);
+            timerWheel.deschedule(item);
+        }
+
+        private void unlinkQueue(CacheItem item) {
+            if (item.queue == CacheItem.WINDOW) {
+                windowDeque.remove(item);
+            } else if (item.queue == CacheItem.PROBATION) {
+                probationDeque.remove(item);
+            } else if (item.queue == CacheItem.PROTECTED) {
+                protectedDeque.remove(item);
+            }
+            item.queue = CacheItem.NONE;
+        }
     }
 
-    protected static class CacheItem implements Comparable<CacheItem> {
+    // 双向链表, 头部为最久未访问的数据
+    private static final class ItemDeque {
+
+        CacheItem head;
+
+        CacheItem tail;
+
+        int size;
+
+        void addLast(CacheItem item) {
+            item.prev = tail;
+            item.next = null;
+            if (tail == null) {
+                head = item;
+            } else {
+                tail.next = item;
+            }
+            tail = item;
+            size++;
+        }
+
+        CacheItem pollFirst() {
+            CacheItem item = head;
+            if (item != null) {
+                remove(item);
+            }
+            return item;
+        }
+
+        void moveToLast(CacheItem item) {
+            if (item != tail) {
+                remove(item);
+                addLast(item);
+            }
+        }
+
+        void remove(CacheItem item) {
+            if (item.prev == null) {
+                head = item.next;
+            } else {
+                item.prev.next = item.next;
+            }
+            if (item.next == null) {
+                tail = item.prev;
+            } else {
+                item.next.prev = item.prev;
+            }
+            item.prev = null;
+            item.next = null;
+            size--;
+        }
+    }
+
+    /**
+     * 本地缓存数据的存储方式 <br>
+     * JSON: 存放JSON字符串, 每次读取都会反序列化, 默认值 <br>
+     * PROTOBUF: 存放Protobuf字节数组, 体积更小且反序列化更快, 每次读取返回新对象, 适合可变类型 <br>
+     * OBJECT: 直接存放对象, 读取无反序列化开销, 返回同一个对象, 只适合不可变类型
+     */
+    public static enum StoreMode {
+        JSON,
+        PROTOBUF,
+        OBJECT;
+    }
+
+    /** 单个缓存名称的统计信息 */
+    public static class CacheStats {
+
+        private final String name;
+
+        private final int size;
+
+        private final int limit;
+
+        private final long hits;
+
+        private final long misses;
+
+        private final long evictions;
+
+        public CacheStats(String name, int size, int limit, long hits, long misses, long evictions) {
+            this.name = name;
+            this.size = size;
+            this.limit = limit;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return JsonConvert.root().convertTo(this);
+        }
+    }
+
+    protected static class CacheItem extends TimerWheel.Node implements Comparable<CacheItem> {
+
+        static final byte NONE = 0;
+
+        static final byte WINDOW = 1;
+
+        static final byte PROBATION = 2;
+
+        static final byte PROTECTED = 3;
 
         private final String key;
 
-        @Nullable // json格式
-        protected String value;
+        final int hash;
+
+        // 所在的淘汰区
+        byte queue = NONE;
+
+        CacheItem prev;
+
+        CacheItem next;
+
+        // 存储方式
+        protected StoreMode mode;
+
+        @Nullable // 格式由mode决定
+        protected Object value;
 
         // 为0表示永久， 大于0表示有过期时间
         protected long endMillis;
 
         private long createTime = System.currentTimeMillis();
 
-        public CacheItem(String key, String value) {
+        public CacheItem(String key, StoreMode mode, Object value) {
             this.key = key;
+            this.hash = key.hashCode();
+            this.mode = mode;
             this.value = value;
         }
 
@@ -225,7 +631,7 @@ public class CachedLocalSource implements Service {
             return key;
         }
 
-        public String getValue() {
+        public Object getValue() {
             return value;
         }
 
@@ -233,7 +639,12 @@ public class CachedLocalSource implements Service {
             return createTime;
         }
 
-        public void set(String value, long millis) {
+        public StoreMode getMode() {
+            return mode;
+        }
+
+        public void set(StoreMode mode, Object value, long millis) {
+            this.mode = mode;
             this.value = value;
             this.createTime = System.currentTimeMillis();
             this.endMillis = millis > 0 ? (this.createTime + millis) : 0;
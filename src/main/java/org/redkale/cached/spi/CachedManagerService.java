@@ -11,8 +11,11 @@ import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.redkale.annotation.AutoLoad;
@@ -65,6 +68,18 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
     // 是否开启本地缓存变更通知
     protected boolean broadcastable = true;
 
+    // 过期数据可继续使用的时长与过期时长的比例, 期间由后台刷新数据, 0表示不启用
+    protected double staleRatio;
+
+    // 提前刷新(XFetch)的系数, 越大越早刷新, 0表示不启用
+    protected double earlyBeta;
+
+    // 计算逻辑过期时间点和加载耗时的时钟(毫秒)
+    protected LongSupplier clock = System::currentTimeMillis;
+
+    // 同步getSet后台刷新数据的执行器, 为null时使用Utility.defaultExecutor()
+    protected Executor refreshExecutor;
+
     // 配置
     protected AnyValue config;
 
@@ -80,6 +95,9 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
     // 缓存无效时使用的异步锁
     protected final ConcurrentHashMap<String, CachedAsyncLock> asyncLockMap = new ConcurrentHashMap<>();
 
+    // 后台刷新中的缓存键
+    protected final ConcurrentHashMap<String, Boolean> refreshingMap = new ConcurrentHashMap<>();
+
     protected final List<CachedAction> actions = new CopyOnWriteArrayList<>();
 
     @Resource(required = false)
@@ -118,6 +136,8 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
         this.name = conf.getValue("name", "");
         this.enabled = conf.getBoolValue("enabled", true);
         this.schema = checkSchema(conf.getValue("schema", CACHED_SCHEMA));
+        setStaleRatio(Double.parseDouble(conf.getValue("staleratio", String.valueOf(staleRatio))));
+        setEarlyBeta(Double.parseDouble(conf.getValue("earlybeta", String.valueOf(earlyBeta))));
         if (this.enabled) {
             this.localSource.init(conf);
             String remoteSourceName = conf.getValue("remote", "");
@@ -207,6 +227,58 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
         }
     }
 
+    public double getStaleRatio() {
+        return staleRatio;
+    }
+
+    /**
+     * 设置过期数据可继续使用的时长比例, 例如0.5表示过期时长为60秒时, 过期后30秒内仍返回旧数据并由后台刷新
+     *
+     * @param staleRatio 比例, 0表示不启用
+     */
+    public void setStaleRatio(double staleRatio) {
+        this.staleRatio = Math.max(0, staleRatio);
+    }
+
+    public double getEarlyBeta() {
+        return earlyBeta;
+    }
+
+    /**
+     * 设置提前刷新(XFetch)的系数, 数据在过期前按加载耗时随机提前触发后台刷新, 一般取1.0
+     *
+     * @param earlyBeta 系数, 0表示不启用
+     */
+    public void setEarlyBeta(double earlyBeta) {
+        this.earlyBeta = Math.max(0, earlyBeta);
+    }
+
+    public LongSupplier getClock() {
+        return clock;
+    }
+
+    /**
+     * 设置计算逻辑过期时间点和加载耗时的时钟, 缓存数据本身的过期仍按系统时间
+     *
+     * @param clock 返回毫秒数的时钟
+     */
+    public void setClock(LongSupplier clock) {
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    public Executor getRefreshExecutor() {
+        return refreshExecutor;
+    }
+
+    /**
+     * 设置同步getSet后台刷新数据的执行器
+     *
+     * @param refreshExecutor 执行器, 为null时使用Utility.defaultExecutor()
+     */
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
     public CachedLocalSource getLocalSource() {
         return localSource;
     }
@@ -596,6 +668,7 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
                 nullable,
                 localLimit,
                 localExpire,
+                remoteExpire,
                 supplier);
     }
 
@@ -654,6 +727,7 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
                 nullable,
                 localLimit,
                 localExpire,
+                remoteExpire,
                 supplier);
     }
 
@@ -785,6 +859,36 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
             int localLimit,
             Duration expire,
             ThrowSupplier<T> supplier) {
+        return getSet(getter, setter, name, key, type, nullable, localLimit, expire, expire, supplier);
+    }
+
+    /**
+     * 获取缓存数据, 过期返回null
+     *
+     * @param <T> 泛型
+     * @param getter 获取数据函数
+     * @param setter 设置数据函数
+     * @param name 缓存名称
+     * @param key 缓存键
+     * @param type 数据类型
+     * @param nullable 是否缓存null值
+     * @param localLimit 本地缓存数量上限
+     * @param expire 过期时长，Duration.ZERO为永不过期
+     * @param refreshExpire 用于判断数据是否需要刷新的过期时长, 多级缓存时取远程缓存的过期时长
+     * @param supplier 数据函数
+     * @return 数据值
+     */
+    protected <T> T getSet(
+            GetterFunc<CachedValue<T>> getter,
+            SetterSyncFunc setter,
+            String name,
+            String key,
+            Type type,
+            boolean nullable,
+            int localLimit,
+            Duration expire,
+            Duration refreshExpire,
+            ThrowSupplier<T> supplier) {
         checkEnable();
         boolean logable = logger.isLoggable(logLevel);
         Objects.requireNonNull(expire);
@@ -796,6 +900,23 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
             if (logable) {
                 logger.log(logLevel, "Cached got id(" + id + ") value from eitherSource");
             }
+            if (needRefresh(cacheVal) && refreshingMap.putIfAbsent(id, Boolean.TRUE) == null) {
+                Executor executor = refreshExecutor == null ? Utility.defaultExecutor() : refreshExecutor;
+                executor.execute(() -> {
+                    try {
+                        long start = clock.getAsLong();
+                        CachedValue<T> newCacheVal = toCacheSupplier(nullable, supplier).get();
+                        if (CachedValue.isValid(newCacheVal)) {
+                            markRefresh(newCacheVal, refreshExpire, start);
+                            setter.set(name, key, localLimit, expire, cacheType, newCacheVal);
+                        }
+                    } catch (Throwable t) {
+                        logger.log(Level.WARNING, "Cached refresh id(" + id + ") value error", t);
+                    } finally {
+                        refreshingMap.remove(id);
+                    }
+                });
+            }
             return cacheVal.getVal();
         }
         Function<String, CachedValue> func = k -> {
@@ -804,6 +925,7 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
                 return oldCacheVal;
             }
             CachedValue<T> newCacheVal;
+            long start = clock.getAsLong();
             try {
                 newCacheVal = toCacheSupplier(nullable, supplier).get();
             } catch (RuntimeException e) {
@@ -812,6 +934,7 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
                 throw new RedkaleException(t);
             }
             if (CachedValue.isValid(newCacheVal)) {
+                markRefresh(newCacheVal, refreshExpire, start);
                 setter.set(name, key, localLimit, expire, cacheType, newCacheVal);
             }
             return newCacheVal;
@@ -849,6 +972,36 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
             int localLimit,
             Duration expire,
             ThrowSupplier<CompletableFuture<T>> supplier) {
+        return getSetAsync(getter, setter, name, key, type, nullable, localLimit, expire, expire, supplier);
+    }
+
+    /**
+     * 异步获取缓存数据, 过期返回null
+     *
+     * @param <T> 泛型
+     * @param getter 获取数据函数
+     * @param setter 设置数据函数
+     * @param name 缓存名称
+     * @param key 缓存键
+     * @param type 数据类型
+     * @param nullable 是否缓存null值
+     * @param localLimit 本地缓存数量上限
+     * @param expire 过期时长，Duration.ZERO为永不过期
+     * @param refreshExpire 用于判断数据是否需要刷新的过期时长, 多级缓存时取远程缓存的过期时长
+     * @param supplier 数据函数
+     * @return 数据值
+     */
+    protected <T> CompletableFuture<T> getSetAsync(
+            GetterFunc<CompletableFuture<CachedValue<T>>> getter,
+            SetterAsyncFunc setter,
+            String name,
+            String key,
+            Type type,
+            boolean nullable,
+            int localLimit,
+            Duration expire,
+            Duration refreshExpire,
+            ThrowSupplier<CompletableFuture<T>> supplier) {
         checkEnable();
         boolean logable = logger.isLoggable(logLevel);
         Objects.requireNonNull(supplier);
@@ -860,11 +1013,35 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
                 if (logable) {
                     logger.log(logLevel, "Cached got id(" + id + ") value from eitherSource");
                 }
+                if (needRefresh(val) && refreshingMap.putIfAbsent(id, Boolean.TRUE) == null) {
+                    long start = clock.getAsLong();
+                    try {
+                        supplier.get()
+                                .thenCompose(v -> {
+                                    CachedValue<T> cacheVal = toCacheValue(nullable, v);
+                                    if (CachedValue.isValid(cacheVal)) {
+                                        markRefresh(cacheVal, refreshExpire, start);
+                                        return setter.set(name, key, localLimit, expire, cacheType, cacheVal);
+                                    }
+                                    return CompletableFuture.completedFuture(null);
+                                })
+                                .whenComplete((v, e) -> {
+                                    refreshingMap.remove(id);
+                                    if (e != null) {
+                                        logger.log(Level.WARNING, "Cached refresh id(" + id + ") value error", e);
+                                    }
+                                });
+                    } catch (Throwable t) {
+                        refreshingMap.remove(id);
+                        logger.log(Level.WARNING, "Cached refresh id(" + id + ") value error", t);
+                    }
+                }
                 return CompletableFuture.completedFuture(val.getVal());
             }
             final CachedAsyncLock lock = asyncLockMap.computeIfAbsent(id, k -> new CachedAsyncLock(asyncLockMap, k));
             CompletableFuture<T> future = new CompletableFuture<>();
             if (lock.compareAddFuture(future)) {
+                long start = clock.getAsLong();
                 try {
                     supplier.get().whenComplete((v, e) -> {
                         if (e != null) {
@@ -872,6 +1049,7 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
                         }
                         CachedValue<T> cacheVal = toCacheValue(nullable, v);
                         if (CachedValue.isValid(cacheVal)) {
+                            markRefresh(cacheVal, refreshExpire, start);
                             setter.set(name, key, localLimit, expire, cacheType, cacheVal)
                                     .whenComplete((v2, e2) -> lock.success(CachedValue.get(cacheVal)));
                         } else {
@@ -895,7 +1073,7 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
         checkEnable();
         boolean logable = logger.isLoggable(logLevel);
         Objects.requireNonNull(expire);
-        long millis = expire.toMillis();
+        long millis = staleMillis(expire.toMillis(), cacheVal);
         String id = idFor(name, key);
         if (logable) {
             logger.log(
@@ -919,7 +1097,7 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
         checkEnable();
         boolean logable = logger.isLoggable(logLevel);
         Objects.requireNonNull(expire);
-        long millis = expire.toMillis();
+        long millis = staleMillis(expire.toMillis(), cacheVal);
         String id = idFor(name, key);
         if (logable) {
             logger.log(logLevel, "Cached set id(" + id + ") value to remoteSource expire " + millis + " ms");
@@ -942,7 +1120,7 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
         boolean logable = logger.isLoggable(logLevel);
         Objects.requireNonNull(expire);
         String id = idFor(name, key);
-        long millis = expire.toMillis();
+        long millis = staleMillis(expire.toMillis(), cacheVal);
         if (logable) {
             logger.log(
                     logLevel,
@@ -967,7 +1145,7 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
         boolean logable = logger.isLoggable(logLevel);
         Objects.requireNonNull(expire);
         String id = idFor(name, key);
-        long millis = expire.toMillis();
+        long millis = staleMillis(expire.toMillis(), cacheVal);
         if (logable) {
             logger.log(logLevel, "Cached set id(" + id + ") value to remoteSource expire " + millis + " ms");
         }
@@ -1097,6 +1275,62 @@ public class CachedManagerService implements CachedManager, CachedActionFunc, Se
         return () -> toCacheValue(nullable, supplier.get());
     }
 
+    /**
+     * 记录数据的逻辑过期时间点和加载耗时, 用于判断是否需要后台刷新
+     *
+     * @param cacheVal 缓存值
+     * @param refreshExpire 逻辑过期时长
+     * @param start 开始加载的时间点
+     */
+    protected void markRefresh(CachedValue cacheVal, Duration refreshExpire, long start) {
+        if ((staleRatio > 0 || earlyBeta > 0) && refreshExpire != null) {
+            long millis = refreshExpire.toMillis();
+            if (millis > 0) {
+                long now = clock.getAsLong();
+                cacheVal.setExpireAt(now + millis);
+                cacheVal.setDelta(now - start);
+            }
+        }
+    }
+
+    /**
+     * 判断数据是否需要后台刷新: 已逻辑过期或按XFetch算法提前刷新 <br>
+     * XFetch: now - delta * beta * ln(random) &#62;= expireAt
+     *
+     * @param cacheVal 缓存值
+     * @return 是否需要刷新
+     */
+    protected boolean needRefresh(CachedValue cacheVal) {
+        long expireAt = cacheVal.getExpireAt();
+        if (expireAt <= 0) {
+            return false;
+        }
+        long now = clock.getAsLong();
+        if (now >= expireAt) {
+            return true;
+        }
+        double beta = this.earlyBeta;
+        if (beta > 0 && cacheVal.getDelta() > 0) {
+            double random = 1 - ThreadLocalRandom.current().nextDouble(); // (0, 1]
+            return now - cacheVal.getDelta() * beta * Math.log(random) >= expireAt;
+        }
+        return false;
+    }
+
+    /**
+     * 计算实际的过期时长, 需后台刷新的数据在逻辑过期后继续保留一段时间
+     *
+     * @param millis 过期时长
+     * @param cacheVal 缓存值
+     * @return 实际过期时长
+     */
+    protected long staleMillis(long millis, CachedValue cacheVal) {
+        if (millis > 0 && cacheVal.getExpireAt() > 0 && staleRatio > 0) {
+            return millis + (long) (millis * staleRatio);
+        }
+        return millis;
+    }
+
     /**
      * 创建数据类型创建对应CacheValue泛型
      *
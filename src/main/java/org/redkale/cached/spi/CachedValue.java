@@ -20,6 +20,14 @@ public class CachedValue<T> {
     @ConvertColumn(index = 1)
     private T val;
 
+    // 逻辑过期的时间点, 0表示不参与提前刷新
+    @ConvertColumn(index = 2)
+    private long expireAt;
+
+    // 加载数据的耗时(毫秒)
+    @ConvertColumn(index = 3)
+    private long delta;
+
     public CachedValue() {}
 
     protected CachedValue(T value) {
@@ -46,6 +54,22 @@ public class CachedValue<T> {
         this.val = val;
     }
 
+    public long getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(long expireAt) {
+        this.expireAt = expireAt;
+    }
+
+    public long getDelta() {
+        return delta;
+    }
+
+    public void setDelta(long delta) {
+        this.delta = delta;
+    }
+
     @Override
     public String toString() {
         return JsonConvert.root().convertTo(this);
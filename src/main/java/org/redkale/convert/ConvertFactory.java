@@ -365,6 +365,10 @@ public abstract class ConvertFactory<R extends Reader, W extends Writer> {
         return null;
     }
 
+    protected <E> Decodeable<R, E> createDyncDecoder(Type type) {
+        return null;
+    }
+
     protected ObjectDecoder createObjectDecoder(Type type) {
         return new ObjectDecoder(type);
     }
@@ -1387,8 +1391,11 @@ public abstract class ConvertFactory<R extends Reader, W extends Writer> {
                 }
                 if (decoder == null) {
                     Type impl = formatObjectType(type);
-                    od = createObjectDecoder(impl);
-                    decoder = od;
+                    decoder = createDyncDecoder(impl);
+                    if (decoder == null) {
+                        od = createObjectDecoder(impl);
+                        decoder = od;
+                    }
                 }
             } else {
                 decoder = simpleCoder;
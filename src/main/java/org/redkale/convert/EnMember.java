@@ -6,6 +6,7 @@
 package org.redkale.convert;
 
 import java.lang.reflect.*;
+import java.nio.charset.StandardCharsets;
 import java.util.function.BiFunction;
 import org.redkale.annotation.Comment;
 import org.redkale.annotation.Nullable;
@@ -69,7 +70,7 @@ public final class EnMember<W extends Writer, T, F> {
         this.string = CharSequence.class.isAssignableFrom(t);
         this.bool = t == Boolean.class || t == boolean.class;
         this.jsonFieldNameColonChars = ('"' + attribute.field() + "\":").toCharArray();
-        this.jsonFieldNameColonBytes = ('"' + attribute.field() + "\":").getBytes();
+        this.jsonFieldNameColonBytes = ('"' + attribute.field() + "\":").getBytes(StandardCharsets.UTF_8);
         this.comment = "";
         this.field = null;
         this.method = null;
@@ -87,7 +88,7 @@ public final class EnMember<W extends Writer, T, F> {
         this.string = CharSequence.class.isAssignableFrom(t);
         this.bool = t == Boolean.class || t == boolean.class;
         this.jsonFieldNameColonChars = ('"' + attribute.field() + "\":").toCharArray();
-        this.jsonFieldNameColonBytes = ('"' + attribute.field() + "\":").getBytes();
+        this.jsonFieldNameColonBytes = ('"' + attribute.field() + "\":").getBytes(StandardCharsets.UTF_8);
         if (field != null) {
             Comment ct = field.getAnnotation(Comment.class);
             this.comment = ct == null ? "" : ct.value();
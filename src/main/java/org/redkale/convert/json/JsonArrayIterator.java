@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.convert.json;
+
+import java.util.*;
+import org.redkale.convert.*;
+
+/**
+ * 逐个解析json数组元素的迭代器, 不会构建整个集合 <br>
+ * 内存占用只取决于最大的单个元素, 非线程安全
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @param <T> 元素的数据类型
+ * @since 2.8.0
+ */
+class JsonArrayIterator<T> implements Iterator<T> {
+
+    private static final int STATE_INIT = 0;
+
+    private static final int STATE_CHECK = 1;
+
+    private static final int STATE_READY = 2;
+
+    private static final int STATE_END = 3;
+
+    private final JsonReader reader;
+
+    private final Decodeable<JsonReader, T> decoder;
+
+    private int state = STATE_INIT;
+
+    public JsonArrayIterator(JsonReader reader, Decodeable<JsonReader, T> decoder) {
+        this.reader = reader;
+        this.decoder = decoder;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (state == STATE_INIT) {
+            if (!reader.readArrayB(decoder)) { // json为null
+                state = STATE_END;
+                return false;
+            }
+            state = STATE_CHECK;
+        }
+        if (state == STATE_CHECK) {
+            if (reader.hasNext()) {
+                state = STATE_READY;
+            } else {
+                reader.readArrayE();
+                state = STATE_END;
+            }
+        }
+        return state == STATE_READY;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            T rs = decoder.convertFrom(reader);
+            state = STATE_CHECK;
+            return rs;
+        } catch (RuntimeException e) { // 数据有误, 无法再定位下一个元素
+            state = STATE_END;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.convert.json;
+
+import java.util.Iterator;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.*;
+
+/**
+ * 逐个解析json数组元素的Flow.Publisher, 按订阅者的request数量解析, 只允许一个订阅者 <br>
+ * 元素在调用request的线程中解析并回调onNext
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @param <T> 元素的数据类型
+ * @since 2.8.0
+ */
+class JsonArrayPublisher<T> implements Flow.Publisher<T> {
+
+    private final Iterator<T> iterator;
+
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public JsonArrayPublisher(Iterator<T> iterator) {
+        this.iterator = iterator;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    // do nothing
+                }
+
+                @Override
+                public void cancel() {
+                    // do nothing
+                }
+            });
+            subscriber.onError(new IllegalStateException(getClass().getSimpleName() + " only supports one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new ArraySubscription<>(iterator, subscriber));
+    }
+
+    static class ArraySubscription<T> implements Flow.Subscription {
+
+        private final Iterator<T> iterator;
+
+        private final Flow.Subscriber<? super T> subscriber;
+
+        private final AtomicLong demand = new AtomicLong();
+
+        // 持有者负责解析并回调, onNext中再次调用request不会递归
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean done;
+
+        public ArraySubscription(Iterator<T> iterator, Flow.Subscriber<? super T> subscriber) {
+            this.iterator = iterator;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done) {
+                return;
+            }
+            if (n <= 0) {
+                done = true;
+                subscriber.onError(new IllegalArgumentException("request count must be positive, but " + n));
+                return;
+            }
+            demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                drain();
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void drain() {
+            while (!done && demand.get() > 0) {
+                T item;
+                try {
+                    if (!iterator.hasNext()) {
+                        done = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    item = iterator.next();
+                } catch (Throwable t) {
+                    done = true;
+                    subscriber.onError(t);
+                    return;
+                }
+                demand.decrementAndGet();
+                subscriber.onNext(item);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+    }
+}
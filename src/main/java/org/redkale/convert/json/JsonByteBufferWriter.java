@@ -317,7 +317,10 @@ public class JsonByteBufferWriter extends JsonWriter {
             writeNull();
             return;
         }
-        byte[] bs = Utility.latin1ByteArray(value);
+        writeLatin1Bytes(quote, Utility.latin1ByteArray(value));
+    }
+
+    private void writeLatin1Bytes(final boolean quote, final byte[] bs) {
         int expandsize = expand(bs.length + (quote ? 2 : 0));
         if (expandsize == 0) { // 只需要一个buffer
             final ByteBuffer buffer = this.buffers[currBufIndex];
@@ -545,6 +548,13 @@ public class JsonByteBufferWriter extends JsonWriter {
             writeNull();
             return;
         }
+        if (this.charset == null && Utility.isLatin1(value)) { // UTF-8下无需转义的ASCII字符串整段写出
+            byte[] bs = Utility.latin1ByteArray(value);
+            if (asciiSafeIndex(bs, 0, bs.length) == bs.length) {
+                writeLatin1Bytes(true, bs);
+                return;
+            }
+        }
         final char[] chs = Utility.charArray(value);
         int len = 0;
         for (char ch : chs) {
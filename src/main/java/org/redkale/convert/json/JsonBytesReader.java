@@ -0,0 +1,505 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.convert.json;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+import java.util.Objects;
+import org.redkale.convert.*;
+import org.redkale.util.ByteArray;
+import org.redkale.util.ByteTreeNode;
+
+/**
+ * 以UTF-8的byte[]为数据载体的JsonReader <br>
+ * 直接按字节解析, 不需要先转成String/char[]; 字段名按字节匹配DeMemberInfo的ByteTreeNode, 不含转义的字符串直接由字节创建
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ */
+public class JsonBytesReader extends JsonReader {
+
+    private byte[] bytes;
+
+    // 最后一个字节的下标
+    private int limit = -1;
+
+    public JsonBytesReader() {}
+
+    public JsonBytesReader(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public JsonBytesReader(byte[] bytes, int start, int len) {
+        setBytes(bytes, start, len);
+    }
+
+    public final JsonBytesReader setBytes(byte[] bytes) {
+        return setBytes(bytes, 0, bytes.length);
+    }
+
+    public final JsonBytesReader setBytes(ByteArray array) {
+        return setBytes(array.content(), 0, array.length());
+    }
+
+    public final JsonBytesReader setBytes(byte[] bytes, int start, int len) {
+        this.bytes = Objects.requireNonNull(bytes);
+        this.position = start - 1;
+        this.limit = this.position + len;
+        return this;
+    }
+
+    @Override
+    public void prepare(byte[] bytes) {
+        if (bytes != null) {
+            setBytes(bytes);
+        }
+    }
+
+    @Override
+    protected boolean recycle() {
+        super.recycle(); // this.position 初始化值为-1
+        this.bytes = null;
+        this.limit = -1;
+        return true;
+    }
+
+    /**
+     * 读取下一个字符， 不跳过空白字符
+     *
+     * @return 空白字符或有效字符, 0表示已到结尾
+     */
+    @Override
+    protected char nextChar() {
+        int p = ++this.position;
+        if (p > limit) {
+            this.position = limit;
+            return 0;
+        }
+        byte b = this.bytes[p];
+        return b >= 0 ? (char) b : nextMultiChar(b);
+    }
+
+    // 解码UTF-8多字节字符, 四字节字符只返回低位代理
+    private char nextMultiChar(byte b) {
+        final byte[] bs = this.bytes;
+        int p = this.position;
+        char ch;
+        if ((b >> 5) == -2 && (b & 0x1e) != 0) { // 2 bytes, 11 bits: 110xxxxx 10xxxxxx
+            ch = (char) (((b << 6) ^ bs[++p]) ^ (((byte) 0xC0 << 6) ^ ((byte) 0x80)));
+        } else if ((b >> 4) == -2) { // 3 bytes, 16 bits: 1110xxxx 10xxxxxx 10xxxxxx
+            ch = (char) ((b << 12)
+                    ^ (bs[++p] << 6)
+                    ^ (bs[++p] ^ (((byte) 0xE0 << 12) ^ ((byte) 0x80 << 6) ^ ((byte) 0x80))));
+        } else if ((b >> 3) == -2) { // 4 bytes, 21 bits: 11110xxx 10xxxxxx 10xxxxxx 10xxxxxx
+            int uc = ((b << 18)
+                    ^ (bs[++p] << 12)
+                    ^ (bs[++p] << 6)
+                    ^ (bs[++p] ^ (((byte) 0xF0 << 18) ^ ((byte) 0x80 << 12) ^ ((byte) 0x80 << 6) ^ ((byte) 0x80))));
+            ch = Character.lowSurrogate(uc);
+        } else {
+            throw new ConvertException(new UnmappableCharacterException(4));
+        }
+        this.position = p;
+        return ch;
+    }
+
+    /**
+     * 跳过空白字符、单行或多行注释， 返回一个非空白字符
+     *
+     * @param allowComment 是否容许含注释
+     * @return 有效字符, 0表示已到结尾
+     */
+    @Override
+    protected char nextGoodChar(boolean allowComment) {
+        final byte[] bs = this.bytes;
+        final int end = this.limit;
+        int curr = this.position;
+        while (++curr <= end) {
+            byte b = bs[curr];
+            if (b < 0) {
+                this.position = curr;
+                return nextMultiChar(b);
+            }
+            if (b > ' ') {
+                if (b == '/' && allowComment && curr < end) { // 支持单行和多行注释
+                    byte n = bs[++curr];
+                    if (n == '/') { // 单行注释
+                        while (curr < end && bs[++curr] != '\n') {
+                            // do nothing
+                        }
+                        continue;
+                    } else if (n == '*') { // 多行注释
+                        byte lc = 0;
+                        while (curr < end) {
+                            byte nc = bs[++curr];
+                            if (nc == '/' && lc == '*') {
+                                break;
+                            }
+                            lc = nc;
+                        }
+                        continue;
+                    } else {
+                        throw new ConvertException("illegal escape(" + (char) n + ") (position = " + curr + ")");
+                    }
+                }
+                this.position = curr;
+                return (char) b;
+            }
+        }
+        this.position = end;
+        return 0;
+    }
+
+    /**
+     * 回退最后读取的字符
+     *
+     * @param ch 后退的字符
+     */
+    @Override
+    protected void backChar(char ch) {
+        if (ch == 0) { // 已到结尾
+            return;
+        }
+        if (ch < 0x80) {
+            this.position--;
+        } else if (ch < 0x800) {
+            this.position -= 2;
+        } else if (Character.isSurrogate(ch)) {
+            this.position -= 4;
+        } else {
+            this.position -= 3;
+        }
+    }
+
+    @Override
+    public boolean readObjectB(final Decodeable decoder) {
+        if (this.position >= this.limit) {
+            return false;
+        }
+        char ch = nextGoodChar(true);
+        if (ch == '{') {
+            return true;
+        }
+        if (ch == 'n' && nextChar() == 'u' && nextChar() == 'l' && nextChar() == 'l') {
+            return false;
+        }
+        if (ch == 'N' && nextChar() == 'U' && nextChar() == 'L' && nextChar() == 'L') {
+            return false;
+        }
+        throw new ConvertException("a json object must begin with '{' (position = " + position + ") but '" + ch
+                + "' in " + new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean readArrayB(Decodeable componentDecoder) {
+        if (this.position >= this.limit) {
+            return false;
+        }
+        char ch = nextGoodChar(true);
+        if (ch == '[' || ch == '{') {
+            return true;
+        }
+        if (ch == 'n' && nextChar() == 'u' && nextChar() == 'l' && nextChar() == 'l') {
+            return false;
+        }
+        if (ch == 'N' && nextChar() == 'U' && nextChar() == 'L' && nextChar() == 'L') {
+            return false;
+        }
+        throw new ConvertException("a json array text must begin with '[' (position = " + position + ") but '" + ch
+                + "' in " + new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void readColon() {
+        char ch = nextGoodChar(true);
+        if (ch == ':') {
+            return;
+        }
+        throw new ConvertException("expected a ':' but '" + ch + "'(position = " + position + ") in "
+                + new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public int readInt() {
+        long value = readLong();
+        return value == Long.MIN_VALUE ? Integer.MIN_VALUE : value == Long.MAX_VALUE ? Integer.MAX_VALUE : (int) value;
+    }
+
+    @Override
+    public long readLong() {
+        char firstchar = nextGoodChar(true);
+        char quote = 0;
+        if (firstchar == '"' || firstchar == '\'') {
+            quote = firstchar;
+            firstchar = nextGoodChar(false);
+            if (firstchar == quote) {
+                return 0L;
+            }
+        }
+        long value = 0;
+        final boolean negative = firstchar == '-';
+        if (negative || firstchar == '+') { // 兼容+开头的
+            firstchar = nextChar();
+        }
+        if (firstchar == 'N') {
+            if (negative || nextChar() != 'a' || nextChar() != 'N') {
+                throw new ConvertException("illegal escape(" + firstchar + ") (position = " + position + ")");
+            }
+            if (quote > 0 && nextChar() != quote) {
+                throw new ConvertException("illegal escape(" + firstchar + ") (position = " + position + ")");
+            }
+            return 0L; // NaN 返回0;
+        } else if (firstchar == 'I') { // Infinity
+            if (nextChar() != 'n'
+                    || nextChar() != 'f'
+                    || nextChar() != 'i'
+                    || nextChar() != 'n'
+                    || nextChar() != 'i'
+                    || nextChar() != 't'
+                    || nextChar() != 'y') {
+                throw new ConvertException("illegal escape(" + firstchar + ") (position = " + position + ")");
+            }
+            if (quote > 0 && nextChar() != quote) {
+                throw new ConvertException("illegal escape(" + firstchar + ") (position = " + position + ")");
+            }
+            return negative ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        if (firstchar < '0' || firstchar > '9') {
+            throw new ConvertException("illegal escape(" + firstchar + ") (position = " + position + ")");
+        }
+        value = digits[firstchar];
+        final byte[] bs = this.bytes;
+        final int end = this.limit;
+        int curr = ++this.position;
+        boolean hex = false;
+        boolean dot = false;
+        for (; curr <= end; curr++) {
+            byte ch = bs[curr];
+            if (ch >= '0' && ch <= '9') {
+                if (dot) { // 兼容 123.456
+                    continue;
+                }
+                value = (hex ? (value << 4) : ((value << 3) + (value << 1))) + digits[ch];
+            } else if (ch == ',' || ch == '}' || ch == ']' || (ch >= 0 && ch <= ' ' && quote == 0) || ch == ':') {
+                curr--;
+                break;
+            } else if (ch == quote) {
+                break;
+            } else if (quote > 0 && ch >= 0 && ch <= ' ') { // 兼容 "123 "
+                // do nothing
+            } else if (ch == '.') {
+                dot = true;
+            } else if ((ch == 'x' || ch == 'X') && value == 0 && !hex) {
+                hex = true;
+            } else if (hex && ((ch >= 'a' && ch <= 'f') || (ch >= 'A' && ch <= 'F'))) {
+                if (dot) {
+                    continue;
+                }
+                value = (value << 4) + digits[ch];
+            } else {
+                throw new ConvertException("illegal escape(" + (char) ch + ") (position = " + curr + ")");
+            }
+        }
+        this.position = curr > end ? end : curr;
+        return negative ? -value : value;
+    }
+
+    @Override
+    public DeMember readField(final DeMemberInfo memberInfo) {
+        final int eof = this.limit;
+        if (this.position == eof) {
+            return null;
+        }
+        ByteTreeNode<DeMember> node = memberInfo.getMemberNode();
+        char ch = nextGoodChar(true); // 需要跳过注释
+        final byte[] bs = this.bytes;
+        int curr = this.position;
+        byte b;
+        if (ch == '"' || ch == '\'') {
+            final byte quote = (byte) ch;
+            while (curr < eof && (b = bs[++curr]) != quote) {
+                if (node != null) {
+                    node = node.getNode(b); // 非ASCII字节返回null
+                }
+            }
+            this.position = curr;
+            return node == null ? null : node.getValue();
+        } else {
+            if (node != null) {
+                node = node.getNode(ch);
+            }
+            while (curr < eof) {
+                b = bs[++curr];
+                if (b == ',' || b == ']' || b == '}' || (b >= 0 && b <= ' ') || b == ':') {
+                    curr--;
+                    break;
+                }
+                if (node != null) {
+                    node = node.getNode(b);
+                }
+            }
+            this.position = curr;
+            return node == null ? null : node.getValue();
+        }
+    }
+
+    @Override
+    public String readStandardString() {
+        if (this.position == this.limit) {
+            return null;
+        }
+        return readString(true);
+    }
+
+    @Override
+    protected String readString(boolean flag) {
+        final byte[] bs = this.bytes;
+        final int end = this.limit;
+        char quote = nextGoodChar(true);
+        if (quote == 0) {
+            return null;
+        }
+        int curr = this.position;
+        if (quote == '"' || quote == '\'') {
+            final int start = curr + 1;
+            for (; ; ) {
+                if (++curr > end) {
+                    throw new ConvertException("expected a '" + quote + "' at the end of string (position = " + curr
+                            + ") in " + new String(bs, StandardCharsets.UTF_8));
+                }
+                byte b = bs[curr];
+                if (b == quote) {
+                    this.position = curr;
+                    return new String(bs, start, curr - start, StandardCharsets.UTF_8);
+                } else if (b == '\\') {
+                    return readEscapeString((byte) quote, start, curr);
+                }
+            }
+        }
+        // 不带引号
+        final int start = curr;
+        for (; ; ) {
+            if (curr == end) {
+                curr++;
+                break;
+            }
+            byte b = bs[++curr];
+            if (b == ',' || (b >= 0 && b <= ' ') || b == '}' || b == ']' || (flag && b == ':')) {
+                break;
+            }
+        }
+        this.position = curr - 1;
+        int len = curr - start;
+        if (len == 4 && bs[start] == 'n' && bs[start + 1] == 'u' && bs[start + 2] == 'l' && bs[start + 3] == 'l') {
+            return null;
+        }
+        return new String(bs, start, len, StandardCharsets.UTF_8);
+    }
+
+    // 含转义字符的字符串, escape为第一个\的位置
+    private String readEscapeString(final byte quote, final int start, final int escape) {
+        final byte[] bs = this.bytes;
+        final int end = this.limit;
+        CharArray tmp = array();
+        appendUtf8(tmp, bs, start, escape);
+        int curr = escape;
+        for (; ; ) {
+            if (curr > end) {
+                throw new ConvertException("expected a '" + (char) quote + "' at the end of string (position = "
+                        + curr + ") in " + new String(bs, StandardCharsets.UTF_8));
+            }
+            byte b = bs[curr];
+            if (b == quote) {
+                this.position = curr;
+                return tmp.toStringThenClear();
+            } else if (b == '\\') {
+                if (++curr > end) {
+                    throw new ConvertException("expected a '" + (char) quote + "' at the end of string (position = "
+                            + curr + ") in " + new String(bs, StandardCharsets.UTF_8));
+                }
+                byte c = bs[curr];
+                switch (c) {
+                    case '"':
+                    case '\'':
+                    case '\\':
+                    case '/':
+                        tmp.append((char) c);
+                        break;
+                    case 'n':
+                        tmp.append('\n');
+                        break;
+                    case 'r':
+                        tmp.append('\r');
+                        break;
+                    case 'u':
+                        if (curr + 4 > end) {
+                            throw new ConvertException("expected a '" + (char) quote
+                                    + "' at the end of string (position = " + (end + 1) + ") in "
+                                    + new String(bs, StandardCharsets.UTF_8));
+                        }
+                        int hex = (Character.digit(bs[++curr], 16) << 12)
+                                + (Character.digit(bs[++curr], 16) << 8)
+                                + (Character.digit(bs[++curr], 16) << 4)
+                                + Character.digit(bs[++curr], 16);
+                        tmp.append((char) hex);
+                        break;
+                    case 't':
+                        tmp.append('\t');
+                        break;
+                    case 'b':
+                        tmp.append('\b');
+                        break;
+                    case 'f':
+                        tmp.append('\f');
+                        break;
+                    default:
+                        this.position = curr;
+                        throw new ConvertException("illegal escape(" + (char) c + ") (position = " + curr + ") in "
+                                + new String(bs, StandardCharsets.UTF_8));
+                }
+                curr++;
+            } else {
+                int from = curr;
+                while (curr <= end && (b = bs[curr]) != quote && b != '\\') {
+                    curr++;
+                }
+                if (curr > end) {
+                    throw new ConvertException("expected a '" + (char) quote + "' at the end of string (position = "
+                            + curr + ") in " + new String(bs, StandardCharsets.UTF_8));
+                }
+                appendUtf8(tmp, bs, from, curr);
+            }
+        }
+    }
+
+    // 将[from, to)的UTF-8字节解码后追加到tmp
+    private static void appendUtf8(CharArray tmp, byte[] bs, int from, int to) {
+        int i = from;
+        while (i < to) {
+            byte b = bs[i++];
+            if (b >= 0) {
+                tmp.append((char) b);
+            } else if ((b >> 5) == -2 && (b & 0x1e) != 0) {
+                tmp.append((char) (((b << 6) ^ bs[i++]) ^ (((byte) 0xC0 << 6) ^ ((byte) 0x80))));
+            } else if ((b >> 4) == -2) {
+                tmp.append((char) ((b << 12)
+                        ^ (bs[i++] << 6)
+                        ^ (bs[i++] ^ (((byte) 0xE0 << 12) ^ ((byte) 0x80 << 6) ^ ((byte) 0x80)))));
+            } else if ((b >> 3) == -2) {
+                int uc = ((b << 18)
+                        ^ (bs[i++] << 12)
+                        ^ (bs[i++] << 6)
+                        ^ (bs[i++]
+                                ^ (((byte) 0xF0 << 18) ^ ((byte) 0x80 << 12) ^ ((byte) 0x80 << 6) ^ ((byte) 0x80))));
+                tmp.append(Character.highSurrogate(uc));
+                tmp.append(Character.lowSurrogate(uc));
+            } else {
+                throw new ConvertException(new UnmappableCharacterException(4));
+            }
+        }
+    }
+}
@@ -505,36 +505,48 @@ public class JsonBytesWriter extends JsonWriter implements ByteTuple {
     private static final int MIN_SUPPLEMENTARY_CODE_POINT_MORE =
             (MIN_SUPPLEMENTARY_CODE_POINT - (MIN_HIGH_SURROGATE << 10) - MIN_LOW_SURROGATE);
 
+    // ASCII片段按8字节批量扫描后整段复制, 只逐个处理需要转义或非ASCII的字节
     private void writeEscapeLatinString(byte[] value) {
-        byte[] bytes = expand(value.length * 2 + 2);
+        int len = value.length;
+        byte[] bytes = expand(len * 2 + 2);
         int curr = count;
         bytes[curr++] = BYTE_DQUOTE;
-        for (byte b : value) {
-            if (b == BYTE_DQUOTE) {
+        int i = 0;
+        while (i < len) {
+            int safe = asciiSafeIndex(value, i, len);
+            if (safe > i) {
+                System.arraycopy(value, i, bytes, curr, safe - i);
+                curr += safe - i;
+                i = safe;
+                if (i == len) {
+                    break;
+                }
+            }
+            byte b = value[i++];
+            if (b < 0) { // 0x80-0xFF的LATIN1字符, UTF-8需两个字节
+                bytes[curr++] = (byte) (0xc0 | ((b & 0xff) >> 6));
+                bytes[curr++] = (byte) (0x80 | (b & 0x3f));
+            } else if (b == BYTE_DQUOTE) {
                 bytes[curr++] = '\\';
                 bytes[curr++] = BYTE_DQUOTE;
             } else if (b == '\\') {
                 bytes[curr++] = '\\';
                 bytes[curr++] = '\\';
-            } else if (b < 32) {
-                if (b == '\n') {
-                    bytes[curr++] = '\\';
-                    bytes[curr++] = 'n';
-                } else if (b == '\r') {
-                    bytes[curr++] = '\\';
-                    bytes[curr++] = 'r';
-                } else if (b == '\f') {
-                    bytes[curr++] = '\\';
-                    bytes[curr++] = 'f';
-                } else if (b == '\b') {
-                    bytes[curr++] = '\\';
-                    bytes[curr++] = 'b';
-                } else if (b == '\t') {
-                    bytes[curr++] = '\\';
-                    bytes[curr++] = 't';
-                } else {
-                    bytes[curr++] = b;
-                }
+            } else if (b == '\n') {
+                bytes[curr++] = '\\';
+                bytes[curr++] = 'n';
+            } else if (b == '\r') {
+                bytes[curr++] = '\\';
+                bytes[curr++] = 'r';
+            } else if (b == '\f') {
+                bytes[curr++] = '\\';
+                bytes[curr++] = 'f';
+            } else if (b == '\b') {
+                bytes[curr++] = '\\';
+                bytes[curr++] = 'b';
+            } else if (b == '\t') {
+                bytes[curr++] = '\\';
+                bytes[curr++] = 't';
             } else {
                 bytes[curr++] = b;
             }
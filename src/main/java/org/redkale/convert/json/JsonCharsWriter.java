@@ -441,7 +441,9 @@ public class JsonCharsWriter extends JsonWriter {
         int curr = count;
         chars[curr++] = BYTE_DQUOTE;
         for (byte b : value) {
-            if (b == BYTE_DQUOTE) {
+            if (b < 0) { // 0x80-0xFF的LATIN1字符, 不能按有符号byte转char
+                chars[curr++] = (char) (b & 0xff);
+            } else if (b == BYTE_DQUOTE) {
                 chars[curr++] = '\\';
                 chars[curr++] = BYTE_DQUOTE;
             } else if (b == '\\') {
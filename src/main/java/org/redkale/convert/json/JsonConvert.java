@@ -9,8 +9,10 @@ import java.io.*;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.Flow;
 import java.util.function.*;
+import java.util.stream.*;
 import org.redkale.annotation.Nullable;
 import org.redkale.convert.*;
 import org.redkale.service.RetResult;
@@ -38,6 +40,8 @@ public class JsonConvert extends TextConvert<JsonReader, JsonWriter> {
 
     private final ThreadLocal<JsonReader> readerPool = Utility.withInitialThreadLocal(JsonReader::new);
 
+    private final ThreadLocal<JsonBytesReader> bytesReaderPool = Utility.withInitialThreadLocal(JsonBytesReader::new);
+
     private final JsonAnyDecoder anyDecoder;
 
     @Nullable
@@ -108,6 +112,24 @@ public class JsonConvert extends TextConvert<JsonReader, JsonWriter> {
         }
     }
 
+    // 直接解析UTF-8字节的JsonReader
+    private JsonBytesReader pollBytesReader() {
+        JsonBytesReader reader = bytesReaderPool.get();
+        if (reader == null) {
+            reader = new JsonBytesReader();
+        } else {
+            bytesReaderPool.set(null);
+        }
+        return reader;
+    }
+
+    private void offerBytesReader(final JsonBytesReader in) {
+        if (in != null) {
+            in.recycle();
+            bytesReaderPool.set(in);
+        }
+    }
+
     @Override
     public JsonWriter pollWriter() {
         JsonBytesWriter writer = bytesWriterPool.get();
@@ -168,15 +190,23 @@ public class JsonConvert extends TextConvert<JsonReader, JsonWriter> {
         if (bytes == null) {
             return null;
         }
-        return convertFrom(type, new String(bytes, StandardCharsets.UTF_8));
+        return convertFrom(type, bytes, 0, bytes.length);
     }
 
     @Override
     public <T> T convertFrom(final Type type, final byte[] bytes, final int offset, final int length) {
-        if (bytes == null) {
+        if (bytes == null || type == null) {
             return null;
         }
-        return convertFrom(type, new String(bytes, offset, length, StandardCharsets.UTF_8));
+        Decodeable decoder = this.lastDecodeable;
+        if (decoder == null || decoder.getType() != type) {
+            decoder = factory.loadDecoder(type);
+            this.lastDecodeable = decoder;
+        }
+        JsonBytesReader reader = pollBytesReader().setBytes(bytes, offset, length);
+        T rs = (T) decoder.convertFrom(reader);
+        offerBytesReader(reader);
+        return rs;
     }
 
     @Override
@@ -301,6 +331,90 @@ public class JsonConvert extends TextConvert<JsonReader, JsonWriter> {
         return (V) anyDecoder.convertFrom(reader);
     }
 
+    // ------------------------------ 逐个解析json数组 ------------------------------------------------------
+    /**
+     * 逐个解析json数组的元素, 不会构建整个集合
+     *
+     * @param <T> 泛型
+     * @param componentType 数组元素的数据类型
+     * @param bytes json数组内容
+     * @return 元素迭代器, json为null时没有元素
+     */
+    public <T> Iterator<T> convertFromIterator(final Type componentType, final byte[] bytes) {
+        if (bytes == null) {
+            return Collections.emptyIterator();
+        }
+        return convertFromIterator(componentType, bytes, 0, bytes.length);
+    }
+
+    public <T> Iterator<T> convertFromIterator(
+            final Type componentType, final byte[] bytes, final int offset, final int length) {
+        if (bytes == null) {
+            return Collections.emptyIterator();
+        }
+        return createArrayIterator(componentType, new JsonBytesReader(bytes, offset, length));
+    }
+
+    /**
+     * 逐个从输入流中解析json数组的元素, 内存占用只取决于最大的单个元素
+     *
+     * @param <T> 泛型
+     * @param componentType 数组元素的数据类型
+     * @param in 输入流, 由调用方负责关闭
+     * @return 元素迭代器, json为null时没有元素
+     */
+    public <T> Iterator<T> convertFromIterator(final Type componentType, final InputStream in) {
+        if (in == null) {
+            return Collections.emptyIterator();
+        }
+        return createArrayIterator(componentType, new JsonStreamReader(in));
+    }
+
+    public <T> Iterator<T> convertFromIterator(final Type componentType, final ByteBuffer... buffers) {
+        if (buffers == null || buffers.length == 0) {
+            return Collections.emptyIterator();
+        }
+        return createArrayIterator(componentType, new JsonByteBufferReader(buffers));
+    }
+
+    // 顺序流, 元素在终端操作时才逐个解析
+    public <T> Stream<T> convertFromStream(final Type componentType, final byte[] bytes) {
+        return iteratorStream(convertFromIterator(componentType, bytes));
+    }
+
+    public <T> Stream<T> convertFromStream(final Type componentType, final InputStream in) {
+        return iteratorStream(convertFromIterator(componentType, in));
+    }
+
+    public <T> Stream<T> convertFromStream(final Type componentType, final ByteBuffer... buffers) {
+        return iteratorStream(convertFromIterator(componentType, buffers));
+    }
+
+    // 只允许一个订阅者, 元素在订阅者调用request的线程中解析
+    public <T> Flow.Publisher<T> convertFromPublisher(final Type componentType, final byte[] bytes) {
+        return new JsonArrayPublisher<>(convertFromIterator(componentType, bytes));
+    }
+
+    public <T> Flow.Publisher<T> convertFromPublisher(final Type componentType, final InputStream in) {
+        return new JsonArrayPublisher<>(convertFromIterator(componentType, in));
+    }
+
+    public <T> Flow.Publisher<T> convertFromPublisher(final Type componentType, final ByteBuffer... buffers) {
+        return new JsonArrayPublisher<>(convertFromIterator(componentType, buffers));
+    }
+
+    private <T> Iterator<T> createArrayIterator(final Type componentType, final JsonReader reader) {
+        Decodeable<JsonReader, T> decoder = factory.loadDecoder(componentType);
+        if (decoder == null) {
+            throw new ConvertException(this.getClass().getSimpleName() + " not supported type(" + componentType + ")");
+        }
+        return new JsonArrayIterator<>(reader, decoder);
+    }
+
+    private static <T> Stream<T> iteratorStream(Iterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+    }
+
     // json数据的数组长度必须和types个数相同
     public Object[] convertFrom(final Type[] types, final String text) {
         if (text == null) {
@@ -314,7 +428,7 @@ public class JsonConvert extends TextConvert<JsonReader, JsonWriter> {
         if (bytes == null) {
             return null;
         }
-        return convertFrom(types, new String(bytes, StandardCharsets.UTF_8));
+        return convertFrom(types, bytes, 0, bytes.length);
     }
 
     // json数据的数组长度必须和types个数相同
@@ -322,7 +436,7 @@ public class JsonConvert extends TextConvert<JsonReader, JsonWriter> {
         if (bytes == null) {
             return null;
         }
-        return convertFrom(types, new String(bytes, offset, length, StandardCharsets.UTF_8));
+        return new JsonMultiArrayDecoder(getFactory(), types).convertFrom(new JsonBytesReader(bytes, offset, length));
     }
 
     // ------------------------------ convertTo -----------------------------------------------------------
@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.convert.json;
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.function.Function;
+import org.redkale.asm.Asms;
+import org.redkale.asm.ClassWriter;
+import static org.redkale.asm.ClassWriter.COMPUTE_FRAMES;
+import org.redkale.asm.Label;
+import org.redkale.asm.MethodVisitor;
+import static org.redkale.asm.Opcodes.*;
+import org.redkale.convert.*;
+import org.redkale.convert.ext.*;
+import org.redkale.util.*;
+
+/**
+ * 简单对象的JSON反序列化操作类 <br>
+ * 动态生成的子类按DeMember.position进行switch, 基本类型和String字段直接调用JsonReader.readXXX()赋值给字段或setter方法,
+ * 避免DeMember查找后的Attribute.set和装箱开销
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ * @param <T> 反解析的数据类型
+ */
+@SuppressWarnings("unchecked")
+public abstract class JsonDynDecoder<T> extends ObjectDecoder<JsonReader, T> {
+
+    protected static final Object[] EMPTY_PARAMS = new Object[0];
+
+    protected final ObjectDecoder<JsonReader, T> objectDecoderSelf;
+
+    protected JsonDynDecoder(JsonFactory factory, Type type, ObjectDecoder objectDecoderSelf) {
+        super(type);
+        this.factory = factory;
+        this.objectDecoderSelf = objectDecoderSelf;
+        this.creator = objectDecoderSelf.getCreator();
+        this.memberInfo = objectDecoderSelf.getMemberInfo();
+        this.inited = true;
+        factory.register(type, this);
+    }
+
+    @Override
+    public T convertFrom(final JsonReader in) {
+        if (!in.readObjectB(this)) {
+            return null;
+        }
+        final T result = (T) createValue();
+        final DeMemberInfo info = this.memberInfo;
+        while (in.hasNext()) {
+            DeMember member = in.readField(info);
+            in.readColon();
+            if (member == null) {
+                in.skipValue(); // 跳过不存在的属性的值
+            } else {
+                readMemberValue(in, result, member);
+            }
+        }
+        in.readObjectE();
+        return result;
+    }
+
+    // 动态生成: return this.creator.create(EMPTY_PARAMS);
+    protected abstract Object createValue();
+
+    // 动态生成: switch (member.getPosition()) { case 1: value.setXXX(in.readInt()); return; ... }
+    protected abstract void readMemberValue(JsonReader in, Object result, DeMember member);
+
+    // 只支持带public空参数构造函数的public类, 不支持的返回null; 带参数构造函数的类返回已初始化的ObjectDecoder
+    public static Decodeable createDyncDecoder(
+            final JsonFactory factory, final Type type, final Function<Type, ObjectDecoder> objectDecoderCreator) {
+        if (!(type instanceof Class)) {
+            return null;
+        }
+        final Class clazz = (Class) type;
+        if (clazz == Object.class
+                || clazz.isInterface()
+                || clazz.isArray()
+                || clazz.isPrimitive()
+                || Modifier.isAbstract(clazz.getModifiers())
+                || !Modifier.isPublic(clazz.getModifiers())) {
+            return null;
+        }
+        try {
+            if (!Modifier.isPublic(clazz.getConstructor().getModifiers())) {
+                return null;
+            }
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        final ObjectDecoder selfObjDecoder = objectDecoderCreator.apply(clazz);
+        factory.register(clazz, selfObjDecoder);
+        selfObjDecoder.init(factory); // 必须执行，初始化DeMember内部信息
+        if (selfObjDecoder.getCreator() == null
+                || selfObjDecoder.getConstructorMembers() != null
+                || selfObjDecoder.getMembers().length == 0) {
+            return selfObjDecoder;
+        }
+        try {
+            return generateDyncDecoder(factory, clazz, selfObjDecoder);
+        } catch (Throwable t) {
+            return selfObjDecoder; // 无法生成时使用已初始化的ObjectDecoder
+        }
+    }
+
+    protected static JsonDynDecoder generateDyncDecoder(
+            final JsonFactory factory, final Class clazz, final ObjectDecoder selfObjDecoder) {
+        final DeMember[] members = selfObjDecoder.getMembers();
+        StringBuilder elementb = new StringBuilder();
+        for (DeMember member : members) {
+            elementb.append(member.getFieldName())
+                    .append(':')
+                    .append(member.getPosition())
+                    .append(':')
+                    .append(readMethodName(member))
+                    .append(',');
+        }
+        RedkaleClassLoader loader = RedkaleClassLoader.currentClassLoader();
+        final String newDynName = "org/redkaledyn/convert/json/_Dyn" + JsonDynDecoder.class.getSimpleName() + "__"
+                + clazz.getName().replace('.', '_').replace('$', '_') + "_" + factory.getFeatures() + "_"
+                + Utility.md5Hex(elementb.toString()); // 同一个类会有多个字段定制Convert
+        try {
+            Class newClazz = loader.loadClass(newDynName.replace('/', '.'));
+            return (JsonDynDecoder) newClazz.getConstructor(JsonFactory.class, Type.class, ObjectDecoder.class)
+                    .newInstance(factory, clazz, selfObjDecoder);
+        } catch (Throwable ex) {
+            // do nothing
+        }
+
+        final String supDynName = JsonDynDecoder.class.getName().replace('.', '/');
+        final String valtypeName = clazz.getName().replace('.', '/');
+        final String readerName = JsonReader.class.getName().replace('.', '/');
+        final String memberName = DeMember.class.getName().replace('.', '/');
+        final String typeDesc = org.redkale.asm.Type.getDescriptor(Type.class);
+        final String jsonfactoryDesc = org.redkale.asm.Type.getDescriptor(JsonFactory.class);
+        final String jsonreaderDesc = org.redkale.asm.Type.getDescriptor(JsonReader.class);
+        final String objDecoderDesc = org.redkale.asm.Type.getDescriptor(ObjectDecoder.class);
+        final String memberDesc = org.redkale.asm.Type.getDescriptor(DeMember.class);
+        final String readerDesc = org.redkale.asm.Type.getDescriptor(Reader.class);
+        final String creatorDesc = org.redkale.asm.Type.getDescriptor(Creator.class);
+        final String attributeName = Attribute.class.getName().replace('.', '/');
+        final String attributeDesc = org.redkale.asm.Type.getDescriptor(Attribute.class);
+        final String valtypeDesc = org.redkale.asm.Type.getDescriptor(clazz);
+        // ------------------------------------------------------------------------------
+        ClassWriter cw = new ClassWriter(COMPUTE_FRAMES);
+        MethodVisitor mv;
+        cw.visit(
+                V11,
+                ACC_PUBLIC + ACC_FINAL + ACC_SUPER,
+                newDynName,
+                "L" + supDynName + "<" + valtypeDesc + ">;",
+                supDynName,
+                null);
+        { // 构造函数
+            mv = (cw.visitMethod(
+                    ACC_PUBLIC, "<init>", "(" + jsonfactoryDesc + typeDesc + objDecoderDesc + ")V", null, null));
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitMethodInsn(
+                    INVOKESPECIAL,
+                    supDynName,
+                    "<init>",
+                    "(" + jsonfactoryDesc + typeDesc + objDecoderDesc + ")V",
+                    false);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(4, 4);
+            mv.visitEnd();
+        }
+        { // createValue 方法
+            mv = (cw.visitMethod(ACC_PROTECTED, "createValue", "()Ljava/lang/Object;", null, null));
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, newDynName, "creator", creatorDesc);
+            mv.visitFieldInsn(GETSTATIC, supDynName, "EMPTY_PARAMS", "[Ljava/lang/Object;");
+            mv.visitMethodInsn(
+                    INVOKEINTERFACE,
+                    Creator.class.getName().replace('.', '/'),
+                    "create",
+                    "([Ljava/lang/Object;)Ljava/lang/Object;",
+                    true);
+            mv.visitInsn(ARETURN);
+            mv.visitMaxs(2, 1);
+            mv.visitEnd();
+        }
+        { // readMemberValue 方法
+            mv = (cw.visitMethod(
+                    ACC_PROTECTED,
+                    "readMemberValue",
+                    "(" + jsonreaderDesc + "Ljava/lang/Object;" + memberDesc + ")V",
+                    null,
+                    null));
+            // T value = (T) result;
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitTypeInsn(CHECKCAST, valtypeName);
+            mv.visitVarInsn(ASTORE, 4);
+            // switch (member.getPosition())
+            DeMember[] sorts = members.clone();
+            Arrays.sort(sorts, (a, b) -> Integer.compare(a.getPosition(), b.getPosition()));
+            int[] keys = new int[sorts.length];
+            Label[] labels = new Label[sorts.length];
+            for (int i = 0; i < sorts.length; i++) {
+                keys[i] = sorts[i].getPosition();
+                labels[i] = new Label();
+            }
+            Label defLabel = new Label();
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitMethodInsn(INVOKEVIRTUAL, memberName, "getPosition", "()I", false);
+            mv.visitLookupSwitchInsn(defLabel, keys, labels);
+            for (int i = 0; i < sorts.length; i++) {
+                DeMember member = sorts[i];
+                mv.visitLabel(labels[i]);
+                String readMethod = readMethodName(member);
+                Class valueType = readSetterType(member);
+                if (readMethod == null || valueType == null) {
+                    // member.getAttribute().set(result, this.readDeMemberValue(in, member));
+                    mv.visitVarInsn(ALOAD, 3);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, memberName, "getAttribute", "()" + attributeDesc, false);
+                    mv.visitVarInsn(ALOAD, 2);
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitVarInsn(ALOAD, 1);
+                    mv.visitVarInsn(ALOAD, 3);
+                    mv.visitMethodInsn(
+                            INVOKEVIRTUAL,
+                            newDynName,
+                            "readDeMemberValue",
+                            "(" + readerDesc + memberDesc + ")Ljava/lang/Object;",
+                            false);
+                    mv.visitMethodInsn(
+                            INVOKEINTERFACE, attributeName, "set", "(Ljava/lang/Object;Ljava/lang/Object;)V", true);
+                    mv.visitInsn(RETURN);
+                    continue;
+                }
+                mv.visitVarInsn(ALOAD, 4);
+                if (readMethod.isEmpty()) {
+                    // (XXX) this.readDeMemberValue(in, member)
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitVarInsn(ALOAD, 1);
+                    mv.visitVarInsn(ALOAD, 3);
+                    mv.visitMethodInsn(
+                            INVOKEVIRTUAL,
+                            newDynName,
+                            "readDeMemberValue",
+                            "(" + readerDesc + memberDesc + ")Ljava/lang/Object;",
+                            false);
+                    if (valueType != Object.class) {
+                        Asms.visitCheckCast(mv, valueType);
+                    }
+                } else {
+                    // in.readXXX()
+                    mv.visitVarInsn(ALOAD, 1);
+                    mv.visitMethodInsn(
+                            INVOKEVIRTUAL,
+                            readerName,
+                            readMethod,
+                            "()" + org.redkale.asm.Type.getDescriptor(valueType),
+                            false);
+                }
+                visitSetValue(mv, valtypeName, member, valueType);
+                mv.visitInsn(RETURN);
+            }
+            mv.visitLabel(defLabel);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(6, 5);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        // ------------------------------------------------------------------------------
+        byte[] bytes = cw.toByteArray();
+        Class<?> newClazz = loader.loadClass(newDynName.replace('/', '.'), bytes);
+        RedkaleClassLoader.putReflectionDeclaredConstructors(
+                newClazz, newDynName.replace('/', '.'), JsonFactory.class, Type.class, ObjectDecoder.class);
+        try {
+            return (JsonDynDecoder) newClazz.getConstructor(JsonFactory.class, Type.class, ObjectDecoder.class)
+                    .newInstance(factory, clazz, selfObjDecoder);
+        } catch (Exception ex) {
+            throw new ConvertException(ex);
+        }
+    }
+
+    // 返回null表示只能通过Attribute赋值, 空字符串表示通过Decodeable读取后强转赋值
+    private static String readMethodName(DeMember member) {
+        Class valueType = readSetterType(member);
+        if (valueType == null) {
+            return null;
+        }
+        Decodeable decoder = member.getDecoder();
+        if (valueType == boolean.class && decoder == BoolSimpledCoder.instance) {
+            return "readBoolean";
+        } else if (valueType == byte.class && decoder == ByteSimpledCoder.instance) {
+            return "readByte";
+        } else if (valueType == short.class && decoder == ShortSimpledCoder.instance) {
+            return "readShort";
+        } else if (valueType == char.class && decoder == CharSimpledCoder.instance) {
+            return "readChar";
+        } else if (valueType == int.class && decoder == IntSimpledCoder.instance) {
+            return "readInt";
+        } else if (valueType == float.class && decoder == FloatSimpledCoder.instance) {
+            return "readFloat";
+        } else if (valueType == long.class && decoder == LongSimpledCoder.instance) {
+            return "readLong";
+        } else if (valueType == double.class && decoder == DoubleSimpledCoder.instance) {
+            return "readDouble";
+        } else if (valueType == String.class && decoder == StringSimpledCoder.instance) {
+            return "readString";
+        } else if (valueType == String.class
+                && decoder == StringSimpledCoder.StandardStringSimpledCoder.instance) {
+            return "readStandardString";
+        }
+        return "";
+    }
+
+    // 返回null表示不能直接赋值
+    private static Class readSetterType(DeMember member) {
+        Method method = member.getMethod();
+        Class valueType;
+        if (method != null) {
+            if (method.getParameterCount() != 1 || !method.getName().startsWith("set")) {
+                return null;
+            }
+            valueType = method.getParameterTypes()[0];
+        } else {
+            Field field = member.getField();
+            if (field == null || Modifier.isFinal(field.getModifiers()) || !Modifier.isPublic(field.getModifiers())) {
+                return null;
+            }
+            valueType = field.getType();
+        }
+        Class c = valueType;
+        while (c.isArray()) {
+            c = c.getComponentType();
+        }
+        return c.isPrimitive() || Modifier.isPublic(c.getModifiers()) ? valueType : null;
+    }
+
+    private static void visitSetValue(MethodVisitor mv, String valtypeName, DeMember member, Class valueType) {
+        String valueDesc = org.redkale.asm.Type.getDescriptor(valueType);
+        Method method = member.getMethod();
+        if (method == null) {
+            mv.visitFieldInsn(PUTFIELD, valtypeName, member.getField().getName(), valueDesc);
+            return;
+        }
+        Class returnType = method.getReturnType();
+        mv.visitMethodInsn(
+                INVOKEVIRTUAL,
+                valtypeName,
+                method.getName(),
+                "(" + valueDesc + ")" + org.redkale.asm.Type.getDescriptor(returnType),
+                false);
+        if (returnType == long.class || returnType == double.class) {
+            mv.visitInsn(POP2);
+        } else if (returnType != void.class) {
+            mv.visitInsn(POP);
+        }
+    }
+
+    @Override
+    public Type getType() {
+        return typeClass;
+    }
+}
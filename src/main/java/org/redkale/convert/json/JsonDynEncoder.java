@@ -155,7 +155,10 @@ public abstract class JsonDynEncoder<T> extends ObjectEncoder<JsonWriter, T> {
                 // xxxFieldBytes
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn("\"" + fieldName + "\":");
-                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "getBytes", "()[B", false);
+                mv.visitFieldInsn(
+                        GETSTATIC, "java/nio/charset/StandardCharsets", "UTF_8", "Ljava/nio/charset/Charset;");
+                mv.visitMethodInsn(
+                        INVOKEVIRTUAL, "java/lang/String", "getBytes", "(Ljava/nio/charset/Charset;)[B", false);
                 mv.visitFieldInsn(PUTFIELD, newDynName, fieldName + "FieldBytes", "[B");
                 // xxxFieldChars
                 mv.visitVarInsn(ALOAD, 0);
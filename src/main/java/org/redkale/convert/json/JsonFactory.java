@@ -109,6 +109,11 @@ public final class JsonFactory extends ConvertFactory<JsonReader, JsonWriter> {
         return JsonDynEncoder.createDyncEncoder(this, type);
     }
 
+    @Override
+    protected <E> Decodeable<JsonReader, E> createDyncDecoder(Type type) {
+        return JsonDynDecoder.createDyncDecoder(this, type, this::createObjectDecoder);
+    }
+
     @Override
     protected <E> ObjectEncoder<JsonWriter, E> createObjectEncoder(Type type) {
         return super.createObjectEncoder(type);
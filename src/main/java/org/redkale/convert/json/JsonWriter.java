@@ -5,7 +5,9 @@
  */
 package org.redkale.convert.json;
 
+import java.lang.invoke.*;
 import java.lang.reflect.Type;
+import java.nio.ByteOrder;
 import org.redkale.annotation.ClassDepends;
 import org.redkale.convert.*;
 
@@ -38,6 +40,20 @@ public abstract class JsonWriter extends Writer {
 
     protected static final byte BYTE_DQUOTE = '"';
 
+    // 按小端一次读取8个字节
+    private static final VarHandle LONG_LE_HANDLE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long SWAR_ONES = 0x0101010101010101L;
+
+    private static final long SWAR_HIGHS = 0x8080808080808080L;
+
+    private static final long SWAR_CONTROLS = 0x2020202020202020L;
+
+    private static final long SWAR_QUOTES = 0x2222222222222222L;
+
+    private static final long SWAR_BACKSLASHES = 0x5C5C5C5C5C5C5C5CL;
+
     protected JsonWriter() {
         this.features = JsonFactory.root().getFeatures();
     }
@@ -56,6 +72,40 @@ public abstract class JsonWriter extends Writer {
         return false;
     }
 
+    /**
+     * SWAR方式每次检查8个字节, 返回第一个需要转义(双引号、反斜杠、控制字符)或非ASCII字节的位置 <br>
+     * [from, 返回值)之间的字节可以原样输出, 都不需要处理时返回to
+     *
+     * @param bs 单字节字符串的字节数组
+     * @param from 开始位置(包含)
+     * @param to 结束位置(不包含)
+     * @return 第一个需要处理的字节位置
+     */
+    protected static int asciiSafeIndex(byte[] bs, int from, int to) {
+        int i = from;
+        for (int end = to - 8; i <= end; i += 8) {
+            long word = (long) LONG_LE_HANDLE.get(bs, i);
+            long quotes = word ^ SWAR_QUOTES;
+            long slashes = word ^ SWAR_BACKSLASHES;
+            // 借位只会向高位传递, 所以最低位的标记一定准确
+            long mask = (((word - SWAR_CONTROLS) & ~word)
+                            | ((quotes - SWAR_ONES) & ~quotes)
+                            | ((slashes - SWAR_ONES) & ~slashes)
+                            | word)
+                    & SWAR_HIGHS;
+            if (mask != 0) {
+                return i + (Long.numberOfTrailingZeros(mask) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            byte b = bs[i];
+            if (b < 0x20 || b == BYTE_DQUOTE || b == '\\') { // 负数即非ASCII
+                return i;
+            }
+        }
+        return to;
+    }
+
     // -----------------------------------------------------------------------
     public abstract void writeTo(final byte ch); // 只能是 0 - 127 的字符
 
@@ -19,6 +19,9 @@ public class ProtobufByteBufferReader extends ProtobufReader {
 
     private int currBufIndex = 0;
 
+    // 单个ByteBuffer时复用的数组
+    private final ByteBuffer[] singleBuffers = new ByteBuffer[1];
+
     protected ProtobufByteBufferReader() {
         // do nothing
     }
@@ -28,12 +31,30 @@ public class ProtobufByteBufferReader extends ProtobufReader {
         this.currentBuffer = buffers[currBufIndex];
     }
 
+    /**
+     * 从buffer的当前位置开始只读取length个字节, 不复制数据
+     *
+     * @param buffer ByteBuffer
+     * @param length 可读取的字节数
+     * @return ProtobufByteBufferReader
+     */
+    protected ProtobufByteBufferReader prepare(ByteBuffer buffer, int length) {
+        this.singleBuffers[0] = buffer;
+        this.buffers = this.singleBuffers;
+        this.currBufIndex = 0;
+        this.currentBuffer = buffer;
+        this.position = -1;
+        this.limit = length;
+        return this;
+    }
+
     @Override
     protected boolean recycle() {
         super.recycle();
         this.currBufIndex = 0;
         this.currentBuffer = null;
         this.buffers = null;
+        this.singleBuffers[0] = null;
         return false;
     }
 
@@ -51,7 +72,15 @@ public class ProtobufByteBufferReader extends ProtobufReader {
         }
     }
 
+    // limit范围内剩余的字节数, limit小于0表示不限制
+    private int remainLimit() {
+        return this.limit < 0 ? Integer.MAX_VALUE : this.limit - this.position - 1;
+    }
+
     protected byte[] nextBytes(int size) {
+        if (size > remainLimit()) {
+            throw new ConvertException("protobuf bytes length (" + size + ") out of limit");
+        }
         byte[] bs = new byte[size];
         if (this.currentBuffer.remaining() >= size) {
             this.position += size;
@@ -80,7 +109,7 @@ public class ProtobufByteBufferReader extends ProtobufReader {
 
     @Override
     public boolean hasNext() {
-        if (this.limit > 0 && (this.position + 1) >= this.limit) {
+        if (this.limit >= 0 && (this.position + 1) >= this.limit) { // limit为0表示空数据, 不能当成不限制
             return false;
         }
         if (currentBuffer.hasRemaining()) {
@@ -104,6 +133,17 @@ public class ProtobufByteBufferReader extends ProtobufReader {
     @Override
     public final String readString() {
         final int size = readRawVarint32();
+        if (size > remainLimit()) {
+            throw new ConvertException("protobuf string length (" + size + ") out of limit");
+        }
+        ByteBuffer buffer = this.currentBuffer;
+        if (buffer != null && buffer.hasArray() && buffer.remaining() >= size) { // 堆内存直接解析, 无需中间byte[]
+            int pos = buffer.position();
+            String val = new String(buffer.array(), buffer.arrayOffset() + pos, size, StandardCharsets.UTF_8);
+            buffer.position(pos + size);
+            this.position += size;
+            return val;
+        }
         return new String(nextBytes(size), StandardCharsets.UTF_8);
     }
 
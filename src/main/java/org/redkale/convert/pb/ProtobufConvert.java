@@ -34,6 +34,9 @@ public class ProtobufConvert extends BinaryConvert<ProtobufReader, ProtobufWrite
 
     private final ThreadLocal<ProtobufReader> readerPool = Utility.withInitialThreadLocal(ProtobufReader::new);
 
+    private final ThreadLocal<ProtobufByteBufferReader> bufferReaderPool =
+            Utility.withInitialThreadLocal(ProtobufByteBufferReader::new);
+
     @Nullable
     private Encodeable lastEncodeable;
 
@@ -646,6 +649,45 @@ public class ProtobufConvert extends BinaryConvert<ProtobufReader, ProtobufWrite
         return (T) decoder.convertFrom(new ProtobufByteBufferReader(buffers));
     }
 
+    /**
+     * 从buffer的当前位置直接反序列化length个字节, 不复制成byte[] <br>
+     * 无论解析成功与否, 结束后buffer的position都会移到这length个字节之后
+     *
+     * @param <T> 泛型
+     * @param type 反序列化的数据类型
+     * @param buffer ByteBuffer
+     * @param length 数据的字节长度
+     * @return 反序列化结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T convertFrom(final Type type, final ByteBuffer buffer, final int length) {
+        if (type == null || buffer == null) {
+            return null;
+        }
+        final int end = buffer.position() + length;
+        ProtobufByteBufferReader reader = bufferReaderPool.get();
+        if (reader == null) {
+            reader = new ProtobufByteBufferReader();
+        } else {
+            bufferReaderPool.set(null);
+        }
+        try {
+            Decodeable decoder = this.lastDecodeable;
+            if (decoder == null || decoder.getType() != type) {
+                decoder = factory.loadDecoder(type);
+                this.lastDecodeable = decoder;
+            }
+            if (decoder == null) {
+                throw new ConvertException(this.getClass().getSimpleName() + " not supported type(" + type + ")");
+            }
+            return (T) decoder.convertFrom(reader.prepare(buffer, length));
+        } finally {
+            buffer.position(end);
+            reader.recycle();
+            bufferReaderPool.set(reader);
+        }
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <T> T convertFrom(final Type type, final ProtobufReader reader) {
@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.convert.pb;
+
+import java.lang.reflect.*;
+import java.lang.reflect.Type;
+import java.util.*;
+import org.redkale.asm.Asms;
+import org.redkale.asm.ClassWriter;
+import org.redkale.asm.Label;
+import org.redkale.asm.MethodVisitor;
+import static org.redkale.asm.ClassWriter.COMPUTE_FRAMES;
+import static org.redkale.asm.Opcodes.*;
+import org.redkale.convert.*;
+import org.redkale.convert.ext.StringSimpledCoder;
+import org.redkale.util.*;
+
+/**
+ * 简单对象的PROTOBUF反序列化操作类 <br>
+ * 动态生成的子类按tag进行switch, 基本类型和String字段直接调用ProtobufReader.readXXX()赋值给字段或setter方法,
+ * 避免按tag查找DeMember的Integer装箱、Attribute.set和字段值的装箱开销
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ * @param <T> 反解析的数据类型
+ */
+@SuppressWarnings("unchecked")
+public abstract class ProtobufDynDecoder<T> extends ProtobufObjectDecoder<T> {
+
+    protected static final Object[] EMPTY_PARAMS = new Object[0];
+
+    protected final ObjectDecoder<ProtobufReader, T> objectDecoderSelf;
+
+    // 与memberInfo.getMembers()顺序一致
+    protected final DeMember[] dynMembers;
+
+    protected ProtobufDynDecoder(ProtobufFactory factory, Type type, ProtobufObjectDecoder objectDecoderSelf) {
+        super((Class) type);
+        this.factory = factory;
+        this.objectDecoderSelf = objectDecoderSelf;
+        this.creator = objectDecoderSelf.getCreator();
+        this.memberInfo = objectDecoderSelf.getMemberInfo();
+        this.dynMembers = memberInfo.getMembers();
+        this.inited = true;
+        factory.register(type, this);
+    }
+
+    @Override
+    public T convertFrom(ProtobufReader in) {
+        if (!in.readObjectB(this)) {
+            return null;
+        }
+        final T result = (T) createValue();
+        while (in.hasNext()) {
+            int tag = in.readTag();
+            if (!readTagValue(in, result, tag)) {
+                in.backTag(tag);
+                in.skipValue(); // 跳过不存在的属性的值
+            }
+        }
+        in.readObjectE();
+        return result;
+    }
+
+    @Override
+    public T convertFrom(ProtobufReader in, DeMember member) {
+        if (member == null) {
+            return convertFrom(in);
+        } else {
+            final int limit = in.limit();
+            int contentLen = in.readRawVarint32();
+            in.limit(in.position() + contentLen + 1);
+            T result = convertFrom(in);
+            in.limit(limit);
+            return result;
+        }
+    }
+
+    // 动态生成: return this.creator.create(EMPTY_PARAMS);
+    protected abstract Object createValue();
+
+    // 动态生成: switch (tag) { case 8: value.setXXX(in.readInt()); return true; ... default: return false; }
+    protected abstract boolean readTagValue(ProtobufReader in, Object result, int tag);
+
+    // 只支持带public空参数构造函数的public类, 不支持的返回null; 带参数构造函数的类返回已初始化的ObjectDecoder
+    public static Decodeable createDyncDecoder(final ProtobufFactory factory, final Type type) {
+        if (!(type instanceof Class)) {
+            return null;
+        }
+        final Class clazz = (Class) type;
+        if (clazz == Object.class
+                || clazz.isInterface()
+                || clazz.isArray()
+                || clazz.isPrimitive()
+                || Modifier.isAbstract(clazz.getModifiers())
+                || !Modifier.isPublic(clazz.getModifiers())) {
+            return null;
+        }
+        try {
+            if (!Modifier.isPublic(clazz.getConstructor().getModifiers())) {
+                return null;
+            }
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        final ProtobufObjectDecoder selfObjDecoder = (ProtobufObjectDecoder) factory.createObjectDecoder(clazz);
+        factory.register(clazz, selfObjDecoder);
+        selfObjDecoder.init(factory); // 必须执行，初始化DeMember内部信息
+        if (selfObjDecoder.getCreator() == null
+                || selfObjDecoder.getConstructorMembers() != null
+                || selfObjDecoder.getMembers().length == 0) {
+            return selfObjDecoder;
+        }
+        try {
+            return generateDyncDecoder(factory, clazz, selfObjDecoder);
+        } catch (Throwable t) {
+            return selfObjDecoder; // 无法生成时使用已初始化的ObjectDecoder
+        }
+    }
+
+    protected static ProtobufDynDecoder generateDyncDecoder(
+            final ProtobufFactory factory, final Class clazz, final ProtobufObjectDecoder selfObjDecoder) {
+        final DeMember[] members = selfObjDecoder.getMembers();
+        StringBuilder elementb = new StringBuilder();
+        for (DeMember member : members) {
+            elementb.append(member.getFieldName())
+                    .append(':')
+                    .append(member.getTag())
+                    .append(':')
+                    .append(readMethodName(member))
+                    .append(',');
+        }
+        RedkaleClassLoader classLoader = RedkaleClassLoader.currentClassLoader();
+        final String newDynName = "org/redkaledyn/convert/pb/_Dyn" + ProtobufDynDecoder.class.getSimpleName() + "__"
+                + clazz.getName().replace('.', '_').replace('$', '_') + "_" + factory.getFeatures() + "_"
+                + Utility.md5Hex(elementb.toString()); // 同一个类会有多个字段定制Convert
+        try {
+            Class newClazz = classLoader.loadClass(newDynName.replace('/', '.'));
+            return (ProtobufDynDecoder)
+                    newClazz.getConstructor(ProtobufFactory.class, Type.class, ProtobufObjectDecoder.class)
+                            .newInstance(factory, clazz, selfObjDecoder);
+        } catch (Throwable ex) {
+            // do nothing
+        }
+
+        final String supDynName = ProtobufDynDecoder.class.getName().replace('.', '/');
+        final String valtypeName = clazz.getName().replace('.', '/');
+        final String pbreaderName = ProtobufReader.class.getName().replace('.', '/');
+        final String memberName = DeMember.class.getName().replace('.', '/');
+        final String typeDesc = org.redkale.asm.Type.getDescriptor(Type.class);
+        final String pbfactoryDesc = org.redkale.asm.Type.getDescriptor(ProtobufFactory.class);
+        final String pbreaderDesc = org.redkale.asm.Type.getDescriptor(ProtobufReader.class);
+        final String pbdecoderDesc = org.redkale.asm.Type.getDescriptor(ProtobufObjectDecoder.class);
+        final String memberDesc = org.redkale.asm.Type.getDescriptor(DeMember.class);
+        final String readerDesc = org.redkale.asm.Type.getDescriptor(Reader.class);
+        final String creatorDesc = org.redkale.asm.Type.getDescriptor(Creator.class);
+        final String attributeName = Attribute.class.getName().replace('.', '/');
+        final String attributeDesc = org.redkale.asm.Type.getDescriptor(Attribute.class);
+        final String valtypeDesc = org.redkale.asm.Type.getDescriptor(clazz);
+        // ------------------------------------------------------------------------------
+        ClassWriter cw = new ClassWriter(COMPUTE_FRAMES);
+        MethodVisitor mv;
+        cw.visit(
+                V11,
+                ACC_PUBLIC + ACC_FINAL + ACC_SUPER,
+                newDynName,
+                "L" + supDynName + "<" + valtypeDesc + ">;",
+                supDynName,
+                null);
+        { // 构造函数
+            mv = (cw.visitMethod(
+                    ACC_PUBLIC, "<init>", "(" + pbfactoryDesc + typeDesc + pbdecoderDesc + ")V", null, null));
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitMethodInsn(
+                    INVOKESPECIAL, supDynName, "<init>", "(" + pbfactoryDesc + typeDesc + pbdecoderDesc + ")V", false);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(4, 4);
+            mv.visitEnd();
+        }
+        { // createValue 方法
+            mv = (cw.visitMethod(ACC_PROTECTED, "createValue", "()Ljava/lang/Object;", null, null));
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, newDynName, "creator", creatorDesc);
+            mv.visitFieldInsn(GETSTATIC, supDynName, "EMPTY_PARAMS", "[Ljava/lang/Object;");
+            mv.visitMethodInsn(
+                    INVOKEINTERFACE,
+                    Creator.class.getName().replace('.', '/'),
+                    "create",
+                    "([Ljava/lang/Object;)Ljava/lang/Object;",
+                    true);
+            mv.visitInsn(ARETURN);
+            mv.visitMaxs(2, 1);
+            mv.visitEnd();
+        }
+        { // readTagValue 方法
+            mv = (cw.visitMethod(
+                    ACC_PROTECTED, "readTagValue", "(" + pbreaderDesc + "Ljava/lang/Object;I)Z", null, null));
+            // T value = (T) result;
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitTypeInsn(CHECKCAST, valtypeName);
+            mv.visitVarInsn(ASTORE, 4);
+            // switch (tag), lookupswitch的key必须有序
+            Integer[] indexes = new Integer[members.length];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = i;
+            }
+            Arrays.sort(indexes, (a, b) -> Integer.compare(members[a].getTag(), members[b].getTag()));
+            int[] keys = new int[indexes.length];
+            Label[] labels = new Label[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                keys[i] = members[indexes[i]].getTag();
+                labels[i] = new Label();
+            }
+            Label defLabel = new Label();
+            mv.visitVarInsn(ILOAD, 3);
+            mv.visitLookupSwitchInsn(defLabel, keys, labels);
+            for (int i = 0; i < indexes.length; i++) {
+                final int memberIndex = indexes[i];
+                DeMember member = members[memberIndex];
+                mv.visitLabel(labels[i]);
+                String readMethod = readMethodName(member);
+                Class valueType = readSetterType(member);
+                if (readMethod == null || valueType == null) {
+                    // this.dynMembers[i].getAttribute().set(result, this.readDeMemberValue(in, this.dynMembers[i]));
+                    visitDynMember(mv, newDynName, memberDesc, memberIndex);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, memberName, "getAttribute", "()" + attributeDesc, false);
+                    mv.visitVarInsn(ALOAD, 2);
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitVarInsn(ALOAD, 1);
+                    visitDynMember(mv, newDynName, memberDesc, memberIndex);
+                    mv.visitMethodInsn(
+                            INVOKEVIRTUAL,
+                            newDynName,
+                            "readDeMemberValue",
+                            "(" + readerDesc + memberDesc + ")Ljava/lang/Object;",
+                            false);
+                    mv.visitMethodInsn(
+                            INVOKEINTERFACE, attributeName, "set", "(Ljava/lang/Object;Ljava/lang/Object;)V", true);
+                    mv.visitInsn(ICONST_1);
+                    mv.visitInsn(IRETURN);
+                    continue;
+                }
+                mv.visitVarInsn(ALOAD, 4);
+                if (readMethod.isEmpty()) {
+                    // (XXX) this.readDeMemberValue(in, this.dynMembers[i])
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitVarInsn(ALOAD, 1);
+                    visitDynMember(mv, newDynName, memberDesc, memberIndex);
+                    mv.visitMethodInsn(
+                            INVOKEVIRTUAL,
+                            newDynName,
+                            "readDeMemberValue",
+                            "(" + readerDesc + memberDesc + ")Ljava/lang/Object;",
+                            false);
+                    if (valueType != Object.class) {
+                        Asms.visitCheckCast(mv, valueType);
+                    }
+                } else {
+                    // in.readXXX()
+                    mv.visitVarInsn(ALOAD, 1);
+                    mv.visitMethodInsn(
+                            INVOKEVIRTUAL,
+                            pbreaderName,
+                            readMethod,
+                            "()" + org.redkale.asm.Type.getDescriptor(valueType),
+                            false);
+                }
+                visitSetValue(mv, valtypeName, member, valueType);
+                mv.visitInsn(ICONST_1);
+                mv.visitInsn(IRETURN);
+            }
+            mv.visitLabel(defLabel);
+            mv.visitInsn(ICONST_0);
+            mv.visitInsn(IRETURN);
+            mv.visitMaxs(6, 5);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        // ------------------------------------------------------------------------------
+        byte[] bytes = cw.toByteArray();
+        Class<?> newClazz = classLoader.loadClass(newDynName.replace('/', '.'), bytes);
+        RedkaleClassLoader.putReflectionDeclaredConstructors(
+                newClazz,
+                newDynName.replace('/', '.'),
+                ProtobufFactory.class,
+                Type.class,
+                ProtobufObjectDecoder.class);
+        try {
+            return (ProtobufDynDecoder)
+                    newClazz.getConstructor(ProtobufFactory.class, Type.class, ProtobufObjectDecoder.class)
+                            .newInstance(factory, clazz, selfObjDecoder);
+        } catch (Exception ex) {
+            throw new ConvertException(ex);
+        }
+    }
+
+    private static void visitDynMember(MethodVisitor mv, String newDynName, String memberDesc, int index) {
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, newDynName, "dynMembers", "[" + memberDesc);
+        Asms.visitInsn(mv, index);
+        mv.visitInsn(AALOAD);
+    }
+
+    // 返回null表示只能通过Attribute赋值, 空字符串表示通过Decodeable读取后强转赋值
+    private static String readMethodName(DeMember member) {
+        Class valueType = readSetterType(member);
+        if (valueType == null) {
+            return null;
+        }
+        Decodeable decoder = member.getDecoder();
+        if (valueType == boolean.class && decoder == ProtobufCoders.ProtobufBoolSimpledCoder.instance) {
+            return "readBoolean";
+        } else if (valueType == byte.class && decoder == ProtobufCoders.ProtobufByteSimpledCoder.instance) {
+            return "readByte";
+        } else if (valueType == short.class && decoder == ProtobufCoders.ProtobufShortSimpledCoder.instance) {
+            return "readShort";
+        } else if (valueType == char.class && decoder == ProtobufCoders.ProtobufCharSimpledCoder.instance) {
+            return "readChar";
+        } else if (valueType == int.class && decoder == ProtobufCoders.ProtobufIntSimpledCoder.instance) {
+            return "readInt";
+        } else if (valueType == float.class && decoder == ProtobufCoders.ProtobufFloatSimpledCoder.instance) {
+            return "readFloat";
+        } else if (valueType == long.class && decoder == ProtobufCoders.ProtobufLongSimpledCoder.instance) {
+            return "readLong";
+        } else if (valueType == double.class && decoder == ProtobufCoders.ProtobufDoubleSimpledCoder.instance) {
+            return "readDouble";
+        } else if (valueType == String.class && decoder == ProtobufCoders.ProtobufStringSimpledCoder.instance) {
+            return "readString";
+        } else if (valueType == String.class
+                && decoder == StringSimpledCoder.StandardStringSimpledCoder.instance) {
+            return "readStandardString";
+        }
+        return "";
+    }
+
+    // 返回null表示不能直接赋值
+    private static Class readSetterType(DeMember member) {
+        Method method = member.getMethod();
+        Class valueType;
+        if (method != null) {
+            if (method.getParameterCount() != 1 || !method.getName().startsWith("set")) {
+                return null;
+            }
+            valueType = method.getParameterTypes()[0];
+        } else {
+            Field field = member.getField();
+            if (field == null || Modifier.isFinal(field.getModifiers()) || !Modifier.isPublic(field.getModifiers())) {
+                return null;
+            }
+            valueType = field.getType();
+        }
+        Class c = valueType;
+        while (c.isArray()) {
+            c = c.getComponentType();
+        }
+        return c.isPrimitive() || Modifier.isPublic(c.getModifiers()) ? valueType : null;
+    }
+
+    private static void visitSetValue(MethodVisitor mv, String valtypeName, DeMember member, Class valueType) {
+        String valueDesc = org.redkale.asm.Type.getDescriptor(valueType);
+        Method method = member.getMethod();
+        if (method == null) {
+            mv.visitFieldInsn(PUTFIELD, valtypeName, member.getField().getName(), valueDesc);
+            return;
+        }
+        Class returnType = method.getReturnType();
+        mv.visitMethodInsn(
+                INVOKEVIRTUAL,
+                valtypeName,
+                method.getName(),
+                "(" + valueDesc + ")" + org.redkale.asm.Type.getDescriptor(returnType),
+                false);
+        if (returnType == long.class || returnType == double.class) {
+            mv.visitInsn(POP2);
+        } else if (returnType != void.class) {
+            mv.visitInsn(POP);
+        }
+    }
+
+    @Override
+    public Type getType() {
+        return typeClass;
+    }
+}
@@ -165,6 +165,11 @@ public class ProtobufFactory extends ConvertFactory<ProtobufReader, ProtobufWrit
         return ProtobufDynEncoder.createDyncEncoder(this, type);
     }
 
+    @Override
+    protected <E> Decodeable<ProtobufReader, E> createDyncDecoder(Type type) {
+        return ProtobufDynDecoder.createDyncDecoder(this, type);
+    }
+
     @Override
     protected SimpledCoder createEnumSimpledCoder(Class enumClass) {
         return new ProtobufEnumSimpledCoder(enumClass, this.enumtostring);
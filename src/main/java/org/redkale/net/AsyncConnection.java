@@ -10,6 +10,7 @@ import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.*;
@@ -123,6 +124,25 @@ public abstract class AsyncConnection implements Channel, AutoCloseable {
         }
     }
 
+    /**
+     * 创建依附于parent的虚拟连接, 共用parent的IO线程与ByteBuffer池, 不计入在线数与关闭数, 如HTTP/2的stream
+     *
+     * @param parent 真实的连接
+     * @since 2.8.0
+     */
+    protected AsyncConnection(AsyncConnection parent) {
+        this(
+                parent.clientMode,
+                parent.ioGroup,
+                parent.ioReadThread,
+                parent.ioWriteThread,
+                parent.bufferCapacity,
+                null,
+                null);
+        this.livingCounter = null;
+        this.closedCounter = null;
+    }
+
     void updateReadIOThread(AsyncIOThread ioReadThread) {
         Objects.requireNonNull(ioReadThread);
         this.ioReadThread = ioReadThread;
@@ -205,6 +225,19 @@ public abstract class AsyncConnection implements Channel, AutoCloseable {
         return ioWriteThread;
     }
 
+    /**
+     * 使用AsyncIOGroup的定时器执行任务, 适用于心跳等与连接绑定的轻量定时任务
+     *
+     * @param callable 任务
+     * @param delay 延迟时长
+     * @param unit 时长单位
+     * @return ScheduledFuture
+     * @since 2.8.0
+     */
+    public final ScheduledFuture scheduleTimeout(Runnable callable, long delay, TimeUnit unit) {
+        return ioGroup.scheduleTimeout(callable, delay, unit);
+    }
+
     public final void lockWrite() {
         writeLock.lock();
     }
@@ -886,6 +919,14 @@ public abstract class AsyncConnection implements Channel, AutoCloseable {
                 hss = engine.getHandshakeStatus();
             }
         } while (hss == NEED_UNWRAP && netBuffer.hasRemaining());
+        if (!handshake) { // 一次读取可能包含多个TLS记录, 尽量解密到appBuffer装满为止
+            while (netBuffer.hasRemaining()) {
+                SSLEngineResult engineResult = engine.unwrap(netBuffer, appBuffer);
+                if (engineResult.getStatus() != SSLEngineResult.Status.OK || engineResult.bytesConsumed() < 1) {
+                    break;
+                }
+            }
+        }
         if (netBuffer.hasRemaining()) {
             netBuffer.compact();
             setReadSSLBuffer(netBuffer);
@@ -894,11 +935,33 @@ public abstract class AsyncConnection implements Channel, AutoCloseable {
     }
 
     protected void sslReadImpl(boolean handshake, CompletionHandler<Integer, ByteBuffer> handler) {
-        readImpl(createSslCompletionHandler(handshake, handler));
+        if (!sslReadHalfRecord(handshake, handler)) {
+            readImpl(createSslCompletionHandler(handshake, handler));
+        }
+    }
+
+    // 上次未解密的数据已包含完整的TLS记录(如握手结束时随Finished一起到达的应用数据), 不能等待网络数据,
+    // 否则对端在等待响应时会互相阻塞
+    private boolean sslReadHalfRecord(boolean handshake, CompletionHandler<Integer, ByteBuffer> handler) {
+        ByteBuffer halfBuffer = this.readSSLHalfBuffer;
+        if (!handshake && halfBuffer != null && hasFullSslRecord(halfBuffer)) {
+            this.readSSLHalfBuffer = null;
+            createSslCompletionHandler(handshake, handler).completed(halfBuffer.position(), halfBuffer);
+            return true;
+        }
+        return false;
+    }
+
+    // buffer处于写模式, 判断开头是否为完整的TLS记录
+    private static boolean hasFullSslRecord(ByteBuffer buffer) {
+        int len = buffer.position();
+        return len >= 5 && len >= 5 + (((buffer.get(3) & 0xff) << 8) | (buffer.get(4) & 0xff));
     }
 
     protected void sslReadRegisterImpl(boolean handshake, CompletionHandler<Integer, ByteBuffer> handler) {
-        readRegisterImpl(createSslCompletionHandler(handshake, handler));
+        if (!sslReadHalfRecord(handshake, handler)) {
+            readRegisterImpl(createSslCompletionHandler(handshake, handler));
+        }
     }
 
     private CompletionHandler<Integer, ByteBuffer> createSslCompletionHandler(
@@ -187,6 +187,10 @@ public class AsyncIOThread extends WorkThread {
                     if (!key.isValid()) {
                         continue;
                     }
+                    if (key.isAcceptable()) { // reusePort模式下本线程独占的ServerSocketChannel
+                        ((Consumer<SelectionKey>) key.attachment()).accept(key);
+                        continue;
+                    }
                     AsyncNioConnection conn = (AsyncNioConnection) key.attachment();
                     if (conn.clientMode) {
                         if (key.isConnectable()) {
@@ -8,7 +8,7 @@ package org.redkale.net;
 import java.io.IOException;
 import java.net.*;
 import java.nio.channels.*;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.*;
 import java.util.logging.Level;
@@ -24,10 +24,22 @@ import org.redkale.util.*;
  */
 class AsyncNioTcpProtocolServer extends ProtocolServer {
 
+    // 单次唤醒最多accept的连接数
+    private static final int MAX_ACCEPTS_PER_SELECT = 64;
+
     private ServerSocketChannel serverChannel;
 
     private Selector selector;
 
+    // 每个IO读线程各自绑定一个SO_REUSEPORT的ServerSocketChannel并在自己的selector上accept,
+    // 由内核分发新连接, 避免单个Accept线程成为建连瓶颈
+    private boolean reusePort;
+
+    private int backlog;
+
+    // reusePort模式下其他IO线程绑定的ServerSocketChannel
+    private final List<ServerSocketChannel> reusePortChannels = new ArrayList<>();
+
     private AsyncIOGroup ioGroup;
 
     private boolean closed;
@@ -42,29 +54,44 @@ class AsyncNioTcpProtocolServer extends ProtocolServer {
 
     @Override
     public void open(AnyValue config) throws IOException {
-        this.serverChannel = ServerSocketChannel.open();
-        this.serverChannel.configureBlocking(false);
+        this.serverChannel = openServerChannel();
         this.selector = Selector.open();
-        final Set<SocketOption<?>> options = this.serverChannel.supportedOptions();
+        this.reusePort = config != null && config.getBoolValue("reusePort", false);
+        if (this.reusePort) {
+            if (this.serverChannel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                this.serverChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            } else {
+                this.reusePort = false;
+                context.getLogger().log(Level.WARNING, "SO_REUSEPORT not supported, reusePort ignored");
+            }
+        }
+    }
+
+    private ServerSocketChannel openServerChannel() throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.configureBlocking(false);
+        final Set<SocketOption<?>> options = channel.supportedOptions();
         if (options.contains(StandardSocketOptions.TCP_NODELAY)) {
-            this.serverChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
         }
         if (options.contains(StandardSocketOptions.SO_KEEPALIVE)) {
-            this.serverChannel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
         }
         if (options.contains(StandardSocketOptions.SO_REUSEADDR)) {
-            this.serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
         }
         if (options.contains(StandardSocketOptions.SO_RCVBUF)) {
-            this.serverChannel.setOption(StandardSocketOptions.SO_RCVBUF, 32 * 1024);
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, 32 * 1024);
         }
         if (options.contains(StandardSocketOptions.SO_SNDBUF)) {
-            this.serverChannel.setOption(StandardSocketOptions.SO_SNDBUF, 32 * 1024);
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, 32 * 1024);
         }
+        return channel;
     }
 
     @Override
     public void bind(SocketAddress local, int backlog) throws IOException {
+        this.backlog = backlog;
         this.serverChannel.bind(local, backlog);
     }
 
@@ -80,8 +107,6 @@ class AsyncNioTcpProtocolServer extends ProtocolServer {
 
     @Override
     public void accept(@Nullable Application application, Server server) throws IOException {
-        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
-
         LongAdder createBufferCounter = new LongAdder();
         LongAdder cycleBufferCounter = new LongAdder();
         LongAdder createResponseCounter = new LongAdder();
@@ -128,7 +153,12 @@ class AsyncNioTcpProtocolServer extends ProtocolServer {
             this.ioGroup = new AsyncIOGroup(threadNameFormat, null, safeBufferPool);
             this.ioGroup.start();
         }
+        if (reusePort) {
+            acceptByIOThreads(server);
+            return;
+        }
 
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
         Thread acceptThread = new Thread() {
             {
                 setName(String.format(threadNameFormat, "Accept"));
@@ -160,7 +190,7 @@ class AsyncNioTcpProtocolServer extends ProtocolServer {
                                 if (++writeIndex >= writes) {
                                     writeIndex = 0;
                                 }
-                                accept(ioReadThreads[readIndex], ioWriteThreads[writeIndex]);
+                                accept(serverChannel, ioReadThreads[readIndex], ioWriteThreads[writeIndex]);
                             }
                         }
                         keys.clear();
@@ -173,8 +203,50 @@ class AsyncNioTcpProtocolServer extends ProtocolServer {
         acceptThread.start();
     }
 
-    private void accept(AsyncIOThread ioReadThread, AsyncIOThread ioWriteThread) throws IOException {
-        SocketChannel channel = this.serverChannel.accept();
+    // 第一个IO线程使用已绑定的serverChannel, 其他IO线程绑定同一地址的新ServerSocketChannel
+    private void acceptByIOThreads(Server server) throws IOException {
+        final AsyncIOThread[] ioReadThreads = ioGroup.ioReadThreads;
+        final AsyncIOThread[] ioWriteThreads = ioGroup.ioWriteThreads;
+        final SocketAddress local = this.serverChannel.getLocalAddress();
+        for (int i = 0; i < ioReadThreads.length; i++) {
+            ServerSocketChannel channel = this.serverChannel;
+            if (i > 0) {
+                channel = openServerChannel();
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                channel.bind(local, backlog);
+                reusePortChannels.add(channel);
+            }
+            final ServerSocketChannel ssc = channel;
+            final AsyncIOThread readThread = ioReadThreads[i];
+            final AsyncIOThread writeThread = ioWriteThreads[i % ioWriteThreads.length];
+            Consumer<SelectionKey> acceptor = key -> {
+                try {
+                    for (int n = 0; n < MAX_ACCEPTS_PER_SELECT && !closed; n++) {
+                        if (!accept(ssc, readThread, writeThread)) {
+                            break;
+                        }
+                    }
+                } catch (Throwable t) {
+                    server.logger.log(Level.SEVERE, "server accept error", t);
+                }
+            };
+            readThread.register(selector -> {
+                try {
+                    ssc.register(selector, SelectionKey.OP_ACCEPT, acceptor);
+                } catch (ClosedChannelException e) {
+                    throw new RedkaleException(e);
+                }
+            });
+        }
+    }
+
+    // 返回是否有新连接
+    private boolean accept(ServerSocketChannel acceptChannel, AsyncIOThread ioReadThread, AsyncIOThread ioWriteThread)
+            throws IOException {
+        SocketChannel channel = acceptChannel.accept();
+        if (channel == null) {
+            return false;
+        }
         channel.configureBlocking(false);
         channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
         channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
@@ -213,6 +285,7 @@ class AsyncNioTcpProtocolServer extends ProtocolServer {
                 }
             });
         }
+        return true;
     }
 
     @Override
@@ -229,6 +302,9 @@ class AsyncNioTcpProtocolServer extends ProtocolServer {
         this.selector.wakeup();
         this.ioGroup.close();
         this.serverChannel.close();
+        for (ServerSocketChannel channel : reusePortChannels) {
+            channel.close();
+        }
         this.selector.close();
     }
 
@@ -28,6 +28,9 @@ public class SSLBuilder {
 
     protected String[] protocols;
 
+    // ALPN协商的应用层协议, 如: h2,http/1.1
+    protected String[] applicationProtocols;
+
     protected boolean wantClientAuth;
 
     protected boolean needClientAuth;
@@ -50,6 +53,15 @@ public class SSLBuilder {
                 .replaceAll(",+", ",")
                 .replaceAll(",$", "");
 
+        String enabledAppProtocols = sslConf.getValue("applicationProtocols", "")
+                .replaceAll("\\s+", "")
+                .replace(';', ',')
+                .replaceAll(",+", ",")
+                .replaceAll(",$", "");
+        if (!enabledAppProtocols.isEmpty()) {
+            this.applicationProtocols = enabledAppProtocols.split(",");
+        }
+
         String keyfile = sslConf.getValue("keystoreFile");
         String keypass = sslConf.getValue("keystorePass", "");
         String keyType = sslConf.getValue("keystoreType", "JKS");
@@ -185,6 +197,11 @@ public class SSLBuilder {
         if (ciphers != null) {
             engine.setEnabledCipherSuites(ciphers);
         }
+        if (applicationProtocols != null && !clientMode) {
+            SSLParameters params = engine.getSSLParameters();
+            params.setApplicationProtocols(applicationProtocols);
+            engine.setSSLParameters(params);
+        }
         engine.setUseClientMode(clientMode);
         if (wantClientAuth) {
             engine.setWantClientAuth(true);
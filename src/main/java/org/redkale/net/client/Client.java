@@ -5,6 +5,7 @@
  */
 package org.redkale.net.client;
 
+import java.net.ConnectException;
 import java.net.SocketAddress;
 import java.util.*;
 import java.util.concurrent.*;
@@ -66,11 +67,26 @@ public abstract class Client<C extends ClientConnection<R, P>, R extends ClientR
     // 连指定地址模式
     private final ConcurrentHashMap<SocketAddress, AddressConnEntry[]> connAddrEntrys = new ConcurrentHashMap<>();
 
+    // 负载均衡读取地址的待响应请求数
+    private final ToIntFunction<SocketAddress> respWaitingLoader = this::getRespWaitingCount;
+
+    // 按地址熔断, 默认为null表示不熔断
+    protected ClientCircuitBreaker circuitBreaker;
+
     protected ScheduledFuture timeoutFuture;
 
     // 单个连接最大并行处理数
     protected int maxPipelines = DEFAULT_MAX_PIPELINES;
 
+    // 是否按RTT自适应调整单个连接的在途请求数, maxPipelines为上限
+    protected boolean adaptivePipelines;
+
+    // 单个连接一次合并写出的最大请求数, 小于1表示取maxPipelines
+    protected int writeBatchSize;
+
+    // 连接空闲时第一个请求延迟多少微秒写出以便合并后续请求, 小于1表示立即写出
+    protected long writeFlushMicros;
+
     protected int connectTimeoutSeconds;
 
     protected int readTimeoutSeconds;
@@ -216,7 +232,11 @@ public abstract class Client<C extends ClientConnection<R, P>, R extends ClientR
         }
         this.address.updateAddress(addrs);
 
+        ClientCircuitBreaker breaker = this.circuitBreaker;
         for (SocketAddress addr : delAddrs) {
+            if (breaker != null) {
+                breaker.remove(addr);
+            }
             AddressConnEntry<C>[] entrys = this.connAddrEntrys.remove(addr);
             if (entrys != null) {
                 for (AddressConnEntry<C> entry : entrys) {
@@ -304,7 +324,76 @@ public abstract class Client<C extends ClientConnection<R, P>, R extends ClientR
 
     // 根据请求获取地址
     protected SocketAddress getAddress(@Nullable R request) {
-        return address.randomAddress();
+        ClientCircuitBreaker breaker = this.circuitBreaker;
+        return address.nextAddress(
+                request == null ? null : request.balanceKey(),
+                respWaitingLoader,
+                breaker == null ? null : breaker.availablePredicate());
+    }
+
+    /**
+     * 指定地址上所有连接的待响应请求数之和, 供负载均衡使用
+     *
+     * @param addr 地址
+     * @return 待响应请求数
+     */
+    public int getRespWaitingCount(SocketAddress addr) {
+        AddressConnEntry[] entrys = connAddrEntrys.get(addr);
+        if (entrys == null) {
+            return 0;
+        }
+        long count = 0;
+        for (AddressConnEntry entry : entrys) {
+            count += entry.connRespWaiting.sum();
+        }
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 指定地址上所有连接的在途请求数上限之和, 非自适应模式为连接数*maxPipelines
+     *
+     * @param addr 地址
+     * @return 上限
+     */
+    public int getPipelineLimit(SocketAddress addr) {
+        AddressConnEntry[] entrys = connAddrEntrys.get(addr);
+        if (entrys == null) {
+            return 0;
+        }
+        int limit = 0;
+        for (AddressConnEntry entry : entrys) {
+            ClientConnection conn = (ClientConnection) entry.connection;
+            if (conn != null) {
+                limit += conn.getPipelineLimit();
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * 指定地址上各连接请求排队的平均微秒数中的最大值
+     *
+     * @param addr 地址
+     * @return 微秒数
+     */
+    public long getPipelineQueueDelayMicros(SocketAddress addr) {
+        AddressConnEntry[] entrys = connAddrEntrys.get(addr);
+        if (entrys == null) {
+            return 0;
+        }
+        long micros = 0;
+        for (AddressConnEntry entry : entrys) {
+            ClientConnection conn = (ClientConnection) entry.connection;
+            if (conn != null) {
+                micros = Math.max(micros, conn.getPipelineQueueDelayMicros());
+            }
+        }
+        return micros;
+    }
+
+    // 创建连接的自适应并行数限制, 只在adaptivePipelines=true时调用
+    protected ClientPipelineLimiter createPipelineLimiter() {
+        return new ClientPipelineLimiter(Math.min(16, maxPipelines), 1, maxPipelines);
     }
 
     public final CompletableFuture<C> newConnection() {
@@ -335,7 +424,14 @@ public abstract class Client<C extends ClientConnection<R, P>, R extends ClientR
     }
 
     // 指定地址获取连接
-    private CompletableFuture<C> connect(@Nonnull SocketAddress addr, @Nullable WorkThread workThread, boolean pool) {
+    private CompletableFuture<C> connect(@Nullable SocketAddress addr, @Nullable WorkThread workThread, boolean pool) {
+        final ClientCircuitBreaker breaker = this.circuitBreaker;
+        if (addr == null) {
+            return CompletableFuture.failedFuture(
+                    breaker == null
+                            ? new ConnectException("Not found address from " + address.getAddresses())
+                            : new ClientCircuitOpenException("All addresses are ejected from " + address.getAddresses()));
+        }
         final String traceid = Traces.currentTraceid();
         final AddressConnEntry<C> entry = getAddressConnEntry(addr, workThread);
         C ec = entry.connection;
@@ -390,8 +486,18 @@ public abstract class Client<C extends ClientConnection<R, P>, R extends ClientR
                         return c;
                     })
                     .whenComplete((r, t) -> {
-                        if (pool && t != null) {
-                            entry.connOpenState.set(false);
+                        if (t != null) {
+                            if (breaker != null && ClientCircuitBreaker.isTransportFailure(t)) {
+                                breaker.recordFailure(addr);
+                            }
+                            if (pool) {
+                                entry.connOpenState.set(false);
+                                // 等待该连接的请求直接失败, 不必等到超时
+                                CompletableFuture<C> f;
+                                while ((f = waitQueue.poll()) != null) {
+                                    f.completeExceptionally(t);
+                                }
+                            }
                         }
                     });
         } else {
@@ -406,7 +512,7 @@ public abstract class Client<C extends ClientConnection<R, P>, R extends ClientR
         final AddressConnEntry<C>[] entrys = connAddrEntrys.computeIfAbsent(addr, a -> {
             AddressConnEntry<C>[] array = new AddressConnEntry[connLimit];
             for (int i = 0; i < array.length; i++) {
-                array[i] = new AddressConnEntry<>(i);
+                array[i] = new AddressConnEntry<>(a, i);
             }
             return array;
         });
@@ -446,6 +552,46 @@ public abstract class Client<C extends ClientConnection<R, P>, R extends ClientR
         return connLimit;
     }
 
+    public boolean isAdaptivePipelines() {
+        return adaptivePipelines;
+    }
+
+    public void setAdaptivePipelines(boolean adaptivePipelines) {
+        this.adaptivePipelines = adaptivePipelines;
+    }
+
+    public int getWriteBatchSize() {
+        return writeBatchSize;
+    }
+
+    public void setWriteBatchSize(int writeBatchSize) {
+        this.writeBatchSize = writeBatchSize;
+    }
+
+    public long getWriteFlushMicros() {
+        return writeFlushMicros;
+    }
+
+    public void setWriteFlushMicros(long writeFlushMicros) {
+        this.writeFlushMicros = writeFlushMicros;
+    }
+
+    public ClientCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(ClientCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public ClientBalancer getBalancer() {
+        return address.getBalancer();
+    }
+
+    public void setBalancer(ClientBalancer balancer) {
+        address.setBalancer(balancer);
+    }
+
     public int getReadTimeoutSeconds() {
         return readTimeoutSeconds;
     }
@@ -466,6 +612,8 @@ public abstract class Client<C extends ClientConnection<R, P>, R extends ClientR
 
         public C connection;
 
+        public final SocketAddress address;
+
         public final int index;
 
         public final LongAdder connRespWaiting = new LongAdder();
@@ -474,7 +622,8 @@ public abstract class Client<C extends ClientConnection<R, P>, R extends ClientR
 
         public final Queue<CompletableFuture<C>> connAcquireWaitings = new ConcurrentLinkedDeque();
 
-        AddressConnEntry(int index) {
+        AddressConnEntry(SocketAddress address, int index) {
+            this.address = address;
             this.index = index;
         }
     }
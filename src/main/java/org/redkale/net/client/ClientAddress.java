@@ -4,7 +4,9 @@ package org.redkale.net.client;
 
 import java.net.SocketAddress;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.function.*;
+import org.redkale.annotation.Nullable;
+import org.redkale.convert.ConvertDisabled;
 import org.redkale.convert.json.JsonConvert;
 
 /**
@@ -19,6 +21,12 @@ public class ClientAddress implements java.io.Serializable {
 
     private SocketAddress[] addresses;
 
+    // 与addresses一一对应, 为null表示权重相同
+    private int[] weights;
+
+    // 默认least-requests
+    private transient ClientBalancer balancer = ClientBalancer.create(ClientBalancer.LEAST_REQUESTS);
+
     public ClientAddress() {}
 
     public ClientAddress(SocketAddress... addresses) {
@@ -29,13 +37,22 @@ public class ClientAddress implements java.io.Serializable {
             Objects.requireNonNull(addr);
         }
         this.addresses = addresses;
+        this.balancer.update(addresses, null);
     }
 
     public ClientAddress(List<WeightAddress> addrs) {
         if (addrs == null || addrs.isEmpty()) {
             throw new NullPointerException("addresses is empty");
         }
-        this.addresses = WeightAddress.createAddressArray(addrs);
+        SocketAddress[] array = new SocketAddress[addrs.size()];
+        int[] ws = new int[array.length];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = addrs.get(i).getAddress();
+            ws[i] = addrs.get(i).getWeight();
+        }
+        this.addresses = array;
+        this.weights = ws;
+        this.balancer.update(array, ws);
     }
 
     void updateAddress(List<SocketAddress> addrs) {
@@ -45,15 +62,87 @@ public class ClientAddress implements java.io.Serializable {
         for (SocketAddress addr : addrs) {
             Objects.requireNonNull(addr);
         }
-        this.addresses = addrs.toArray(new SocketAddress[addrs.size()]);
+        SocketAddress[] array = addrs.toArray(new SocketAddress[addrs.size()]);
+        int[] ws = null;
+        if (this.weights != null) { // 保留原有地址的权重, 新地址取最大权重
+            int max = 1;
+            for (int w : this.weights) {
+                max = Math.max(max, w);
+            }
+            ws = new int[array.length];
+            for (int i = 0; i < array.length; i++) {
+                ws[i] = max;
+                for (int j = 0; j < this.addresses.length; j++) {
+                    if (this.addresses[j].equals(array[i])) {
+                        ws[i] = this.weights[j];
+                        break;
+                    }
+                }
+            }
+        }
+        this.balancer.update(array, ws);
+        this.addresses = array;
+        this.weights = ws;
     }
 
+    /**
+     * 按负载均衡策略选择地址, 不提供key和负载信息
+     *
+     * @return SocketAddress
+     */
     public SocketAddress randomAddress() {
+        return nextAddress(null, null);
+    }
+
+    /**
+     * 按负载均衡策略选择地址
+     *
+     * @param key 一致性哈希的key, 可为null
+     * @param loader 地址的待响应请求数, 可为null
+     * @return SocketAddress
+     */
+    public SocketAddress nextAddress(@Nullable Object key, @Nullable ToIntFunction<SocketAddress> loader) {
         SocketAddress[] addrs = this.addresses;
         if (addrs.length == 1) {
             return addrs[0];
         }
-        return addrs[ThreadLocalRandom.current().nextInt(addrs.length)];
+        SocketAddress addr = balancer.select(key, loader);
+        return addr == null ? addrs[0] : addr;
+    }
+
+    /**
+     * 按负载均衡策略选择可用的地址
+     *
+     * @param key 一致性哈希的key, 可为null
+     * @param loader 地址的待响应请求数, 可为null
+     * @param available 地址是否可用, 为null表示都可用
+     * @return SocketAddress, 全部不可用时返回null
+     */
+    public SocketAddress nextAddress(
+            @Nullable Object key,
+            @Nullable ToIntFunction<SocketAddress> loader,
+            @Nullable Predicate<SocketAddress> available) {
+        SocketAddress[] addrs = this.addresses;
+        if (available == null) {
+            return nextAddress(key, loader);
+        }
+        if (addrs.length == 1) {
+            return available.test(addrs[0]) ? addrs[0] : null;
+        }
+        return balancer.select(key, loader, available);
+    }
+
+    @ConvertDisabled
+    public ClientBalancer getBalancer() {
+        return balancer;
+    }
+
+    public void setBalancer(ClientBalancer balancer) {
+        Objects.requireNonNull(balancer);
+        if (addresses != null) {
+            balancer.update(addresses, weights);
+        }
+        this.balancer = balancer;
     }
 
     public Set<SocketAddress> getAddresses() {
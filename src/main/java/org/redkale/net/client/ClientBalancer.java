@@ -0,0 +1,484 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.net.client;
+
+import java.net.SocketAddress;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.*;
+import org.redkale.annotation.Nullable;
+import org.redkale.util.RedkaleException;
+
+/**
+ * 负载均衡策略, 一个实例只对应一组地址, 地址变化时需调用update <br>
+ * 内置策略:
+ *
+ * <ul>
+ *   <li>random: 按权重随机
+ *   <li>round-robin: 平滑加权轮询
+ *   <li>least-requests: 待响应请求数/权重最小的优先, 相同时按权重随机, 未提供负载信息时退化为平滑加权轮询
+ *   <li>p2c: 按权重随机选两个, 取待响应请求数/权重较小的一个
+ *   <li>consistent-hash: 按key的一致性哈希, key为null时按权重随机
+ * </ul>
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ */
+public abstract class ClientBalancer {
+
+    public static final String RANDOM = "random";
+
+    public static final String ROUND_ROBIN = "round-robin";
+
+    public static final String LEAST_REQUESTS = "least-requests";
+
+    public static final String POWER_OF_TWO = "p2c";
+
+    public static final String CONSISTENT_HASH = "consistent-hash";
+
+    protected ClientBalancer() {}
+
+    /**
+     * 更新地址列表, 权重小于等于0的地址不参与选择(全部为0时视为权重相同)
+     *
+     * @param addresses 地址
+     * @param weights 权重, 为null表示权重相同
+     */
+    public abstract void update(SocketAddress[] addresses, @Nullable int[] weights);
+
+    /**
+     * 选择地址
+     *
+     * @param key 一致性哈希的key, 可为null
+     * @param loader 地址的待响应请求数, 可为null
+     * @return 地址, 地址列表为空时返回null
+     */
+    public abstract SocketAddress select(@Nullable Object key, @Nullable ToIntFunction<SocketAddress> loader);
+
+    /**
+     * 选择可用的地址, 选中被摘除的地址时重新选择, 仍不可用则从随机位置起找第一个可用地址
+     *
+     * @param key 一致性哈希的key, 可为null
+     * @param loader 地址的待响应请求数, 可为null
+     * @param available 地址是否可用, 为null表示都可用
+     * @return 地址, 地址列表为空或全部不可用时返回null
+     */
+    public SocketAddress select(
+            @Nullable Object key,
+            @Nullable ToIntFunction<SocketAddress> loader,
+            @Nullable Predicate<SocketAddress> available) {
+        final SocketAddress first = select(key, loader);
+        if (available == null || first == null || available.test(first)) {
+            return first;
+        }
+        if (key == null) {
+            SocketAddress addr = select(null, loader);
+            if (available.test(addr)) {
+                return addr;
+            }
+        }
+        SocketAddress[] addrs = addresses();
+        int len = addrs.length;
+        int start = ThreadLocalRandom.current().nextInt(len);
+        for (int k = 0; k < len; k++) {
+            SocketAddress a = addrs[(start + k) % len];
+            if (available.test(a)) {
+                return a;
+            }
+        }
+        return null;
+    }
+
+    // 参与选择的地址
+    protected abstract SocketAddress[] addresses();
+
+    public abstract String name();
+
+    public static ClientBalancer create(String name) {
+        if (name == null || name.isEmpty()) {
+            return new LeastRequestsBalancer();
+        }
+        switch (name.toLowerCase()) {
+            case RANDOM:
+                return new RandomBalancer();
+            case ROUND_ROBIN:
+                return new RoundRobinBalancer();
+            case LEAST_REQUESTS:
+                return new LeastRequestsBalancer();
+            case POWER_OF_TWO:
+                return new PowerOfTwoBalancer();
+            case CONSISTENT_HASH:
+                return new ConsistentHashBalancer();
+            default:
+                throw new RedkaleException("Not supported balancer " + name);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(name=" + name() + ")";
+    }
+
+    // 过滤掉权重为0的地址, 返回{addresses, weights}
+    static Object[] normalize(SocketAddress[] addresses, int[] weights) {
+        int len = addresses == null ? 0 : addresses.length;
+        int count = 0;
+        for (int i = 0; i < len; i++) {
+            if (weights == null || weights[i] > 0) {
+                count++;
+            }
+        }
+        SocketAddress[] addrs = new SocketAddress[count == 0 ? len : count];
+        int[] ws = new int[addrs.length];
+        int index = 0;
+        for (int i = 0; i < len; i++) {
+            if (count == 0) {
+                addrs[i] = addresses[i];
+                ws[i] = 1;
+            } else if (weights == null || weights[i] > 0) {
+                addrs[index] = addresses[i];
+                ws[index++] = weights == null ? 1 : weights[i];
+            }
+        }
+        return new Object[] {addrs, ws};
+    }
+
+    // 负载比较: loadA / weightA 与 loadB / weightB, 负数表示A较轻, 0表示相同
+    // 不能用(load + 1) / weight, 否则空闲时总是选中权重最大的地址
+    static int compareLoad(int loadA, int weightA, int loadB, int weightB) {
+        return Long.compare((long) loadA * weightB, (long) loadB * weightA);
+    }
+
+    // 按权重随机, 权重的前缀和数组
+    static class WeightedNodes {
+
+        final SocketAddress[] addresses;
+
+        final int[] weights;
+
+        final int[] sums;
+
+        final int total;
+
+        WeightedNodes(SocketAddress[] addresses, int[] weights) {
+            Object[] rs = normalize(addresses, weights);
+            this.addresses = (SocketAddress[]) rs[0];
+            this.weights = (int[]) rs[1];
+            this.sums = new int[this.weights.length];
+            int sum = 0;
+            for (int i = 0; i < this.weights.length; i++) {
+                sum += this.weights[i];
+                this.sums[i] = sum;
+            }
+            this.total = sum;
+        }
+
+        int randomIndex() {
+            int len = addresses.length;
+            if (len == 1) {
+                return 0;
+            }
+            int r = ThreadLocalRandom.current().nextInt(total);
+            int low = 0;
+            int high = len - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sums[mid] > r) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    protected static class RandomBalancer extends ClientBalancer {
+
+        private volatile WeightedNodes nodes = new WeightedNodes(null, null);
+
+        public RandomBalancer() {}
+
+        @Override
+        public void update(SocketAddress[] addresses, int[] weights) {
+            this.nodes = new WeightedNodes(addresses, weights);
+        }
+
+        @Override
+        public SocketAddress select(Object key, ToIntFunction<SocketAddress> loader) {
+            WeightedNodes ns = this.nodes;
+            return ns.addresses.length == 0 ? null : ns.addresses[ns.randomIndex()];
+        }
+
+        @Override
+        protected SocketAddress[] addresses() {
+            return nodes.addresses;
+        }
+
+        @Override
+        public String name() {
+            return RANDOM;
+        }
+    }
+
+    // 平滑加权轮询(nginx的smooth weighted round-robin), 权重5,1,1的选择顺序为a,a,b,a,c,a,a
+    protected static class RoundRobinBalancer extends ClientBalancer {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private WeightedNodes nodes = new WeightedNodes(null, null);
+
+        private int[] currents = new int[0];
+
+        public RoundRobinBalancer() {}
+
+        @Override
+        public void update(SocketAddress[] addresses, int[] weights) {
+            WeightedNodes ns = new WeightedNodes(addresses, weights);
+            lock.lock();
+            try {
+                this.nodes = ns;
+                this.currents = new int[ns.addresses.length];
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public SocketAddress select(Object key, ToIntFunction<SocketAddress> loader) {
+            lock.lock();
+            try {
+                WeightedNodes ns = this.nodes;
+                int len = ns.addresses.length;
+                if (len < 2) {
+                    return len == 0 ? null : ns.addresses[0];
+                }
+                int[] cs = this.currents;
+                int best = 0;
+                for (int i = 0; i < len; i++) {
+                    cs[i] += ns.weights[i];
+                    if (cs[i] > cs[best]) {
+                        best = i;
+                    }
+                }
+                cs[best] -= ns.total;
+                return ns.addresses[best];
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        protected SocketAddress[] addresses() {
+            lock.lock();
+            try {
+                return nodes.addresses;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public String name() {
+            return ROUND_ROBIN;
+        }
+    }
+
+    // 最少待响应请求, 负载相同的地址之间按权重随机, 避免空闲时总是选中同一个
+    protected static class LeastRequestsBalancer extends ClientBalancer {
+
+        private final RoundRobinBalancer roundRobin = new RoundRobinBalancer();
+
+        private volatile WeightedNodes nodes = new WeightedNodes(null, null);
+
+        public LeastRequestsBalancer() {}
+
+        @Override
+        public void update(SocketAddress[] addresses, int[] weights) {
+            this.nodes = new WeightedNodes(addresses, weights);
+            roundRobin.update(addresses, weights);
+        }
+
+        @Override
+        public SocketAddress select(Object key, ToIntFunction<SocketAddress> loader) {
+            if (loader == null) {
+                return roundRobin.select(key, null);
+            }
+            WeightedNodes ns = this.nodes;
+            int len = ns.addresses.length;
+            if (len < 2) {
+                return len == 0 ? null : ns.addresses[0];
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int best = 0;
+            int bestLoad = loader.applyAsInt(ns.addresses[0]);
+            int tieWeight = ns.weights[0]; // 负载相同的地址的权重之和
+            for (int i = 1; i < len; i++) {
+                int load = loader.applyAsInt(ns.addresses[i]);
+                int c = compareLoad(load, ns.weights[i], bestLoad, ns.weights[best]);
+                if (c < 0) {
+                    best = i;
+                    bestLoad = load;
+                    tieWeight = ns.weights[i];
+                } else if (c == 0) { // 按权重的蓄水池抽样, 一次遍历即可按权重随机
+                    tieWeight += ns.weights[i];
+                    if (random.nextInt(tieWeight) < ns.weights[i]) {
+                        best = i;
+                        bestLoad = load;
+                    }
+                }
+            }
+            return ns.addresses[best];
+        }
+
+        @Override
+        protected SocketAddress[] addresses() {
+            return nodes.addresses;
+        }
+
+        @Override
+        public String name() {
+            return LEAST_REQUESTS;
+        }
+    }
+
+    // power-of-two-choices: 只读取两个地址的负载, 地址多时比least-requests开销小
+    protected static class PowerOfTwoBalancer extends ClientBalancer {
+
+        private volatile WeightedNodes nodes = new WeightedNodes(null, null);
+
+        public PowerOfTwoBalancer() {}
+
+        @Override
+        public void update(SocketAddress[] addresses, int[] weights) {
+            this.nodes = new WeightedNodes(addresses, weights);
+        }
+
+        @Override
+        public SocketAddress select(Object key, ToIntFunction<SocketAddress> loader) {
+            WeightedNodes ns = this.nodes;
+            int len = ns.addresses.length;
+            if (len < 2) {
+                return len == 0 ? null : ns.addresses[0];
+            }
+            int a = ns.randomIndex();
+            if (loader == null) {
+                return ns.addresses[a];
+            }
+            int b = ns.randomIndex();
+            if (b == a) {
+                b = (a + 1 + ThreadLocalRandom.current().nextInt(len - 1)) % len;
+            }
+            int loadA = loader.applyAsInt(ns.addresses[a]);
+            int loadB = loader.applyAsInt(ns.addresses[b]);
+            return compareLoad(loadB, ns.weights[b], loadA, ns.weights[a]) < 0 ? ns.addresses[b] : ns.addresses[a];
+        }
+
+        @Override
+        protected SocketAddress[] addresses() {
+            return nodes.addresses;
+        }
+
+        @Override
+        public String name() {
+            return POWER_OF_TWO;
+        }
+    }
+
+    // 一致性哈希, 每个地址按权重生成虚拟节点, 地址增减时只影响相邻区间的key
+    protected static class ConsistentHashBalancer extends ClientBalancer {
+
+        // 权重最大的地址的虚拟节点数
+        static final int VIRTUAL_NODES = 160;
+
+        private volatile HashRing ring = new HashRing(new WeightedNodes(null, null));
+
+        public ConsistentHashBalancer() {}
+
+        @Override
+        public void update(SocketAddress[] addresses, int[] weights) {
+            this.ring = new HashRing(new WeightedNodes(addresses, weights));
+        }
+
+        @Override
+        public SocketAddress select(Object key, ToIntFunction<SocketAddress> loader) {
+            HashRing r = this.ring;
+            int len = r.nodes.addresses.length;
+            if (len < 2) {
+                return len == 0 ? null : r.nodes.addresses[0];
+            }
+            if (key == null) {
+                return r.nodes.addresses[r.nodes.randomIndex()];
+            }
+            return r.nodes.addresses[r.find(hash(key.hashCode()))];
+        }
+
+        @Override
+        protected SocketAddress[] addresses() {
+            return ring.nodes.addresses;
+        }
+
+        @Override
+        public String name() {
+            return CONSISTENT_HASH;
+        }
+
+        // murmur3的fmix64, 使相近的hashCode分散开
+        static long hash(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+
+        static class HashRing {
+
+            final WeightedNodes nodes;
+
+            // 按hash升序
+            final long[] hashes;
+
+            final int[] indexes;
+
+            HashRing(WeightedNodes nodes) {
+                this.nodes = nodes;
+                int max = 1;
+                for (int w : nodes.weights) {
+                    max = Math.max(max, w);
+                }
+                List<long[]> list = new ArrayList<>();
+                for (int i = 0; i < nodes.addresses.length; i++) {
+                    int count = Math.max(1, VIRTUAL_NODES * nodes.weights[i] / max);
+                    String name = nodes.addresses[i].toString();
+                    for (int j = 0; j < count; j++) {
+                        long h = hash(((long) (name + "#" + j).hashCode() << 32) | j);
+                        list.add(new long[] {h, i});
+                    }
+                }
+                list.sort((x, y) -> Long.compare(x[0], y[0]));
+                this.hashes = new long[list.size()];
+                this.indexes = new int[list.size()];
+                for (int i = 0; i < hashes.length; i++) {
+                    hashes[i] = list.get(i)[0];
+                    indexes[i] = (int) list.get(i)[1];
+                }
+            }
+
+            // 顺时针找第一个不小于h的虚拟节点
+            int find(long h) {
+                int pos = Arrays.binarySearch(hashes, h);
+                if (pos < 0) {
+                    pos = -pos - 1;
+                }
+                return indexes[pos >= hashes.length ? 0 : pos];
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.net.client;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import org.redkale.annotation.Nullable;
+import org.redkale.util.AnyValue;
+
+/**
+ * Client按地址的健康统计与熔断 <br>
+ * 连续失败次数、统计窗口内的失败率或p99延迟超过阈值时, 摘除该地址一段时间(每次摘除时间翻倍, 不超过maxEjectMillis) <br>
+ * 摘除到期后进入半开状态, 同一时间只放行一个探测请求, 探测成功则恢复, 失败则立即再次摘除 <br>
+ * 只统计连接失败、读超时、IO异常等传输层失败, 业务层的异常结果不计入 <br>
+ * 熔断只影响负载均衡的地址选择, 不阻止复用已建立的连接和指定地址的连接; 地址全部被摘除时直接失败, 抛出ClientCircuitOpenException <br>
+ * Client默认不开启熔断, 需调用Client.setCircuitBreaker或通过{@link #create(org.redkale.util.AnyValue)}按配置开启
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ */
+public class ClientCircuitBreaker {
+
+    // 连续失败多少次后摘除
+    protected int consecutiveFailures = 5;
+
+    // 统计窗口的毫秒数
+    protected long intervalMillis = 10_000;
+
+    // 窗口内请求数不少于该值时才按失败率和延迟判断
+    protected int minRequests = 20;
+
+    // 窗口内失败率的百分比阈值
+    protected int failurePercent = 50;
+
+    // 窗口内p99延迟的毫秒数阈值, 小于1表示不按延迟判断
+    protected long slowMillis = 0;
+
+    // 第一次摘除的毫秒数
+    protected long baseEjectMillis = 5_000;
+
+    // 最长摘除的毫秒数
+    protected long maxEjectMillis = 60_000;
+
+    private final ConcurrentHashMap<SocketAddress, HostHealth> hosts = new ConcurrentHashMap<>();
+
+    // 供负载均衡过滤被摘除的地址
+    private final Predicate<SocketAddress> availablePredicate = this::isAvailable;
+
+    public ClientCircuitBreaker() {}
+
+    /**
+     * 按配置创建熔断器, 配置不存在或enabled=false时返回null表示不开启熔断 <br>
+     * 例如: &lt;circuitbreaker enabled="true" consecutiveFailures="5" failurePercent="50" slowMillis="0"/&gt;
+     *
+     * @param conf 配置, 可为null
+     * @return ClientCircuitBreaker
+     */
+    public static ClientCircuitBreaker create(@Nullable AnyValue conf) {
+        if (conf == null || !conf.getBoolValue("enabled", true)) {
+            return null;
+        }
+        ClientCircuitBreaker breaker = new ClientCircuitBreaker();
+        breaker.consecutiveFailures = conf.getIntValue("consecutiveFailures", breaker.consecutiveFailures);
+        breaker.intervalMillis = conf.getLongValue("intervalMillis", breaker.intervalMillis);
+        breaker.minRequests = conf.getIntValue("minRequests", breaker.minRequests);
+        breaker.failurePercent = conf.getIntValue("failurePercent", breaker.failurePercent);
+        breaker.slowMillis = conf.getLongValue("slowMillis", breaker.slowMillis);
+        breaker.baseEjectMillis = conf.getLongValue("baseEjectMillis", breaker.baseEjectMillis);
+        breaker.maxEjectMillis = conf.getLongValue("maxEjectMillis", breaker.maxEjectMillis);
+        return breaker;
+    }
+
+    /**
+     * 判断是否为传输层的失败
+     *
+     * @param t 异常
+     * @return 是否计入失败
+     */
+    public static boolean isTransportFailure(Throwable t) {
+        Throwable e = t;
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e instanceof IOException || e instanceof TimeoutException;
+    }
+
+    /**
+     * 判断地址是否可用, 半开状态下只有获得探测资格的调用返回true, 因此返回true后应当向该地址发送请求
+     *
+     * @param addr 地址
+     * @return 是否可用
+     */
+    public boolean isAvailable(SocketAddress addr) {
+        HostHealth health = addr == null ? null : hosts.get(addr);
+        return health == null || health.tryAcquire(this, System.currentTimeMillis());
+    }
+
+    public Predicate<SocketAddress> availablePredicate() {
+        return availablePredicate;
+    }
+
+    /**
+     * 地址被摘除的截止时间
+     *
+     * @param addr 地址
+     * @return 毫秒时间戳, 0表示未被摘除过
+     */
+    public long getEjectedUntil(SocketAddress addr) {
+        HostHealth health = hosts.get(addr);
+        return health == null ? 0 : health.ejectedUntil;
+    }
+
+    public void recordSuccess(SocketAddress addr, long latencyMillis) {
+        if (addr != null) {
+            hosts.computeIfAbsent(addr, a -> new HostHealth()).record(this, true, latencyMillis);
+        }
+    }
+
+    public void recordFailure(SocketAddress addr) {
+        if (addr != null) {
+            hosts.computeIfAbsent(addr, a -> new HostHealth()).record(this, false, 0);
+        }
+    }
+
+    public void remove(SocketAddress addr) {
+        hosts.remove(addr);
+    }
+
+    public void clear() {
+        hosts.clear();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public void setConsecutiveFailures(int consecutiveFailures) {
+        this.consecutiveFailures = consecutiveFailures;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public void setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    public int getMinRequests() {
+        return minRequests;
+    }
+
+    public void setMinRequests(int minRequests) {
+        this.minRequests = minRequests;
+    }
+
+    public int getFailurePercent() {
+        return failurePercent;
+    }
+
+    public void setFailurePercent(int failurePercent) {
+        this.failurePercent = failurePercent;
+    }
+
+    public long getSlowMillis() {
+        return slowMillis;
+    }
+
+    public void setSlowMillis(long slowMillis) {
+        this.slowMillis = slowMillis;
+    }
+
+    public long getBaseEjectMillis() {
+        return baseEjectMillis;
+    }
+
+    public void setBaseEjectMillis(long baseEjectMillis) {
+        this.baseEjectMillis = baseEjectMillis;
+    }
+
+    public long getMaxEjectMillis() {
+        return maxEjectMillis;
+    }
+
+    public void setMaxEjectMillis(long maxEjectMillis) {
+        this.maxEjectMillis = maxEjectMillis;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{consecutiveFailures=" + consecutiveFailures + ", intervalMillis="
+                + intervalMillis + ", minRequests=" + minRequests + ", failurePercent=" + failurePercent
+                + ", slowMillis=" + slowMillis + ", baseEjectMillis=" + baseEjectMillis + ", maxEjectMillis="
+                + maxEjectMillis + "}";
+    }
+
+    // 单个地址的统计, 延迟按2的幂分桶, 桶i表示[2^(i-1), 2^i)毫秒
+    static class HostHealth {
+
+        static final int BUCKETS = 32;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        final AtomicInteger consecutive = new AtomicInteger();
+
+        final AtomicInteger requests = new AtomicInteger();
+
+        final AtomicInteger failures = new AtomicInteger();
+
+        final AtomicIntegerArray latencies = new AtomicIntegerArray(BUCKETS);
+
+        volatile long windowStart = System.currentTimeMillis();
+
+        volatile long ejectedUntil;
+
+        // 摘除到期后的探测请求结果决定是否恢复
+        volatile boolean probing;
+
+        // 半开状态下探测请求的截止时间, 超时未返回结果时允许再放行一个探测请求
+        final AtomicLong probeDeadline = new AtomicLong();
+
+        // 半开状态下只放行一个探测请求
+        boolean tryAcquire(ClientCircuitBreaker breaker, long now) {
+            if (now < ejectedUntil) {
+                return false;
+            }
+            if (!probing) {
+                return true;
+            }
+            long deadline = probeDeadline.get();
+            return now >= deadline && probeDeadline.compareAndSet(deadline, now + breaker.baseEjectMillis);
+        }
+
+        // 连续摘除的次数, 窗口内健康时清零
+        int ejections;
+
+        void record(ClientCircuitBreaker breaker, boolean success, long latencyMillis) {
+            long now = System.currentTimeMillis();
+            requests.incrementAndGet();
+            if (success) {
+                consecutive.set(0);
+                probing = false;
+                latencies.incrementAndGet(bucket(latencyMillis));
+            } else {
+                failures.incrementAndGet();
+                if (consecutive.incrementAndGet() >= breaker.consecutiveFailures || probing) {
+                    eject(breaker, now);
+                }
+            }
+            long start = windowStart;
+            if (now - start >= breaker.intervalMillis) {
+                evaluate(breaker, start, now);
+            }
+        }
+
+        private void evaluate(ClientCircuitBreaker breaker, long start, long now) {
+            lock.lock();
+            try {
+                if (windowStart != start) { // 其他线程已处理
+                    return;
+                }
+                windowStart = now;
+                int reqs = requests.getAndSet(0);
+                int fails = failures.getAndSet(0);
+                int[] counts = new int[BUCKETS];
+                int total = 0;
+                for (int i = 0; i < BUCKETS; i++) {
+                    counts[i] = latencies.getAndSet(i, 0);
+                    total += counts[i];
+                }
+                boolean unhealthy = false;
+                if (reqs >= breaker.minRequests) {
+                    if (fails * 100L >= (long) breaker.failurePercent * reqs) {
+                        unhealthy = true;
+                    } else if (breaker.slowMillis > 0 && percentile(counts, total, 99) >= breaker.slowMillis) {
+                        unhealthy = true;
+                    }
+                }
+                if (unhealthy) {
+                    ejectInLock(breaker, now);
+                } else if (now >= ejectedUntil && !probing) {
+                    ejections = 0;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void eject(ClientCircuitBreaker breaker, long now) {
+            lock.lock();
+            try {
+                ejectInLock(breaker, now);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void ejectInLock(ClientCircuitBreaker breaker, long now) {
+            if (now < ejectedUntil) { // 摘除期间返回的失败不再延长
+                return;
+            }
+            long millis = breaker.baseEjectMillis << Math.min(ejections, 16);
+            ejections++;
+            ejectedUntil = now + Math.min(millis, breaker.maxEjectMillis);
+            consecutive.set(0);
+            probeDeadline.set(0);
+            probing = true;
+        }
+
+        static int bucket(long latencyMillis) {
+            return latencyMillis <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(latencyMillis));
+        }
+
+        // 取所在桶的下限, 宁可低估也不误摘除
+        static long percentile(int[] counts, int total, int percent) {
+            if (total == 0) {
+                return 0;
+            }
+            long target = ((long) total * percent + 99) / 100;
+            long sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                sum += counts[i];
+                if (sum >= target) {
+                    return i == 0 ? 0 : (1L << (i - 1));
+                }
+            }
+            return 1L << (counts.length - 2);
+        }
+    }
+}
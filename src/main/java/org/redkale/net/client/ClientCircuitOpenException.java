@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.net.client;
+
+import org.redkale.util.RedkaleException;
+
+/**
+ * 开启熔断后所有地址都被摘除时, 负载均衡选择地址失败抛出的异常
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ */
+public class ClientCircuitOpenException extends RedkaleException {
+
+    public ClientCircuitOpenException() {
+        super();
+    }
+
+    public ClientCircuitOpenException(String s) {
+        super(s);
+    }
+
+    public ClientCircuitOpenException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public ClientCircuitOpenException(Throwable cause) {
+        super(cause);
+    }
+}
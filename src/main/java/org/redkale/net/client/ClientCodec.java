@@ -134,6 +134,8 @@ public abstract class ClientCodec<R extends ClientRequest, P extends ClientResul
                 }
             }
             connection.respWaitingCounter.decrement();
+            connection.recordHealth(request, exc);
+            connection.pipelineComplete(respFuture);
             if (connection.isAuthenticated()) {
                 connection.client.incrRespDoneCounter();
             }
@@ -79,12 +79,59 @@ public abstract class ClientConnection<R extends ClientRequest, P extends Client
     // pauseWriting=true，此字段才会有值; pauseWriting=false，此字段值为null
     ClientFuture currHalfWriteFuture;
 
+    // 半包响应后需重新发送的请求, 由持有writing的线程发送
+    private ClientFuture resendHalfWriteFuture;
+
+    // 待发送的请求, 多生产者单消费者的无锁栈, 通过ClientFuture.writeNext串联, 入栈不加锁也不创建对象
+    private final AtomicReference<ClientFuture> writeStack = new AtomicReference<>();
+
+    // 持有者负责发送, 同一时刻只有一个线程在写, 上一批写完才会写下一批
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    // 已出栈待发送的请求(按入栈顺序), 只在writing持有者中访问
+    private ClientFuture writeHead;
+
+    // 正在调用channel.write的线程, 用于识别同步完成的回调
+    private Thread batchWriteThread;
+
+    // channel.write在当前线程同步完成, 由writeBatches循环继续发送, 避免递归导致栈溢出
+    private boolean batchWriteInline;
+
+    // 一批请求写完后继续发送积压的请求
+    private final CompletionHandler<Integer, Void> batchWriteHandler = new CompletionHandler<Integer, Void>() {
+
+        @Override
+        public void completed(Integer result, Void attachment) {
+            if (batchWriteThread == Thread.currentThread()) {
+                batchWriteInline = true;
+            } else {
+                writeBatches();
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            dispose(exc);
+            if (batchWriteThread == Thread.currentThread()) {
+                batchWriteInline = true;
+            } else {
+                writeBatches();
+            }
+        }
+    };
+
     // 必须在调用decodeMessages之前重置为null
     Iterator<ClientFuture<R, P>> currRespIterator;
 
     // 最大并行处理数
     private int maxPipelines;
 
+    // 自适应并行数, 为null表示不限制在途请求数
+    private final ClientPipelineLimiter pipelineLimiter;
+
+    // 已写出未响应的请求数, 只在pipelineLimiter不为null时计数
+    private final AtomicInteger pipelineInflight = new AtomicInteger();
+
     private boolean authenticated;
 
     @SuppressWarnings({"LeakingThisInConstructor", "OverridableMethodCallInConstructor"})
@@ -93,6 +140,7 @@ public abstract class ClientConnection<R extends ClientRequest, P extends Client
         this.codec = createCodec();
         this.channel = channel.beforeCloseListener(this); // .pipelineHandler(writeHandler);
         this.writeBuffer = channel.pollWriteBuffer();
+        this.pipelineLimiter = client.adaptivePipelines ? client.createPipelineLimiter() : null;
     }
 
     ClientConnection setConnEntry(Client.AddressConnEntry entry) {
@@ -129,61 +177,197 @@ public abstract class ClientConnection<R extends ClientRequest, P extends Client
                             + Arrays.toString(requests));
         }
         ClientFuture[] respFutures = new ClientFuture[requests.length];
+        long now = pipelineLimiter == null ? 0 : System.nanoTime();
         for (int i = 0; i < respFutures.length; i++) {
             R request = requests[i];
             request.respTransfer = respTransfer;
             respFutures[i] = client.createClientFuture(this, requests[i]);
+            respFutures[i].offerNanos = now;
         }
         respWaitingCounter.add(respFutures.length); // 放在writeChannelInWriteThread计数会延迟，导致不准确
+        offerWrite(respFutures);
+        return respFutures;
+    }
 
-        channel.lockWrite();
-        try {
-            if (pauseWriting.get()) {
-                for (ClientFuture respFuture : respFutures) {
-                    offerRespFuture(respFuture);
-                    pauseRequests.add(respFuture);
-                }
+    // 请求入栈, 同一批请求整体入栈保证相邻
+    final void offerWrite(ClientFuture... respFutures) {
+        ClientFuture first = respFutures[0];
+        ClientFuture last = first;
+        for (int i = 1; i < respFutures.length; i++) {
+            respFutures[i].writeNext = last;
+            last = respFutures[i];
+        }
+        ClientFuture top;
+        do {
+            top = writeStack.get();
+            first.writeNext = top;
+        } while (!writeStack.compareAndSet(top, last));
+        flushWrite(true);
+    }
+
+    private void flushWrite(boolean delay) {
+        if (writing.compareAndSet(false, true)) {
+            long micros = client.writeFlushMicros;
+            if (delay && micros > 0) { // 等待更多请求合并发送
+                channel.scheduleTimeout(this::writeBatches, micros, TimeUnit.MICROSECONDS);
             } else {
-                for (ClientFuture respFuture : respFutures) {
-                    offerRespFuture(respFuture);
+                writeBatches();
+            }
+        }
+    }
+
+    // 必须持有writing, 有数据写出时由batchWriteHandler继续, 否则释放writing
+    private void writeBatches() {
+        for (; ; ) {
+            boolean sent = false;
+            if (closed.get()) {
+                failPendingWrites();
+            } else {
+                channel.lockWrite();
+                batchWriteThread = Thread.currentThread();
+                try {
+                    sent = sendBatchInLock();
+                } finally {
+                    batchWriteThread = null;
+                    channel.unlockWrite();
                 }
-                sendRequestInLock(respFutures);
             }
-        } finally {
-            channel.unlockWrite();
+            if (sent) {
+                if (batchWriteInline) { // 已同步写完, 继续发送下一批
+                    batchWriteInline = false;
+                    continue;
+                }
+                return;
+            }
+            writing.set(false);
+            if (!hasPendingWrite() || !writing.compareAndSet(false, true)) {
+                return;
+            }
         }
-        return respFutures;
     }
 
-    protected void sendRequestInLock(ClientFuture... respFutures) {
-        sendRequestToChannel(respFutures);
+    private boolean hasPendingWrite() {
+        return ((writeStack.get() != null || writeHead != null) && pipelineRoom() > 0)
+                || (!pauseWriting.get() && (resendHalfWriteFuture != null || !pauseRequests.isEmpty()));
     }
 
-    protected final void sendRequestToChannel(ClientFuture... respFutures) {
-        // 发送请求数据包
+    // 将积压的请求合并到writeArray中一次写出, 返回是否有数据写出
+    private boolean sendBatchInLock() {
         writeArray.clear();
-        for (ClientFuture respFuture : respFutures) {
+        int batchSize = client.writeBatchSize > 0 ? client.writeBatchSize : Math.max(1, maxPipelines);
+        int count = 0;
+        ClientFuture respFuture = resendHalfWriteFuture;
+        if (respFuture != null && !pauseWriting.get()) {
+            resendHalfWriteFuture = null;
+            writeRequest(respFuture);
+            count++;
+        }
+        while (count < batchSize && !pauseWriting.get() && (respFuture = pauseRequests.poll()) != null) {
+            writeRequest(respFuture);
+            count++;
+        }
+        int room = pipelineRoom();
+        boolean limited = pipelineLimiter != null;
+        long now = limited && room > 0 ? System.nanoTime() : 0;
+        while (count < batchSize && room > 0) {
+            if (writeHead == null) {
+                ClientFuture top = writeStack.getAndSet(null);
+                if (top == null) {
+                    break;
+                }
+                writeHead = reverse(top);
+            }
+            respFuture = writeHead;
+            writeHead = respFuture.writeNext;
+            respFuture.writeNext = null;
+            if (limited) {
+                respFuture.writeNanos = now;
+                respFuture.inflight = true;
+                pipelineInflight.incrementAndGet();
+                room--;
+            }
+            offerRespFuture(respFuture);
             if (pauseWriting.get()) {
                 pauseRequests.add(respFuture);
             } else {
-                ClientRequest request = respFuture.request;
-                request.writeTo(this, writeArray);
-                if (request.isCompleted()) {
-                    doneRequestCounter.increment();
-                } else { // 还剩半包没发送完
-                    pauseWriting.set(true);
-                    currHalfWriteFuture = respFuture;
-                }
+                writeRequest(respFuture);
             }
+            count++;
         }
-        if (writeArray.length() > 0) {
-            if (writeBuffer.capacity() >= writeArray.length()) {
-                writeBuffer.clear();
-                writeBuffer.put(writeArray.content(), 0, writeArray.length());
-                writeBuffer.flip();
-                channel.write(writeBuffer, writeHandler);
-            } else {
-                channel.write(writeArray, writeHandler);
+        if (writeArray.length() < 1) {
+            return false;
+        }
+        if (writeBuffer.capacity() >= writeArray.length()) {
+            writeBuffer.clear();
+            writeBuffer.put(writeArray.content(), 0, writeArray.length());
+            writeBuffer.flip();
+            channel.write(writeBuffer, batchWriteHandler);
+        } else {
+            channel.write(writeArray, batchWriteHandler);
+        }
+        return true;
+    }
+
+    private void writeRequest(ClientFuture respFuture) {
+        ClientRequest request = respFuture.request;
+        request.writeTo(this, writeArray);
+        if (request.isCompleted()) {
+            doneRequestCounter.increment();
+        } else { // 还剩半包没发送完
+            pauseWriting.set(true);
+            currHalfWriteFuture = respFuture;
+        }
+    }
+
+    // 还可写出的请求数
+    private int pipelineRoom() {
+        ClientPipelineLimiter limiter = pipelineLimiter;
+        return limiter == null ? Integer.MAX_VALUE : limiter.getLimit() - pipelineInflight.get();
+    }
+
+    // 收到响应后采样RTT, 在途请求数减少后继续发送被限制的请求, 只会在ReadIOThread中调用
+    void pipelineComplete(ClientFuture respFuture) {
+        ClientPipelineLimiter limiter = pipelineLimiter;
+        if (limiter == null || !respFuture.inflight) {
+            return;
+        }
+        limiter.sample(
+                System.nanoTime() - respFuture.writeNanos,
+                respFuture.writeNanos - respFuture.offerNanos,
+                pipelineInflight.getAndDecrement());
+        respFuture.inflight = false;
+        if (writeStack.get() != null || writeHead != null) {
+            flushWrite(false);
+        }
+    }
+
+    // 栈顶是最后入栈的请求, 反转成入栈顺序
+    private static ClientFuture reverse(ClientFuture top) {
+        ClientFuture prev = null;
+        ClientFuture node = top;
+        while (node != null) {
+            ClientFuture next = node.writeNext;
+            node.writeNext = prev;
+            prev = node;
+            node = next;
+        }
+        return prev;
+    }
+
+    // 连接已关闭, 未发送的请求直接失败
+    private void failPendingWrites() {
+        ClientFuture node = writeHead;
+        writeHead = null;
+        ClientFuture top = writeStack.getAndSet(null);
+        WorkThread thread = channel.getReadIOThread();
+        Throwable e = new ClosedChannelException();
+        for (ClientFuture list : new ClientFuture[] {node, top}) {
+            while (list != null) {
+                ClientFuture future = list;
+                list = list.writeNext;
+                future.writeNext = null;
+                future.cancelTimeout();
+                thread.runWork(() -> future.completeExceptionally(e));
             }
         }
     }
@@ -198,17 +382,15 @@ public abstract class ClientConnection<R extends ClientRequest, P extends Client
                 this.currHalfWriteFuture = null;
                 if (halfException == null) {
                     offerFirstRespFuture(respFuture);
-                    sendRequestToChannel(respFuture);
+                    this.resendHalfWriteFuture = respFuture;
                 } else {
                     codec.responseComplete(true, respFuture, null, halfException);
                 }
             }
-            while (!pauseWriting.get() && (respFuture = pauseRequests.poll()) != null) {
-                sendRequestToChannel(respFuture);
-            }
         } finally {
             channel.unlockWrite();
         }
+        flushWrite(false);
     }
 
     CompletableFuture<P> writeVirtualRequest(R request) {
@@ -230,6 +412,19 @@ public abstract class ClientConnection<R extends ClientRequest, P extends Client
 
     protected void preComplete(P resp, R req, Throwable exc) {}
 
+    // 记录地址的健康统计, exc为null表示成功
+    void recordHealth(ClientRequest request, Throwable exc) {
+        ClientCircuitBreaker breaker = client.circuitBreaker;
+        if (breaker == null || connEntry == null) {
+            return;
+        }
+        if (exc == null) {
+            breaker.recordSuccess(connEntry.address, System.currentTimeMillis() - request.getCreateTime());
+        } else if (ClientCircuitBreaker.isTransportFailure(exc)) {
+            breaker.recordFailure(connEntry.address);
+        }
+    }
+
     @Override // AsyncConnection.beforeCloseListener
     public void accept(AsyncConnection t) {
         respWaitingCounter.reset();
@@ -263,6 +458,9 @@ public abstract class ClientConnection<R extends ClientRequest, P extends Client
                     thread.runWork(() -> future.completeExceptionally(e));
                 });
             }
+            if (writing.compareAndSet(false, true)) { // 没有线程在写时由此处清理未发送的请求
+                writeBatches();
+            }
         }
     }
 
@@ -353,12 +551,46 @@ public abstract class ClientConnection<R extends ClientRequest, P extends Client
 
     protected ClientConnection setMaxPipelines(int maxPipelines) {
         this.maxPipelines = maxPipelines;
+        if (pipelineLimiter != null) {
+            pipelineLimiter.setMaxLimit(maxPipelines);
+        }
         return this;
     }
 
     protected ClientConnection resetMaxPipelines() {
-        this.maxPipelines = client.maxPipelines;
-        return this;
+        return setMaxPipelines(client.maxPipelines);
+    }
+
+    /**
+     * 当前允许的在途请求数上限, 非自适应模式返回maxPipelines
+     *
+     * @return 上限
+     */
+    public int getPipelineLimit() {
+        return pipelineLimiter == null ? maxPipelines : pipelineLimiter.getLimit();
+    }
+
+    /**
+     * 已写出未响应的请求数, 只在自适应模式下统计
+     *
+     * @return 在途请求数
+     */
+    public int getPipelineInflight() {
+        return pipelineInflight.get();
+    }
+
+    /**
+     * 请求在待发送队列中等待的平均微秒数, 只在自适应模式下统计
+     *
+     * @return 微秒数
+     */
+    public long getPipelineQueueDelayMicros() {
+        return pipelineLimiter == null ? 0 : pipelineLimiter.getQueueDelayMicros();
+    }
+
+    @Nullable
+    public ClientPipelineLimiter getPipelineLimiter() {
+        return pipelineLimiter;
     }
 
     public int runningCount() {
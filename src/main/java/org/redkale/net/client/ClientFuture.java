@@ -30,6 +30,17 @@ public class ClientFuture<R extends ClientRequest, T> extends CompletableFuture<
 
     private ScheduledFuture timeout;
 
+    // ClientConnection待发送队列中的下一个节点
+    ClientFuture writeNext;
+
+    // 自适应并行数时记录入队和写出的纳秒时间
+    long offerNanos;
+
+    long writeNanos;
+
+    // 自适应并行数时是否已计入在途请求数
+    boolean inflight;
+
     private ClientFuture() {
         super();
         this.conn = null;
@@ -88,6 +99,9 @@ public class ClientFuture<R extends ClientRequest, T> extends CompletableFuture<
             conn.removeRespFuture(request.getRequestid(), this);
         }
         TimeoutException ex = new TimeoutException("client-request: " + request);
+        if (request != null) {
+            conn.recordHealth(request, ex);
+        }
         WorkThread workThread = null;
         if (request != null) {
             workThread = request.workThread;
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.net.client;
+
+/**
+ * 单个ClientConnection的自适应并行数(在途请求数)上限, 算法参考Gradient2 <br>
+ * 每个统计窗口取平均RTT作为短期RTT, 与长期RTT的指数平均比较: 短期RTT变大说明服务端开始排队, 按比例降低上限;
+ * 否则在当前上限基础上增加sqrt(limit)的排队余量 <br>
+ * 只在连接的读线程中采样, 上限值可被任意线程读取
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ */
+public class ClientPipelineLimiter {
+
+    // 长期RTT指数平均的窗口数
+    private static final int LONG_WINDOW = 600;
+
+    // 短期RTT可超过长期RTT的倍数
+    private static final double RTT_TOLERANCE = 1.5;
+
+    // 新上限的平滑系数
+    private static final double SMOOTHING = 0.2;
+
+    // 统计窗口的最少样本数
+    private static final int MIN_WINDOW_SAMPLES = 8;
+
+    private final int minLimit;
+
+    private volatile int maxLimit;
+
+    private volatile int limit;
+
+    private double estimatedLimit;
+
+    // 长期RTT的纳秒数
+    private volatile long longRttNanos;
+
+    // 最近一个窗口平均RTT的纳秒数
+    private volatile long rttNanos;
+
+    // 请求在连接待发送队列中等待时间的指数平均纳秒数
+    private volatile long queueDelayNanos;
+
+    private long windowRttSum;
+
+    private int windowSamples;
+
+    private int windowMaxInflight;
+
+    public ClientPipelineLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("minLimit must bigger 0 and maxLimit must not less than minLimit");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * 记录一个请求的响应, 只会在连接的读线程中调用
+     *
+     * @param rttNanos 请求写出到收到响应的纳秒数
+     * @param queueNanos 请求在发送队列中等待的纳秒数
+     * @param inflight 收到响应时的在途请求数(含本请求)
+     */
+    public void sample(long rttNanos, long queueNanos, int inflight) {
+        long qd = queueDelayNanos;
+        queueDelayNanos = qd == 0 ? queueNanos : (qd * 7 + queueNanos) / 8;
+        windowRttSum += Math.max(1, rttNanos);
+        windowMaxInflight = Math.max(windowMaxInflight, inflight);
+        if (++windowSamples < Math.max(MIN_WINDOW_SAMPLES, limit)) {
+            return;
+        }
+        long shortRtt = windowRttSum / windowSamples;
+        int maxInflight = windowMaxInflight;
+        windowRttSum = 0;
+        windowSamples = 0;
+        windowMaxInflight = 0;
+        update(shortRtt, maxInflight);
+    }
+
+    private void update(long shortRtt, int maxInflight) {
+        this.rttNanos = shortRtt;
+        double longRtt = longRttNanos;
+        if (longRtt <= 0) {
+            longRtt = shortRtt;
+        } else {
+            longRtt += (shortRtt - longRtt) * 2 / (LONG_WINDOW + 1);
+            if (longRtt / shortRtt > 2) { // 负载下降后长期RTT偏大, 加速回落
+                longRtt *= 0.95;
+            }
+        }
+        this.longRttNanos = (long) longRtt;
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        if (maxInflight * 2 < estimatedLimit && newLimit > estimatedLimit) { // 请求量不足上限的一半时不再放大
+            newLimit = estimatedLimit;
+        }
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        if (limit > this.maxLimit) {
+            this.limit = this.maxLimit;
+        }
+    }
+
+    public long getRttMicros() {
+        return rttNanos / 1000;
+    }
+
+    public long getLongRttMicros() {
+        return longRttNanos / 1000;
+    }
+
+    public long getQueueDelayMicros() {
+        return queueDelayNanos / 1000;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{limit=" + limit + ", maxLimit=" + maxLimit + ", rttMicros="
+                + getRttMicros() + ", longRttMicros=" + getLongRttMicros() + ", queueDelayMicros="
+                + getQueueDelayMicros() + "}";
+    }
+}
@@ -56,6 +56,11 @@ public abstract class ClientRequest {
         return false;
     }
 
+    // 一致性哈希负载均衡使用的key, 返回null表示不按key选择地址
+    protected Object balanceKey() {
+        return null;
+    }
+
     public long getCreateTime() {
         return createTime;
     }
@@ -4,68 +4,38 @@
 
 package org.redkale.net.client;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
- * 输出队列线程
+ * 输出队列线程 <br>
+ * ClientConnection已内置无锁的合并写队列, 本类只转发请求, 不再启动独立的写线程
  *
  * <p>详情见: https://redkale.org
  *
  * @author zhangjx
  * @since 2.8.0
+ * @deprecated 直接使用ClientConnection.writeChannel
  */
+@Deprecated(since = "2.8.0")
 public class ClientWriteThread extends Thread {
 
-    protected final LinkedBlockingQueue<ClientFuture> writeQueue = new LinkedBlockingQueue();
-
     protected ClientWriteThread() {
         // do nothing
     }
 
     public void offer(ClientFuture respFuture) {
-        this.writeQueue.add(Objects.requireNonNull(respFuture));
+        Objects.requireNonNull(respFuture);
+        if (respFuture != ClientFuture.NIL) {
+            respFuture.conn.offerWrite(respFuture);
+        }
     }
 
     @Override
     public void run() {
-        final List<ClientFuture> list = new ArrayList<>();
-        while (true) {
-            try {
-                ClientFuture respFuture = this.writeQueue.take();
-                if (respFuture == ClientFuture.NIL) {
-                    return;
-                }
-                boolean over = false;
-                list.clear();
-                list.add(respFuture);
-                ClientConnection conn = respFuture.conn;
-                int max = conn.getMaxPipelines();
-                while (--max > 0 && (respFuture = this.writeQueue.poll()) != null) {
-                    if (respFuture == ClientFuture.NIL) {
-                        over = true;
-                        break;
-                    } else if (respFuture.conn == conn) {
-                        list.add(respFuture);
-                    }
-                }
-                conn.sendRequestToChannel(ClientFuture.array(list));
-                list.clear();
-                if (over) {
-                    return;
-                }
-            } catch (InterruptedException ie) {
-                break;
-            } catch (Throwable e) {
-                // do nothing
-            }
-        }
+        // do nothing
     }
 
     public void close() {
-        this.writeQueue.add(ClientFuture.NIL);
-        this.interrupt();
+        // do nothing
     }
 }
@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.net.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiConsumer;
+import org.redkale.util.ByteArray;
+
+/**
+ * HTTP/2的HPACK头部压缩(RFC 7541) <br>
+ * 解码支持静态表、动态表和Huffman编码; 编码只输出不加入动态表的字面量, 因此无需与对端同步动态表。 <br>
+ * 头名和头值均按ISO-8859-1与字节一一对应, 非ASCII的原始字节不会丢失。 <br>
+ * 一个HTTP/2连接对应一个实例, 只会在读IOThread中运行。
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ */
+class Http2Hpack {
+
+    // 默认的SETTINGS_HEADER_TABLE_SIZE
+    static final int DEFAULT_TABLE_SIZE = 4096;
+
+    // 静态表, 索引从1开始
+    static final String[][] STATIC_TABLE = {
+        {":authority", ""},
+        {":method", "GET"},
+        {":method", "POST"},
+        {":path", "/"},
+        {":path", "/index.html"},
+        {":scheme", "http"},
+        {":scheme", "https"},
+        {":status", "200"},
+        {":status", "204"},
+        {":status", "206"},
+        {":status", "304"},
+        {":status", "400"},
+        {":status", "404"},
+        {":status", "500"},
+        {"accept-charset", ""},
+        {"accept-encoding", "gzip, deflate"},
+        {"accept-language", ""},
+        {"accept-ranges", ""},
+        {"accept", ""},
+        {"access-control-allow-origin", ""},
+        {"age", ""},
+        {"allow", ""},
+        {"authorization", ""},
+        {"cache-control", ""},
+        {"content-disposition", ""},
+        {"content-encoding", ""},
+        {"content-language", ""},
+        {"content-length", ""},
+        {"content-location", ""},
+        {"content-range", ""},
+        {"content-type", ""},
+        {"cookie", ""},
+        {"date", ""},
+        {"etag", ""},
+        {"expect", ""},
+        {"expires", ""},
+        {"from", ""},
+        {"host", ""},
+        {"if-match", ""},
+        {"if-modified-since", ""},
+        {"if-none-match", ""},
+        {"if-range", ""},
+        {"if-unmodified-since", ""},
+        {"last-modified", ""},
+        {"link", ""},
+        {"location", ""},
+        {"max-forwards", ""},
+        {"proxy-authenticate", ""},
+        {"proxy-authorization", ""},
+        {"range", ""},
+        {"referer", ""},
+        {"refresh", ""},
+        {"retry-after", ""},
+        {"server", ""},
+        {"set-cookie", ""},
+        {"strict-transport-security", ""},
+        {"transfer-encoding", ""},
+        {"user-agent", ""},
+        {"vary", ""},
+        {"via", ""},
+        {"www-authenticate", ""}
+    };
+
+    // 头名在静态表中的首个索引, 编码时用于省略头名
+    private static final Map<String, Integer> STATIC_NAME_INDEXES = new HashMap<>();
+
+    // Huffman编码表(RFC 7541 附录B), 下标为字符, 256为EOS
+    private static final int[] HUFFMAN_CODES = {
+        0x1ff8, 0x7fffd8, 0xfffffe2, 0xfffffe3, 0xfffffe4, 0xfffffe5, 0xfffffe6, 0xfffffe7,
+        0xfffffe8, 0xffffea, 0x3ffffffc, 0xfffffe9, 0xfffffea, 0x3ffffffd, 0xfffffeb, 0xfffffec,
+        0xfffffed, 0xfffffee, 0xfffffef, 0xffffff0, 0xffffff1, 0xffffff2, 0x3ffffffe, 0xffffff3,
+        0xffffff4, 0xffffff5, 0xffffff6, 0xffffff7, 0xffffff8, 0xffffff9, 0xffffffa, 0xffffffb,
+        0x14, 0x3f8, 0x3f9, 0xffa, 0x1ff9, 0x15, 0xf8, 0x7fa,
+        0x3fa, 0x3fb, 0xf9, 0x7fb, 0xfa, 0x16, 0x17, 0x18,
+        0x0, 0x1, 0x2, 0x19, 0x1a, 0x1b, 0x1c, 0x1d,
+        0x1e, 0x1f, 0x5c, 0xfb, 0x7ffc, 0x20, 0xffb, 0x3fc,
+        0x1ffa, 0x21, 0x5d, 0x5e, 0x5f, 0x60, 0x61, 0x62,
+        0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69, 0x6a,
+        0x6b, 0x6c, 0x6d, 0x6e, 0x6f, 0x70, 0x71, 0x72,
+        0xfc, 0x73, 0xfd, 0x1ffb, 0x7fff0, 0x1ffc, 0x3ffc, 0x22,
+        0x7ffd, 0x3, 0x23, 0x4, 0x24, 0x5, 0x25, 0x26,
+        0x27, 0x6, 0x74, 0x75, 0x28, 0x29, 0x2a, 0x7,
+        0x2b, 0x76, 0x2c, 0x8, 0x9, 0x2d, 0x77, 0x78,
+        0x79, 0x7a, 0x7b, 0x7ffe, 0x7fc, 0x3ffd, 0x1ffd, 0xffffffc,
+        0xfffe6, 0x3fffd2, 0xfffe7, 0xfffe8, 0x3fffd3, 0x3fffd4, 0x3fffd5, 0x7fffd9,
+        0x3fffd6, 0x7fffda, 0x7fffdb, 0x7fffdc, 0x7fffdd, 0x7fffde, 0xffffeb, 0x7fffdf,
+        0xffffec, 0xffffed, 0x3fffd7, 0x7fffe0, 0xffffee, 0x7fffe1, 0x7fffe2, 0x7fffe3,
+        0x7fffe4, 0x1fffdc, 0x3fffd8, 0x7fffe5, 0x3fffd9, 0x7fffe6, 0x7fffe7, 0xffffef,
+        0x3fffda, 0x1fffdd, 0xfffe9, 0x3fffdb, 0x3fffdc, 0x7fffe8, 0x7fffe9, 0x1fffde,
+        0x7fffea, 0x3fffdd, 0x3fffde, 0xfffff0, 0x1fffdf, 0x3fffdf, 0x7fffeb, 0x7fffec,
+        0x1fffe0, 0x1fffe1, 0x3fffe0, 0x1fffe2, 0x7fffed, 0x3fffe1, 0x7fffee, 0x7fffef,
+        0xfffea, 0x3fffe2, 0x3fffe3, 0x3fffe4, 0x7ffff0, 0x3fffe5, 0x3fffe6, 0x7ffff1,
+        0x3ffffe0, 0x3ffffe1, 0xfffeb, 0x7fff1, 0x3fffe7, 0x7ffff2, 0x3fffe8, 0x1ffffec,
+        0x3ffffe2, 0x3ffffe3, 0x3ffffe4, 0x7ffffde, 0x7ffffdf, 0x3ffffe5, 0xfffff1, 0x1ffffed,
+        0x7fff2, 0x1fffe3, 0x3ffffe6, 0x7ffffe0, 0x7ffffe1, 0x3ffffe7, 0x7ffffe2, 0xfffff2,
+        0x1fffe4, 0x1fffe5, 0x3ffffe8, 0x3ffffe9, 0xffffffd, 0x7ffffe3, 0x7ffffe4, 0x7ffffe5,
+        0xfffec, 0xfffff3, 0xfffed, 0x1fffe6, 0x3fffe9, 0x1fffe7, 0x1fffe8, 0x7ffff3,
+        0x3fffea, 0x3fffeb, 0x1ffffee, 0x1ffffef, 0xfffff4, 0xfffff5, 0x3ffffea, 0x7ffff4,
+        0x3ffffeb, 0x7ffffe6, 0x3ffffec, 0x3ffffed, 0x7ffffe7, 0x7ffffe8, 0x7ffffe9, 0x7ffffea,
+        0x7ffffeb, 0xffffffe, 0x7ffffec, 0x7ffffed, 0x7ffffee, 0x7ffffef, 0x7fffff0, 0x3ffffee,
+        0x3fffffff,    };
+
+    // Huffman编码的位数
+    private static final byte[] HUFFMAN_LENGTHS = {
+        13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,
+        28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+        6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6,
+        5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+        13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+        7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+        15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5,
+        6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+        20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+        24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+        22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,
+        21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+        26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,
+        19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+        20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+        26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26,
+        30,    };
+
+    // Huffman解码树, 节点n的两个子节点位于[2n]和[2n+1], 负数-(c+1)表示叶子节点字符c
+    private static final int[] HUFFMAN_TREE = new int[1024];
+
+    static {
+        for (int i = STATIC_TABLE.length; i > 0; i--) {
+            STATIC_NAME_INDEXES.put(STATIC_TABLE[i - 1][0], i);
+        }
+        int count = 1;
+        for (int c = 0; c < HUFFMAN_CODES.length; c++) {
+            int code = HUFFMAN_CODES[c];
+            int node = 0;
+            for (int i = HUFFMAN_LENGTHS[c] - 1; i > 0; i--) {
+                int pos = node * 2 + ((code >>> i) & 1);
+                if (HUFFMAN_TREE[pos] == 0) {
+                    HUFFMAN_TREE[pos] = count++;
+                }
+                node = HUFFMAN_TREE[pos];
+            }
+            HUFFMAN_TREE[node * 2 + (code & 1)] = -(c + 1);
+        }
+    }
+
+    // 动态表, 最新的条目在末尾
+    private final ArrayList<String[]> dynamicTable = new ArrayList<>();
+
+    // 动态表当前占用大小
+    private int dynamicSize;
+
+    // 对端通过动态表大小更新指令设定的上限, 不可超过DEFAULT_TABLE_SIZE
+    private int maxDynamicSize = DEFAULT_TABLE_SIZE;
+
+    private byte[] bytes;
+
+    private int pos;
+
+    private int limit;
+
+    /**
+     * 解码一个完整的头部块(HEADERS + CONTINUATION)
+     *
+     * @param bs 头部块
+     * @param offset 偏移量
+     * @param length 长度
+     * @param consumer 头名与头值的消费器
+     * @throws HttpException 头部块不合法(COMPRESSION_ERROR)
+     */
+    public void decode(byte[] bs, int offset, int length, BiConsumer<String, String> consumer) {
+        this.bytes = bs;
+        this.pos = offset;
+        this.limit = offset + length;
+        try {
+            boolean fieldRead = false;
+            while (pos < limit) {
+                int b = bs[pos] & 0xff;
+                if ((b & 0x80) != 0) { // 索引的头
+                    String[] entry = entry(readInt(7));
+                    consumer.accept(entry[0], entry[1]);
+                    fieldRead = true;
+                } else if ((b & 0x40) != 0) { // 字面量, 加入动态表
+                    int index = readInt(6);
+                    String name = index == 0 ? readString() : entry(index)[0];
+                    String value = readString();
+                    addEntry(name, value);
+                    consumer.accept(name, value);
+                    fieldRead = true;
+                } else if ((b & 0x20) != 0) { // 动态表大小更新, 只能出现在头部块的开头
+                    int size = readInt(5);
+                    if (fieldRead || size > DEFAULT_TABLE_SIZE) {
+                        throw new HttpException("hpack illegal dynamic table size update (" + size + ")");
+                    }
+                    this.maxDynamicSize = size;
+                    evict(0);
+                } else { // 不加入动态表的字面量(0000xxxx)和永不索引的字面量(0001xxxx)
+                    int index = readInt(4);
+                    String name = index == 0 ? readString() : entry(index)[0];
+                    consumer.accept(name, readString());
+                    fieldRead = true;
+                }
+            }
+        } finally {
+            this.bytes = null;
+        }
+    }
+
+    private String[] entry(int index) {
+        if (index < 1) {
+            throw new HttpException("hpack illegal index (" + index + ")");
+        }
+        if (index <= STATIC_TABLE.length) {
+            return STATIC_TABLE[index - 1];
+        }
+        int dynIndex = index - STATIC_TABLE.length;
+        if (dynIndex > dynamicTable.size()) {
+            throw new HttpException("hpack illegal index (" + index + ")");
+        }
+        return dynamicTable.get(dynamicTable.size() - dynIndex);
+    }
+
+    private void addEntry(String name, String value) {
+        int size = name.length() + value.length() + 32;
+        evict(size);
+        if (size <= maxDynamicSize) {
+            dynamicTable.add(new String[] {name, value});
+            dynamicSize += size;
+        }
+    }
+
+    // 淘汰最旧的条目, 直到可以容纳size大小的新条目
+    private void evict(int size) {
+        while (!dynamicTable.isEmpty() && dynamicSize + size > maxDynamicSize) {
+            String[] old = dynamicTable.remove(0);
+            dynamicSize -= old[0].length() + old[1].length() + 32;
+        }
+    }
+
+    private int readInt(int prefixBits) {
+        int prefixMax = (1 << prefixBits) - 1;
+        int value = bytes[pos++] & prefixMax;
+        if (value < prefixMax) {
+            return value;
+        }
+        for (int shift = 0; shift <= 21; shift += 7) {
+            if (pos >= limit) {
+                break;
+            }
+            int b = bytes[pos++] & 0xff;
+            value += (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new HttpException("hpack illegal integer");
+    }
+
+    private String readString() {
+        if (pos >= limit) {
+            throw new HttpException("hpack string truncated");
+        }
+        boolean huffman = (bytes[pos] & 0x80) != 0;
+        int len = readInt(7);
+        if (len > limit - pos) {
+            throw new HttpException("hpack string truncated");
+        }
+        String rs = huffman
+                ? huffmanDecode(bytes, pos, len)
+                : new String(bytes, pos, len, StandardCharsets.ISO_8859_1);
+        pos += len;
+        return rs;
+    }
+
+    static String huffmanDecode(byte[] bs, int offset, int length) {
+        // 最短的编码为5位
+        byte[] out = new byte[length * 8 / 5 + 1];
+        int count = 0;
+        int node = 0;
+        int depth = 0;
+        boolean ones = true;
+        for (int i = offset; i < offset + length; i++) {
+            int b = bs[i];
+            for (int j = 7; j >= 0; j--) {
+                int bit = (b >>> j) & 1;
+                int next = HUFFMAN_TREE[node * 2 + bit];
+                if (next < 0) {
+                    if (next == -257) {
+                        throw new HttpException("hpack huffman contains EOS");
+                    }
+                    out[count++] = (byte) (-next - 1);
+                    node = 0;
+                    depth = 0;
+                    ones = true;
+                } else {
+                    node = next;
+                    depth++;
+                    ones &= bit == 1;
+                }
+            }
+        }
+        // 末尾的填充必须是不超过7位的EOS前缀(全1)
+        if (depth > 7 || !ones) {
+            throw new HttpException("hpack huffman illegal padding");
+        }
+        return new String(out, 0, count, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 编码:status伪头
+     *
+     * @param out 输出
+     * @param status 状态码
+     */
+    public static void encodeStatus(ByteArray out, int status) {
+        for (int i = 8; i <= 14; i++) {
+            if (STATIC_TABLE[i - 1][1].equals(String.valueOf(status))) {
+                out.put((byte) (0x80 | i));
+                return;
+            }
+        }
+        writeInt(out, 0x00, 4, 8);
+        writeString(out, String.valueOf(status));
+    }
+
+    /**
+     * 以不加入动态表的字面量编码头, 头名须为小写
+     *
+     * @param out 输出
+     * @param name 头名
+     * @param value 头值
+     */
+    public static void encodeHeader(ByteArray out, String name, String value) {
+        Integer index = STATIC_NAME_INDEXES.get(name);
+        if (index == null) {
+            out.put((byte) 0);
+            writeString(out, name);
+        } else {
+            writeInt(out, 0x00, 4, index);
+        }
+        writeString(out, value);
+    }
+
+    private static void writeString(ByteArray out, String value) {
+        writeInt(out, 0x00, 7, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            out.put((byte) value.charAt(i));
+        }
+    }
+
+    private static void writeInt(ByteArray out, int mask, int prefixBits, int value) {
+        int prefixMax = (1 << prefixBits) - 1;
+        if (value < prefixMax) {
+            out.put((byte) (mask | value));
+            return;
+        }
+        out.put((byte) (mask | prefixMax));
+        int v = value - prefixMax;
+        while (v >= 0x80) {
+            out.put((byte) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+}
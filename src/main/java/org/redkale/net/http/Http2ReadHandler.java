@@ -0,0 +1,1155 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.net.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.*;
+import java.util.logging.*;
+import org.redkale.net.*;
+import org.redkale.util.ByteArray;
+
+/**
+ * HTTP/2连接(RFC 7540)的帧编解码, 支持h2c prior-knowledge和ALPN h2 <br>
+ * 每个stream的请求转换成HTTP/1.1格式交由HttpRequest解析, 并绑定一个Http2StreamConnection作为HttpResponse的输出通道,
+ * 因此Servlet、Filter、Rest等无需任何改动即可复用。 <br>
+ * 不支持服务端推送(PUSH_PROMISE)与优先级调度, PRIORITY帧被忽略。
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ */
+class Http2ReadHandler implements CompletionHandler<Integer, ByteBuffer> {
+
+    static final int FRAME_DATA = 0x0;
+
+    static final int FRAME_HEADERS = 0x1;
+
+    static final int FRAME_PRIORITY = 0x2;
+
+    static final int FRAME_RST_STREAM = 0x3;
+
+    static final int FRAME_SETTINGS = 0x4;
+
+    static final int FRAME_PUSH_PROMISE = 0x5;
+
+    static final int FRAME_PING = 0x6;
+
+    static final int FRAME_GOAWAY = 0x7;
+
+    static final int FRAME_WINDOW_UPDATE = 0x8;
+
+    static final int FRAME_CONTINUATION = 0x9;
+
+    static final int FLAG_END_STREAM = 0x1;
+
+    static final int FLAG_ACK = 0x1;
+
+    static final int FLAG_END_HEADERS = 0x4;
+
+    static final int FLAG_PADDED = 0x8;
+
+    static final int FLAG_PRIORITY = 0x20;
+
+    static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+
+    static final int SETTINGS_ENABLE_PUSH = 0x2;
+
+    static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+
+    static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+
+    static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+
+    static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+    static final int NO_ERROR = 0x0;
+
+    static final int PROTOCOL_ERROR = 0x1;
+
+    static final int INTERNAL_ERROR = 0x2;
+
+    static final int FLOW_CONTROL_ERROR = 0x3;
+
+    static final int STREAM_CLOSED = 0x5;
+
+    static final int FRAME_SIZE_ERROR = 0x6;
+
+    static final int REFUSED_STREAM = 0x7;
+
+    static final int CANCEL = 0x8;
+
+    static final int COMPRESSION_ERROR = 0x9;
+
+    static final int ENHANCE_YOUR_CALM = 0xb;
+
+    // 请求行"PRI * HTTP/2.0\r\n"之后的连接前言
+    static final byte[] PREFACE_TAIL = "\r\nSM\r\n\r\n".getBytes();
+
+    static final int DEFAULT_WINDOW_SIZE = 65535;
+
+    // 本端SETTINGS_MAX_FRAME_SIZE, 使用协议默认值
+    static final int MAX_FRAME_SIZE = 16384;
+
+    // 本端SETTINGS_MAX_CONCURRENT_STREAMS
+    static final int MAX_CONCURRENT_STREAMS = 100;
+
+    protected final HttpContext context;
+
+    protected final AsyncConnection channel;
+
+    protected final Supplier<Response> responseSupplier;
+
+    protected final Consumer<Response> responseConsumer;
+
+    protected final Logger logger;
+
+    // ------------------------ 以下只在读IOThread中访问 ------------------------
+    private final Http2Hpack hpack = new Http2Hpack();
+
+    // 未处理的半帧数据
+    private final ByteArray readBytes = new ByteArray();
+
+    // 尚未校验的连接前言长度
+    private int prefaceRemain = PREFACE_TAIL.length;
+
+    private boolean settingsReceived;
+
+    // 等待CONTINUATION的头部块
+    private final ByteArray headerBlock = new ByteArray();
+
+    private int headerStreamId;
+
+    private boolean headerEndStream;
+
+    // ------------------------ 以下需在lock内访问 ------------------------
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<Integer, Http2StreamConnection> streams = new HashMap<>();
+
+    private int lastStreamId;
+
+    // 对端的SETTINGS_INITIAL_WINDOW_SIZE
+    private int peerInitialWindowSize = DEFAULT_WINDOW_SIZE;
+
+    // 对端的SETTINGS_MAX_FRAME_SIZE
+    private int peerMaxFrameSize = MAX_FRAME_SIZE;
+
+    // 连接级发送窗口
+    private int sendWindow = DEFAULT_WINDOW_SIZE;
+
+    // 待写入的帧
+    private ByteArray writeBytes = new ByteArray();
+
+    // 正在写入的帧
+    private ByteArray writingBytes = new ByteArray();
+
+    private boolean writing;
+
+    // 已收到对端的GOAWAY, 所有stream结束后关闭连接
+    private boolean remoteGoaway;
+
+    // 已发送GOAWAY, 写完后关闭连接
+    private boolean closing;
+
+    private boolean closed;
+
+    private final CompletionHandler<Integer, Void> writeHandler = new CompletionHandler<Integer, Void>() {
+
+        @Override
+        public void completed(Integer result, Void attachment) {
+            boolean dispose;
+            lock.lock();
+            try {
+                writing = false;
+                writingBytes.clear();
+                dispose = closing && writeBytes.isEmpty();
+            } finally {
+                lock.unlock();
+            }
+            if (dispose) {
+                closeAll();
+            } else {
+                flush();
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            lock.lock();
+            try {
+                writing = false;
+            } finally {
+                lock.unlock();
+            }
+            closeAll();
+        }
+    };
+
+    public Http2ReadHandler(
+            HttpContext context,
+            AsyncConnection channel,
+            Supplier<Response> responseSupplier,
+            Consumer<Response> responseConsumer) {
+        this.context = context;
+        this.channel = channel;
+        this.responseSupplier = responseSupplier;
+        this.responseConsumer = responseConsumer;
+        this.logger = context.getLogger();
+    }
+
+    /**
+     * 发送服务端前言并开始读取帧
+     *
+     * @param data 连接前言请求行之后已读取的数据, 可能为null
+     */
+    public void start(byte[] data) {
+        lock.lock();
+        try {
+            putFrame(12, FRAME_SETTINGS, 0, 0);
+            writeBytes.putUnsignedShort(SETTINGS_MAX_CONCURRENT_STREAMS).putInt(MAX_CONCURRENT_STREAMS);
+            writeBytes.putUnsignedShort(SETTINGS_MAX_HEADER_LIST_SIZE).putInt(context.getMaxHeader());
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        if (data != null) {
+            readBytes.put(data);
+        }
+        if (channel.inCurrReadThread()) {
+            startRead();
+        } else {
+            channel.executeRead(this::startRead);
+        }
+    }
+
+    private void startRead() {
+        if (readBytes.isEmpty() || decode()) {
+            channel.read(this);
+        }
+    }
+
+    @Override
+    public void completed(Integer count, ByteBuffer buffer) {
+        if (count < 1) {
+            channel.offerReadBuffer(buffer);
+            closeAll();
+            return;
+        }
+        buffer.flip();
+        readBytes.put(buffer);
+        channel.offerReadBuffer(buffer);
+        if (decode()) {
+            channel.read(this);
+        }
+    }
+
+    @Override
+    public void failed(Throwable exc, ByteBuffer buffer) {
+        if (buffer != null) {
+            channel.offerReadBuffer(buffer);
+        }
+        if (exc != null && logger.isLoggable(Level.FINEST)) {
+            logger.log(Level.FINEST, "Http2 read channel erroneous, force to close channel ", exc);
+        }
+        closeAll();
+    }
+
+    // 解析readBytes中完整的帧, 返回false表示连接已关闭或即将关闭
+    private boolean decode() {
+        byte[] bs = readBytes.content();
+        int length = readBytes.length();
+        int offset = 0;
+        if (prefaceRemain > 0) {
+            int start = PREFACE_TAIL.length - prefaceRemain;
+            int n = Math.min(prefaceRemain, length);
+            for (int i = 0; i < n; i++) {
+                if (bs[i] != PREFACE_TAIL[start + i]) {
+                    return connectionError(PROTOCOL_ERROR, "illegal connection preface");
+                }
+            }
+            prefaceRemain -= n;
+            offset = n;
+        }
+        while (length - offset >= 9) {
+            int frameLength = ((bs[offset] & 0xff) << 16) | ((bs[offset + 1] & 0xff) << 8) | (bs[offset + 2] & 0xff);
+            if (frameLength > MAX_FRAME_SIZE) {
+                return connectionError(FRAME_SIZE_ERROR, "frame length (" + frameLength + ") too large");
+            }
+            if (length - offset - 9 < frameLength) {
+                break;
+            }
+            int type = bs[offset + 3] & 0xff;
+            int flags = bs[offset + 4] & 0xff;
+            int streamId = ((bs[offset + 5] & 0x7f) << 24)
+                    | ((bs[offset + 6] & 0xff) << 16)
+                    | ((bs[offset + 7] & 0xff) << 8)
+                    | (bs[offset + 8] & 0xff);
+            if (!decodeFrame(type, flags, streamId, bs, offset + 9, frameLength)) {
+                return false;
+            }
+            offset += 9 + frameLength;
+        }
+        int remain = length - offset;
+        if (remain > 0 && offset > 0) {
+            System.arraycopy(bs, offset, bs, 0, remain);
+        }
+        readBytes.position(remain);
+        return true;
+    }
+
+    private boolean decodeFrame(int type, int flags, int streamId, byte[] bs, int offset, int length) {
+        if (!settingsReceived && type != FRAME_SETTINGS) {
+            return connectionError(PROTOCOL_ERROR, "first frame must be SETTINGS");
+        }
+        if (headerStreamId > 0 && (type != FRAME_CONTINUATION || streamId != headerStreamId)) {
+            return connectionError(PROTOCOL_ERROR, "expected CONTINUATION of stream " + headerStreamId);
+        }
+        switch (type) {
+            case FRAME_DATA:
+                return decodeData(flags, streamId, bs, offset, length);
+            case FRAME_HEADERS:
+                return decodeHeaders(flags, streamId, bs, offset, length);
+            case FRAME_CONTINUATION:
+                if (headerStreamId == 0) {
+                    return connectionError(PROTOCOL_ERROR, "unexpected CONTINUATION");
+                }
+                if (headerBlock.length() + length > context.getMaxHeader()) {
+                    return connectionError(
+                            ENHANCE_YOUR_CALM, "header block length must lower " + context.getMaxHeader());
+                }
+                headerBlock.put(bs, offset, length);
+                if ((flags & FLAG_END_HEADERS) != 0) {
+                    int id = headerStreamId;
+                    headerStreamId = 0;
+                    return onHeaderBlock(id, headerEndStream);
+                }
+                return true;
+            case FRAME_PRIORITY:
+                if (streamId == 0) {
+                    return connectionError(PROTOCOL_ERROR, "PRIORITY on stream 0");
+                }
+                return true;
+            case FRAME_RST_STREAM:
+                if (streamId == 0 || length != 4) {
+                    return connectionError(
+                            streamId == 0 ? PROTOCOL_ERROR : FRAME_SIZE_ERROR, "illegal RST_STREAM frame");
+                }
+                Http2StreamConnection resetStream;
+                lock.lock();
+                try {
+                    resetStream = streams.get(streamId);
+                } finally {
+                    lock.unlock();
+                }
+                if (resetStream != null) {
+                    resetStream(resetStream, -1);
+                }
+                return true;
+            case FRAME_SETTINGS:
+                return decodeSettings(flags, streamId, bs, offset, length);
+            case FRAME_PUSH_PROMISE:
+                return connectionError(PROTOCOL_ERROR, "client can not send PUSH_PROMISE");
+            case FRAME_PING:
+                if (streamId != 0 || length != 8) {
+                    return connectionError(streamId != 0 ? PROTOCOL_ERROR : FRAME_SIZE_ERROR, "illegal PING frame");
+                }
+                if ((flags & FLAG_ACK) == 0) {
+                    lock.lock();
+                    try {
+                        putFrame(8, FRAME_PING, FLAG_ACK, 0);
+                        writeBytes.put(bs, offset, 8);
+                    } finally {
+                        lock.unlock();
+                    }
+                    flush();
+                }
+                return true;
+            case FRAME_GOAWAY:
+                boolean idle;
+                lock.lock();
+                try {
+                    remoteGoaway = true;
+                    idle = streams.isEmpty();
+                } finally {
+                    lock.unlock();
+                }
+                if (idle) {
+                    closeAll();
+                    return false;
+                }
+                return true;
+            case FRAME_WINDOW_UPDATE:
+                return decodeWindowUpdate(streamId, bs, offset, length);
+            default: // 未知的帧类型必须忽略
+                return true;
+        }
+    }
+
+    private boolean decodeData(int flags, int streamId, byte[] bs, int offset, int length) {
+        if (streamId == 0) {
+            return connectionError(PROTOCOL_ERROR, "DATA on stream 0");
+        }
+        int start = offset;
+        int padLength = 0;
+        if ((flags & FLAG_PADDED) != 0) {
+            if (length < 1) {
+                return connectionError(FRAME_SIZE_ERROR, "illegal padded DATA frame");
+            }
+            padLength = bs[start++] & 0xff;
+        }
+        int dataLength = offset + length - start - padLength;
+        if (dataLength < 0) {
+            return connectionError(PROTOCOL_ERROR, "illegal DATA padding");
+        }
+        boolean endStream = (flags & FLAG_END_STREAM) != 0;
+        Http2StreamConnection stream;
+        lock.lock();
+        try {
+            if (streamId > lastStreamId) {
+                return connectionError(PROTOCOL_ERROR, "DATA on idle stream " + streamId);
+            }
+            stream = streams.get(streamId);
+            if (length > 0) { // 数据立即消费, 直接归还接收窗口
+                putWindowUpdate(0, length);
+                if (stream != null && !endStream && !stream.remoteEnded) {
+                    putWindowUpdate(streamId, length);
+                }
+            }
+            if (stream == null || stream.remoteEnded) {
+                putFrame(4, FRAME_RST_STREAM, 0, streamId);
+                writeBytes.putInt(STREAM_CLOSED);
+                stream = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        if (stream == null || stream.requestHead == null) {
+            return true;
+        }
+        stream.requestBody.put(bs, start, dataLength);
+        if (stream.requestBody.length() > context.getMaxBody()) {
+            logger.log(
+                    Level.WARNING,
+                    "http body.length must lower " + context.getMaxBody() + ", but " + stream.requestBody.length());
+            resetStream(stream, CANCEL);
+            return true;
+        }
+        if (endStream) {
+            stream.remoteEnded = true;
+            dispatch(stream);
+        }
+        return true;
+    }
+
+    private boolean decodeHeaders(int flags, int streamId, byte[] bs, int offset, int length) {
+        if (streamId == 0 || (streamId & 1) == 0) {
+            return connectionError(PROTOCOL_ERROR, "illegal HEADERS stream " + streamId);
+        }
+        int start = offset;
+        int padLength = 0;
+        if ((flags & FLAG_PADDED) != 0) {
+            if (length < 1) {
+                return connectionError(FRAME_SIZE_ERROR, "illegal padded HEADERS frame");
+            }
+            padLength = bs[start++] & 0xff;
+        }
+        if ((flags & FLAG_PRIORITY) != 0) { // 忽略优先级
+            start += 5;
+        }
+        int blockLength = offset + length - start - padLength;
+        if (blockLength < 0) {
+            return connectionError(PROTOCOL_ERROR, "illegal HEADERS padding");
+        }
+        if (blockLength > context.getMaxHeader()) {
+            return connectionError(ENHANCE_YOUR_CALM, "header block length must lower " + context.getMaxHeader());
+        }
+        headerBlock.clear();
+        headerBlock.put(bs, start, blockLength);
+        boolean endStream = (flags & FLAG_END_STREAM) != 0;
+        if ((flags & FLAG_END_HEADERS) == 0) {
+            headerStreamId = streamId;
+            headerEndStream = endStream;
+            return true;
+        }
+        return onHeaderBlock(streamId, endStream);
+    }
+
+    private boolean onHeaderBlock(int streamId, boolean endStream) {
+        Http2StreamConnection stream;
+        boolean refused = false;
+        boolean trailers = false;
+        lock.lock();
+        try {
+            stream = streams.get(streamId);
+            if (stream != null) {
+                trailers = true;
+            } else {
+                if (streamId <= lastStreamId) {
+                    return connectionError(STREAM_CLOSED, "HEADERS on closed stream " + streamId);
+                }
+                lastStreamId = streamId;
+                refused = closing || remoteGoaway || streams.size() >= MAX_CONCURRENT_STREAMS;
+                stream = new Http2StreamConnection(this, channel, streamId, peerInitialWindowSize);
+                if (!refused) {
+                    streams.put(streamId, stream);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (trailers) { // trailers, 无需转换成HTTP/1.1
+            try {
+                hpack.decode(headerBlock.content(), 0, headerBlock.length(), (name, value) -> {});
+            } catch (HttpException e) {
+                return connectionError(COMPRESSION_ERROR, e.getMessage());
+            }
+            if (!endStream || stream.remoteEnded) {
+                resetStream(stream, PROTOCOL_ERROR);
+            } else {
+                stream.remoteEnded = true;
+                dispatch(stream);
+            }
+            return true;
+        }
+        RequestFields fields = new RequestFields(context.getMaxHeader());
+        try {
+            // HPACK必须解码以保持动态表同步, 即使stream被拒绝或请求头不合法
+            hpack.decode(headerBlock.content(), 0, headerBlock.length(), fields);
+        } catch (HttpException e) {
+            return connectionError(COMPRESSION_ERROR, e.getMessage());
+        }
+        if (refused) {
+            lock.lock();
+            try {
+                putFrame(4, FRAME_RST_STREAM, 0, streamId);
+                writeBytes.putInt(REFUSED_STREAM);
+            } finally {
+                lock.unlock();
+            }
+            flush();
+            return true;
+        }
+        if (fields.error == null && (fields.method == null || fields.path == null)) {
+            fields.error = "missing :method or :path";
+        }
+        if (fields.error != null) { // 不合法的请求头不可转换成HTTP/1.1, 否则可注入额外的请求头或请求行
+            if (logger.isLoggable(Level.FINEST)) {
+                logger.log(Level.FINEST, "Http2 stream(" + streamId + ") malformed: " + fields.error);
+            }
+            resetStream(stream, PROTOCOL_ERROR);
+            return true;
+        }
+        ByteArray head = new ByteArray();
+        putLatin1(head, fields.method + " " + fields.path + " " + HttpRequest.HTTP_2_0 + "\r\n");
+        if (!fields.hasHost && fields.authority != null) {
+            putLatin1(head, "Host: " + fields.authority + "\r\n");
+        }
+        head.put(fields.lines.content(), 0, fields.lines.length());
+        if (fields.cookies.length() > 0) {
+            putLatin1(head, "Cookie: " + fields.cookies + "\r\n");
+        }
+        // 每个stream对应一个HttpResponse, 响应完成后回收而非等待下一个请求
+        putLatin1(head, "Connection: close\r\n");
+        stream.requestHead = head;
+        stream.headMethod = HttpRequest.METHOD_HEAD.equals(fields.method);
+        if (endStream) {
+            stream.remoteEnded = true;
+            dispatch(stream);
+        }
+        return true;
+    }
+
+    private boolean decodeSettings(int flags, int streamId, byte[] bs, int offset, int length) {
+        if (streamId != 0) {
+            return connectionError(PROTOCOL_ERROR, "SETTINGS on stream " + streamId);
+        }
+        if ((flags & FLAG_ACK) != 0) {
+            return length == 0 || connectionError(FRAME_SIZE_ERROR, "SETTINGS ack with payload");
+        }
+        if (length % 6 != 0) {
+            return connectionError(FRAME_SIZE_ERROR, "illegal SETTINGS length " + length);
+        }
+        settingsReceived = true;
+        List<Runnable> callbacks;
+        lock.lock();
+        try {
+            for (int i = offset; i < offset + length; i += 6) {
+                int id = ((bs[i] & 0xff) << 8) | (bs[i + 1] & 0xff);
+                long value = ((bs[i + 2] & 0xffL) << 24)
+                        | ((bs[i + 3] & 0xff) << 16)
+                        | ((bs[i + 4] & 0xff) << 8)
+                        | (bs[i + 5] & 0xff);
+                if (id == SETTINGS_ENABLE_PUSH && value > 1) {
+                    return connectionError(PROTOCOL_ERROR, "illegal SETTINGS_ENABLE_PUSH " + value);
+                } else if (id == SETTINGS_INITIAL_WINDOW_SIZE) {
+                    if (value > Integer.MAX_VALUE) {
+                        return connectionError(FLOW_CONTROL_ERROR, "illegal SETTINGS_INITIAL_WINDOW_SIZE " + value);
+                    }
+                    int delta = (int) value - peerInitialWindowSize;
+                    peerInitialWindowSize = (int) value;
+                    for (Http2StreamConnection stream : streams.values()) {
+                        stream.sendWindow += delta;
+                    }
+                } else if (id == SETTINGS_MAX_FRAME_SIZE) {
+                    if (value < MAX_FRAME_SIZE || value > 0xffffff) {
+                        return connectionError(PROTOCOL_ERROR, "illegal SETTINGS_MAX_FRAME_SIZE " + value);
+                    }
+                    peerMaxFrameSize = (int) value;
+                }
+                // HEADER_TABLE_SIZE: 本端编码不使用动态表, 无需处理
+            }
+            putFrame(0, FRAME_SETTINGS, FLAG_ACK, 0);
+            callbacks = resumeStreams();
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        callbacks.forEach(Runnable::run);
+        return true;
+    }
+
+    private boolean decodeWindowUpdate(int streamId, byte[] bs, int offset, int length) {
+        if (length != 4) {
+            return connectionError(FRAME_SIZE_ERROR, "illegal WINDOW_UPDATE length " + length);
+        }
+        int increment = ((bs[offset] & 0x7f) << 24)
+                | ((bs[offset + 1] & 0xff) << 16)
+                | ((bs[offset + 2] & 0xff) << 8)
+                | (bs[offset + 3] & 0xff);
+        Http2StreamConnection stream = null;
+        List<Runnable> callbacks;
+        lock.lock();
+        try {
+            if (streamId == 0) {
+                if (increment == 0 || (long) sendWindow + increment > Integer.MAX_VALUE) {
+                    return connectionError(
+                            increment == 0 ? PROTOCOL_ERROR : FLOW_CONTROL_ERROR, "illegal WINDOW_UPDATE");
+                }
+                sendWindow += increment;
+            } else {
+                stream = streams.get(streamId);
+                if (stream == null) {
+                    return true;
+                }
+                if (increment == 0 || (long) stream.sendWindow + increment > Integer.MAX_VALUE) {
+                    stream = null;
+                } else {
+                    stream.sendWindow += increment;
+                }
+            }
+            callbacks = resumeStreams();
+        } finally {
+            lock.unlock();
+        }
+        if (streamId != 0 && stream == null) {
+            lock.lock();
+            try {
+                stream = streams.get(streamId);
+            } finally {
+                lock.unlock();
+            }
+            if (stream != null) {
+                resetStream(stream, increment == 0 ? PROTOCOL_ERROR : FLOW_CONTROL_ERROR);
+            }
+        }
+        flush();
+        callbacks.forEach(Runnable::run);
+        return true;
+    }
+
+    // 将stream的请求交由HttpRequest解析并派发
+    private void dispatch(Http2StreamConnection stream) {
+        ByteArray head = stream.requestHead;
+        stream.requestHead = null;
+        ByteArray body = stream.requestBody;
+        putLatin1(head, "Content-Length: " + body.length() + "\r\n\r\n");
+        head.put(body.content(), 0, body.length());
+        body.clear();
+        HttpResponse response = HttpResponse.createStreamResponse(responseSupplier, responseConsumer, stream);
+        HttpRequest request = response.getRequest();
+        int rs;
+        try {
+            rs = request.readHeader(ByteBuffer.wrap(head.content(), 0, head.length()), -1);
+        } catch (Exception e) {
+            logger.log(Level.FINEST, "Http2 stream(" + stream.streamId + ") request erroneous", e);
+            rs = -1;
+        }
+        if (rs != 0) {
+            resetStream(stream, PROTOCOL_ERROR);
+            response.abort();
+            return;
+        }
+        context.dispatchStream(request, response);
+    }
+
+    /**
+     * 写入stream的HttpResponse输出, 由Http2StreamConnection.writeImpl调用, 在写IOThread中运行
+     *
+     * @param <A> 泛型
+     * @param stream stream
+     * @param srcs HTTP/1.1格式的响应数据
+     * @param offset 偏移量
+     * @param length 长度
+     * @param consumer 数据写完后的ByteBuffer回收器
+     * @param attachment 附件
+     * @param handler 回调函数
+     */
+    <A> void writeStream(
+            Http2StreamConnection stream,
+            ByteBuffer[] srcs,
+            int offset,
+            int length,
+            Consumer<ByteBuffer> consumer,
+            A attachment,
+            CompletionHandler<Integer, ? super A> handler) {
+        int total = 0;
+        boolean drained = false;
+        Throwable error = null;
+        lock.lock();
+        try {
+            if (closed || stream.reset) {
+                error = new IOException("http2 stream(" + stream.streamId + ") closed");
+            } else {
+                try {
+                    for (int i = offset; i < offset + length; i++) {
+                        total += srcs[i].remaining();
+                        stream.transcode(srcs[i]);
+                    }
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                if (error == null) {
+                    drained = flushStream(stream);
+                    if (!drained) {
+                        stream.pendingHandler = handler;
+                        stream.pendingAttachment = attachment;
+                        stream.pendingResult = total;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (consumer != null) { // 数据已复制, 可立即回收
+            for (int i = offset; i < offset + length; i++) {
+                consumer.accept(srcs[i]);
+            }
+        }
+        if (error != null) {
+            if (!(error instanceof IOException)) {
+                logger.log(Level.WARNING, "Http2 stream(" + stream.streamId + ") response erroneous", error);
+                resetStream(stream, INTERNAL_ERROR);
+            }
+            handler.failed(error, attachment);
+            return;
+        }
+        flush();
+        if (drained) {
+            handler.completed(total, attachment);
+        }
+    }
+
+    // 写入HEADERS帧, 超过对端帧大小时拆分出CONTINUATION帧, 需在lock内调用
+    void writeHeaders(Http2StreamConnection stream, ByteArray block, boolean endStream) {
+        int len = block.length();
+        int pos = 0;
+        do {
+            int n = Math.min(len - pos, peerMaxFrameSize);
+            int flags = pos + n == len ? FLAG_END_HEADERS : 0;
+            if (pos == 0 && endStream) {
+                flags |= FLAG_END_STREAM;
+            }
+            putFrame(n, pos == 0 ? FRAME_HEADERS : FRAME_CONTINUATION, flags, stream.streamId);
+            writeBytes.put(block.content(), pos, n);
+            pos += n;
+        } while (pos < len);
+        if (endStream) {
+            stream.localEnded = true;
+        }
+    }
+
+    // 按流量窗口写入stream的pendingData, 全部写入返回true, 需在lock内调用
+    private boolean flushStream(Http2StreamConnection stream) {
+        ByteArray data = stream.pendingData;
+        while (stream.pendingOffset < data.length()) {
+            int n = Math.min(
+                    data.length() - stream.pendingOffset,
+                    Math.min(peerMaxFrameSize, Math.min(sendWindow, stream.sendWindow)));
+            if (n <= 0) {
+                return false;
+            }
+            boolean end = stream.pendingEnd && stream.pendingOffset + n == data.length();
+            putFrame(n, FRAME_DATA, end ? FLAG_END_STREAM : 0, stream.streamId);
+            writeBytes.put(data.content(), stream.pendingOffset, n);
+            stream.pendingOffset += n;
+            sendWindow -= n;
+            stream.sendWindow -= n;
+            if (end) {
+                stream.localEnded = true;
+            }
+        }
+        data.clear();
+        stream.pendingOffset = 0;
+        if (stream.pendingEnd && !stream.localEnded) {
+            putFrame(0, FRAME_DATA, FLAG_END_STREAM, stream.streamId);
+            stream.localEnded = true;
+        }
+        return true;
+    }
+
+    // 流量窗口增大后继续写入等待中的stream, 返回需在lock外执行的回调, 需在lock内调用
+    private List<Runnable> resumeStreams() {
+        List<Runnable> callbacks = new ArrayList<>();
+        for (Http2StreamConnection stream : streams.values()) {
+            if (stream.pendingHandler != null && flushStream(stream)) {
+                CompletionHandler handler = stream.pendingHandler;
+                Object attachment = stream.pendingAttachment;
+                int result = stream.pendingResult;
+                stream.pendingHandler = null;
+                stream.pendingAttachment = null;
+                callbacks.add(() -> stream.executeWrite(() -> handler.completed(result, attachment)));
+            }
+        }
+        return callbacks;
+    }
+
+    /**
+     * stream对应的HttpResponse回收时调用, 结束输出并移除stream
+     *
+     * @param stream stream
+     */
+    void closeStream(Http2StreamConnection stream) {
+        CompletionHandler pendingHandler;
+        Object pendingAttachment;
+        boolean idle;
+        lock.lock();
+        try {
+            pendingHandler = stream.pendingHandler;
+            pendingAttachment = stream.pendingAttachment;
+            stream.pendingHandler = null;
+            stream.pendingAttachment = null;
+            if (!stream.reset && !closed) {
+                if (stream.finishOutput() && flushStream(stream)) {
+                    if (!stream.remoteEnded) { // 已完整响应, 不再需要请求的剩余数据
+                        putFrame(4, FRAME_RST_STREAM, 0, stream.streamId);
+                        writeBytes.putInt(NO_ERROR);
+                    }
+                } else {
+                    putFrame(4, FRAME_RST_STREAM, 0, stream.streamId);
+                    writeBytes.putInt(INTERNAL_ERROR);
+                }
+                stream.reset = true;
+            }
+            streams.remove(stream.streamId);
+            idle = remoteGoaway && streams.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        if (pendingHandler != null) {
+            pendingHandler.failed(new IOException("http2 stream(" + stream.streamId + ") closed"), pendingAttachment);
+        }
+        if (idle) {
+            shutdown();
+        }
+    }
+
+    /**
+     * 结束stream, 不再接收其数据和输出
+     *
+     * @param stream stream
+     * @param error 错误码, 小于0表示由对端RST_STREAM, 无需发送
+     */
+    private void resetStream(Http2StreamConnection stream, int error) {
+        CompletionHandler pendingHandler;
+        Object pendingAttachment;
+        boolean idle;
+        lock.lock();
+        try {
+            if (error >= 0 && !stream.reset && !closed) {
+                putFrame(4, FRAME_RST_STREAM, 0, stream.streamId);
+                writeBytes.putInt(error);
+            }
+            stream.reset = true;
+            stream.requestHead = null;
+            stream.remoteEnded = true;
+            pendingHandler = stream.pendingHandler;
+            pendingAttachment = stream.pendingAttachment;
+            stream.pendingHandler = null;
+            stream.pendingAttachment = null;
+            streams.remove(stream.streamId);
+            idle = remoteGoaway && streams.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        if (pendingHandler != null) {
+            Object attachment = pendingAttachment;
+            CompletionHandler handler = pendingHandler;
+            stream.executeWrite(() ->
+                    handler.failed(new IOException("http2 stream(" + stream.streamId + ") reset"), attachment));
+        }
+        if (idle) {
+            shutdown();
+        }
+    }
+
+    // 连接级错误, 发送GOAWAY后关闭连接, 始终返回false
+    private boolean connectionError(int error, String message) {
+        lock.lock();
+        try {
+            if (closing || closed) {
+                return false;
+            }
+            closing = true;
+            putFrame(8, FRAME_GOAWAY, 0, 0);
+            writeBytes.putInt(lastStreamId).putInt(error);
+        } finally {
+            lock.unlock();
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "Http2 connection error(" + error + "): " + message + ", channel = " + channel);
+        }
+        flush();
+        return false;
+    }
+
+    // 对端GOAWAY后所有stream已结束, 数据写完后关闭连接
+    private void shutdown() {
+        boolean dispose;
+        lock.lock();
+        try {
+            closing = true;
+            dispose = !writing && writeBytes.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+        if (dispose) {
+            closeAll();
+        }
+    }
+
+    private void closeAll() {
+        List<Runnable> callbacks = new ArrayList<>();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Http2StreamConnection stream : streams.values()) {
+                stream.reset = true;
+                CompletionHandler handler = stream.pendingHandler;
+                if (handler != null) {
+                    Object attachment = stream.pendingAttachment;
+                    stream.pendingHandler = null;
+                    stream.pendingAttachment = null;
+                    callbacks.add(() -> stream.executeWrite(
+                            () -> handler.failed(new IOException("http2 connection closed"), attachment)));
+                }
+            }
+            streams.clear();
+        } finally {
+            lock.unlock();
+        }
+        callbacks.forEach(Runnable::run);
+        channel.dispose();
+    }
+
+    // 写入待发送的帧, 同一时刻只有一个写操作
+    private void flush() {
+        ByteArray data;
+        lock.lock();
+        try {
+            if (writing || closed || writeBytes.isEmpty()) {
+                return;
+            }
+            writing = true;
+            data = writeBytes;
+            writeBytes = writingBytes;
+            writingBytes = data;
+        } finally {
+            lock.unlock();
+        }
+        channel.writeInIOThread(data.content(), 0, data.length(), writeHandler);
+    }
+
+    // 需在lock内调用
+    private void putFrame(int length, int type, int flags, int streamId) {
+        writeBytes.putMedium(length).put((byte) type, (byte) flags).putInt(streamId);
+    }
+
+    // 需在lock内调用
+    private void putWindowUpdate(int streamId, int increment) {
+        putFrame(4, FRAME_WINDOW_UPDATE, 0, streamId);
+        writeBytes.putInt(increment);
+    }
+
+    // token字符(RFC 9110), lower为true时不允许大写字母
+    static boolean isToken(String value, boolean lower) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                if (lower) {
+                    return false;
+                }
+            } else if (!(ch >= 'a' && ch <= 'z') && !(ch >= '0' && ch <= '9') && "!#$%&'*+-.^_`|~".indexOf(ch) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 头值不能含NUL、CR、LF, 且首尾不能是空白(RFC 9113 8.2.1)
+    static boolean isFieldValue(String value) {
+        int len = value.length();
+        if (len > 0) {
+            char first = value.charAt(0);
+            char last = value.charAt(len - 1);
+            if (first == ' ' || first == '\t' || last == ' ' || last == '\t') {
+                return false;
+            }
+        }
+        for (int i = 0; i < len; i++) {
+            char ch = value.charAt(i);
+            if (ch == '\0' || ch == '\r' || ch == '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // :path不能为空, 不能含空白和控制字符
+    static boolean isPath(String value) {
+        if (value.isEmpty() || (value.charAt(0) != '/' && !"*".equals(value))) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch <= ' ' || ch == 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 校验并收集一个stream的请求头(RFC 9113 8.2, 8.3), 不合法时记录原因并忽略之后的头 <br>
+     * 连接相关的头(Connection、Transfer-Encoding等)视为不合法, Content-Length由DATA帧的实际长度替代
+     */
+    static class RequestFields implements BiConsumer<String, String> {
+
+        // 转换成HTTP/1.1格式的普通请求头
+        final ByteArray lines = new ByteArray();
+
+        // 拆分的cookie需合并
+        final StringBuilder cookies = new StringBuilder();
+
+        // 解码后的头列表大小上限, 对应SETTINGS_MAX_HEADER_LIST_SIZE
+        final int maxSize;
+
+        String method;
+
+        String path;
+
+        String authority;
+
+        String scheme;
+
+        boolean hasHost;
+
+        // 不合法的原因, 为null表示合法
+        String error;
+
+        private boolean regularRead;
+
+        private int size;
+
+        public RequestFields(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void accept(String name, String value) {
+            if (error != null) {
+                return;
+            }
+            size += name.length() + value.length() + 32;
+            if (size > maxSize) {
+                error = "header list size must lower " + maxSize;
+            } else if (!isFieldValue(value)) {
+                error = "illegal header value";
+            } else if (!name.isEmpty() && name.charAt(0) == ':') {
+                acceptPseudo(name, value);
+            } else if (!isToken(name, true)) {
+                error = "illegal header name";
+            } else if (Http2StreamConnection.HOP_HEADERS.contains(name)
+                    || ("te".equals(name) && !"trailers".equals(value))) {
+                error = "connection-specific header " + name;
+            } else {
+                regularRead = true;
+                if ("cookie".equals(name)) {
+                    cookies.append(cookies.length() > 0 ? "; " : "").append(value);
+                } else if (!"content-length".equals(name) && !"te".equals(name)) {
+                    hasHost |= "host".equals(name);
+                    putLatin1(lines, name + ": " + value + "\r\n");
+                }
+            }
+        }
+
+        private void acceptPseudo(String name, String value) {
+            if (regularRead) {
+                error = "pseudo-header " + name + " after regular header";
+                return;
+            }
+            boolean duplicate;
+            switch (name) {
+                case ":method":
+                    duplicate = method != null;
+                    method = isToken(value, false) ? value : null;
+                    if (method == null) {
+                        error = "illegal :method";
+                    }
+                    break;
+                case ":path":
+                    duplicate = path != null;
+                    path = isPath(value) ? value : null;
+                    if (path == null) {
+                        error = "illegal :path";
+                    }
+                    break;
+                case ":authority":
+                    duplicate = authority != null;
+                    authority = value;
+                    break;
+                case ":scheme":
+                    duplicate = scheme != null;
+                    scheme = value;
+                    break;
+                default:
+                    error = "unknown pseudo-header " + name;
+                    return;
+            }
+            if (duplicate) {
+                error = "duplicate pseudo-header " + name;
+            }
+        }
+    }
+
+    private static void putLatin1(ByteArray array, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            array.put((byte) value.charAt(i));
+        }
+    }
+}
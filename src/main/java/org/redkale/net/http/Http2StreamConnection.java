@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.net.http;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import org.redkale.net.AsyncConnection;
+import org.redkale.util.ByteArray;
+
+/**
+ * HTTP/2的stream, 作为HttpRequest/HttpResponse的虚拟连接 <br>
+ * HttpResponse输出的HTTP/1.1报文在此转换成HEADERS和DATA帧, 由Http2ReadHandler按流量窗口写入真实连接。 <br>
+ * 除标注的字段外, 其余状态均需在Http2ReadHandler的锁内访问。
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ */
+class Http2StreamConnection extends AsyncConnection {
+
+    // 读取状态行与响应头
+    private static final int STATE_HEAD = 1;
+
+    // 按Content-Length读取body
+    private static final int STATE_LENGTH = 2;
+
+    // 读取chunk的长度行
+    private static final int STATE_CHUNK_SIZE = 3;
+
+    // 读取chunk的数据
+    private static final int STATE_CHUNK_DATA = 4;
+
+    // 跳过chunk数据后的\r\n
+    private static final int STATE_CHUNK_CRLF = 5;
+
+    // 读取并丢弃chunked的trailer
+    private static final int STATE_TRAILER = 6;
+
+    // 无Content-Length也非chunked, body直到连接关闭
+    private static final int STATE_UNTIL_CLOSE = 7;
+
+    // 响应已结束, 之后的数据丢弃
+    private static final int STATE_END = 8;
+
+    // HTTP/2禁止的逐跳头
+    static final Set<String> HOP_HEADERS = new HashSet<>(
+            Arrays.asList("connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade"));
+
+    protected final Http2ReadHandler codec;
+
+    protected final AsyncConnection parent;
+
+    protected final int streamId;
+
+    // ------------------------ 请求, 只在读IOThread中访问 ------------------------
+    // 转换成HTTP/1.1格式的请求行与请求头, 为null表示已派发
+    ByteArray requestHead;
+
+    final ByteArray requestBody = new ByteArray();
+
+    boolean headMethod;
+
+    // 已收到END_STREAM
+    boolean remoteEnded;
+
+    // ------------------------ 响应 ------------------------
+    int sendWindow;
+
+    // 等待流量窗口的body数据
+    final ByteArray pendingData = new ByteArray();
+
+    int pendingOffset;
+
+    // pendingData发送完后需要END_STREAM
+    boolean pendingEnd;
+
+    // 已发送END_STREAM
+    boolean localEnded;
+
+    // 已RST_STREAM或连接已关闭, 不可再输出
+    boolean reset;
+
+    // 因流量窗口不足尚未回调的写操作
+    CompletionHandler pendingHandler;
+
+    Object pendingAttachment;
+
+    int pendingResult;
+
+    private int state = STATE_HEAD;
+
+    // 响应头或chunk长度行的半包
+    private final ByteArray lineBytes = new ByteArray();
+
+    // body或chunk剩余的长度
+    private long remain;
+
+    private volatile boolean closed;
+
+    public Http2StreamConnection(Http2ReadHandler codec, AsyncConnection parent, int streamId, int sendWindow) {
+        super(parent);
+        this.codec = codec;
+        this.parent = parent;
+        this.streamId = streamId;
+        this.sendWindow = sendWindow;
+    }
+
+    /**
+     * 解析HttpResponse输出的HTTP/1.1报文, 响应头编码成HEADERS帧写入连接, body追加到pendingData
+     *
+     * @param src 报文数据
+     */
+    void transcode(ByteBuffer src) {
+        while (src.hasRemaining()) {
+            switch (state) {
+                case STATE_HEAD:
+                    if (readHead(src)) {
+                        onResponseHead();
+                    }
+                    break;
+                case STATE_LENGTH:
+                case STATE_CHUNK_DATA: {
+                    int n = (int) Math.min(remain, src.remaining());
+                    pendingData.put(src, n);
+                    remain -= n;
+                    if (remain == 0) {
+                        if (state == STATE_LENGTH) {
+                            pendingEnd = true;
+                            state = STATE_END;
+                        } else {
+                            remain = 2;
+                            state = STATE_CHUNK_CRLF;
+                        }
+                    }
+                    break;
+                }
+                case STATE_CHUNK_CRLF: {
+                    int n = (int) Math.min(remain, src.remaining());
+                    src.position(src.position() + n);
+                    remain -= n;
+                    if (remain == 0) {
+                        state = STATE_CHUNK_SIZE;
+                    }
+                    break;
+                }
+                case STATE_CHUNK_SIZE:
+                    if (readLine(src)) {
+                        String line = lineBytes.toString(StandardCharsets.ISO_8859_1);
+                        lineBytes.clear();
+                        int pos = line.indexOf(';'); // chunk扩展
+                        remain = Long.parseLong((pos < 0 ? line : line.substring(0, pos)).trim(), 16);
+                        state = remain == 0 ? STATE_TRAILER : STATE_CHUNK_DATA;
+                    }
+                    break;
+                case STATE_TRAILER:
+                    if (readLine(src)) {
+                        boolean empty = lineBytes.isEmpty();
+                        lineBytes.clear();
+                        if (empty) {
+                            pendingEnd = true;
+                            state = STATE_END;
+                        }
+                    }
+                    break;
+                case STATE_UNTIL_CLOSE:
+                    pendingData.put(src, src.remaining());
+                    break;
+                default:
+                    src.position(src.limit());
+                    break;
+            }
+        }
+    }
+
+    // 读到\r\n\r\n返回true
+    private boolean readHead(ByteBuffer src) {
+        ByteArray bytes = this.lineBytes;
+        while (src.hasRemaining()) {
+            byte b = src.get();
+            bytes.put(b);
+            int len = bytes.length();
+            if (b == '\n' && len >= 4 && bytes.get(len - 2) == '\r' && bytes.get(len - 3) == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 读到\n返回true, lineBytes不含\r\n
+    private boolean readLine(ByteBuffer src) {
+        ByteArray bytes = this.lineBytes;
+        while (src.hasRemaining()) {
+            byte b = src.get();
+            if (b == '\n') {
+                if (!bytes.isEmpty() && bytes.getLastByte() == '\r') {
+                    bytes.removeLastByte();
+                }
+                return true;
+            }
+            bytes.put(b);
+        }
+        return false;
+    }
+
+    private void onResponseHead() {
+        String[] lines = lineBytes.toString(StandardCharsets.ISO_8859_1).split("\r\n");
+        lineBytes.clear();
+        // 状态行: HTTP/1.1 200 OK
+        int status = Integer.parseInt(lines[0].substring(9, 12));
+        ByteArray block = new ByteArray();
+        Http2Hpack.encodeStatus(block, status);
+        long contentLength = -1;
+        boolean chunked = false;
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            int pos = line.indexOf(':');
+            if (pos < 1) {
+                continue;
+            }
+            String name = line.substring(0, pos).trim().toLowerCase();
+            String value = line.substring(pos + 1).trim();
+            if ("transfer-encoding".equals(name)) {
+                chunked = value.toLowerCase().contains("chunked");
+            } else if ("content-length".equals(name)) {
+                contentLength = Long.parseLong(value);
+            }
+            if (!HOP_HEADERS.contains(name)) {
+                Http2Hpack.encodeHeader(block, name, value);
+            }
+        }
+        if (status >= 100 && status < 200) { // 1xx临时响应, 之后还有最终响应
+            codec.writeHeaders(this, block, false);
+            return;
+        }
+        if (headMethod || status == 204 || status == 304 || (!chunked && contentLength == 0)) {
+            codec.writeHeaders(this, block, true);
+            state = STATE_END;
+        } else {
+            codec.writeHeaders(this, block, false);
+            if (chunked) {
+                state = STATE_CHUNK_SIZE;
+            } else if (contentLength > 0) {
+                remain = contentLength;
+                state = STATE_LENGTH;
+            } else {
+                state = STATE_UNTIL_CLOSE;
+            }
+        }
+    }
+
+    // 关闭时结束输出, 返回false表示响应不完整
+    boolean finishOutput() {
+        if (state == STATE_UNTIL_CLOSE) {
+            pendingEnd = true;
+            state = STATE_END;
+        }
+        return localEnded || state == STATE_END;
+    }
+
+    @Override
+    public boolean isTCP() {
+        return true;
+    }
+
+    @Override
+    public boolean shutdownInput() {
+        return false;
+    }
+
+    @Override
+    public boolean shutdownOutput() {
+        return false;
+    }
+
+    @Override
+    public <T> boolean setOption(SocketOption<T> name, T value) {
+        return false;
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return parent.getRemoteAddress();
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return parent.getLocalAddress();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed && parent.isOpen();
+    }
+
+    @Override
+    protected void readRegisterImpl(CompletionHandler<Integer, ByteBuffer> handler) {
+        handler.failed(new IOException("http2 stream not support read"), null);
+    }
+
+    @Override
+    protected void readImpl(CompletionHandler<Integer, ByteBuffer> handler) {
+        handler.failed(new IOException("http2 stream not support read"), null);
+    }
+
+    @Override
+    protected <A> void writeImpl(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        codec.writeStream(this, new ByteBuffer[] {src}, 0, 1, null, attachment, handler);
+    }
+
+    @Override
+    protected <A> void writeImpl(
+            ByteBuffer[] srcs, int offset, int length, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        codec.writeStream(this, srcs, offset, length, null, attachment, handler);
+    }
+
+    @Override
+    protected <A> void writeImpl(
+            ByteBuffer src, Consumer<ByteBuffer> consumer, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        codec.writeStream(this, new ByteBuffer[] {src}, 0, 1, consumer, attachment, handler);
+    }
+
+    @Override
+    protected <A> void writeImpl(
+            ByteBuffer[] srcs,
+            int offset,
+            int length,
+            Consumer<ByteBuffer> consumer,
+            A attachment,
+            CompletionHandler<Integer, ? super A> handler) {
+        codec.writeStream(this, srcs, offset, length, consumer, attachment, handler);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        codec.closeStream(this);
+        super.close();
+    }
+
+    @Override
+    public String toString() {
+        return "Http2Stream(" + streamId + ")@" + parent;
+    }
+}
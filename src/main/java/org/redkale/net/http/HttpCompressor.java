@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.net.http;
+
+import java.util.zip.*;
+import org.redkale.net.WorkThread;
+import org.redkale.util.*;
+
+/**
+ * HTTP响应压缩, 根据Accept-Encoding协商gzip/deflate <br>
+ * Deflater按线程池化(ObjectPool), 压缩过程中不创建新对象
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ */
+final class HttpCompressor {
+
+    static final int ENCODING_NONE = 0;
+
+    static final int ENCODING_GZIP = 1;
+
+    static final int ENCODING_DEFLATE = 2;
+
+    static final String[] DEFAULT_TYPES = {
+        "text/",
+        "application/json",
+        "application/javascript",
+        "application/xml",
+        "application/x-ndjson",
+        "image/svg+xml"
+    };
+
+    // gzip头: magic(1f 8b) + deflate + flags(0) + mtime(0) + xfl(0) + os(unknown)
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    // 小于该字节数的响应不压缩
+    final int minLength;
+
+    final int level;
+
+    // 可压缩的Content-Type前缀
+    final String[] types;
+
+    private final ObjectPool<Entry> safePool;
+
+    private final ThreadLocal<ObjectPool<Entry>> localPool;
+
+    public HttpCompressor(int minLength, int level, String[] types) {
+        this.minLength = Math.max(0, minLength);
+        this.level = level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION ? 6 : level;
+        this.types = types == null || types.length == 0 ? DEFAULT_TYPES : types;
+        final int lv = this.level;
+        this.safePool = ObjectPool.createSafePool(
+                Utility.cpus() * 2, (Object... params) -> new Entry(lv), null, Entry::recycle);
+        this.localPool = Utility.withInitialThreadLocal(() -> {
+            if (!(Thread.currentThread() instanceof WorkThread)) {
+                return null;
+            }
+            return ObjectPool.createUnsafePool(Thread.currentThread(), 4, safePool);
+        });
+    }
+
+    /**
+     * 根据Accept-Encoding选择压缩方式, gzip优先, q=0表示不接受
+     *
+     * @param acceptEncoding 请求头Accept-Encoding的值
+     * @return 压缩方式
+     */
+    static int acceptEncoding(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return ENCODING_NONE;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        boolean any = false;
+        int start = 0;
+        final int len = acceptEncoding.length();
+        while (start < len) {
+            int end = acceptEncoding.indexOf(',', start);
+            if (end < 0) {
+                end = len;
+            }
+            int semi = acceptEncoding.indexOf(';', start);
+            int nameEnd = semi >= 0 && semi < end ? semi : end;
+            int s = start;
+            int e = nameEnd;
+            while (s < e && acceptEncoding.charAt(s) == ' ') {
+                s++;
+            }
+            while (e > s && acceptEncoding.charAt(e - 1) == ' ') {
+                e--;
+            }
+            boolean accept = nameEnd == end || !zeroQuality(acceptEncoding, nameEnd + 1, end);
+            if (accept) {
+                if (acceptEncoding.regionMatches(true, s, "gzip", 0, 4) && e - s == 4) {
+                    gzip = true;
+                } else if (acceptEncoding.regionMatches(true, s, "deflate", 0, 7) && e - s == 7) {
+                    deflate = true;
+                } else if (e - s == 1 && acceptEncoding.charAt(s) == '*') {
+                    any = true;
+                }
+            }
+            start = end + 1;
+        }
+        if (gzip || any) {
+            return ENCODING_GZIP;
+        }
+        return deflate ? ENCODING_DEFLATE : ENCODING_NONE;
+    }
+
+    // 判断参数部分是否为q=0/q=0.0/q=0.00/q=0.000
+    private static boolean zeroQuality(String value, int start, int end) {
+        int pos = value.indexOf("q=", start);
+        if (pos < 0 || pos >= end) {
+            return false;
+        }
+        for (int i = pos + 2; i < end; i++) {
+            char ch = value.charAt(i);
+            if (ch != '0' && ch != '.' && ch != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 判断内容是否需要压缩
+     *
+     * @param contentType Content-Type
+     * @param length 内容长度
+     * @return 是否压缩
+     */
+    boolean compressible(String contentType, int length) {
+        if (length < minLength || contentType == null) {
+            return false;
+        }
+        for (String type : types) {
+            if (contentType.regionMatches(true, 0, type, 0, type.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 压缩内容并追加到out中
+     *
+     * @param encoding 压缩方式
+     * @param bs 内容
+     * @param offset 偏移量
+     * @param length 长度
+     * @param out 输出
+     */
+    void compress(int encoding, byte[] bs, int offset, int length, ByteArray out) {
+        ObjectPool<Entry> pool = localPool.get();
+        if (pool == null) {
+            pool = safePool;
+        }
+        Entry entry = pool.get();
+        try {
+            entry.compress(encoding, bs, offset, length, out);
+        } finally {
+            pool.accept(entry);
+        }
+    }
+
+    /**
+     * 将内容压缩成gzip格式, 供静态资源预压缩使用
+     *
+     * @param bs 内容
+     * @param offset 偏移量
+     * @param length 长度
+     * @return 压缩后的内容
+     */
+    static ByteArray gzip(byte[] bs, int offset, int length) {
+        Entry entry = new Entry(Deflater.BEST_COMPRESSION);
+        try {
+            ByteArray out = new ByteArray(length / 2 + 32);
+            entry.compress(ENCODING_GZIP, bs, offset, length, out);
+            return out;
+        } finally {
+            entry.deflater.end();
+        }
+    }
+
+    static String encodingName(int encoding) {
+        return encoding == ENCODING_GZIP ? "gzip" : "deflate";
+    }
+
+    // 池化的压缩对象, gzip与deflate共用nowrap的Deflater, 头尾由此处输出
+    private static class Entry {
+
+        final Deflater deflater;
+
+        final CRC32 crc32 = new CRC32();
+
+        final Adler32 adler32 = new Adler32();
+
+        Entry(int level) {
+            this.deflater = new Deflater(level, true);
+        }
+
+        void compress(int encoding, byte[] bs, int offset, int length, ByteArray out) {
+            if (encoding == ENCODING_GZIP) {
+                out.put(GZIP_HEADER);
+            } else { // zlib头: CMF=0x78(32K窗口), FLG=0x9c(默认级别, 满足%31校验)
+                out.put((byte) 0x78, (byte) 0x9c);
+            }
+            deflater.setInput(bs, offset, length);
+            deflater.finish();
+            while (!deflater.finished()) {
+                int avail = Math.max(256, length >> 2);
+                byte[] content = out.expand(avail);
+                int n = deflater.deflate(content, out.length(), avail);
+                out.position(out.length() + n);
+            }
+            if (encoding == ENCODING_GZIP) { // 尾部: CRC32 + 原始长度, 小端序
+                crc32.update(bs, offset, length);
+                putIntLE(out, (int) crc32.getValue());
+                putIntLE(out, length);
+            } else { // 尾部: Adler32, 大端序
+                adler32.update(bs, offset, length);
+                out.putInt((int) adler32.getValue());
+            }
+        }
+
+        private static void putIntLE(ByteArray out, int v) {
+            out.put((byte) v);
+            out.put((byte) (v >> 8));
+            out.put((byte) (v >> 16));
+            out.put((byte) (v >> 24));
+        }
+
+        boolean recycle() {
+            deflater.reset();
+            crc32.reset();
+            adler32.reset();
+            return true;
+        }
+    }
+}
@@ -76,6 +76,11 @@ public class HttpContext extends Context {
         return this.uriPathNode.remove(path);
     }
 
+    // HTTP/2的stream请求
+    void dispatchStream(HttpRequest request, HttpResponse response) {
+        executeDispatch(request, response);
+    }
+
     @Override
     protected void updateReadIOThread(AsyncConnection conn, AsyncIOThread ioReadThread) {
         super.updateReadIOThread(conn, ioReadThread);
@@ -7,6 +7,7 @@ package org.redkale.net.http;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.*;
 import java.util.logging.*;
@@ -38,6 +39,12 @@ public class HttpDispatcherServlet
 
     protected MappingEntry[] regexWsArray = null;
 
+    // 由regexArray构建, ^/xxx/.*形式的前缀路由走radix树匹配
+    private HttpPathRouter<HttpServlet> regexRouter;
+
+    // 由regexWsArray构建
+    private HttpPathRouter<HttpServlet> regexWsRouter;
+
     protected Map<String, WebSocketServlet> wsMappings = new HashMap<>(); // super.mappings 包含 wsMappings
 
     protected final Map<String, Class> allMapStrings = new HashMap<>();
@@ -96,6 +103,7 @@ public class HttpDispatcherServlet
             if (!keys.isEmpty()) {
                 this.regexArray = Utility.remove(this.regexArray, predicateEntry);
                 this.regexWsArray = Utility.remove(this.regexWsArray, predicateEntry);
+                rebuildRouters();
                 for (HttpServlet rs : servlets) {
                     super.removeServlet(rs);
                 }
@@ -203,9 +211,18 @@ public class HttpDispatcherServlet
             }
             final String reg = mapping;
             final boolean begin = mapping.charAt(0) == '^';
-            final Predicate regPredicate = Pattern.compile(reg).asPredicate();
+            final Predicate<String> regPredicate = Utility.contains(reg, '.', '*', '{', '[', '(', '|', '^', '$', '+', '?', '\\')
+                    ? Pattern.compile(reg).asPredicate()
+                    : uri -> uri.contains(reg); // 纯文本无需正则
+            // 带前缀时需整体匹配, 按前缀缓存编译后的正则, 避免每次请求都编译
+            final Map<String, Predicate<String>> prefixPredicates = new ConcurrentHashMap<>();
             BiPredicate<String, String> predicate = (prefix, uri) -> {
-                return begin || prefix.isEmpty() ? regPredicate.test(uri) : uri.matches(prefix + reg);
+                if (begin || prefix.isEmpty()) {
+                    return regPredicate.test(uri);
+                }
+                return prefixPredicates
+                        .computeIfAbsent(prefix, p -> Pattern.compile(p + reg).asMatchPredicate())
+                        .test(uri);
             };
             forbidURIMaps.put(urlRegex, predicate);
             forbidURIPredicates = Utility.append(forbidURIPredicates, predicate);
@@ -314,6 +331,10 @@ public class HttpDispatcherServlet
         try {
             final String uri = request.getRequestPath();
             HttpServlet servlet;
+            if (request.isHttp2Preface()) { // h2c prior-knowledge或ALPN h2, 连接转交HTTP/2处理
+                response.startHttp2();
+                return;
+            }
             if (response.isAutoOptions() && HttpRequest.METHOD_OPTIONS.equals(request.getMethod())) {
                 response.finish(200, null);
                 return;
@@ -326,13 +347,9 @@ public class HttpDispatcherServlet
                 servlet = request.pathServlet;
             } else if (request.isWebSocket()) {
                 servlet = wsMappings.get(uri);
-                if (servlet == null && this.regexWsArray != null) {
-                    for (MappingEntry en : regexWsArray) {
-                        if (en.predicate.test(uri)) {
-                            servlet = en.servlet;
-                            break;
-                        }
-                    }
+                HttpPathRouter<HttpServlet> router = this.regexWsRouter;
+                if (servlet == null && router != null) {
+                    servlet = router.match(uri);
                 }
                 if (servlet == null) {
                     response.finish(500, null);
@@ -340,13 +357,9 @@ public class HttpDispatcherServlet
                 }
             } else {
                 servlet = mappingServlet(uri);
-                if (servlet == null && this.regexArray != null) {
-                    for (MappingEntry en : regexArray) {
-                        if (en.predicate.test(uri)) {
-                            servlet = en.servlet;
-                            break;
-                        }
-                    }
+                HttpPathRouter<HttpServlet> router = this.regexRouter;
+                if (servlet == null && router != null) {
+                    servlet = router.match(uri);
                 }
                 // 找不到匹配的HttpServlet则使用静态资源HttpResourceServlet
                 if (servlet == null) {
@@ -446,6 +459,7 @@ public class HttpDispatcherServlet
                             Arrays.sort(regexWsArray);
                         }
                     }
+                    rebuildRouters();
                 } else if (mappingPath != null && !mappingPath.isEmpty()) {
                     if (servlet._actionmap != null && servlet._actionmap.containsKey(mappingPath)) {
                         putMapping(
@@ -555,6 +569,30 @@ public class HttpDispatcherServlet
         this.wsMappings.clear();
         this.regexArray = null;
         this.regexWsArray = null;
+        this.regexRouter = null;
+        this.regexWsRouter = null;
+    }
+
+    // 需在allMapLock内调用
+    private void rebuildRouters() {
+        this.regexRouter = createRouter(this.regexArray);
+        this.regexWsRouter = createRouter(this.regexWsArray);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpPathRouter<HttpServlet> createRouter(MappingEntry[] entries) {
+        if (entries == null || entries.length == 0) {
+            return null;
+        }
+        String[] mappings = new String[entries.length];
+        Predicate<String>[] predicates = new Predicate[entries.length];
+        HttpServlet[] servlets = new HttpServlet[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            mappings[i] = entries[i].mapping;
+            predicates[i] = entries[i].predicate;
+            servlets[i] = entries[i].servlet;
+        }
+        return new HttpPathRouter<>(mappings, predicates, servlets);
     }
 
     protected static class MappingEntry implements Comparable<MappingEntry> {
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.net.http;
+
+import org.redkale.convert.json.JsonConvert;
+import org.redkale.util.RedkaleException;
+
+/**
+ * Server-Sent Events的事件对象, 配合HttpResponse.finishEventStream使用 <br>
+ * data为CharSequence时按原文输出(多行会拆成多个data行), 其他对象用Convert序列化后输出
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @see org.redkale.net.http.HttpResponse#finishEventStream(org.redkale.convert.Convert, java.lang.reflect.Type,
+ *     java.util.concurrent.Flow.Publisher, int)
+ * @author zhangjx
+ * @param <T> data的类型
+ * @since 2.8.0
+ */
+public class HttpEvent<T> {
+
+    protected String id;
+
+    protected String event;
+
+    protected T data;
+
+    protected long retry; // 客户端重连的毫秒数, 为0表示不输出
+
+    public HttpEvent() {}
+
+    public HttpEvent(T data) {
+        this.data = data;
+    }
+
+    public HttpEvent(String event, T data) {
+        this.event = checkLine("event", event);
+        this.data = data;
+    }
+
+    public HttpEvent<T> id(String id) {
+        this.id = checkLine("id", id);
+        return this;
+    }
+
+    public HttpEvent<T> event(String event) {
+        this.event = checkLine("event", event);
+        return this;
+    }
+
+    public HttpEvent<T> data(T data) {
+        this.data = data;
+        return this;
+    }
+
+    public HttpEvent<T> retry(long retry) {
+        this.retry = retry;
+        return this;
+    }
+
+    private static String checkLine(String field, String value) {
+        if (value != null && (value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0)) {
+            throw new RedkaleException("event " + field + "(" + value + ") is illegal");
+        }
+        return value;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = checkLine("id", id);
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public void setEvent(String event) {
+        this.event = checkLine("event", event);
+    }
+
+    public T getData() {
+        return data;
+    }
+
+    public void setData(T data) {
+        this.data = data;
+    }
+
+    public long getRetry() {
+        return retry;
+    }
+
+    public void setRetry(long retry) {
+        this.retry = retry;
+    }
+
+    @Override
+    public String toString() {
+        return JsonConvert.root().convertTo(this);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.net.http;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * HttpDispatcherServlet中通配路由的匹配器, 创建后不可变 <br>
+ * 形如^/xxx/.*的前缀路由编译成radix树逐字符匹配, 其他正则路由作为兜底逐个匹配 <br>
+ * 匹配结果与按优先级顺序逐个执行正则的结果一致
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @param <T> 路由值的类型
+ * @since 2.8.0
+ */
+public final class HttpPathRouter<T> {
+
+    private static final String REGEX_CHARS = ".*{}[]()|^$+?\\";
+
+    private final Node<T> root = new Node<>("");
+
+    // 需正则匹配的路由的优先级
+    private final int[] regexOrders;
+
+    private final Predicate<String>[] regexPredicates;
+
+    private final Object[] regexValues;
+
+    private final int size;
+
+    /**
+     * 创建路由匹配器
+     *
+     * @param mappings 正则表达式, 按优先级从高到低排列
+     * @param predicates mappings对应的Predicate, 为null时使用Pattern编译
+     * @param values mappings对应的路由值
+     */
+    @SuppressWarnings("unchecked")
+    public HttpPathRouter(String[] mappings, Predicate<String>[] predicates, T[] values) {
+        int len = mappings == null ? 0 : mappings.length;
+        List<Integer> orders = new ArrayList<>();
+        List<Predicate<String>> preds = new ArrayList<>();
+        List<Object> vals = new ArrayList<>();
+        for (int i = 0; i < len; i++) {
+            String prefix = literalPrefix(mappings[i]);
+            if (prefix != null) {
+                root.insert(prefix, i, values[i]);
+            } else {
+                orders.add(i);
+                preds.add(predicates == null || predicates[i] == null
+                        ? Pattern.compile(mappings[i]).asPredicate()
+                        : predicates[i]);
+                vals.add(values[i]);
+            }
+        }
+        this.regexOrders = orders.stream().mapToInt(Integer::intValue).toArray();
+        this.regexPredicates = preds.toArray(new Predicate[preds.size()]);
+        this.regexValues = vals.toArray();
+        this.size = len;
+    }
+
+    /**
+     * 获取^/xxx/.*形式路由的前缀, 不是该形式的返回null
+     *
+     * @param mapping 正则表达式
+     * @return 前缀
+     */
+    public static String literalPrefix(String mapping) {
+        if (mapping == null
+                || mapping.length() < 3
+                || mapping.charAt(0) != '^'
+                || !mapping.endsWith(".*")) {
+            return null;
+        }
+        int end = mapping.length() - 2;
+        for (int i = 1; i < end; i++) {
+            if (REGEX_CHARS.indexOf(mapping.charAt(i)) >= 0) {
+                return null;
+            }
+        }
+        return mapping.substring(1, end);
+    }
+
+    /**
+     * 匹配uri
+     *
+     * @param uri 请求的uri
+     * @return 路由值, 没有匹配返回null
+     */
+    @SuppressWarnings("unchecked")
+    public T match(String uri) {
+        int best = Integer.MAX_VALUE;
+        T bestValue = null;
+        Node<T> node = root;
+        final int len = uri.length();
+        int pos = 0;
+        for (; ; ) {
+            if (node.order < best) {
+                best = node.order;
+                bestValue = node.value;
+            }
+            if (pos >= len) {
+                break;
+            }
+            Node<T> child = node.child(uri.charAt(pos));
+            if (child == null) {
+                break;
+            }
+            String label = child.label;
+            if (!uri.regionMatches(pos, label, 0, label.length())) {
+                break;
+            }
+            pos += label.length();
+            node = child;
+        }
+        int[] orders = this.regexOrders;
+        Predicate<String>[] predicates = this.regexPredicates;
+        for (int i = 0; i < orders.length; i++) {
+            if (orders[i] > best) {
+                break;
+            }
+            if (predicates[i].test(uri)) {
+                return (T) regexValues[i];
+            }
+        }
+        return bestValue;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static class Node<T> {
+
+        // 从父节点到本节点的边
+        String label;
+
+        char[] keys = new char[0];
+
+        Node<T>[] children = new Node[0];
+
+        // 本节点作为前缀路由终点时的优先级, 值越小越优先
+        int order = Integer.MAX_VALUE;
+
+        T value;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node<T> child(char ch) {
+            char[] ks = this.keys;
+            for (int i = 0; i < ks.length; i++) {
+                if (ks[i] == ch) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(Node<T> child) {
+            int len = keys.length;
+            keys = Arrays.copyOf(keys, len + 1);
+            children = Arrays.copyOf(children, len + 1);
+            keys[len] = child.label.charAt(0);
+            children[len] = child;
+        }
+
+        void replaceChild(Node<T> old, Node<T> child) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == old) {
+                    children[i] = child;
+                    keys[i] = child.label.charAt(0);
+                    return;
+                }
+            }
+        }
+
+        void insert(String path, int order, T value) {
+            Node<T> node = this;
+            int pos = 0;
+            while (pos < path.length()) {
+                Node<T> child = node.child(path.charAt(pos));
+                if (child == null) {
+                    Node<T> leaf = new Node<>(path.substring(pos));
+                    node.addChild(leaf);
+                    node = leaf;
+                    pos = path.length();
+                    break;
+                }
+                String label = child.label;
+                int common = 0;
+                int max = Math.min(label.length(), path.length() - pos);
+                while (common < max && label.charAt(common) == path.charAt(pos + common)) {
+                    common++;
+                }
+                if (common < label.length()) { // 拆分边
+                    Node<T> split = new Node<>(label.substring(0, common));
+                    node.replaceChild(child, split);
+                    child.label = label.substring(common);
+                    split.addChild(child);
+                    child = split;
+                }
+                node = child;
+                pos += common;
+            }
+            if (order < node.order) { // 相同前缀保留优先级高的
+                node.order = order;
+                node.value = value;
+            }
+        }
+    }
+}
@@ -56,6 +56,8 @@ public class HttpRequest extends Request<HttpContext> {
 
     protected static final String METHOD_OPTIONS = "OPTIONS";
 
+    protected static final String METHOD_PRI = "PRI";
+
     protected static final String HTTP_1_1 = "HTTP/1.1";
 
     protected static final String HTTP_2_0 = "HTTP/2.0";
@@ -303,6 +305,16 @@ public class HttpRequest extends Request<HttpContext> {
         return expect;
     }
 
+    /**
+     * 是否为HTTP/2连接前言(PRI * HTTP/2.0)
+     *
+     * @return boolean
+     * @since 2.8.0
+     */
+    protected boolean isHttp2Preface() {
+        return HTTP_2_0 == protocol && METHOD_PRI.equals(method);
+    }
+
     protected boolean isChunked() {
         return chunked;
     }
@@ -336,6 +348,15 @@ public class HttpRequest extends Request<HttpContext> {
             if (rs != 0) {
                 return rs;
             }
+            if (isHttp2Preface()) { // h2c prior-knowledge或ALPN h2的连接前言, 之后是二进制帧, 交由Http2ReadHandler解析
+                this.bodyBytes.clear();
+                this.bodyBytes.put(buffer, buffer.remaining());
+                this.keepAlive = false;
+                this.readCompleted = false;
+                this.bodyParsed = true;
+                this.readState = READ_STATE_END;
+                return 0;
+            }
             this.headerBytes.clear();
             this.headerLength = 0;
             this.headerHalfLen = 0;
@@ -1273,7 +1294,7 @@ public class HttpRequest extends Request<HttpContext> {
 
     @Override
     protected void prepare() {
-        this.keepAlive = true; // 默认HTTP/1.1
+        this.keepAlive = !(channel instanceof Http2StreamConnection); // 默认HTTP/1.1, HTTP/2的stream只有一个请求
     }
 
     @Override
@@ -1788,7 +1809,7 @@ public class HttpRequest extends Request<HttpContext> {
         if (type == byte[].class) {
             return (T) bodyBytes.getBytes();
         }
-        return (T) convert.convertFrom(type, bodyBytes.content());
+        return (T) convert.convertFrom(type, bodyBytes.content(), 0, bodyBytes.length());
     }
 
     /**
@@ -1806,7 +1827,24 @@ public class HttpRequest extends Request<HttpContext> {
         if (type == byte[].class) {
             return (T) bodyBytes.getBytes();
         }
-        return (T) convert.convertFrom(type, bodyBytes.content());
+        return (T) convert.convertFrom(type, bodyBytes.content(), 0, bodyBytes.length());
+    }
+
+    /**
+     * 逐个解析json数组格式的请求内容, 不会构建整个集合 <br>
+     * 须在请求处理结束前迭代完
+     *
+     * @param <T> 泛型
+     * @param componentType 数组元素的反序列化数据类型
+     * @return 元素迭代器
+     */
+    public <T> Iterator<T> getBodyJsonIterator(java.lang.reflect.Type componentType) {
+        if (isEmpty(bodyBytes)) {
+            return Collections.emptyIterator();
+        }
+        JsonConvert convert =
+                this.reqConvert instanceof JsonConvert ? (JsonConvert) this.reqConvert : context.getJsonConvert();
+        return convert.convertFromIterator(componentType, bodyBytes.content(), 0, bodyBytes.length());
     }
 
     /**
@@ -13,6 +13,7 @@ import java.util.*;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.*;
 import java.util.regex.*;
 import org.redkale.util.*;
@@ -261,7 +262,11 @@ public class HttpResourceServlet extends HttpServlet {
         } else {
             // file = null 表示资源内容在内存而不是在File中
             // file = null 时必须传 fileName
-            response.finishFile(entry.file == null ? entry.fileName : null, entry.file, entry.content);
+            response.finishFile(
+                    entry.file == null ? entry.fileName : null,
+                    entry.file,
+                    entry.content,
+                    entry.gzipContent(response.getCompressor()));
         }
     }
 
@@ -303,6 +308,14 @@ public class HttpResourceServlet extends HttpServlet {
 
         protected ByteArray content;
 
+        // content的gzip预压缩内容, 首次请求时按响应的压缩配置生成, 不可压缩的文件为null
+        protected volatile ByteArray gzipContent;
+
+        // 是否已按压缩配置判断过预压缩
+        private volatile boolean gzipChecked;
+
+        private final ReentrantLock gzipLock = new ReentrantLock();
+
         @SuppressWarnings("OverridableMethodCallInConstructor")
         public FileEntry(final HttpResourceServlet servlet, File file) {
             this.servlet = servlet;
@@ -341,6 +354,16 @@ public class HttpResourceServlet extends HttpServlet {
                 this.servlet.cachedLength.add(0L - this.content.length());
                 this.content = null;
             }
+            gzipLock.lock();
+            try {
+                if (this.gzipContent != null) {
+                    this.servlet.cachedLength.add(0L - this.gzipContent.length());
+                    this.gzipContent = null;
+                }
+                this.gzipChecked = false;
+            } finally {
+                gzipLock.unlock();
+            }
             long length = this.file.length();
             if (length > this.servlet.cachelengthmax) {
                 return;
@@ -365,14 +388,55 @@ public class HttpResourceServlet extends HttpServlet {
             }
         }
 
+        /**
+         * 获取gzip预压缩内容, 未开启响应压缩时返回null
+         *
+         * @param compressor 响应的压缩配置
+         * @return 预压缩内容
+         */
+        ByteArray gzipContent(HttpCompressor compressor) {
+            if (compressor == null) {
+                return null;
+            }
+            if (!gzipChecked) {
+                gzipLock.lock();
+                try {
+                    if (!gzipChecked) {
+                        compress(compressor);
+                        gzipChecked = true;
+                    }
+                } finally {
+                    gzipLock.unlock();
+                }
+            }
+            return gzipContent;
+        }
+
+        // 按压缩配置的类型与最小长度判断, 可压缩的文件缓存一份gzip内容, 压缩后未变小则不缓存
+        void compress(HttpCompressor compressor) {
+            ByteArray data = this.content;
+            if (data == null || !compressor.compressible(MimeType.getByFilename(this.fileName), data.length())) {
+                return;
+            }
+            ByteArray zipped = HttpCompressor.gzip(data.content(), 0, data.length());
+            if (zipped.length() < data.length()) {
+                this.gzipContent = zipped;
+                this.servlet.cachedLength.add(zipped.length());
+            }
+        }
+
         public void remove() {
             if (this.content != null) {
                 this.servlet.cachedLength.add(0L - this.content.length());
             }
+            if (this.gzipContent != null) {
+                this.servlet.cachedLength.add(0L - this.gzipContent.length());
+            }
         }
 
         public long getCachedLength() {
-            return this.content == null ? 0L : this.content.length();
+            return (this.content == null ? 0L : this.content.length())
+                    + (this.gzipContent == null ? 0L : this.gzipContent.length());
         }
     }
 }
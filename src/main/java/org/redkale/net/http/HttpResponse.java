@@ -6,15 +6,18 @@
 package org.redkale.net.http;
 
 import java.io.*;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.StandardOpenOption;
 import java.time.ZoneId;
 import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.*;
 import java.util.logging.*;
 import org.redkale.annotation.Nonnull;
@@ -74,6 +77,29 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
 
     protected static final String CONTENT_TYPE_HTML_UTF8 = "text/html; charset=utf-8";
 
+    protected static final String CONTENT_TYPE_NDJSON_UTF8 = "application/x-ndjson; charset=utf-8";
+
+    protected static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes();
+
+    protected static final String CONTENT_TYPE_EVENT_STREAM = "text/event-stream; charset=utf-8";
+
+    // SSE心跳, 内容为注释行的chunk
+    protected static final byte[] EVENT_HEARTBEAT_CHUNK = "3\r\n:\n\n\r\n".getBytes();
+
+    protected static final byte[] EVENT_ID = "id: ".getBytes();
+
+    protected static final byte[] EVENT_NAME = "event: ".getBytes();
+
+    protected static final byte[] EVENT_RETRY = "retry: ".getBytes();
+
+    protected static final byte[] EVENT_DATA = "data: ".getBytes();
+
+    // SSE默认心跳间隔秒数
+    protected static final int DEFAULT_EVENT_HEARTBEAT_SECONDS = 15;
+
+    // pipeline中的流式输出需整体缓存, 超出该大小时以500状态码结束
+    protected static final int MAX_STREAM_BUFFER_SIZE = 16 * 1024 * 1024;
+
     private static final int CACHE_MAX_CONTENT_LENGTH = 1000;
 
     private static final byte[] status200_server_live_Bytes =
@@ -192,6 +218,12 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
 
     private final HttpRender httpRender;
 
+    // 响应压缩, 为null表示不压缩
+    private final HttpCompressor compressor;
+
+    // 压缩结果的缓存, 随HttpResponse复用
+    private ByteArray compressArray;
+
     private final ByteArray headerArray = new ByteArray();
 
     private final byte[][] plainLiveContentLengthArray;
@@ -220,6 +252,7 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
         this.autoOptions = config != null && config.autoOptions;
         this.dateSupplier = config == null ? null : config.dateSupplier;
         this.httpRender = config == null ? null : config.httpRender;
+        this.compressor = config == null ? null : config.compressor;
 
         this.plainContentType = config == null ? "text/plain; charset=utf-8" : config.plainContentType;
         this.jsonContentType = config == null ? "application/json; charset=utf-8" : config.jsonContentType;
@@ -265,6 +298,9 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
         this.encryptHandler = null;
         this.respHeadContainsConnection = false;
         this.jsonWriter.recycle();
+        if (this.compressArray != null) {
+            this.compressArray.recycle();
+        }
         return super.recycle();
     }
 
@@ -736,7 +772,132 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
      * @param publisher Publisher输出对象
      */
     public final void finishPublisher(final Convert convert, Type valueType, Object publisher) {
-        finishFuture(convert, valueType, (CompletionStage) Flows.maybePublisherToFuture(publisher));
+        Convert cc = convert == null ? request.getRespConvert() : convert;
+        // 只有JSON可逐个元素拼接成数组; 其他Convert及pipeline中的请求仍收集成List后整体输出
+        Flow.Publisher flux = cc instanceof JsonConvert && request.pipelineIndex() == 0 && !channel.hasPipelineData()
+                ? Flows.maybeFluxToFlowPublisher(publisher)
+                : null;
+        if (flux != null) { // Flux为多元素, 以JSON数组流式输出
+            finishStream(cc, valueType, flux, StreamFormat.ARRAY);
+        } else {
+            finishFuture(convert, valueType, (CompletionStage) Flows.maybePublisherToFuture(publisher));
+        }
+    }
+
+    /**
+     * 将Flow.Publisher的元素以JSON数组流式输出
+     *
+     * @see #finishStream(org.redkale.convert.Convert, java.lang.reflect.Type, java.util.concurrent.Flow.Publisher,
+     *     org.redkale.net.http.HttpResponse.StreamFormat)
+     * @param <T> 泛型
+     * @param itemType 元素的类型
+     * @param publisher Publisher输出对象
+     */
+    public final <T> void finishStream(Type itemType, Flow.Publisher<T> publisher) {
+        finishStream(request.getRespConvert(), itemType, publisher, StreamFormat.ARRAY);
+    }
+
+    /**
+     * 将Flow.Publisher的元素流式输出 <br>
+     * 每个元素用Convert序列化后按format组帧, 以HTTP/1.1 chunked方式分块输出, 不会在内存中缓存全部结果 <br>
+     * 每批元素写入socket完成后才会向Publisher请求下一批, 慢速连接会通过背压让Publisher减速 <br>
+     * pipeline中的请求需按顺序输出, 会收集全部元素后整体输出, 超出MAX_STREAM_BUFFER_SIZE时取消订阅并以500状态码结束 <br>
+     * ARRAY格式只对JsonConvert逐个元素组帧, 其他Convert收集成List后整体序列化
+     *
+     * @param <T> 泛型
+     * @param convert 指定的Convert
+     * @param itemType 元素的类型
+     * @param publisher Publisher输出对象
+     * @param format 组帧格式
+     */
+    public <T> void finishStream(
+            final Convert convert, Type itemType, Flow.Publisher<T> publisher, StreamFormat format) {
+        if (isClosed()) {
+            return;
+        }
+        Convert cc = convert == null ? request.getRespConvert() : convert;
+        StreamFormat sf = format == null ? StreamFormat.ARRAY : format;
+        if (sf == StreamFormat.ARRAY && !(cc instanceof JsonConvert)) { // 非JSON的数组编码不能由元素拼接而成
+            Type listType = TypeToken.createParameterizedType(null, List.class, itemType);
+            finishFuture(cc, listType, (CompletionStage) Flows.createFluxFuture(publisher));
+            return;
+        }
+        if (sf == StreamFormat.ARRAY) {
+            this.contentType = this.jsonContentType;
+        } else if (sf == StreamFormat.LINES) {
+            this.contentType = CONTENT_TYPE_NDJSON_UTF8;
+        } else if (this.contentType == null) {
+            this.contentType = cc instanceof JsonConvert ? this.jsonContentType : this.plainContentType;
+        }
+        boolean chunked = request.pipelineIndex() == 0 && !channel.hasPipelineData();
+        publisher.subscribe(new StreamSubscriber<>(cc, itemType, sf, chunked, 0));
+    }
+
+    /**
+     * 将第三方类Flow.Publisher对象(如: Flux)以Server-Sent Events方式输出
+     *
+     * @param valueType Publisher的泛型类型
+     * @param publisher Publisher输出对象
+     * @since 2.8.0
+     */
+    public final void finishEventStream(Type valueType, Object publisher) {
+        finishEventStream((Convert) null, valueType, publisher);
+    }
+
+    /**
+     * 将第三方类Flow.Publisher对象(如: Flux)以Server-Sent Events方式输出
+     *
+     * @param convert 指定的Convert
+     * @param valueType Publisher的泛型类型
+     * @param publisher Publisher输出对象
+     * @since 2.8.0
+     */
+    public final void finishEventStream(final Convert convert, Type valueType, Object publisher) {
+        Flow.Publisher flux = publisher instanceof Flow.Publisher
+                ? (Flow.Publisher) publisher
+                : Flows.maybeFluxToFlowPublisher(publisher);
+        if (flux != null) {
+            finishEventStream(convert, valueType, flux, DEFAULT_EVENT_HEARTBEAT_SECONDS);
+        } else { // Mono等单元素结果按普通结果输出
+            finishFuture(convert, valueType, (CompletionStage) Flows.maybePublisherToFuture(publisher));
+        }
+    }
+
+    /**
+     * 将Flow.Publisher的元素以Server-Sent Events(text/event-stream)方式输出 <br>
+     * 响应头在订阅时立即输出, 之后每个元素到达即编码为一个事件写入连接, 连接保持到Publisher结束 <br>
+     * 元素为HttpEvent时输出id/event/retry/data字段, 其他对象作为data输出 <br>
+     * 空闲超过heartbeatSeconds时用AsyncIOGroup的定时器输出注释行心跳, 防止中间代理断开空闲连接 <br>
+     * 事件流无法整体缓存, pipeline中的请求直接以500状态码结束
+     *
+     * @param <T> 泛型
+     * @param convert 指定的Convert
+     * @param itemType 元素的类型, 元素为HttpEvent时为其data的类型
+     * @param publisher Publisher输出对象
+     * @param heartbeatSeconds 心跳间隔秒数, 小于1表示不发心跳
+     * @since 2.8.0
+     */
+    public <T> void finishEventStream(
+            final Convert convert, Type itemType, Flow.Publisher<T> publisher, int heartbeatSeconds) {
+        if (isClosed()) {
+            return;
+        }
+        if (request.pipelineIndex() != 0 || channel.hasPipelineData()) {
+            context.getLogger()
+                    .log(Level.WARNING, "event stream not supported in pipeline request, request = " + request);
+            finish500();
+            return;
+        }
+        Convert cc = convert == null ? request.getRespConvert() : convert;
+        this.contentType = CONTENT_TYPE_EVENT_STREAM;
+        setHeader("Cache-Control", "no-cache");
+        Type type = itemType;
+        if (TypeToken.typeToClass(type) == HttpEvent.class) {
+            type = type instanceof ParameterizedType
+                    ? ((ParameterizedType) type).getActualTypeArguments()[0]
+                    : Object.class;
+        }
+        publisher.subscribe(new StreamSubscriber<>(cc, type, StreamFormat.EVENT, true, heartbeatSeconds));
     }
 
     /**
@@ -1020,6 +1181,20 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
             if (contentType != null) {
                 this.contentType = contentType;
             }
+            int encoding = compressEncoding(bodyLength);
+            if (encoding != HttpCompressor.ENCODING_NONE) {
+                ByteArray zipped = this.compressArray;
+                if (zipped == null) {
+                    zipped = new ByteArray();
+                    this.compressArray = zipped;
+                }
+                zipped.clear();
+                compressor.compress(encoding, bodyContent, bodyOffset, bodyLength, zipped);
+                this.header.setValue("Content-Encoding", HttpCompressor.encodingName(encoding));
+                bodyContent = zipped.content();
+                bodyOffset = 0;
+                bodyLength = zipped.length();
+            }
             this.contentLength = bodyLength;
             createHeader();
         }
@@ -1058,6 +1233,29 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
         super.finish(false, bytes405);
     }
 
+    /**
+     * 将连接交由HTTP/2处理, 当前HttpResponse回收, 之后每个stream从连接池中获取新的HttpResponse
+     *
+     * @since 2.8.0
+     */
+    protected void startHttp2() {
+        byte[] preface = request.getBody(); // 前言之后已读取的数据
+        Http2ReadHandler handler =
+                new Http2ReadHandler(context, removeChannel(), this.responseSupplier, this.responseConsumer);
+        abort();
+        handler.start(preface);
+    }
+
+    // 创建HTTP/2的stream对应的HttpResponse
+    static HttpResponse createStreamResponse(
+            Supplier<Response> supplier, Consumer<Response> consumer, AsyncConnection channel) {
+        HttpResponse response = (HttpResponse) supplier.get();
+        response.responseSupplier = supplier;
+        response.responseConsumer = consumer;
+        response.init(channel);
+        return response;
+    }
+
     /** 以500状态码输出 */
     public void finish500() {
         skipHeader();
@@ -1070,6 +1268,57 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
         super.finish(false, bytes504);
     }
 
+    // 根据请求的Accept-Encoding与响应内容决定压缩方式, 缓存结果与已设置Content-Encoding的响应不压缩
+    // 可压缩的内容无论是否压缩都输出Vary, 避免中间缓存把未压缩的内容返回给支持压缩的客户端
+    private int compressEncoding(int bodyLength) {
+        if (compressor == null
+                || cacheHandler != null
+                || request.isWebSocket()
+                || header.getValue("Content-Encoding") != null
+                || !compressor.compressible(
+                        this.contentType == null ? this.plainContentType : this.contentType, bodyLength)) {
+            return HttpCompressor.ENCODING_NONE;
+        }
+        varyAcceptEncoding();
+        return HttpCompressor.acceptEncoding(request.getHeader("Accept-Encoding"));
+    }
+
+    // 在已有的Vary后追加Accept-Encoding, 已包含Accept-Encoding或*时不变
+    private void varyAcceptEncoding() {
+        String[] varys = header.getValues("Vary");
+        for (String vary : varys) {
+            for (String item : vary.split(",")) {
+                String name = item.trim();
+                if (name.equals("*") || name.equalsIgnoreCase("Accept-Encoding")) {
+                    return;
+                }
+            }
+        }
+        if (varys.length == 0 || varys[0].trim().isEmpty()) {
+            header.setValue("Vary", "Accept-Encoding");
+        } else {
+            header.setValue("Vary", varys[0] + ", Accept-Encoding");
+        }
+    }
+
+    // 响应压缩配置, 未开启压缩时为null
+    HttpCompressor getCompressor() {
+        return compressor;
+    }
+
+    /**
+     * 判断是否可以输出预压缩的gzip内容
+     *
+     * @return boolean
+     */
+    boolean acceptGzip() {
+        return compressor != null
+                && header.getValue("Content-Encoding") == null
+                && request.getHeader("Range") == null
+                && HttpCompressor.acceptEncoding(request.getHeader("Accept-Encoding"))
+                        == HttpCompressor.ENCODING_GZIP;
+    }
+
     // Header大小
     protected void createHeader() {
         headerArray.clear();
@@ -1292,18 +1541,40 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
      * @throws IOException IO异常
      */
     protected void finishFile(final String fileName, final File file, ByteArray fileBody) throws IOException {
+        finishFile(fileName, file, fileBody, null);
+    }
+
+    /**
+     * 将指定文件句柄或文件内容按指定文件名输出, 客户端接受gzip时优先输出预压缩的gzipBody <br>
+     * gzipBody需按当前响应的压缩配置生成, 未开启压缩时应为null
+     *
+     * @param fileName 输出文件名
+     * @param file 输出文件
+     * @param fileBody 文件内容， 没有则输出file
+     * @param gzipBody 预压缩的文件内容, 可为null
+     * @throws IOException IO异常
+     */
+    void finishFile(final String fileName, final File file, ByteArray fileBody, ByteArray gzipBody)
+            throws IOException {
         if ((file == null || !file.isFile() || !file.canRead()) && fileBody == null) {
             finish404();
             return;
         }
+        final boolean gzip = gzipBody != null && fileBody != null && acceptGzip();
+        if (gzipBody != null) { // 有预压缩内容的文件按Accept-Encoding输出不同内容
+            varyAcceptEncoding();
+        }
+        if (gzip) {
+            this.header.setValue("Content-Encoding", "gzip");
+        }
         final long length = file == null ? fileBody.length() : file.length();
         final String match = request.getHeader("If-None-Match");
-        final String etag = (file == null ? 0L : file.lastModified()) + "-" + length;
+        final String etag = (file == null ? 0L : file.lastModified()) + "-" + length + (gzip ? "-gzip" : "");
         if (match != null && etag.equals(match)) {
             // finish304();
             // return;
         }
-        this.contentLength = length;
+        this.contentLength = gzip ? gzipBody.length() : length;
         if (Utility.isNotEmpty(fileName) && file != null) {
             if (this.header.getValue("Content-Disposition") == null) {
                 addHeader("Content-Disposition", "attachment;filename=" + URLEncoder.encode(fileName, "UTF-8"));
@@ -1335,9 +1606,14 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
         this.addHeader("ETag", etag);
         createHeader();
         ByteArray headerData = headerArray;
-        if (fileBody != null) { // 一般HttpResourceServlet缓存file内容时fileBody不为空
+        if (gzip) {
+            headerData.put(gzipBody, 0, gzipBody.length());
+            super.finish(false, headerData.content(), 0, headerData.length());
+        } else if (fileBody != null) { // 一般HttpResourceServlet缓存file内容时fileBody不为空
             if (start >= 0) {
                 headerData.put(fileBody, (int) start, (int) ((len > 0) ? len : fileBody.length() - start));
+            } else {
+                headerData.put(fileBody, 0, fileBody.length());
             }
             super.finish(false, headerData.content(), 0, headerData.length());
         } else {
@@ -1739,6 +2015,17 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
 
         public AnyValue renderConfig;
 
+        // 响应压缩的最小字节数, 小于0表示不压缩
+        public int compressMinLength = -1;
+
+        // 压缩级别, 1-9
+        public int compressLevel = 6;
+
+        // 可压缩的Content-Type前缀, 为空表示使用默认值
+        public String[] compressTypes;
+
+        HttpCompressor compressor;
+
         public final byte[][] plainLiveContentLengthArray = new byte[CACHE_MAX_CONTENT_LENGTH][];
 
         public final byte[][] jsonLiveContentLengthArray = new byte[CACHE_MAX_CONTENT_LENGTH][];
@@ -1771,6 +2058,9 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
                             append(append(status200_server_close_Bytes, jsonContentTypeBytes), lenbytes);
                 }
             }
+            if (this.compressor == null && this.compressMinLength >= 0) {
+                this.compressor = new HttpCompressor(compressMinLength, compressLevel, compressTypes);
+            }
             return this;
         }
 
@@ -1779,4 +2069,392 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
             return JsonConvert.root().convertTo(this);
         }
     }
+
+    /** 流式输出的组帧格式 */
+    public static enum StreamFormat {
+        /** JSON数组, 输出: [item1,item2] */
+        ARRAY,
+        /** JSON-lines, 每个元素一行, Content-Type为application/x-ndjson */
+        LINES,
+        /** 元素序列化后的内容直接输出, 不加分隔符 */
+        RAW,
+        /**
+         * Server-Sent Events, 每个元素为一个事件, Content-Type为text/event-stream
+         *
+         * @since 2.8.0
+         */
+        EVENT;
+    }
+
+    // 流式输出的Subscriber, 一批元素全部收到并写入完成后才请求下一批
+    private class StreamSubscriber<T> implements Flow.Subscriber<T>, CompletionHandler<Integer, Void> {
+
+        // 每批请求的元素数
+        private static final int BATCH_SIZE = 32;
+
+        // chunk长度的占位: 8位十六进制 + \r\n
+        private static final int CHUNK_SIZE_LENGTH = 10;
+
+        private final Convert convert;
+
+        private final Type itemType;
+
+        private final StreamFormat format;
+
+        private final boolean chunked;
+
+        // 每批请求的元素数, SSE每个事件到达即输出
+        private final int batchSize;
+
+        // SSE心跳间隔秒数
+        private final int heartbeatSeconds;
+
+        private final ByteArray array = new ByteArray();
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private Flow.Subscription subscription;
+
+        // 已请求未收到的元素数
+        private int pending;
+
+        // 已输出的元素数
+        private long count;
+
+        // 当前chunk的起始位置
+        private int chunkStart = -1;
+
+        // 是否已向socket写过数据
+        private boolean written;
+
+        private boolean writing;
+
+        // 正在输出心跳, 写入完成后不清空array
+        private boolean heartbeating;
+
+        // 心跳写入期间当前批次已收齐, 待写入完成后输出
+        private boolean ready;
+
+        private ScheduledFuture heartbeatFuture;
+
+        // 最后一次向socket写数据的时间点
+        private long lastWriteTime;
+
+        // Publisher已结束
+        private boolean completed;
+
+        // 最后一个chunk已输出
+        private boolean finished;
+
+        private Throwable error;
+
+        public StreamSubscriber(
+                Convert convert, Type itemType, StreamFormat format, boolean chunked, int heartbeatSeconds) {
+            this.convert = convert;
+            this.itemType = itemType;
+            this.format = format;
+            this.chunked = chunked;
+            this.batchSize = format == StreamFormat.EVENT ? 1 : BATCH_SIZE;
+            this.heartbeatSeconds = heartbeatSeconds;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            this.subscription = s;
+            if (chunked) {
+                setHeader("Transfer-Encoding", "chunked");
+                createHeader();
+                array.put(headerArray, 0, headerArray.length());
+                headerArray.clear();
+                if (format == StreamFormat.EVENT) { // SSE先输出响应头, 写入完成后再请求事件
+                    lock.lock();
+                    try {
+                        flush(false);
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (heartbeatSeconds > 0) {
+                        scheduleHeartbeat(heartbeatSeconds * 1000L);
+                    }
+                    return;
+                }
+            }
+            this.pending = batchSize;
+            s.request(batchSize);
+        }
+
+        @Override
+        public void onNext(T item) {
+            if (completed) { // 超出缓存上限后已取消订阅
+                return;
+            }
+            if (chunked && chunkStart < 0) {
+                chunkStart = array.length();
+                array.putPlaceholder(CHUNK_SIZE_LENGTH);
+            }
+            if (format == StreamFormat.ARRAY) {
+                array.put((byte) (count == 0 ? '[' : ','));
+            }
+            if (format == StreamFormat.EVENT) {
+                putEvent(item);
+            } else if (format == StreamFormat.RAW && item instanceof byte[]) {
+                array.put((byte[]) item);
+            } else if (format == StreamFormat.RAW && item instanceof CharSequence) {
+                array.put(item.toString().getBytes(StandardCharsets.UTF_8));
+            } else if (convert instanceof JsonConvert) {
+                convert.convertToBytes(array, itemType, item);
+            } else {
+                array.put(convert.convertToBytes(itemType, item));
+            }
+            if (format == StreamFormat.LINES) {
+                array.put((byte) '\n');
+            }
+            count++;
+            if (!chunked) {
+                if (array.length() > MAX_STREAM_BUFFER_SIZE) {
+                    overflow();
+                } else if (--pending == 0) {
+                    pending = batchSize;
+                    getWorkExecutor().execute(() -> subscription.request(batchSize));
+                }
+            } else if (--pending == 0) {
+                lock.lock();
+                try {
+                    if (writing) { // 心跳写入中
+                        ready = true;
+                    } else {
+                        flush(false);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        // 按SSE格式编码一个事件
+        private void putEvent(Object item) {
+            Object data = item;
+            if (item instanceof HttpEvent) {
+                HttpEvent event = (HttpEvent) item;
+                if (event.getId() != null) {
+                    array.put(EVENT_ID).put(event.getId().getBytes(StandardCharsets.UTF_8));
+                    array.put((byte) '\n');
+                }
+                if (event.getEvent() != null) {
+                    array.put(EVENT_NAME).put(event.getEvent().getBytes(StandardCharsets.UTF_8));
+                    array.put((byte) '\n');
+                }
+                if (event.getRetry() > 0) {
+                    array.put(EVENT_RETRY).put(String.valueOf(event.getRetry()).getBytes());
+                    array.put((byte) '\n');
+                }
+                data = event.getData();
+            }
+            if (data instanceof CharSequence) { // 文本中每一行对应一个data行
+                String text = data.toString();
+                int start = 0;
+                int pos;
+                while ((pos = text.indexOf('\n', start)) >= 0) {
+                    int end = pos > start && text.charAt(pos - 1) == '\r' ? pos - 1 : pos;
+                    array.put(EVENT_DATA).put(text.substring(start, end).getBytes(StandardCharsets.UTF_8));
+                    array.put((byte) '\n');
+                    start = pos + 1;
+                }
+                array.put(EVENT_DATA).put(text.substring(start).getBytes(StandardCharsets.UTF_8));
+            } else if (data != null) {
+                array.put(EVENT_DATA);
+                if (convert instanceof JsonConvert) {
+                    convert.convertToBytes(array, itemType, data);
+                } else {
+                    array.put(convert.convertToBytes(itemType, data));
+                }
+            } else {
+                array.put(EVENT_DATA);
+            }
+            array.put((byte) '\n').put((byte) '\n');
+        }
+
+        // pipeline中缓存的数据超出上限
+        private void overflow() {
+            lock.lock();
+            try {
+                completed = true;
+                array.clear();
+            } finally {
+                lock.unlock();
+            }
+            subscription.cancel();
+            context.getLogger()
+                    .log(Level.WARNING, "stream buffer exceeds " + MAX_STREAM_BUFFER_SIZE + ", request = " + request);
+            finish500();
+        }
+
+        private void scheduleHeartbeat(long delayMillis) {
+            heartbeatFuture = channel.scheduleTimeout(this::heartbeat, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // 空闲超过心跳间隔时输出心跳, 期间有数据输出则顺延
+        private void heartbeat() {
+            lock.lock();
+            try {
+                if (finished || completed) {
+                    return;
+                }
+                long interval = heartbeatSeconds * 1000L;
+                long idle = System.currentTimeMillis() - lastWriteTime;
+                if (idle < interval || writing) {
+                    scheduleHeartbeat(writing ? interval : interval - idle);
+                    return;
+                }
+                writing = true;
+                heartbeating = true;
+                lastWriteTime = System.currentTimeMillis();
+                channel.writeInIOThread(EVENT_HEARTBEAT_CHUNK, 0, EVENT_HEARTBEAT_CHUNK.length, this);
+                scheduleHeartbeat(interval);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void cancelHeartbeat() {
+            ScheduledFuture future = this.heartbeatFuture;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (!chunked && completed) {
+                return;
+            }
+            context.getLogger()
+                    .log(Level.WARNING, "Servlet occur exception. request = " + request + ", result is Publisher", t);
+            lock.lock();
+            try {
+                completed = true;
+                error = t;
+                cancelHeartbeat();
+                if (!written) { // 未输出过数据时可返回错误状态码
+                    if (t instanceof TimeoutException) {
+                        finish504();
+                    } else {
+                        finish500();
+                    }
+                } else if (!writing) { // 已输出部分数据, 只能断开连接
+                    codecError(t);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            lock.lock();
+            try {
+                if (!chunked && completed) {
+                    return;
+                }
+                completed = true;
+                cancelHeartbeat();
+                if (!chunked) {
+                    if (format == StreamFormat.ARRAY) {
+                        array.put(count == 0 ? new byte[] {'[', ']'} : new byte[] {']'});
+                    }
+                    finish(false, null, array.content(), 0, array.length(), null, null);
+                } else if (!writing) {
+                    flush(true);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // 输出当前chunk, 需在lock内调用
+        private void flush(boolean last) {
+            ByteArray data = array;
+            if (last && format == StreamFormat.ARRAY) {
+                if (chunkStart < 0) {
+                    chunkStart = data.length();
+                    data.putPlaceholder(CHUNK_SIZE_LENGTH);
+                }
+                data.put(count == 0 ? new byte[] {'[', ']'} : new byte[] {']'});
+            }
+            if (chunkStart >= 0) {
+                int length = data.length() - chunkStart - CHUNK_SIZE_LENGTH;
+                for (int i = 7; i >= 0; i--) {
+                    data.putByte(chunkStart + i, Character.forDigit(length & 0xf, 16));
+                    length >>>= 4;
+                }
+                data.putByte(chunkStart + 8, '\r');
+                data.putByte(chunkStart + 9, '\n');
+                data.put(LINE);
+                chunkStart = -1;
+            }
+            if (last) {
+                data.put(LAST_CHUNK);
+                finished = true;
+            }
+            written = true;
+            writing = true;
+            lastWriteTime = System.currentTimeMillis();
+            channel.writeInIOThread(data.content(), 0, data.length(), this);
+        }
+
+        @Override
+        public void completed(Integer result, Void attachment) {
+            boolean next = false;
+            lock.lock();
+            try {
+                writing = false;
+                if (heartbeating) { // 心跳写入完成, array中可能有心跳期间收到的元素
+                    heartbeating = false;
+                    if (error != null) {
+                        codecError(error);
+                    } else if (ready) {
+                        ready = false;
+                        flush(false);
+                    } else if (completed) {
+                        flush(true);
+                    }
+                    return;
+                }
+                array.clear();
+                if (finished) {
+                    completeFinishBytes(result, attachment);
+                } else if (error != null) {
+                    codecError(error);
+                } else if (completed) { // 写入期间Publisher已结束
+                    flush(true);
+                } else {
+                    pending = batchSize;
+                    next = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (next) { // 同步的Publisher会在request内回调onNext, 切换线程避免写入回调的递归
+                getWorkExecutor().execute(() -> subscription.request(batchSize));
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            lock.lock();
+            try {
+                writing = false;
+                completed = true;
+                finished = true;
+                cancelHeartbeat();
+            } finally {
+                lock.unlock();
+            }
+            subscription.cancel();
+            if (context.getLogger().isLoggable(Level.FINER)) {
+                context.getLogger().log(Level.FINER, "finishStream error, request = " + request, exc);
+            }
+            codecError(exc);
+        }
+    }
 }
@@ -401,6 +401,9 @@ public class HttpServer extends Server<String, HttpContext, HttpRequest, HttpRes
         boolean lazyHeader = false;
         boolean sameHeader = false;
         int datePeriod = 0;
+        int compressMinLength = -1;
+        int compressLevel = 6;
+        String[] compressTypes = null;
         String plainContentType = null;
         String jsonContentType = null;
         HttpCookie defaultCookie = null;
@@ -515,6 +518,16 @@ public class HttpServer extends Server<String, HttpContext, HttpRequest, HttpRes
 
                 AnyValue dates = respConf.getAnyValue("date");
                 datePeriod = dates == null ? 0 : dates.getIntValue("period", 0);
+
+                AnyValue compress = respConf.getAnyValue("compress");
+                if (compress != null && compress.getBoolValue("enable", true)) {
+                    compressMinLength = compress.getIntValue("min-length", 1024);
+                    compressLevel = compress.getIntValue("level", 6);
+                    String types = compress.getValue("types", "").trim();
+                    if (!types.isEmpty()) {
+                        compressTypes = types.split("\\s*[,;]\\s*");
+                    }
+                }
             }
         }
         Supplier<byte[]> dateSupplier = null;
@@ -585,6 +598,9 @@ public class HttpServer extends Server<String, HttpContext, HttpRequest, HttpRes
         respConfig.dateSupplier = dateSupplier;
         respConfig.httpRender = httpRender;
         respConfig.renderConfig = renderConfig;
+        respConfig.compressMinLength = compressMinLength;
+        respConfig.compressLevel = compressLevel;
+        respConfig.compressTypes = compressTypes;
         respConfig.init(config);
 
         final HttpContextConfig contextConfig = new HttpContextConfig();
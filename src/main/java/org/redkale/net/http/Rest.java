@@ -3947,7 +3947,7 @@ public final class Rest {
                     mv.visitMethodInsn(
                             INVOKEVIRTUAL,
                             respInternalName,
-                            "finishPublisher",
+                            entry.eventStream ? "finishEventStream" : "finishPublisher",
                             "(" + convertDesc + typeDesc + "Ljava/lang/Object;)V",
                             false);
                 } else {
@@ -3959,7 +3959,7 @@ public final class Rest {
                     mv.visitMethodInsn(
                             INVOKEVIRTUAL,
                             respInternalName,
-                            "finishPublisher",
+                            entry.eventStream ? "finishEventStream" : "finishPublisher",
                             "(" + typeDesc + "Ljava/lang/Object;)V",
                             false);
                 }
@@ -4470,6 +4470,8 @@ public final class Rest {
 
         public final String[] methods;
 
+        public final boolean eventStream;
+
         public MappingAnn(Method method, RestDeleteMapping mapping) {
             this(
                     mapping.ignore(),
@@ -4482,7 +4484,8 @@ public final class Rest {
                     mapping.auth(),
                     mapping.actionid(),
                     mapping.cacheSeconds(),
-                    new String[] {"DELETE"});
+                    new String[] {"DELETE"},
+                    false);
         }
 
         public MappingAnn(Method method, RestPatchMapping mapping) {
@@ -4497,7 +4500,8 @@ public final class Rest {
                     mapping.auth(),
                     mapping.actionid(),
                     mapping.cacheSeconds(),
-                    new String[] {"PATCH"});
+                    new String[] {"PATCH"},
+                    false);
         }
 
         public MappingAnn(Method method, RestPutMapping mapping) {
@@ -4512,7 +4516,8 @@ public final class Rest {
                     mapping.auth(),
                     mapping.actionid(),
                     mapping.cacheSeconds(),
-                    new String[] {"PUT"});
+                    new String[] {"PUT"},
+                    false);
         }
 
         public MappingAnn(Method method, RestPostMapping mapping) {
@@ -4527,7 +4532,8 @@ public final class Rest {
                     mapping.auth(),
                     mapping.actionid(),
                     mapping.cacheSeconds(),
-                    new String[] {"POST"});
+                    new String[] {"POST"},
+                    false);
         }
 
         public MappingAnn(Method method, RestGetMapping mapping) {
@@ -4542,7 +4548,8 @@ public final class Rest {
                     mapping.auth(),
                     mapping.actionid(),
                     mapping.cacheSeconds(),
-                    new String[] {"GET"});
+                    new String[] {"GET"},
+                    mapping.eventStream());
         }
 
         public MappingAnn(Method method, RestMapping mapping) {
@@ -4557,7 +4564,8 @@ public final class Rest {
                     mapping.auth(),
                     mapping.actionid(),
                     mapping.cacheSeconds(),
-                    mapping.methods());
+                    mapping.methods(),
+                    mapping.eventStream());
         }
 
         public MappingAnn(
@@ -4569,7 +4577,8 @@ public final class Rest {
                 boolean auth,
                 int actionid,
                 int cacheSeconds,
-                String[] methods) {
+                String[] methods,
+                boolean eventStream) {
             this.ignore = ignore;
             this.name = name;
             this.example = example;
@@ -4579,6 +4588,7 @@ public final class Rest {
             this.actionid = actionid;
             this.cacheSeconds = cacheSeconds;
             this.methods = methods;
+            this.eventStream = eventStream;
         }
 
         public static List<MappingAnn> paraseMappingAnns(RestService controller, Method method) {
@@ -4725,6 +4735,7 @@ public final class Rest {
             this.actionid = mapping.actionid;
             this.cacheSeconds = mapping.cacheSeconds;
             this.comment = mapping.comment;
+            this.eventStream = mapping.eventStream;
             boolean pound = false;
             Parameter[] params = method.getParameters();
             for (Parameter param : params) {
@@ -4795,6 +4806,8 @@ public final class Rest {
 
         public final String[] methods;
 
+        public final boolean eventStream; // Flow.Publisher结果是否以text/event-stream输出
+
         String mappingurl; // 在生成方法时赋值， 供 _createRestActionEntry 使用
 
         @RestMapping()
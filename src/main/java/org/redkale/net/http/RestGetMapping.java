@@ -83,6 +83,15 @@ public @interface RestGetMapping {
      */
     String example() default "";
 
+    /**
+     * 返回类型为Flow.Publisher(如: Flux)时是否以Server-Sent Events(text/event-stream)方式输出 <br>
+     * 元素可以是HttpEvent对象, 其他对象会作为事件的data输出
+     *
+     * @since 2.8.0
+     * @return boolean
+     */
+    boolean eventStream() default false;
+
     @Documented
     @Target({METHOD})
     @Retention(RUNTIME)
@@ -53,6 +53,22 @@ public class SncpClientCodec extends ClientCodec<SncpClientRequest, SncpClientRe
         return recyclableArray;
     }
 
+    // 在读缓冲区被回收前直接反序列化body, 反序列化失败只影响对应的请求
+    private void addBodyMessage(SncpClientResult result, ByteBuffer buffer, ByteArray bodyBytes) {
+        SncpClientRequest request = findRequest(result.getRequestid());
+        try {
+            if (bodyBytes == null) {
+                result.readBody(buffer, request);
+            } else {
+                result.readBody(bodyBytes, request);
+            }
+        } catch (Throwable t) {
+            addMessage(request, t);
+            return;
+        }
+        addMessage(request, result);
+    }
+
     @Override
     public void decodeMessages(ByteBuffer realBuf, ByteArray array) {
         ByteBuffer buffer = realBuf;
@@ -88,13 +104,9 @@ public class SncpClientCodec extends ClientCodec<SncpClientRequest, SncpClientRe
                     }
                     halfBodyBytes.put(buffer, lastResult.getBodyLength() - halfBodyBytes.length());
                     // 读取完整body
-                    lastResult.setBodyContent(halfBodyBytes.getBytes());
-                    // if (halfBodyBytes.length() != lastResult.getBodyLength()) {
-                    //    logger.log(Level.SEVERE, "halfBodyBytes.length must be " + lastResult.getBodyLength() + ", but
-                    // " + halfBodyBytes.length());
-                    // }
+                    ByteArray bodyBytes = halfBodyBytes;
                     halfBodyBytes = null;
-                    addMessage(findRequest(lastResult.getRequestid()), lastResult);
+                    addBodyMessage(lastResult, null, bodyBytes);
                     lastResult = null;
                     continue;
                 }
@@ -104,13 +116,8 @@ public class SncpClientCodec extends ClientCodec<SncpClientRequest, SncpClientRe
                     return;
                 }
                 // 有足够的数据读取完整body
-                lastResult.readBody(buffer);
                 halfBodyBytes = null;
-                // if (lastResult.getBodyContent().length != lastResult.getBodyLength()) {
-                //    logger.log(Level.SEVERE, "lastResult.length must be " + lastResult.getBodyLength() + ", but " +
-                // lastResult.getBodyContent().length);
-                // }
-                addMessage(findRequest(lastResult.getRequestid()), lastResult);
+                addBodyMessage(lastResult, buffer, null);
                 lastResult = null;
                 continue;
             }
@@ -151,8 +158,7 @@ public class SncpClientCodec extends ClientCodec<SncpClientRequest, SncpClientRe
                 halfBodyBytes.put(buffer);
                 return;
             }
-            result.readBody(buffer);
-            addMessage(findRequest(result.getRequestid()), result);
+            addBodyMessage(result, buffer, null);
             lastResult = null;
         }
     }
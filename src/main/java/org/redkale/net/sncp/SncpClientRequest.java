@@ -4,7 +4,9 @@
 package org.redkale.net.sncp;
 
 import java.io.Serializable;
+import java.lang.reflect.Type;
 import java.util.Objects;
+import org.redkale.convert.pb.ProtobufConvert;
 import org.redkale.net.client.*;
 import org.redkale.util.ByteArray;
 
@@ -24,6 +26,11 @@ public class SncpClientRequest extends ClientRequest {
 
     private byte[] bodyContent;
 
+    // 响应body的反序列化类型, 不为null时SncpClientCodec直接从读缓冲区反序列化结果
+    private Type resultType;
+
+    private ProtobufConvert resultConvert;
+
     public SncpClientRequest() {
         // do nothing
     }
@@ -37,6 +44,12 @@ public class SncpClientRequest extends ClientRequest {
         return this;
     }
 
+    public SncpClientRequest resultType(ProtobufConvert convert, Type type) {
+        this.resultConvert = convert;
+        this.resultType = type;
+        return this;
+    }
+
     @Override
     protected void prepare() {
         // do nothing
@@ -49,6 +62,8 @@ public class SncpClientRequest extends ClientRequest {
         this.seqid = 0;
         this.traceid = null;
         this.bodyContent = null;
+        this.resultType = null;
+        this.resultConvert = null;
         return rs;
     }
 
@@ -87,4 +102,12 @@ public class SncpClientRequest extends ClientRequest {
     public byte[] getBodyContent() {
         return bodyContent;
     }
+
+    public Type getResultType() {
+        return resultType;
+    }
+
+    public ProtobufConvert getResultConvert() {
+        return resultConvert;
+    }
 }
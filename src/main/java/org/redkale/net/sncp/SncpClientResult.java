@@ -4,6 +4,7 @@
 package org.redkale.net.sncp;
 
 import java.io.Serializable;
+import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
 import java.util.Objects;
 import org.redkale.net.client.ClientResult;
@@ -23,6 +24,9 @@ public class SncpClientResult implements ClientResult {
 
     private byte[] bodyContent;
 
+    // 已反序列化的body结果
+    private Object bodyObject;
+
     //    protected void prepare() {
     //        //do nothing
     //    }
@@ -30,6 +34,7 @@ public class SncpClientResult implements ClientResult {
     protected boolean recycle() {
         this.header = null;
         this.bodyContent = null;
+        this.bodyObject = null;
         return true;
     }
 
@@ -50,6 +55,34 @@ public class SncpClientResult implements ClientResult {
         return true;
     }
 
+    // 直接从ByteBuffer反序列化body, 无需复制成byte[]
+    protected boolean readBody(ByteBuffer buffer, SncpClientRequest request) {
+        Type type = request == null ? null : request.getResultType();
+        if (type == null) {
+            return readBody(buffer);
+        }
+        int end = buffer.position() + header.getBodyLength();
+        try {
+            buffer.get(); // body的第一个字节为(byte)0
+            this.bodyObject = request.getResultConvert().convertFrom(type, buffer, end - buffer.position());
+        } finally {
+            buffer.position(end);
+        }
+        return true;
+    }
+
+    // 从跨ByteBuffer拼接的body中反序列化, array为可复用的ByteArray
+    protected boolean readBody(ByteArray array, SncpClientRequest request) {
+        Type type = request == null ? null : request.getResultType();
+        if (type == null) {
+            this.bodyContent = array.getBytes();
+            return true;
+        }
+        // 第一个字节为(byte)0
+        this.bodyObject = request.getResultConvert().convertFrom(type, array.content(), 1, array.length() - 1);
+        return true;
+    }
+
     public Serializable getRequestid() {
         return header == null ? null : header.getSeqid();
     }
@@ -79,6 +112,10 @@ public class SncpClientResult implements ClientResult {
         return bodyContent;
     }
 
+    public Object getBodyObject() {
+        return bodyObject;
+    }
+
     public void setBodyContent(byte[] bodyContent) {
         this.bodyContent = bodyContent;
     }
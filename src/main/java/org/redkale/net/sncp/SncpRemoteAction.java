@@ -86,6 +86,8 @@ public final class SncpRemoteAction {
 
     protected final Creator<? extends CompletableFuture> returnFutureCreator; // 返回CompletableFuture类型的构建器
 
+    protected final Type resultType; // 远程响应body的反序列化类型, void为null
+
     protected final SncpHeader header;
 
     @SuppressWarnings("unchecked")
@@ -233,6 +235,13 @@ public final class SncpRemoteAction {
             this.returnFutureClass = null;
             this.returnFutureCreator = null;
         }
+        if (this.paramHandlerIndex >= 0) {
+            this.resultType = this.paramHandlerType;
+        } else if (this.returnFutureClass != null) {
+            this.resultType = this.returnFutureType;
+        } else {
+            this.resultType = this.returnObjectType;
+        }
     }
 
     public String actionName() {
@@ -9,6 +9,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.CompletionHandler;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.*;
 import java.util.logging.*;
 import org.redkale.annotation.ClassDepends;
 import org.redkale.convert.json.JsonConvert;
@@ -17,6 +18,8 @@ import org.redkale.convert.pb.ProtobufWriter;
 import org.redkale.mq.spi.MessageAgent;
 import org.redkale.mq.spi.MessageClient;
 import org.redkale.mq.spi.MessageRecord;
+import org.redkale.net.client.ClientCircuitBreaker;
+import org.redkale.net.client.ClientCircuitOpenException;
 import static org.redkale.net.sncp.Sncp.loadRemoteMethodActions;
 import static org.redkale.net.sncp.SncpHeader.HEADER_SUBSIZE;
 import org.redkale.service.*;
@@ -120,7 +123,7 @@ public class SncpRemoteInfo<S extends Service> {
                 params[action.paramHandlerAttachIndex] = null;
             }
         }
-        final CompletableFuture<byte[]> future = remote(action, Traces.currentTraceid(), params);
+        final CompletableFuture<Object> future = remote(action, Traces.currentTraceid(), params);
         if (action.paramHandlerIndex >= 0) { // 参数中存在CompletionHandler
             final CompletionHandler handler = callbackHandler;
             final Object attach = callbackHandlerAttach;
@@ -129,12 +132,7 @@ public class SncpRemoteInfo<S extends Service> {
             } else {
                 future.whenComplete((v, t) -> {
                     if (t == null) {
-                        // v,length-1为了读掉(byte)0
-                        handler.completed(
-                                v == null
-                                        ? null
-                                        : convert.convertFrom(action.paramHandlerType, v, 1, v.length - 1),
-                                attach);
+                        handler.completed(v, attach);
                     } else {
                         handler.failed(t, attach);
                     }
@@ -142,18 +140,12 @@ public class SncpRemoteInfo<S extends Service> {
             }
         } else if (action.returnFutureClass != null) { // 返回类型为CompletableFuture
             if (action.returnFutureClass == CompletableFuture.class) {
-                // v,length-1为了读掉(byte)0
-                return (T) future.thenApply(
-                        v -> v == null ? null : convert.convertFrom(action.returnFutureType, v, 1, v.length - 1));
+                return (T) future;
             } else {
                 final CompletableFuture returnFuture = action.returnFutureCreator.create();
                 future.whenComplete((v, t) -> {
                     if (t == null) {
-                        // v,length-1为了读掉(byte)0
-                        returnFuture.complete(
-                                v == null
-                                        ? null
-                                        : convert.convertFrom(action.returnFutureType, v, 1, v.length - 1));
+                        returnFuture.complete(v);
                     } else {
                         returnFuture.completeExceptionally(t);
                     }
@@ -161,17 +153,14 @@ public class SncpRemoteInfo<S extends Service> {
                 return (T) returnFuture;
             }
         } else if (action.returnObjectType != null) { // 返回类型为JavaBean
-            // v,length-1为了读掉(byte)0
-            return (T) future.thenApply(
-                            v -> v == null ? null : convert.convertFrom(action.returnObjectType, v, 1, v.length - 1))
-                    .join();
+            return (T) future.join();
         } else { // 返回类型为void
             future.join();
         }
         return null;
     }
 
-    private CompletableFuture<byte[]> remote(
+    private CompletableFuture<Object> remote(
             final SncpRemoteAction action, final String traceid, final Object[] params) {
         if (messageAgent != null) {
             return remoteMessage(action, traceid, params);
@@ -181,7 +170,7 @@ public class SncpRemoteInfo<S extends Service> {
     }
 
     // MQ模式RPC
-    private CompletableFuture<byte[]> remoteMessage(
+    private CompletableFuture<Object> remoteMessage(
             final SncpRemoteAction action, final String traceid, final Object[] params) {
         final SncpClientRequest request =
                 createSncpClientRequest(action, this.sncpClient.clientSncpAddress, traceid, params);
@@ -229,22 +218,27 @@ public class SncpRemoteInfo<S extends Service> {
                         + ", retinfo=" + SncpResponse.getRetCodeInfo(retcode) + ")");
             }
             final int respBodyLength = header.getBodyLength();
-            byte[] body = new byte[respBodyLength];
-            buffer.get(body, 0, respBodyLength);
-            return body;
+            if (respBodyLength < 1 || action.resultType == null) {
+                return null;
+            }
+            // 跳过body的第一个字节(byte)0, 直接从消息内容反序列化
+            buffer.get();
+            return convert.convertFrom(action.resultType, buffer, respBodyLength - 1);
         });
     }
 
     // Client模式RPC
-    protected CompletableFuture<byte[]> remoteClient(
+    protected CompletableFuture<Object> remoteClient(
             final SncpRemoteAction action, final String traceid, final Object[] params) {
         final SncpClient client = this.sncpClient;
         final SncpClientRequest request = createSncpClientRequest(action, client.clientSncpAddress, traceid, params);
+        // 由SncpClientCodec在读缓冲区回收前直接反序列化结果
+        request.resultType(convert, action.resultType);
         final SocketAddress addr = action.paramAddressTargetIndex >= 0
                 ? (SocketAddress) params[action.paramAddressTargetIndex]
                 : nextRemoteAddress();
         return client.connect(addr)
-                .thenCompose(conn -> client.writeChannel(conn, request).thenApply(rs -> rs.getBodyContent()));
+                .thenCompose(conn -> client.writeChannel(conn, request).thenApply(rs -> rs.getBodyObject()));
     }
 
     protected SncpClientRequest createSncpClientRequest(
@@ -273,19 +267,25 @@ public class SncpRemoteInfo<S extends Service> {
     }
 
     protected InetSocketAddress nextRemoteAddress() {
-        InetSocketAddress addr = sncpRpcGroups.nextRemoteAddress(resourceid);
+        ToIntFunction<SocketAddress> loader = sncpClient == null ? null : sncpClient::getRespWaitingCount;
+        ClientCircuitBreaker breaker = sncpClient == null ? null : sncpClient.getCircuitBreaker();
+        Predicate<SocketAddress> available = breaker == null ? null : breaker.availablePredicate();
+        // SNCP请求没有业务key, consistent-hash以本节点的SNCP地址为key, 同一调用方固定访问同一远程节点
+        Object key = sncpClient == null ? null : sncpClient.getClientSncpAddress();
+        InetSocketAddress addr = sncpRpcGroups.nextRemoteAddress(resourceid, remoteGroup, key, loader, available);
         if (addr != null) {
             return addr;
         }
-        SncpRpcGroup srg = sncpRpcGroups.getSncpRpcGroup(remoteGroup);
-        if (srg != null) {
-            Set<InetSocketAddress> addrs = srg.getAddresses();
-            if (!addrs.isEmpty()) {
-                Iterator<InetSocketAddress> it = addrs.iterator();
-                if (it.hasNext()) {
-                    return it.next();
-                }
-            }
+        addr = remoteGroup == null ? null : sncpRpcGroups.nextGroupAddress(remoteGroup, key, loader, available);
+        if (addr != null) {
+            return addr;
+        }
+        if (available != null
+                && (sncpRpcGroups.nextRemoteAddress(resourceid, remoteGroup, key, loader, null) != null
+                        || (remoteGroup != null
+                                && sncpRpcGroups.nextGroupAddress(remoteGroup, key, loader, null) != null))) {
+            throw new ClientCircuitOpenException("All SocketAddress are ejected by remoteGroup = " + remoteGroup
+                    + ", resourceid = " + resourceid);
         }
         throw new SncpException(
                 "Not found SocketAddress by remoteGroup = " + remoteGroup + ", resourceid = " + resourceid);
@@ -34,6 +34,13 @@ public class SncpRpcGroup {
     @ConvertColumn(index = 3)
     protected Set<InetSocketAddress> addresses;
 
+    // 负载均衡策略, 取值范围: random、round-robin、least-requests、p2c、consistent-hash, 默认least-requests
+    @ConvertColumn(index = 4)
+    protected String balancer;
+
+    // 地址列表的版本号, 地址变化时递增, 负载均衡据此判断是否需要更新
+    protected volatile int version;
+
     public SncpRpcGroup() {}
 
     public SncpRpcGroup(String name, InetSocketAddress... addrs) {
@@ -72,6 +79,14 @@ public class SncpRpcGroup {
         this.protocol = protocol == null ? "TCP" : protocol;
     }
 
+    public String getBalancer() {
+        return balancer;
+    }
+
+    public void setBalancer(String balancer) {
+        this.balancer = balancer;
+    }
+
     public Set<InetSocketAddress> getAddresses() {
         return addresses;
     }
@@ -86,7 +101,17 @@ public class SncpRpcGroup {
     }
 
     public void setAddresses(Set<InetSocketAddress> addresses) {
-        this.addresses = addresses;
+        lock.lock();
+        try {
+            this.addresses = addresses;
+            this.version++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int version() {
+        return version;
     }
 
     public boolean containsAddress(InetSocketAddress addr) {
@@ -110,7 +135,9 @@ public class SncpRpcGroup {
             if (this.addresses == null) {
                 return;
             }
-            this.addresses.remove(addr);
+            if (this.addresses.remove(addr)) {
+                this.version++;
+            }
         } finally {
             lock.unlock();
         }
@@ -125,7 +152,9 @@ public class SncpRpcGroup {
             if (this.addresses == null) {
                 this.addresses = new LinkedHashSet<>();
             }
-            this.addresses.add(addr);
+            if (this.addresses.add(addr)) {
+                this.version++;
+            }
         } finally {
             lock.unlock();
         }
@@ -140,7 +169,9 @@ public class SncpRpcGroup {
             if (this.addresses == null) {
                 this.addresses = new LinkedHashSet<>();
             }
-            this.addresses.addAll(addrs);
+            if (this.addresses.addAll(addrs)) {
+                this.version++;
+            }
         } finally {
             lock.unlock();
         }
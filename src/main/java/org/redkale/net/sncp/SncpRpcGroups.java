@@ -4,9 +4,14 @@
 package org.redkale.net.sncp;
 
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.*;
+import org.redkale.annotation.Nullable;
 import org.redkale.boot.ClassFilter;
+import org.redkale.net.client.ClientBalancer;
 
 /**
  * 协议地址组合对象, 对应application.xml中group节点信息
@@ -23,6 +28,9 @@ public class SncpRpcGroups {
     // key: resourceid(serviceType:resourceName)
     protected final ConcurrentHashMap<String, Set<InetSocketAddress>> sncpClusters = new ConcurrentHashMap<>();
 
+    // key: resourceid或@group
+    protected final ConcurrentHashMap<String, BalancerEntry> sncpBalancers = new ConcurrentHashMap<>();
+
     public SncpRpcGroup getSncpRpcGroup(String group) {
         return sncpRpcGroups.get(group);
     }
@@ -36,17 +44,126 @@ public class SncpRpcGroups {
     }
 
     public InetSocketAddress nextRemoteAddress(String resourceid) {
+        return nextRemoteAddress(resourceid, null, null);
+    }
+
+    /**
+     * 按group的负载均衡策略从注册中心的地址中选择一个
+     *
+     * @param resourceid serviceType:resourceName
+     * @param group 远程group, 用于获取负载均衡策略, 可为null
+     * @param loader 地址的待响应请求数, 可为null
+     * @return 地址, 没有则返回null
+     */
+    public InetSocketAddress nextRemoteAddress(
+            String resourceid, @Nullable String group, @Nullable ToIntFunction<SocketAddress> loader) {
+        return nextRemoteAddress(resourceid, group, loader, null);
+    }
+
+    /**
+     * 按group的负载均衡策略从注册中心的可用地址中选择一个
+     *
+     * @param resourceid serviceType:resourceName
+     * @param group 远程group, 用于获取负载均衡策略, 可为null
+     * @param loader 地址的待响应请求数, 可为null
+     * @param available 地址是否可用(未被熔断), 为null表示都可用
+     * @return 地址, 没有则返回null
+     */
+    public InetSocketAddress nextRemoteAddress(
+            String resourceid,
+            @Nullable String group,
+            @Nullable ToIntFunction<SocketAddress> loader,
+            @Nullable Predicate<SocketAddress> available) {
+        return nextRemoteAddress(resourceid, group, null, loader, available);
+    }
+
+    /**
+     * 按group的负载均衡策略从注册中心的可用地址中选择一个
+     *
+     * @param resourceid serviceType:resourceName
+     * @param group 远程group, 用于获取负载均衡策略, 可为null
+     * @param key 一致性哈希的key, 为null时consistent-hash按权重随机
+     * @param loader 地址的待响应请求数, 可为null
+     * @param available 地址是否可用(未被熔断), 为null表示都可用
+     * @return 地址, 没有则返回null
+     */
+    public InetSocketAddress nextRemoteAddress(
+            String resourceid,
+            @Nullable String group,
+            @Nullable Object key,
+            @Nullable ToIntFunction<SocketAddress> loader,
+            @Nullable Predicate<SocketAddress> available) {
         if (sncpClusters.isEmpty()) {
             return null;
         }
         Set<InetSocketAddress> addrs = sncpClusters.get(resourceid);
-        if (!addrs.isEmpty()) {
-            Iterator<InetSocketAddress> it = addrs.iterator();
-            if (it.hasNext()) {
-                return it.next();
-            }
+        if (addrs == null || addrs.isEmpty()) {
+            return null;
         }
-        return null;
+        // 注册中心的地址集合每次更新都是新对象, 不会被原地修改
+        return balancerEntry(resourceid, group).select(addrs, 0, () -> addrs, key, loader, available);
+    }
+
+    /**
+     * 按group的负载均衡策略从group的地址中选择一个
+     *
+     * @param group group
+     * @param loader 地址的待响应请求数, 可为null
+     * @return 地址, 没有则返回null
+     */
+    public InetSocketAddress nextGroupAddress(String group, @Nullable ToIntFunction<SocketAddress> loader) {
+        return nextGroupAddress(group, loader, null);
+    }
+
+    /**
+     * 按group的负载均衡策略从group的可用地址中选择一个
+     *
+     * @param group group
+     * @param loader 地址的待响应请求数, 可为null
+     * @param available 地址是否可用(未被熔断), 为null表示都可用
+     * @return 地址, 没有则返回null
+     */
+    public InetSocketAddress nextGroupAddress(
+            String group,
+            @Nullable ToIntFunction<SocketAddress> loader,
+            @Nullable Predicate<SocketAddress> available) {
+        return nextGroupAddress(group, null, loader, available);
+    }
+
+    /**
+     * 按group的负载均衡策略从group的可用地址中选择一个
+     *
+     * @param group group
+     * @param key 一致性哈希的key, 为null时consistent-hash按权重随机
+     * @param loader 地址的待响应请求数, 可为null
+     * @param available 地址是否可用(未被熔断), 为null表示都可用
+     * @return 地址, 没有则返回null
+     */
+    public InetSocketAddress nextGroupAddress(
+            String group,
+            @Nullable Object key,
+            @Nullable ToIntFunction<SocketAddress> loader,
+            @Nullable Predicate<SocketAddress> available) {
+        SncpRpcGroup srg = sncpRpcGroups.get(group);
+        if (srg == null) {
+            return null;
+        }
+        int version = srg.version(); // 先读版本号, 保证之后复制的地址不旧于该版本
+        Set<InetSocketAddress> addrs = srg.getAddresses();
+        if (addrs == null || addrs.isEmpty()) {
+            return null;
+        }
+        return balancerEntry("@" + group, group).select(addrs, version, srg::copyAddresses, key, loader, available);
+    }
+
+    private BalancerEntry balancerEntry(String key, String group) {
+        BalancerEntry entry = sncpBalancers.get(key);
+        if (entry == null) {
+            SncpRpcGroup srg = group == null ? null : sncpRpcGroups.get(group);
+            String name = srg == null ? null : srg.getBalancer();
+            entry = sncpBalancers.computeIfAbsent(key, k -> new BalancerEntry(ClientBalancer.create(name)));
+        }
+        return entry;
     }
 
     public void putClusterAddress(String resourceid, Set<InetSocketAddress> set) {
@@ -55,6 +172,59 @@ public class SncpRpcGroups {
         sncpClusters.put(resourceid, set);
     }
 
+    // 通过地址集合对象+版本号判断是否需要更新ClientBalancer, 每次选择只需读取一次volatile快照
+    protected static class BalancerEntry {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final ClientBalancer balancer;
+
+        private volatile BalancerSnapshot snapshot = new BalancerSnapshot(null, -1);
+
+        public BalancerEntry(ClientBalancer balancer) {
+            this.balancer = balancer;
+        }
+
+        public InetSocketAddress select(
+                Set<InetSocketAddress> addrs,
+                int version,
+                Supplier<Set<InetSocketAddress>> copier,
+                Object key,
+                ToIntFunction<SocketAddress> loader,
+                Predicate<SocketAddress> available) {
+            if (!snapshot.matches(addrs, version)) {
+                lock.lock();
+                try {
+                    if (!snapshot.matches(addrs, version)) {
+                        Set<InetSocketAddress> copy = copier.get();
+                        balancer.update(copy.toArray(new InetSocketAddress[copy.size()]), null);
+                        this.snapshot = new BalancerSnapshot(addrs, version);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return (InetSocketAddress) balancer.select(key, loader, available);
+        }
+    }
+
+    // ClientBalancer当前使用的地址集合及其版本号
+    protected static class BalancerSnapshot {
+
+        private final Set<InetSocketAddress> source;
+
+        private final int version;
+
+        public BalancerSnapshot(Set<InetSocketAddress> source, int version) {
+            this.source = source;
+            this.version = version;
+        }
+
+        boolean matches(Set<InetSocketAddress> addrs, int ver) {
+            return source == addrs && version == ver;
+        }
+    }
+
     public String getGroup(InetSocketAddress address) {
         for (SncpRpcGroup g : sncpRpcGroups.values()) {
             if (g.containsAddress(address)) {
@@ -63,4 +63,12 @@ public @interface Entity {
      * @return boolean
      */
     boolean cacheDirect() default false;
+
+    /**
+     * (Optional) 缓存更新时的锁分段数， 为0表示使用表锁， 大于0表示按主键哈希分段的行锁(会调整为2的幂次方)
+     *
+     * @since 2.8.0
+     * @return int
+     */
+    int cacheLockStripes() default 0;
 }
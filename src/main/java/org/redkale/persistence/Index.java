@@ -17,6 +17,7 @@ import static java.lang.annotation.ElementType.TYPE;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
 import java.lang.annotation.Documented;
+import java.lang.annotation.Repeatable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 
@@ -35,11 +36,15 @@ import java.lang.annotation.Target;
  *
  * <p>If <code>ASC</code> or <code>DESC</code> is not specified, <code>ASC</code> (ascending order) is assumed.
  *
+ * <p>Entity开启缓存时, EntityCache会按第一个字段建立二级索引, 索引类型由字段类型决定(与ASC/DESC无关): 数值和时间类型的字段为有序索引,
+ * 支持EQ、IN、GT、GE、LT、LE、BETWEEN查询; 其他类型的字段为哈希索引, 支持EQ、IN查询
+ *
  * @since Java Persistence 2.1
  */
 @Documented
 @Target(TYPE)
 @Retention(RUNTIME)
+@Repeatable(Index.Indexs.class)
 public @interface Index {
 
     /**
@@ -0,0 +1,525 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.source;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.*;
+import org.redkale.source.CacheMemorySource.CacheEntry;
+import org.redkale.util.*;
+
+/**
+ * CacheMemorySource的持久化, 包含快照文件(.rdb)与追加日志(.aof) <br>
+ * 快照: 后台线程遍历数据, 每个key在自身锁内序列化, 写入临时文件后原子替换, 不阻塞其他key的读写 <br>
+ * 追加日志: 记录变更key的完整状态而非命令, 同一key在一个刷盘周期内的多次变更只写一次 <br>
+ * 快照开始时当前日志轮换为.aof.old, 快照完成后删除; 启动时依次加载快照、.aof.old、.aof, 通过内存映射分段读取 <br>
+ * 文件格式: [int magic][byte version] + 若干记录, 记录为 [int length][byte op][string key][entry]
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ */
+final class CacheMemoryPersister {
+
+    static final int MAGIC = 0x52444B43;
+
+    static final byte VERSION = 1;
+
+    static final byte OP_SET = 1;
+
+    static final byte OP_DEL = 2;
+
+    static final byte OP_FLUSH = 3;
+
+    private static final int HEADER_SIZE = 5;
+
+    // 每段内存映射的最大长度
+    private static final long MAP_CHUNK = 1L << 30;
+
+    // 写文件的批次大小
+    private static final int BATCH_SIZE = 1 << 20;
+
+    /** 追加日志的刷盘策略 */
+    public enum FsyncPolicy {
+        // 每次变更都写入并刷盘
+        ALWAYS,
+        // 每秒写入并刷盘
+        EVERYSEC,
+        // 每秒写入, 由操作系统决定刷盘时机
+        NO;
+    }
+
+    private final Logger logger = Logger.getLogger(CacheMemorySource.class.getSimpleName());
+
+    private final CacheMemorySource source;
+
+    private final File dir;
+
+    private final File snapshotFile;
+
+    private final File snapshotTmpFile;
+
+    private final File aofFile;
+
+    private final File aofOldFile;
+
+    // 快照间隔秒数, 小于1表示只在关闭时生成快照
+    private final int snapshotInterval;
+
+    private final boolean appendonly;
+
+    private final FsyncPolicy fsync;
+
+    // 待写入日志的key
+    private final Set<String> dirtyKeys = ConcurrentHashMap.newKeySet();
+
+    // 遍历dirtyKeys与轮换日志的锁, 持有期间会获取CacheEntry的锁
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    // 写日志文件的锁, 持有期间不能再获取CacheEntry的锁
+    private final ReentrantLock aofLock = new ReentrantLock();
+
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+
+    private FileChannel aofChannel;
+
+    // 加载时.aof文件的有效长度, 末尾不完整的记录会被截掉
+    private long aofValidSize = -1;
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    CacheMemoryPersister(
+            CacheMemorySource source, File dir, int snapshotInterval, boolean appendonly, FsyncPolicy fsync) {
+        this.source = source;
+        this.dir = dir;
+        String name = Utility.isEmpty(source.resourceName()) ? "cache" : source.resourceName();
+        this.snapshotFile = new File(dir, name + ".rdb");
+        this.snapshotTmpFile = new File(dir, name + ".rdb.tmp");
+        this.aofFile = new File(dir, name + ".aof");
+        this.aofOldFile = new File(dir, name + ".aof.old");
+        this.snapshotInterval = snapshotInterval;
+        this.appendonly = appendonly;
+        this.fsync = fsync == null ? FsyncPolicy.EVERYSEC : fsync;
+    }
+
+    /**
+     * 加载快照与追加日志
+     *
+     * @return 加载的记录数
+     * @throws IOException IOException
+     */
+    long load() throws IOException {
+        long count = 0;
+        count += readFile(snapshotFile, false);
+        count += readFile(aofOldFile, false);
+        count += readFile(aofFile, true);
+        return count;
+    }
+
+    void start() throws IOException {
+        dir.mkdirs();
+        if (appendonly) {
+            aofChannel = openAof();
+        }
+        this.scheduler = Utility.newScheduledExecutor(
+                2, "Redkale-" + CacheMemorySource.class.getSimpleName() + "-" + source.resourceName()
+                        + "-Persist-Thread-%s");
+        if (appendonly && fsync != FsyncPolicy.ALWAYS) {
+            scheduler.scheduleWithFixedDelay(
+                    () -> {
+                        try {
+                            flushAof();
+                        } catch (Throwable t) {
+                            logger.log(Level.SEVERE, "CacheMemorySource write aof error", t);
+                        }
+                    },
+                    1,
+                    1,
+                    TimeUnit.SECONDS);
+        }
+        if (snapshotInterval > 0) {
+            scheduler.scheduleWithFixedDelay(this::snapshot, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler = null;
+        }
+        try {
+            if (appendonly) {
+                flushAof();
+            }
+        } catch (Throwable t) {
+            logger.log(Level.SEVERE, "CacheMemorySource write aof error", t);
+        }
+        snapshot();
+        aofLock.lock();
+        try {
+            if (aofChannel != null) {
+                aofChannel.close();
+                aofChannel = null;
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "CacheMemorySource close aof error", e);
+        } finally {
+            aofLock.unlock();
+        }
+    }
+
+    // key的数据发生变更
+    void markDirty(String key) {
+        if (!appendonly) {
+            return;
+        }
+        if (fsync != FsyncPolicy.ALWAYS) {
+            dirtyKeys.add(key);
+            return;
+        }
+        // 在entry锁内写入, 保证同一key的记录顺序与变更顺序一致
+        ByteArray array = new ByteArray(256);
+        CacheEntry entry = source.peekEntry(key);
+        try {
+            if (entry == null) {
+                putDelete(array, key);
+                writeAof(array, true);
+            } else {
+                entry.lock();
+                try {
+                    if (!entry.writeRecord(array, System.currentTimeMillis())) {
+                        putDelete(array, key);
+                    }
+                    writeAof(array, true);
+                } finally {
+                    entry.unlock();
+                }
+            }
+        } catch (IOException e) {
+            throw new SourceException("write aof error", e);
+        }
+    }
+
+    // 清空了所有数据
+    void markFlush() {
+        if (!appendonly) {
+            return;
+        }
+        dirtyKeys.clear();
+        ByteArray array = new ByteArray(16);
+        putRecordStart(array, OP_FLUSH, "");
+        putRecordEnd(array, 0);
+        try {
+            writeAof(array, fsync != FsyncPolicy.NO);
+        } catch (IOException e) {
+            throw new SourceException("write aof error", e);
+        }
+    }
+
+    // 将变更的key写入日志
+    void flushAof() throws IOException {
+        drainLock.lock();
+        try {
+            ByteArray array = new ByteArray(4096);
+            Iterator<String> it = dirtyKeys.iterator();
+            while (it.hasNext()) {
+                String key = it.next();
+                it.remove();
+                appendKey(array, key);
+                if (array.length() >= BATCH_SIZE) {
+                    writeAof(array, false);
+                }
+            }
+            writeAof(array, fsync == FsyncPolicy.EVERYSEC);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * 生成快照, 同一时间只有一个快照在执行
+     *
+     * @return 是否成功
+     */
+    boolean snapshot() {
+        if (!snapshotting.compareAndSet(false, true)) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            if (appendonly) {
+                rotateAof();
+            }
+            long count = 0;
+            try (FileChannel channel = FileChannel.open(
+                    snapshotTmpFile.toPath(),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteArray array = new ByteArray(BATCH_SIZE + 4096);
+                putHeader(array);
+                long now = System.currentTimeMillis();
+                for (CacheEntry entry : source.entries()) {
+                    entry.lock();
+                    try {
+                        if (entry.writeRecord(array, now)) {
+                            count++;
+                        }
+                    } finally {
+                        entry.unlock();
+                    }
+                    if (array.length() >= BATCH_SIZE) {
+                        write(channel, array);
+                    }
+                }
+                write(channel, array);
+                channel.force(true);
+            }
+            Files.move(
+                    snapshotTmpFile.toPath(),
+                    snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            // 快照已包含轮换前日志的全部变更
+            Files.deleteIfExists(aofOldFile.toPath());
+            if (logger.isLoggable(Level.FINE)) {
+                logger.log(
+                        Level.FINE,
+                        "CacheMemorySource(" + source.resourceName() + ") snapshot " + count + " keys in "
+                                + (System.currentTimeMillis() - start) + " ms");
+            }
+            return true;
+        } catch (Throwable t) {
+            logger.log(Level.SEVERE, "CacheMemorySource(" + source.resourceName() + ") snapshot error", t);
+            return false;
+        } finally {
+            snapshotting.set(false);
+        }
+    }
+
+    // 快照开始前将当前日志轮换为.aof.old, 上次快照失败遗留的.aof.old会合并当前日志
+    private void rotateAof() throws IOException {
+        drainLock.lock();
+        try {
+            flushAof();
+            aofLock.lock();
+            try {
+                if (aofChannel != null) {
+                    aofChannel.force(true);
+                    aofChannel.close();
+                    aofChannel = null;
+                }
+                if (aofFile.isFile()) {
+                    if (aofOldFile.isFile()) {
+                        try (FileChannel in = FileChannel.open(aofFile.toPath(), StandardOpenOption.READ);
+                                FileChannel out =
+                                        FileChannel.open(aofOldFile.toPath(), StandardOpenOption.WRITE)) {
+                            long size = in.size();
+                            long position = HEADER_SIZE;
+                            out.position(out.size());
+                            while (position < size) {
+                                position += in.transferTo(position, size - position, out);
+                            }
+                            out.force(true);
+                        }
+                        Files.delete(aofFile.toPath());
+                    } else {
+                        Files.move(aofFile.toPath(), aofOldFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    }
+                }
+                aofValidSize = -1;
+                aofChannel = openAof();
+            } finally {
+                aofLock.unlock();
+            }
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private FileChannel openAof() throws IOException {
+        FileChannel channel = FileChannel.open(
+                aofFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_SIZE) {
+            channel.truncate(0);
+            ByteArray array = new ByteArray(HEADER_SIZE);
+            putHeader(array);
+            write(channel, array);
+        } else if (aofValidSize >= HEADER_SIZE && channel.size() > aofValidSize) {
+            channel.truncate(aofValidSize);
+        }
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private void appendKey(ByteArray array, String key) {
+        CacheEntry entry = source.peekEntry(key);
+        if (entry == null) {
+            putDelete(array, key);
+            return;
+        }
+        entry.lock();
+        try {
+            if (!entry.writeRecord(array, System.currentTimeMillis())) {
+                putDelete(array, key);
+            }
+        } finally {
+            entry.unlock();
+        }
+    }
+
+    private void writeAof(ByteArray array, boolean force) throws IOException {
+        aofLock.lock();
+        try {
+            if (aofChannel != null) {
+                write(aofChannel, array);
+                if (force) {
+                    aofChannel.force(false);
+                }
+            }
+        } finally {
+            aofLock.unlock();
+        }
+        array.clear();
+    }
+
+    private static void write(FileChannel channel, ByteArray array) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(array.content(), 0, array.length());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        array.clear();
+    }
+
+    // 读取文件中的记录, 末尾不完整的记录会被忽略
+    private long readFile(File file, boolean aof) throws IOException {
+        if (!file.isFile()) {
+            return 0;
+        }
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return 0;
+            }
+            final long now = System.currentTimeMillis();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(MAP_CHUNK, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                if (position == 0) {
+                    if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                        throw new IOException(file + " is not a valid CacheMemorySource persistence file");
+                    }
+                }
+                boolean broken = false;
+                while (buffer.remaining() >= 4) {
+                    int mark = buffer.position();
+                    int len = buffer.getInt();
+                    if (len < 1 || len > MAP_CHUNK - 4) {
+                        broken = true;
+                        buffer.position(mark);
+                        break;
+                    }
+                    if (buffer.remaining() < len) { // 记录跨越了映射段, 从记录起始处重新映射
+                        buffer.position(mark);
+                        break;
+                    }
+                    int end = buffer.position() + len;
+                    ByteBuffer record = buffer.duplicate();
+                    record.limit(end);
+                    applyRecord(record.slice(), now);
+                    buffer.position(end);
+                    count++;
+                }
+                position += buffer.position();
+                if (broken || (buffer.hasRemaining() && position + buffer.remaining() >= size)) {
+                    logger.log(
+                            Level.WARNING,
+                            file + " has " + (size - position) + " bytes incomplete data at " + position
+                                    + ", ignored");
+                    break;
+                }
+            }
+            if (aof) {
+                aofValidSize = position;
+            }
+        }
+        return count;
+    }
+
+    private void applyRecord(ByteBuffer buffer, long now) {
+        byte op = buffer.get();
+        String key = getString(buffer);
+        if (op == OP_SET) {
+            CacheEntry entry = CacheEntry.readFrom(key, buffer, now);
+            if (entry == null) { // 已过期
+                source.restoreDelete(key);
+            } else {
+                source.restoreEntry(entry);
+            }
+        } else if (op == OP_DEL) {
+            source.restoreDelete(key);
+        } else if (op == OP_FLUSH) {
+            source.restoreFlush();
+        }
+    }
+
+    private static void putHeader(ByteArray array) {
+        array.putInt(MAGIC);
+        array.put(VERSION);
+    }
+
+    private static void putDelete(ByteArray array, String key) {
+        int start = putRecordStart(array, OP_DEL, key);
+        putRecordEnd(array, start);
+    }
+
+    /**
+     * 写入记录头, 长度先占位
+     *
+     * @param array ByteArray
+     * @param op 操作类型
+     * @param key key
+     * @return 记录的起始位置
+     */
+    static int putRecordStart(ByteArray array, byte op, String key) {
+        int start = array.length();
+        array.putInt(0);
+        array.put(op);
+        putString(array, key);
+        return start;
+    }
+
+    static void putRecordEnd(ByteArray array, int start) {
+        array.putInt(start, array.length() - start - 4);
+    }
+
+    static void putString(ByteArray array, String value) {
+        byte[] bs = value.getBytes(StandardCharsets.UTF_8);
+        array.putInt(bs.length);
+        array.put(bs);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        byte[] bs = new byte[buffer.getInt()];
+        buffer.get(bs);
+        return new String(bs, StandardCharsets.UTF_8);
+    }
+}
@@ -5,8 +5,9 @@
  */
 package org.redkale.source;
 
-import java.io.Serializable;
+import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.*;
@@ -28,6 +29,16 @@ import org.redkale.util.*;
 
 /**
  * CacheSource的默认实现--内存缓存 注意: url 需要指定为 memory:cachesource
+ * <br>
+ * properties可配置: <br>
+ * maxmemory: 内存上限(估算值), 如64M, 默认不限制 <br>
+ * maxmemory-policy: 淘汰策略, 可选noeviction、allkeys-lru、allkeys-lfu、allkeys-random、volatile-lru、volatile-lfu、
+ * volatile-random、volatile-ttl或EvictionPolicy的实现类名, 默认noeviction <br>
+ * maxmemory-samples: 每次淘汰的采样数, 默认5 <br>
+ * persist-dir: 持久化目录, 配置后启动时加载快照与追加日志, 关闭时生成快照, 默认不持久化 <br>
+ * snapshot-interval: 生成快照的间隔秒数, 默认0表示只在关闭时生成 <br>
+ * appendonly: 是否开启追加日志, 默认false <br>
+ * appendfsync: 追加日志的刷盘策略, 可选always、everysec、no, 默认everysec
  *
  * <p>详情见: https://redkale.org
  *
@@ -54,6 +65,43 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     private final ReentrantLock containerLock = new ReentrantLock();
 
+    // 过期时间轮, 只处理到期的key
+    private final TimerWheel<CacheEntry> timerWheel = new TimerWheel<>();
+
+    private final ReentrantLock timerLock = new ReentrantLock();
+
+    // 内存上限(估算值), 小于1表示不限制
+    private long maxMemory;
+
+    // 内存淘汰策略
+    private EvictionPolicy evictionPolicy = EvictionPolicies.NOEVICTION;
+
+    // 每次淘汰的采样数
+    private int evictionSamples = 5;
+
+    // 已使用内存(估算值)
+    private final AtomicLong usedMemory = new AtomicLong();
+
+    private final LongAdder hitCounter = new LongAdder();
+
+    private final LongAdder missCounter = new LongAdder();
+
+    private final LongAdder expiredCounter = new LongAdder();
+
+    private final LongAdder evictedCounter = new LongAdder();
+
+    private final ReentrantLock evictLock = new ReentrantLock();
+
+    // 当前采样段, 需在evictLock内使用
+    private Spliterator<CacheEntry> sampleSpliterator;
+
+    private CacheEntry sampleEntry;
+
+    private final Consumer<CacheEntry> sampleConsumer = e -> this.sampleEntry = e;
+
+    // 持久化, 未配置persist-dir时为null
+    private volatile CacheMemoryPersister persister;
+
     private final ConcurrentHashMap<String, RateLimitEntry> rateLimitContainer = new ConcurrentHashMap<>();
 
     private final ReentrantLock rateLimitContainerLock = new ReentrantLock();
@@ -142,9 +190,82 @@ public final class CacheMemorySource extends AbstractCacheSource {
                         e);
             }
         }
+        this.maxMemory = parseMemory(prop == null ? null : prop.getValue("maxmemory"));
+        this.evictionSamples = Math.max(1, prop == null ? 5 : prop.getIntValue("maxmemory-samples", 5));
+        String policy = prop == null ? null : prop.getValue("maxmemory-policy");
+        if (policy != null && !policy.isEmpty()) {
+            try {
+                this.evictionPolicy = EvictionPolicies.valueOf(
+                        policy.trim().replace('-', '_').toUpperCase());
+            } catch (IllegalArgumentException ie) { // 自定义策略类
+                try {
+                    Class clazz = Thread.currentThread().getContextClassLoader().loadClass(policy);
+                    this.evictionPolicy =
+                            (EvictionPolicy) clazz.getDeclaredConstructor().newInstance();
+                    RedkaleClassLoader.putReflectionDeclaredConstructors(clazz, policy);
+                } catch (Throwable e) {
+                    throw new SourceException("new maxmemory-policy class (" + policy + ") instance error", e);
+                }
+            }
+        }
+        String persistDir = prop == null ? null : prop.getValue("persist-dir");
+        if (persister == null && persistDir != null && !persistDir.trim().isEmpty()) {
+            String fsync = prop.getValue("appendfsync", "everysec");
+            CacheMemoryPersister p = new CacheMemoryPersister(
+                    this,
+                    new File(persistDir.trim()),
+                    prop.getIntValue("snapshot-interval", 0),
+                    prop.getBoolValue("appendonly", false),
+                    CacheMemoryPersister.FsyncPolicy.valueOf(fsync.trim().toUpperCase()));
+            try {
+                long start = System.currentTimeMillis();
+                long count = p.load();
+                p.start();
+                logger.info(self.getClass().getSimpleName() + ":" + self.resourceName() + " load " + count
+                        + " records from " + persistDir + " in " + (System.currentTimeMillis() - start) + " ms");
+            } catch (IOException e) {
+                throw new SourceException("load persistence data from " + persistDir + " error", e);
+            }
+            this.persister = p;
+            checkMemory();
+        }
         if (scheduler == null) {
             this.scheduler = Utility.newScheduledExecutor(
                     1, "Redkale-" + CacheMemorySource.class.getSimpleName() + "-" + resourceName() + "-Expirer-Thread");
+            final List<CacheEntry> expires = new ArrayList<>();
+            scheduler.scheduleWithFixedDelay(
+                    () -> {
+                        try {
+                            expires.clear();
+                            long now = System.currentTimeMillis();
+                            timerLock.lock();
+                            try {
+                                timerWheel.advance(now, expires::add);
+                            } finally {
+                                timerLock.unlock();
+                            }
+                            for (CacheEntry entry : expires) {
+                                if (!entry.isExpired(now)) { // 过期时间已被修改
+                                    scheduleExpire(entry);
+                                } else if (container.remove(entry.key, entry)) {
+                                    releaseEntry(entry);
+                                    expiredCounter.increment();
+                                    if (expireHandler != null) {
+                                        expireHandler.accept(entry);
+                                    }
+                                }
+                            }
+                            if (maxMemory > 0) {
+                                refreshMemory(100);
+                                checkMemory();
+                            }
+                        } catch (Throwable t) {
+                            logger.log(Level.SEVERE, "CacheMemorySource schedule(interval=1s) error", t);
+                        }
+                    },
+                    1,
+                    1,
+                    TimeUnit.SECONDS);
             final List<String> keys = new ArrayList<>();
             int interval = 30;
             scheduler.scheduleWithFixedDelay(
@@ -152,20 +273,8 @@ public final class CacheMemorySource extends AbstractCacheSource {
                         try {
                             keys.clear();
                             long now = System.currentTimeMillis();
-                            container.forEach((k, x) -> {
-                                if (x.isExpired(now)) {
-                                    keys.add(x.key);
-                                }
-                            });
-                            for (String key : keys) {
-                                CacheEntry entry = container.remove(key);
-                                if (expireHandler != null && entry != null) {
-                                    expireHandler.accept(entry);
-                                }
-                            }
-                            long now2 = System.currentTimeMillis();
                             rateLimitContainer.forEach((k, x) -> {
-                                if (x.isExpired(now2)) {
+                                if (x.isExpired(now)) {
                                     keys.add(x.key);
                                 }
                             });
@@ -200,6 +309,11 @@ public final class CacheMemorySource extends AbstractCacheSource {
             scheduler.shutdownNow();
             scheduler = null;
         }
+        CacheMemoryPersister p = this.persister;
+        if (p != null) {
+            this.persister = null;
+            p.close();
+        }
         if (subExecutor != null) {
             subExecutor.shutdown();
             subExecutor = null;
@@ -384,10 +498,13 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.OBJECT);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.OBJECT, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                     entry.setObjectValue(convert == null ? this.convert : convert, type, value);
                     entry.milliSeconds(milliSeconds);
                     entry.lastAccessed = System.currentTimeMillis();
+                    scheduleExpire(entry);
+                    updateMemory(entry);
+                    checkMemory();
                     return true;
                 }
                 return false;
@@ -431,7 +548,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         containerLock.lock();
         try {
-            container.remove(key);
+            removeEntry(key);
         } finally {
             containerLock.unlock();
         }
@@ -451,7 +568,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.OBJECT);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.OBJECT, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
@@ -462,9 +579,12 @@ public final class CacheMemorySource extends AbstractCacheSource {
             entry.setObjectValue(convert == null ? this.convert : convert, type, value);
             entry.milliSeconds(milliSeconds);
             entry.lastAccessed = System.currentTimeMillis();
+            scheduleExpire(entry);
+            updateMemory(entry);
         } finally {
             entry.unlock();
         }
+        checkMemory();
     }
 
     @Override
@@ -486,10 +606,12 @@ public final class CacheMemorySource extends AbstractCacheSource {
             }
             for (Map.Entry<String, Object> en : (Set<Map.Entry<String, Object>>) map.entrySet()) {
                 CacheEntry entry = new CacheEntry(CacheEntryType.OBJECT, en.getKey());
-                container.put(en.getKey(), entry);
+                putEntry(en.getKey(), entry);
                 entry.setObjectValue(this.convert, null, en.getValue());
                 entry.lastAccessed = System.currentTimeMillis();
+                updateMemory(entry);
             }
+            checkMemory();
             return true;
         } finally {
             containerLock.unlock();
@@ -530,6 +652,8 @@ public final class CacheMemorySource extends AbstractCacheSource {
         entry.lock();
         try {
             entry.milliSeconds(milliSeconds);
+            scheduleExpire(entry);
+            markDirty(key);
         } finally {
             entry.unlock();
         }
@@ -588,6 +712,8 @@ public final class CacheMemorySource extends AbstractCacheSource {
             entry.lock();
             try {
                 entry.endTime = milliTime;
+                scheduleExpire(entry);
+                markDirty(key);
             } finally {
                 entry.unlock();
             }
@@ -642,6 +768,8 @@ public final class CacheMemorySource extends AbstractCacheSource {
         try {
             if (entry.expireMills > 0) {
                 entry.expireMills = 0;
+                scheduleExpire(entry);
+                markDirty(key);
                 return true;
             } else {
                 return false;
@@ -668,8 +796,13 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 return false;
             }
             oldEntry.key = newKey;
-            container.put(newKey, oldEntry);
+            CacheEntry replaced = container.put(newKey, oldEntry);
+            if (replaced != null && replaced != oldEntry) {
+                releaseEntry(replaced);
+            }
             container.remove(oldKey);
+            markDirty(oldKey);
+            markDirty(newKey);
             return true;
         } finally {
             containerLock.unlock();
@@ -697,8 +830,13 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 return false;
             }
             oldEntry.key = newKey;
-            container.put(newKey, oldEntry);
+            CacheEntry replaced = container.put(newKey, oldEntry);
+            if (replaced != null && replaced != oldEntry) {
+                releaseEntry(replaced);
+            }
             container.remove(oldKey);
+            markDirty(oldKey);
+            markDirty(newKey);
             return true;
         } finally {
             containerLock.unlock();
@@ -719,7 +857,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
         containerLock.lock();
         try {
             for (String key : keys) {
-                count += container.remove(key) == null ? 0 : 1;
+                count += removeEntry(key) == null ? 0 : 1;
             }
         } finally {
             containerLock.unlock();
@@ -746,7 +884,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry.lock();
                 try {
                     if (Objects.equals(expectedValue, entry.getObjectValue(convert, String.class))) {
-                        return container.remove(key) == null ? 0 : 1;
+                        return removeEntry(key) == null ? 0 : 1;
                     } else {
                         return 0;
                     }
@@ -853,7 +991,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.ATOMIC, key);
                     entry.objectValue = new AtomicLong();
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
@@ -865,7 +1003,9 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry.objectValue = new AtomicLong(Long.parseLong(entry.getObjectValue(convert, String.class)));
                 entry.cacheType = CacheEntryType.ATOMIC;
             }
-            return ((AtomicLong) entry.objectValue).addAndGet(num);
+            long rs = ((AtomicLong) entry.objectValue).addAndGet(num);
+            markDirty(key);
+            return rs;
         } finally {
             entry.unlock();
         }
@@ -886,7 +1026,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.DOUBLE, key);
                     entry.objectValue = new AtomicLong();
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
@@ -899,6 +1039,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry.cacheType = CacheEntryType.DOUBLE;
             }
             Long v = ((AtomicLong) entry.objectValue).addAndGet(Double.doubleToLongBits(num));
+            markDirty(key);
             return Double.longBitsToDouble(v.longValue());
         } finally {
             entry.unlock();
@@ -947,7 +1088,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
     // ----------- hxxx --------------
     @Override
     public boolean exists(String key) {
-        return find(key) != null;
+        return findRead(key) != null;
     }
 
     @Override
@@ -976,12 +1117,19 @@ public final class CacheMemorySource extends AbstractCacheSource {
     }
 
     private <T> T get0(final String key, final int expireSeconds, final Convert convert, final Type type) {
-        CacheEntry entry = find(key);
+        CacheEntry entry = findRead(key);
         if (entry == null) {
             return null;
         }
         if (expireSeconds > 0) {
-            entry.milliSeconds(expireSeconds * 1000L);
+            entry.lock();
+            try {
+                entry.milliSeconds(expireSeconds * 1000L);
+                scheduleExpire(entry);
+                markDirty(key);
+            } finally {
+                entry.unlock();
+            }
         }
         final Convert c = convert == null ? this.convert : convert;
         // OBJECT, ATOMIC, DOUBLE, SSET, ZSET, LIST, MAP;
@@ -1020,14 +1168,19 @@ public final class CacheMemorySource extends AbstractCacheSource {
         if (entry == null) {
             return 0L;
         }
-        Map map = entry.mapValue;
+        Map<String, Serializable> map = entry.mapValue;
         entry.lock();
         try {
             for (String field : fields) {
-                if (map.remove(field) != null) {
+                Serializable old = map.remove(field);
+                if (old != null) {
+                    growMemory(entry, -CacheEntry.fieldMemory(field, old));
                     count++;
                 }
             }
+            if (count > 0) {
+                markDirty(key);
+            }
         } finally {
             entry.unlock();
         }
@@ -1042,7 +1195,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
     @Override
     public List<String> hkeys(final String key) {
         List<String> list = new ArrayList<>();
-        CacheEntry entry = find(key, CacheEntryType.MAP);
+        CacheEntry entry = findRead(key, CacheEntryType.MAP);
         if (entry == null) {
             return list;
         }
@@ -1057,7 +1210,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public long hlen(final String key) {
-        CacheEntry entry = find(key, CacheEntryType.MAP);
+        CacheEntry entry = findRead(key, CacheEntryType.MAP);
         return entry == null ? 0L : (long) entry.mapValue.keySet().size();
     }
 
@@ -1085,24 +1238,35 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.MAP);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.MAP, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
             }
         }
+        long rs;
         entry.lock();
         try {
-            Map map = entry.mapValue;
-            Serializable val = (Serializable) map.computeIfAbsent(field, f -> new AtomicLong());
-            if (!(val instanceof AtomicLong)) {
+            Map<String, Serializable> map = entry.mapValue;
+            Serializable val = map.get(field);
+            if (val == null) {
+                checkWritable();
+                val = new AtomicLong();
+                map.put(field, val);
+                growMemory(entry, CacheEntry.fieldMemory(field, val));
+            } else if (!(val instanceof AtomicLong)) {
+                Serializable old = val;
                 val = CacheEntry.objToSerial(convert, AtomicLong.class, val);
                 map.put(field, val);
+                growMemory(entry, CacheEntry.fieldMemory(field, val) - CacheEntry.fieldMemory(field, old));
             }
-            return ((AtomicLong) val).addAndGet(num);
+            rs = ((AtomicLong) val).addAndGet(num);
+            markDirty(key);
         } finally {
             entry.unlock();
         }
+        checkMemory();
+        return rs;
     }
 
     @Override
@@ -1142,7 +1306,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public boolean hexists(final String key, String field) {
-        CacheEntry entry = find(key, CacheEntryType.MAP);
+        CacheEntry entry = findRead(key, CacheEntryType.MAP);
         return entry != null && entry.mapValue.contains(field);
     }
 
@@ -1155,6 +1319,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
     @Override
     public <T> void hset(final String key, final String field, final Convert convert, final Type type, final T value) {
         hset0(key, field, convert, type, value);
+        checkMemory();
     }
 
     @Override
@@ -1176,21 +1341,33 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.MAP);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.MAP, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
             }
         }
+        boolean rs;
         entry.lock();
         try {
-            boolean rs =
-                    entry.setMapValueIfAbsent(field, convert == null ? this.convert : convert, type, value) == null;
+            if (entry.mapValue.containsKey(field)) {
+                rs = false;
+            } else {
+                checkWritable();
+                rs = entry.setMapValueIfAbsent(field, convert == null ? this.convert : convert, type, value) == null;
+            }
             entry.lastAccessed = System.currentTimeMillis();
-            return rs;
+            if (rs) {
+                growMemory(entry, CacheEntry.fieldMemory(field, entry.mapValue.get(field)));
+                markDirty(key);
+            }
         } finally {
             entry.unlock();
         }
+        if (rs) {
+            checkMemory();
+        }
+        return rs;
     }
 
     @Override
@@ -1204,6 +1381,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
         for (int i = 0; i < values.length; i += 2) {
             hset0(key, (String) values[i], null, null, values[i + 1]);
         }
+        checkMemory();
     }
 
     @Override
@@ -1214,6 +1392,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
     @Override
     public void hmset(final String key, final Map map) {
         map.forEach((k, v) -> hset0(key, (String) k, null, null, v));
+        checkMemory();
     }
 
     @Override
@@ -1223,7 +1402,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public <T> List<T> hmget(final String key, final Type type, final String... fields) {
-        CacheEntry entry = find(key, CacheEntryType.MAP);
+        CacheEntry entry = findRead(key, CacheEntryType.MAP);
         if (entry == null) {
             return null;
         }
@@ -1241,7 +1420,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public <T> Map<String, T> hgetall(final String key, final Type type) {
-        CacheEntry entry = find(key, CacheEntryType.MAP);
+        CacheEntry entry = findRead(key, CacheEntryType.MAP);
         if (entry == null) {
             return new LinkedHashMap();
         } else {
@@ -1258,7 +1437,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public <T> List<T> hvals(final String key, final Type type) {
-        CacheEntry entry = find(key, CacheEntryType.MAP);
+        CacheEntry entry = findRead(key, CacheEntryType.MAP);
         if (entry == null) {
             return new ArrayList();
         } else {
@@ -1277,7 +1456,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
         if (key == null) {
             return new HashMap();
         }
-        CacheEntry entry = find(key, CacheEntryType.MAP);
+        CacheEntry entry = findRead(key, CacheEntryType.MAP);
         if (entry == null) {
             return new HashMap();
         }
@@ -1309,7 +1488,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
         if (key == null || field == null) {
             return null;
         }
-        CacheEntry entry = find(key, CacheEntryType.MAP);
+        CacheEntry entry = findRead(key, CacheEntryType.MAP);
         if (entry == null) {
             return null;
         }
@@ -1326,7 +1505,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
         if (key == null || field == null) {
             return 0L;
         }
-        CacheEntry entry = find(key, CacheEntryType.MAP);
+        CacheEntry entry = findRead(key, CacheEntryType.MAP);
         if (entry == null) {
             return 0L;
         }
@@ -1350,7 +1529,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.MAP);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.MAP, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
@@ -1358,8 +1537,10 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
-            entry.setMapValue(field, convert == null ? this.convert : convert, type, value);
+            checkWritable();
+            growMemory(entry, entry.setMapValue(field, convert == null ? this.convert : convert, type, value));
             entry.lastAccessed = System.currentTimeMillis();
+            markDirty(key);
         } finally {
             entry.unlock();
         }
@@ -1395,7 +1576,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public long llen(final String key) {
-        CacheEntry entry = find(key, CacheEntryType.LIST);
+        CacheEntry entry = findRead(key, CacheEntryType.LIST);
         return entry == null ? 0L : (long) entry.listValue.size();
     }
 
@@ -1406,7 +1587,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public <T> T lindex(String key, Type componentType, int index) {
-        CacheEntry entry = find(key, CacheEntryType.LIST);
+        CacheEntry entry = findRead(key, CacheEntryType.LIST);
         if (entry == null) {
             return null;
         }
@@ -1473,8 +1654,11 @@ public final class CacheMemorySource extends AbstractCacheSource {
                     newList.addAll(list.subList(pos + 1, list.size()));
                 }
             }
+            checkWritable();
             entry.listValue.clear();
             entry.listValue.addAll(newList);
+            growMemory(entry, entry.elementMemory(val));
+            markDirty(key);
             return 1L;
         } finally {
             entry.unlock();
@@ -1490,7 +1674,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.LIST);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.LIST, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
@@ -1498,12 +1682,19 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
+            checkWritable();
+            long delta = 0;
             for (T val : values) {
-                entry.listValue.addFirst(CacheEntry.objToSerial(convert, componentType, val));
+                Serializable item = CacheEntry.objToSerial(convert, componentType, val);
+                entry.listValue.addFirst(item);
+                delta += entry.elementMemory(item);
             }
+            growMemory(entry, delta);
+            markDirty(key);
         } finally {
             entry.unlock();
         }
+        checkMemory();
     }
 
     @Override
@@ -1519,13 +1710,20 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
-            ConcurrentLinkedDeque list = entry.listValue;
+            checkWritable();
+            ConcurrentLinkedDeque<Serializable> list = entry.listValue;
+            long delta = 0;
             for (T val : values) {
-                list.addFirst(CacheEntry.objToSerial(convert, componentType, val));
+                Serializable item = CacheEntry.objToSerial(convert, componentType, val);
+                list.addFirst(item);
+                delta += entry.elementMemory(item);
             }
+            growMemory(entry, delta);
+            markDirty(key);
         } finally {
             entry.unlock();
         }
+        checkMemory();
     }
 
     @Override
@@ -1541,7 +1739,12 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
-            return CacheEntry.serialToObj(convert, componentType, entry.listValue.pollFirst());
+            Serializable val = entry.listValue.pollFirst();
+            if (val != null) {
+                growMemory(entry, -entry.elementMemory(val));
+                markDirty(key);
+            }
+            return CacheEntry.serialToObj(convert, componentType, val);
         } finally {
             entry.unlock();
         }
@@ -1560,18 +1763,23 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
-            ConcurrentLinkedDeque list = entry.listValue;
-            Iterator it = list.iterator();
+            ConcurrentLinkedDeque<Serializable> list = entry.listValue;
+            Iterator<Serializable> it = list.iterator();
             int index = -1;
             int end = stop >= 0 ? stop : list.size() + stop;
+            long delta = 0;
             while (it.hasNext()) {
+                Serializable item = it.next();
                 ++index;
                 if (index > end) {
                     break;
                 } else if (index >= start) {
                     it.remove();
+                    delta -= entry.elementMemory(item);
                 }
             }
+            growMemory(entry, delta);
+            markDirty(key);
         } finally {
             entry.unlock();
         }
@@ -1602,7 +1810,12 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
-            return CacheEntry.serialToObj(convert, componentType, entry.listValue.pollLast());
+            Serializable val = entry.listValue.pollLast();
+            if (val != null) {
+                growMemory(entry, -entry.elementMemory(val));
+                markDirty(key);
+            }
+            return CacheEntry.serialToObj(convert, componentType, val);
         } finally {
             entry.unlock();
         }
@@ -1621,13 +1834,20 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
+            checkWritable();
             ConcurrentLinkedDeque<Serializable> list = entry.listValue;
+            long delta = 0;
             for (T val : values) {
-                list.add(CacheEntry.objToSerial(convert, componentType, val));
+                Serializable item = CacheEntry.objToSerial(convert, componentType, val);
+                list.add(item);
+                delta += entry.elementMemory(item);
             }
+            growMemory(entry, delta);
+            markDirty(key);
         } finally {
             entry.unlock();
         }
+        checkMemory();
     }
 
     @Override
@@ -1644,7 +1864,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.LIST);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.LIST, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
@@ -1652,13 +1872,20 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
+            checkWritable();
             ConcurrentLinkedDeque<Serializable> list = entry.listValue;
+            long delta = 0;
             for (T val : values) {
-                list.add(CacheEntry.objToSerial(convert, componentType, val));
+                Serializable item = CacheEntry.objToSerial(convert, componentType, val);
+                list.add(item);
+                delta += entry.elementMemory(item);
             }
+            growMemory(entry, delta);
+            markDirty(key);
         } finally {
             entry.unlock();
         }
+        checkMemory();
     }
 
     @Override
@@ -1674,7 +1901,12 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
-            return entry.listValue.remove(value) ? 1L : 0L;
+            if (entry.listValue.remove(value)) {
+                growMemory(entry, -entry.elementMemory(value));
+                markDirty(key);
+                return 1L;
+            }
+            return 0L;
         } finally {
             entry.unlock();
         }
@@ -1689,7 +1921,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
     @Override
     public <T> List<T> srandmember(String key, Type componentType, int count) {
         List<T> list = new ArrayList<>();
-        CacheEntry entry = find(key, CacheEntryType.SSET);
+        CacheEntry entry = findRead(key, CacheEntryType.SSET);
         if (entry == null) {
             return list;
         }
@@ -1729,6 +1961,10 @@ public final class CacheMemorySource extends AbstractCacheSource {
         try {
             Serializable val = CacheEntry.objToSerial(convert, componentType, member);
             rs = entry.ssetValue.remove(val);
+            if (rs) {
+                growMemory(entry, -entry.elementMemory(val));
+                markDirty(key);
+            }
         } finally {
             entry.unlock();
         }
@@ -1739,8 +1975,8 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 try {
                     entry2 = find(key2, CacheEntryType.SSET);
                     if (entry2 == null) {
-                        entry2 = new CacheEntry(CacheEntryType.SSET, key);
-                        container.put(key2, entry2);
+                        entry2 = new CacheEntry(CacheEntryType.SSET, key2);
+                        putEntry(key2, entry2);
                     }
                 } finally {
                     containerLock.unlock();
@@ -1748,7 +1984,8 @@ public final class CacheMemorySource extends AbstractCacheSource {
             }
             entry2.lock();
             try {
-                entry2.addSsetValue(convert, componentType, member);
+                growMemory(entry2, entry2.addSsetValue(convert, componentType, member));
+                markDirty(key2);
             } finally {
                 entry2.unlock();
             }
@@ -1783,7 +2020,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.SSET);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.SSET, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
@@ -1791,11 +2028,16 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
+            checkWritable();
+            long old = entry.elementsMemory(entry.ssetValue);
             entry.ssetValue.clear();
             entry.ssetValue.addAll(rs);
+            growMemory(entry, entry.elementsMemory(rs) - old);
+            markDirty(key);
         } finally {
             entry.unlock();
         }
+        checkMemory();
         return rs.size();
     }
 
@@ -1806,13 +2048,13 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     private Set<Serializable> sdiff0(final String key, final String... key2s) {
         Set<Serializable> rs = new HashSet<>();
-        CacheEntry entry = find(key, CacheEntryType.SSET);
+        CacheEntry entry = findRead(key, CacheEntryType.SSET);
         if (entry == null) {
             return rs;
         }
         rs.addAll(entry.ssetValue);
         for (String k : key2s) {
-            CacheEntry en2 = find(k, CacheEntryType.SSET);
+            CacheEntry en2 = findRead(k, CacheEntryType.SSET);
             if (en2 != null) {
                 en2.ssetValue.forEach(rs::remove);
             }
@@ -1843,7 +2085,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.SSET);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.SSET, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
@@ -1851,11 +2093,16 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
+            checkWritable();
+            long old = entry.elementsMemory(entry.ssetValue);
             entry.ssetValue.clear();
             entry.ssetValue.addAll(rs);
+            growMemory(entry, entry.elementsMemory(rs) - old);
+            markDirty(key);
         } finally {
             entry.unlock();
         }
+        checkMemory();
         return rs.size();
     }
 
@@ -1866,13 +2113,13 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     private Set<Serializable> sinter0(final String key, final String... key2s) {
         Set<Serializable> rs = new HashSet<>();
-        CacheEntry entry = find(key, CacheEntryType.SSET);
+        CacheEntry entry = findRead(key, CacheEntryType.SSET);
         if (entry == null) {
             return rs;
         }
         rs.addAll(entry.ssetValue);
         for (String k : key2s) {
-            CacheEntry en2 = find(k, CacheEntryType.SSET);
+            CacheEntry en2 = findRead(k, CacheEntryType.SSET);
             if (en2 != null) {
                 Set<Serializable> rms = new HashSet<>();
                 for (Serializable v : rs) {
@@ -1913,7 +2160,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.SSET);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.SSET, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
@@ -1921,11 +2168,16 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
+            checkWritable();
+            long old = entry.elementsMemory(entry.ssetValue);
             entry.ssetValue.clear();
             entry.ssetValue.addAll(rs);
+            growMemory(entry, entry.elementsMemory(rs) - old);
+            markDirty(key);
         } finally {
             entry.unlock();
         }
+        checkMemory();
         return rs.size();
     }
 
@@ -1936,12 +2188,12 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     private Set<Serializable> sunion0(final String key, final String... key2s) {
         Set<Serializable> rs = new HashSet<>();
-        CacheEntry entry = find(key, CacheEntryType.SSET);
+        CacheEntry entry = findRead(key, CacheEntryType.SSET);
         if (entry != null) {
             rs.addAll(entry.ssetValue);
         }
         for (String k : key2s) {
-            CacheEntry en2 = find(k, CacheEntryType.SSET);
+            CacheEntry en2 = findRead(k, CacheEntryType.SSET);
             if (en2 != null) {
                 rs.addAll(en2.ssetValue);
             }
@@ -1951,7 +2203,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public <T> Set<T> smembers(final String key, final Type componentType) {
-        CacheEntry entry = find(key, CacheEntryType.SSET);
+        CacheEntry entry = findRead(key, CacheEntryType.SSET);
         if (entry == null) {
             return new LinkedHashSet<>();
         }
@@ -1969,7 +2221,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
     public <T> Map<String, Set<T>> smembers(final Type componentType, final String... keys) {
         Map<String, Set<T>> map = new HashMap<>();
         for (String key : keys) {
-            CacheEntry entry = find(key, CacheEntryType.SSET);
+            CacheEntry entry = findRead(key, CacheEntryType.SSET);
             if (entry != null) {
                 map.put(
                         key,
@@ -1988,7 +2240,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public List<Boolean> smismembers(final String key, final String... members) {
-        CacheEntry entry = find(key, CacheEntryType.SSET);
+        CacheEntry entry = findRead(key, CacheEntryType.SSET);
         List<Boolean> rs = new ArrayList<>();
         if (entry == null) {
             for (String member : members) {
@@ -2017,7 +2269,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.SSET);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.SSET, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
@@ -2025,12 +2277,17 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
+            checkWritable();
+            long delta = 0;
             for (T val : values) {
-                entry.addSsetValue(convert, componentType, val);
+                delta += entry.addSsetValue(convert, componentType, val);
             }
+            growMemory(entry, delta);
+            markDirty(key);
         } finally {
             entry.unlock();
         }
+        checkMemory();
     }
 
     @Override
@@ -2040,7 +2297,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public long scard(final String key) {
-        CacheEntry entry = find(key, CacheEntryType.SSET);
+        CacheEntry entry = findRead(key, CacheEntryType.SSET);
         return entry == null ? 0L : (long) entry.ssetValue.size();
     }
 
@@ -2051,7 +2308,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public <T> boolean sismember(final String key, final Type type, final T value) {
-        CacheEntry entry = find(key, CacheEntryType.SSET);
+        CacheEntry entry = findRead(key, CacheEntryType.SSET);
         return entry != null && entry.ssetValue.contains(CacheEntry.objToSerial(convert, type, value));
     }
 
@@ -2079,6 +2336,8 @@ public final class CacheMemorySource extends AbstractCacheSource {
             }
             if (del != null) {
                 cset.remove(del);
+                growMemory(entry, -entry.elementMemory(del));
+                markDirty(key);
                 return CacheEntry.serialToObj(convert, componentType, del);
             }
             return null;
@@ -2117,6 +2376,8 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 }
             }
             cset.removeAll(rms);
+            growMemory(entry, -entry.elementsMemory(rms));
+            markDirty(key);
             return list;
         } finally {
             entry.unlock();
@@ -2130,7 +2391,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public <T> Set<T> sscan(final String key, final Type componentType, AtomicLong cursor, int limit, String pattern) {
-        CacheEntry entry = find(key, CacheEntryType.SSET);
+        CacheEntry entry = findRead(key, CacheEntryType.SSET);
         if (entry == null) {
             return new LinkedHashSet<>();
         }
@@ -2163,11 +2424,23 @@ public final class CacheMemorySource extends AbstractCacheSource {
         if (entry == null) {
             return 0L;
         }
-        long count = 0;
-        for (T val : values) {
-            count += entry.ssetValue.remove(CacheEntry.objToSerial(convert, type, val)) ? 1 : 0;
+        entry.lock();
+        try {
+            long count = 0;
+            for (T val : values) {
+                Serializable item = CacheEntry.objToSerial(convert, type, val);
+                if (entry.ssetValue.remove(item)) {
+                    growMemory(entry, -entry.elementMemory(item));
+                    count++;
+                }
+            }
+            if (count > 0) {
+                markDirty(key);
+            }
+            return count;
+        } finally {
+            entry.unlock();
         }
-        return count;
     }
 
     @Override
@@ -2189,7 +2462,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.ZSET);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.ZSET, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
@@ -2197,10 +2470,19 @@ public final class CacheMemorySource extends AbstractCacheSource {
         }
         entry.lock();
         try {
-            entry.zsetValue.addAll(list);
+            checkWritable();
+            long delta = 0;
+            for (CacheScoredValue v : list) {
+                if (entry.zsetValue.add(v)) {
+                    delta += entry.elementMemory(v);
+                }
+            }
+            growMemory(entry, delta);
+            markDirty(key);
         } finally {
             entry.unlock();
         }
+        checkMemory();
     }
 
     @Override
@@ -2217,7 +2499,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 entry = find(key, CacheEntryType.ZSET);
                 if (entry == null) {
                     entry = new CacheEntry(CacheEntryType.ZSET, key);
-                    container.put(key, entry);
+                    putEntry(key, entry);
                 }
             } finally {
                 containerLock.unlock();
@@ -2231,8 +2513,11 @@ public final class CacheMemorySource extends AbstractCacheSource {
                     .findAny()
                     .orElse(null);
             if (old == null) {
-                sets.add(new CacheScoredValue(value.getScore().doubleValue(), value.getValue()));
-                return (T) value.getScore();
+                checkWritable();
+                CacheScoredValue item = new CacheScoredValue(value.getScore().doubleValue(), value.getValue());
+                sets.add(item);
+                growMemory(entry, entry.elementMemory(item));
+                markDirty(key);
             } else {
                 Number ic = value.getScore();
                 if (ic instanceof Integer) {
@@ -2248,11 +2533,14 @@ public final class CacheMemorySource extends AbstractCacheSource {
                 } else if (ic instanceof AtomicLong) {
                     ((AtomicLong) old.getScore()).addAndGet(((AtomicLong) ic).get());
                 }
+                markDirty(key);
                 return (T) old.getScore();
             }
         } finally {
             entry.unlock();
         }
+        checkMemory();
+        return (T) value.getScore();
     }
 
     @Override
@@ -2262,7 +2550,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public long zcard(String key) {
-        CacheEntry entry = find(key, CacheEntryType.ZSET);
+        CacheEntry entry = findRead(key, CacheEntryType.ZSET);
         if (entry == null) {
             return 0L;
         }
@@ -2276,7 +2564,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public Long zrank(String key, String member) {
-        CacheEntry entry = find(key, CacheEntryType.ZSET);
+        CacheEntry entry = findRead(key, CacheEntryType.ZSET);
         if (entry == null) {
             return null;
         }
@@ -2299,7 +2587,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public Long zrevrank(String key, String member) {
-        CacheEntry entry = find(key, CacheEntryType.ZSET);
+        CacheEntry entry = findRead(key, CacheEntryType.ZSET);
         if (entry == null) {
             return null;
         }
@@ -2322,7 +2610,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public List<String> zrange(String key, int start, int stop) {
-        CacheEntry entry = find(key, CacheEntryType.ZSET);
+        CacheEntry entry = findRead(key, CacheEntryType.ZSET);
         if (entry == null) {
             return new ArrayList<>();
         }
@@ -2345,7 +2633,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public List<CacheScoredValue> zscan(String key, Type scoreType, AtomicLong cursor, int limit, String pattern) {
-        CacheEntry entry = find(key, CacheEntryType.ZSET);
+        CacheEntry entry = findRead(key, CacheEntryType.ZSET);
         if (entry == null) {
             return new ArrayList();
         }
@@ -2371,20 +2659,29 @@ public final class CacheMemorySource extends AbstractCacheSource {
         if (entry == null) {
             return 0L;
         }
-        Set<CacheScoredValue> sets = entry.zsetValue;
-        long c = 0;
-        Set<String> keys = Set.of(members);
-        Iterator<CacheScoredValue> it = sets.iterator();
-        Set<CacheScoredValue> dels = new HashSet<>();
-        while (it.hasNext()) {
-            CacheScoredValue v = it.next();
-            if (keys.contains(v.getValue())) {
-                c++;
-                dels.add(v);
+        entry.lock();
+        try {
+            Set<CacheScoredValue> sets = entry.zsetValue;
+            long c = 0;
+            Set<String> keys = Set.of(members);
+            Iterator<CacheScoredValue> it = sets.iterator();
+            Set<CacheScoredValue> dels = new HashSet<>();
+            while (it.hasNext()) {
+                CacheScoredValue v = it.next();
+                if (keys.contains(v.getValue())) {
+                    c++;
+                    dels.add(v);
+                }
+            }
+            if (c > 0) {
+                sets.removeAll(dels);
+                growMemory(entry, -entry.elementsMemory(dels));
+                markDirty(key);
             }
+            return c;
+        } finally {
+            entry.unlock();
         }
-        sets.removeAll(dels);
-        return c;
     }
 
     @Override
@@ -2395,7 +2692,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
     @Override
     public <T extends Number> List<T> zmscore(String key, Class<T> scoreType, String... members) {
         List<T> list = new ArrayList<>();
-        CacheEntry entry = find(key, CacheEntryType.ZSET);
+        CacheEntry entry = findRead(key, CacheEntryType.ZSET);
         if (entry == null) {
             for (String member : members) {
                 list.add(null);
@@ -2439,7 +2736,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public <T extends Number> T zscore(String key, Class<T> scoreType, String member) {
-        CacheEntry entry = find(key, CacheEntryType.ZSET);
+        CacheEntry entry = findRead(key, CacheEntryType.ZSET);
         if (entry == null) {
             return null;
         }
@@ -2470,7 +2767,11 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public void flushdb() {
-        container.clear();
+        restoreFlush();
+        CacheMemoryPersister p = this.persister;
+        if (p != null) {
+            p.markFlush();
+        }
     }
 
     @Override
@@ -2480,7 +2781,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
 
     @Override
     public void flushall() {
-        container.clear();
+        flushdb();
     }
 
     @Override
@@ -2537,6 +2838,296 @@ public final class CacheMemorySource extends AbstractCacheSource {
         return supplyFuture(() -> keysStartsWith(startsWith));
     }
 
+    /**
+     * 获取INFO风格的统计信息, 字段名与Redis的INFO命令一致, 内存为估算值
+     *
+     * @return Map
+     */
+    public Map<String, Object> info() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("used_memory", usedMemory.get());
+        map.put("maxmemory", maxMemory);
+        map.put("maxmemory_policy", evictionPolicy.toString());
+        map.put("maxmemory_samples", evictionSamples);
+        map.put("keys", container.size());
+        int expires;
+        timerLock.lock();
+        try {
+            expires = timerWheel.size();
+        } finally {
+            timerLock.unlock();
+        }
+        map.put("expires", expires);
+        map.put("expired_keys", expiredCounter.sum());
+        map.put("evicted_keys", evictedCounter.sum());
+        map.put("keyspace_hits", hitCounter.sum());
+        map.put("keyspace_misses", missCounter.sum());
+        return map;
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * 设置内存上限(估算值)
+     *
+     * @param maxMemory 内存上限, 小于1表示不限制
+     */
+    public void setMaxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+        checkMemory();
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        this.evictionPolicy = Objects.requireNonNull(evictionPolicy);
+    }
+
+    private void putEntry(String key, CacheEntry entry) {
+        checkWritable();
+        CacheEntry old = container.put(key, entry);
+        if (old != null) {
+            releaseEntry(old);
+        }
+        updateMemory(entry);
+    }
+
+    // NOEVICTION策略下超出内存上限时拒绝新增数据
+    private void checkWritable() {
+        if (maxMemory > 0 && evictionPolicy == EvictionPolicies.NOEVICTION && usedMemory.get() > maxMemory) {
+            throw new SourceException("OOM command not allowed when used memory > 'maxmemory'");
+        }
+    }
+
+    // 集合增减元素时按元素的估算值调整内存, 无需遍历集合, 需在entry的lock内调用
+    private void growMemory(CacheEntry entry, long delta) {
+        if (delta != 0 && entry.memory > 0) { // memory为0表示entry已被移除
+            entry.memory += delta;
+            usedMemory.addAndGet(delta);
+        }
+    }
+
+    private CacheEntry removeEntry(String key) {
+        CacheEntry entry = container.remove(key);
+        if (entry != null) {
+            releaseEntry(entry);
+            markDirty(key);
+        }
+        return entry;
+    }
+
+    // 数据变更后记录到追加日志
+    void markDirty(String key) {
+        CacheMemoryPersister p = this.persister;
+        if (p != null) {
+            p.markDirty(key);
+        }
+    }
+
+    // -------------------------- 持久化加载 --------------------------
+    CacheEntry peekEntry(String key) {
+        return container.get(key);
+    }
+
+    Collection<CacheEntry> entries() {
+        return container.values();
+    }
+
+    // 加载时不受NOEVICTION的内存上限限制, 加载完成后统一淘汰
+    void restoreEntry(CacheEntry entry) {
+        CacheEntry old = container.put(entry.key, entry);
+        if (old != null) {
+            releaseEntry(old);
+        }
+        accountMemory(entry);
+        scheduleExpire(entry);
+    }
+
+    void restoreDelete(String key) {
+        CacheEntry entry = container.remove(key);
+        if (entry != null) {
+            releaseEntry(entry);
+        }
+    }
+
+    void restoreFlush() {
+        container.clear();
+        clearExpire();
+        usedMemory.set(0);
+    }
+
+    // 已从container中移除的entry
+    private void releaseEntry(CacheEntry entry) {
+        long memory = entry.memory;
+        entry.memory = 0;
+        usedMemory.addAndGet(-memory);
+        if (entry.isScheduled()) {
+            timerLock.lock();
+            try {
+                timerWheel.deschedule(entry);
+            } finally {
+                timerLock.unlock();
+            }
+        }
+    }
+
+    private void updateMemory(CacheEntry entry) {
+        accountMemory(entry);
+        markDirty(entry.key);
+    }
+
+    private void accountMemory(CacheEntry entry) {
+        long memory = entry.estimateMemory();
+        long old = entry.memory;
+        entry.memory = memory;
+        usedMemory.addAndGet(memory - old);
+    }
+
+    // 集合类型写入时只累加元素的估算值, 由采样定期按实际数据校正
+    private void refreshMemory(int count) {
+        evictLock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                CacheEntry entry = nextSample();
+                if (entry == null) {
+                    break;
+                }
+                if (entry.memory > 0) {
+                    accountMemory(entry);
+                }
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    // 从随机位置开始的一段数据中取下一个采样
+    private CacheEntry nextSample() {
+        for (int i = 0; i < 16 && !container.isEmpty(); i++) {
+            Spliterator<CacheEntry> it = this.sampleSpliterator;
+            if (it == null) {
+                it = randomSpliterator();
+                this.sampleSpliterator = it;
+            }
+            if (it.tryAdvance(sampleConsumer)) {
+                CacheEntry entry = this.sampleEntry;
+                this.sampleEntry = null;
+                return entry;
+            }
+            this.sampleSpliterator = null;
+        }
+        return null;
+    }
+
+    // 随机二分container直到每段约evictionSamples个数据, 避免每次都从头部采样
+    private Spliterator<CacheEntry> randomSpliterator() {
+        Spliterator<CacheEntry> it = container.values().spliterator();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long segment = Math.max(1, evictionSamples);
+        while (it.estimateSize() > segment) {
+            Spliterator<CacheEntry> prefix = it.trySplit();
+            if (prefix == null) {
+                break;
+            }
+            if (random.nextBoolean()) {
+                it = prefix;
+            }
+        }
+        return it;
+    }
+
+    // 超出内存上限时按淘汰策略从采样中淘汰数据, 同一时间只有一个线程执行淘汰
+    private void checkMemory() {
+        if (maxMemory < 1
+                || usedMemory.get() <= maxMemory
+                || evictionPolicy == EvictionPolicies.NOEVICTION
+                || !evictLock.tryLock()) {
+            return;
+        }
+        try {
+            final EvictionPolicy policy = this.evictionPolicy;
+            final int samples = this.evictionSamples;
+            while (usedMemory.get() > maxMemory) {
+                long now = System.currentTimeMillis();
+                CacheEntry victim = null;
+                long victimRank = Long.MAX_VALUE;
+                int sampled = 0;
+                int scanned = 0;
+                this.sampleSpliterator = null;
+                while (sampled < samples && scanned < samples * 20) {
+                    CacheEntry entry = nextSample();
+                    if (entry == null) {
+                        break;
+                    }
+                    scanned++;
+                    if (entry.memory < 1 || !policy.evictable(entry)) {
+                        continue;
+                    }
+                    sampled++;
+                    long rank = policy.rank(entry, now);
+                    if (victim == null || rank < victimRank) {
+                        victim = entry;
+                        victimRank = rank;
+                    }
+                }
+                if (victim == null) {
+                    break;
+                }
+                if (container.remove(victim.key, victim)) {
+                    releaseEntry(victim);
+                    evictedCounter.increment();
+                    markDirty(victim.key);
+                }
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    private static long parseMemory(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+        value = value.trim().toUpperCase().replace("B", "");
+        if (value.endsWith("G")) {
+            return Long.parseLong(value.replace("G", "")) * 1024 * 1024 * 1024;
+        }
+        if (value.endsWith("M")) {
+            return Long.parseLong(value.replace("M", "")) * 1024 * 1024;
+        }
+        if (value.endsWith("K")) {
+            return Long.parseLong(value.replace("K", "")) * 1024;
+        }
+        return Long.parseLong(value);
+    }
+
+    // 过期时间变更后需重新放入时间轮
+    private void scheduleExpire(CacheEntry entry) {
+        long deadline = entry.deadline();
+        if (deadline <= 0 && !entry.isScheduled()) {
+            return;
+        }
+        timerLock.lock();
+        try {
+            timerWheel.schedule(entry, deadline);
+        } finally {
+            timerLock.unlock();
+        }
+    }
+
+    private void clearExpire() {
+        timerLock.lock();
+        try {
+            timerWheel.clear();
+        } finally {
+            timerLock.unlock();
+        }
+    }
+
     protected CacheEntry find(String key) {
         if (key == null) {
             return null;
@@ -2545,7 +3136,7 @@ public final class CacheMemorySource extends AbstractCacheSource {
         if (entry == null || entry.isExpired()) {
             return null;
         }
-        entry.lastAccessed = System.currentTimeMillis();
+        entry.access(System.currentTimeMillis());
         return entry;
     }
 
@@ -2560,7 +3151,24 @@ public final class CacheMemorySource extends AbstractCacheSource {
         if (entry.cacheType != cacheType) {
             throw new SourceException(key + " value is " + entry.cacheType + " type but need " + cacheType);
         }
-        entry.lastAccessed = System.currentTimeMillis();
+        entry.access(System.currentTimeMillis());
+        return entry;
+    }
+
+    // 读命令使用, 计入keyspace_hits/keyspace_misses
+    protected CacheEntry findRead(String key) {
+        CacheEntry entry = find(key);
+        if (key != null) {
+            (entry == null ? missCounter : hitCounter).increment();
+        }
+        return entry;
+    }
+
+    protected CacheEntry findRead(String key, CacheEntryType cacheType) {
+        CacheEntry entry = find(key, cacheType);
+        if (key != null) {
+            (entry == null ? missCounter : hitCounter).increment();
+        }
         return entry;
     }
 
@@ -2640,11 +3248,142 @@ public final class CacheMemorySource extends AbstractCacheSource {
         MAP;
     }
 
+    /** 内存淘汰策略, 超出内存上限时从采样的数据中淘汰rank最小的 */
+    public static interface EvictionPolicy {
+
+        /**
+         * 是否可被淘汰
+         *
+         * @param entry CacheEntry
+         * @return boolean
+         */
+        public boolean evictable(CacheEntry entry);
+
+        /**
+         * 淘汰顺序, 值越小越先被淘汰
+         *
+         * @param entry CacheEntry
+         * @param now 当前时间点
+         * @return long
+         */
+        public long rank(CacheEntry entry, long now);
+    }
+
+    /** 内置的内存淘汰策略, 与Redis的maxmemory-policy一致 */
+    public static enum EvictionPolicies implements EvictionPolicy {
+        // 不淘汰, 超出内存上限时新增key报错
+        NOEVICTION {
+            @Override
+            public boolean evictable(CacheEntry entry) {
+                return false;
+            }
+
+            @Override
+            public long rank(CacheEntry entry, long now) {
+                return 0;
+            }
+        },
+        ALLKEYS_LRU {
+            @Override
+            public boolean evictable(CacheEntry entry) {
+                return true;
+            }
+
+            @Override
+            public long rank(CacheEntry entry, long now) {
+                return entry.lastAccessed;
+            }
+        },
+        ALLKEYS_LFU {
+            @Override
+            public boolean evictable(CacheEntry entry) {
+                return true;
+            }
+
+            @Override
+            public long rank(CacheEntry entry, long now) {
+                return entry.getFrequency(now);
+            }
+        },
+        ALLKEYS_RANDOM {
+            @Override
+            public boolean evictable(CacheEntry entry) {
+                return true;
+            }
+
+            @Override
+            public long rank(CacheEntry entry, long now) {
+                return ThreadLocalRandom.current().nextLong();
+            }
+        },
+        VOLATILE_LRU {
+            @Override
+            public boolean evictable(CacheEntry entry) {
+                return entry.deadline() > 0;
+            }
+
+            @Override
+            public long rank(CacheEntry entry, long now) {
+                return entry.lastAccessed;
+            }
+        },
+        VOLATILE_LFU {
+            @Override
+            public boolean evictable(CacheEntry entry) {
+                return entry.deadline() > 0;
+            }
+
+            @Override
+            public long rank(CacheEntry entry, long now) {
+                return entry.getFrequency(now);
+            }
+        },
+        VOLATILE_RANDOM {
+            @Override
+            public boolean evictable(CacheEntry entry) {
+                return entry.deadline() > 0;
+            }
+
+            @Override
+            public long rank(CacheEntry entry, long now) {
+                return ThreadLocalRandom.current().nextLong();
+            }
+        },
+        VOLATILE_TTL {
+            @Override
+            public boolean evictable(CacheEntry entry) {
+                return entry.deadline() > 0;
+            }
+
+            @Override
+            public long rank(CacheEntry entry, long now) {
+                return entry.deadline();
+            }
+        };
+
+        @Override
+        public String toString() {
+            return name().toLowerCase().replace('_', '-');
+        }
+    }
+
     // Serializable的具体数据类型只能是: String、byte[]、AtomicLong
-    public static final class CacheEntry {
+    public static final class CacheEntry extends TimerWheel.Node {
+
+        // LFU计数器的初始值
+        private static final int FREQUENCY_INIT = 5;
 
         volatile long lastAccessed; // 最后刷新时间
 
+        // LFU对数计数器, 最大值255, 每闲置一分钟减1
+        private volatile int frequency = FREQUENCY_INIT;
+
+        // LFU计数器上次衰减的时间点
+        private volatile long frequencyTime = System.currentTimeMillis();
+
+        // 占用内存的估算值
+        volatile long memory;
+
         // CacheEntryType为ATOMIC、DOUBLE时类型为AtomicLong
         private Serializable objectValue;
 
@@ -2711,6 +3450,104 @@ public final class CacheMemorySource extends AbstractCacheSource {
             return isExpired(System.currentTimeMillis());
         }
 
+        void access(long now) {
+            this.lastAccessed = now;
+            int counter = getFrequency(now);
+            if (counter < 255) {
+                double p = 1.0 / ((Math.max(counter - FREQUENCY_INIT, 0)) * 10 + 1);
+                if (ThreadLocalRandom.current().nextDouble() < p) {
+                    counter++;
+                }
+            }
+            this.frequency = counter;
+            this.frequencyTime = now;
+        }
+
+        // 估算占用的内存, 集合类型按首个元素的大小乘以元素个数计算
+        long estimateMemory() {
+            long size = 96 + key.length() * 2L;
+            switch (cacheType) {
+                case SSET:
+                    return size + collectionMemory(ssetValue, 8);
+                case ZSET:
+                    return size + collectionMemory(zsetValue, 48);
+                case LIST:
+                    return size + collectionMemory(listValue, 24);
+                case MAP:
+                    int count = mapValue.size();
+                    if (count > 0) {
+                        Map.Entry<String, Serializable> first =
+                                mapValue.entrySet().iterator().next();
+                        size += count * (32 + valueMemory(first.getKey()) + valueMemory(first.getValue()));
+                    }
+                    return size;
+                default:
+                    return size + valueMemory(objectValue);
+            }
+        }
+
+        // 集合单个元素占用内存的估算值, 与estimateMemory的计算方式一致
+        long elementMemory(Object value) {
+            switch (cacheType) {
+                case SSET:
+                    return 8 + valueMemory(value);
+                case ZSET:
+                    return 48 + valueMemory(value);
+                case LIST:
+                    return 24 + valueMemory(value);
+                default:
+                    return 0;
+            }
+        }
+
+        long elementsMemory(Collection<?> values) {
+            long size = 0;
+            for (Object value : values) {
+                size += elementMemory(value);
+            }
+            return size;
+        }
+
+        // 哈希表单个字段占用内存的估算值
+        static long fieldMemory(String field, Object value) {
+            return 32 + valueMemory(field) + valueMemory(value);
+        }
+
+        private static long collectionMemory(Collection<?> collection, int nodeSize) {
+            Iterator<?> it = collection.iterator();
+            if (!it.hasNext()) {
+                return 0;
+            }
+            return collection.size() * (nodeSize + valueMemory(it.next()));
+        }
+
+        private static long valueMemory(Object value) {
+            if (value == null) {
+                return 0;
+            } else if (value instanceof String) {
+                return 40 + ((String) value).length();
+            } else if (value instanceof byte[]) {
+                return 16 + ((byte[]) value).length;
+            } else if (value instanceof CacheScoredValue) {
+                return 32 + valueMemory(((CacheScoredValue) value).getValue());
+            } else {
+                return 16;
+            }
+        }
+
+        // 过期的时间点, 0表示永久保存
+        long deadline() {
+            if (endTime > 0) {
+                return endTime;
+            }
+            return expireMills > 0 ? (initTime + expireMills + 1) : 0;
+        }
+
+        @Override
+        protected boolean isScheduled() {
+            return super.isScheduled();
+        }
+
         // value类型只能是byte[]/String/AtomicLong
         public static <T> T serialToObj(@Nonnull Convert convert, @Nonnull Type type, Serializable value) {
             if (value == null) {
@@ -2756,16 +3593,21 @@ public final class CacheMemorySource extends AbstractCacheSource {
             return val == null ? null : serialToObj(convert, type, val);
         }
 
-        public void setMapValue(String field, Convert convert, Type type, Object value) {
-            this.mapValue.put(field, objToSerial(convert, type, value));
+        // 返回占用内存估算值的增量
+        public long setMapValue(String field, Convert convert, Type type, Object value) {
+            Serializable val = objToSerial(convert, type, value);
+            Serializable old = this.mapValue.put(field, val);
+            return fieldMemory(field, val) - (old == null ? 0 : fieldMemory(field, old));
         }
 
         public Object setMapValueIfAbsent(String field, Convert convert, Type type, Object value) {
             return this.mapValue.putIfAbsent(field, objToSerial(convert, type, value));
         }
 
-        public void addSsetValue(Convert convert, Type type, Object value) {
-            this.ssetValue.add(objToSerial(convert, type, value));
+        // 返回占用内存估算值的增量
+        public long addSsetValue(Convert convert, Type type, Object value) {
+            Serializable val = objToSerial(convert, type, value);
+            return this.ssetValue.add(val) ? elementMemory(val) : 0;
         }
 
         public void lock() {
@@ -2776,6 +3618,209 @@ public final class CacheMemorySource extends AbstractCacheSource {
             lock.unlock();
         }
 
+        /**
+         * 写入一条OP_SET记录, 需在lock内调用 <br>
+         * 格式: [byte type][long endTime][long expireTime][value]
+         *
+         * @param array ByteArray
+         * @param now 当前时间点
+         * @return 已过期返回false且不写入
+         */
+        boolean writeRecord(ByteArray array, long now) {
+            if (isExpired(now)) {
+                return false;
+            }
+            int start = CacheMemoryPersister.putRecordStart(array, CacheMemoryPersister.OP_SET, key);
+            array.put((byte) cacheType.ordinal());
+            array.putLong(endTime);
+            array.putLong(expireMills > 0 ? initTime + expireMills : 0);
+            switch (cacheType) {
+                case SSET:
+                    writeValues(array, ssetValue);
+                    break;
+                case ZSET: {
+                    int pos = array.length();
+                    array.putInt(0);
+                    int count = 0;
+                    for (CacheScoredValue item : zsetValue) {
+                        writeScore(array, item.getScore());
+                        CacheMemoryPersister.putString(array, item.getValue());
+                        count++;
+                    }
+                    array.putInt(pos, count);
+                    break;
+                }
+                case LIST:
+                    writeValues(array, listValue);
+                    break;
+                case MAP: {
+                    int pos = array.length();
+                    array.putInt(0);
+                    int count = 0;
+                    for (Map.Entry<String, Serializable> item : mapValue.entrySet()) {
+                        CacheMemoryPersister.putString(array, item.getKey());
+                        writeValue(array, item.getValue());
+                        count++;
+                    }
+                    array.putInt(pos, count);
+                    break;
+                }
+                default:
+                    writeValue(array, objectValue);
+            }
+            CacheMemoryPersister.putRecordEnd(array, start);
+            return true;
+        }
+
+        /**
+         * 读取{@link #writeRecord(org.redkale.util.ByteArray, long)}写入的数据
+         *
+         * @param key key
+         * @param buffer ByteBuffer
+         * @param now 当前时间点
+         * @return 已过期返回null
+         */
+        static CacheEntry readFrom(String key, ByteBuffer buffer, long now) {
+            CacheEntryType type = CacheEntryType.values()[buffer.get()];
+            long end = buffer.getLong();
+            long expireTime = buffer.getLong();
+            if ((end > 0 && now >= end) || (expireTime > 0 && expireTime < now)) {
+                return null;
+            }
+            CacheEntry entry = new CacheEntry(type, key);
+            entry.endTime = end;
+            if (expireTime > 0) {
+                entry.initTime = now;
+                entry.expireMills = Math.max(1, expireTime - now);
+            }
+            entry.lastAccessed = now;
+            switch (type) {
+                case SSET:
+                    readValues(buffer, entry.ssetValue);
+                    break;
+                case ZSET: {
+                    int count = buffer.getInt();
+                    for (int i = 0; i < count; i++) {
+                        Number score = readScore(buffer);
+                        entry.zsetValue.add(new CacheScoredValue(score, CacheMemoryPersister.getString(buffer)));
+                    }
+                    break;
+                }
+                case LIST:
+                    readValues(buffer, entry.listValue);
+                    break;
+                case MAP: {
+                    int count = buffer.getInt();
+                    for (int i = 0; i < count; i++) {
+                        String field = CacheMemoryPersister.getString(buffer);
+                        entry.mapValue.put(field, readValue(buffer));
+                    }
+                    break;
+                }
+                default:
+                    entry.objectValue = readValue(buffer);
+            }
+            return entry;
+        }
+
+        private static void writeValues(ByteArray array, Collection<Serializable> values) {
+            int pos = array.length();
+            array.putInt(0);
+            int count = 0;
+            for (Serializable item : values) {
+                writeValue(array, item);
+                count++;
+            }
+            array.putInt(pos, count);
+        }
+
+        private static void readValues(ByteBuffer buffer, Collection<Serializable> values) {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                values.add(readValue(buffer));
+            }
+        }
+
+        // value类型只能是null/String/byte[]/AtomicLong
+        private static void writeValue(ByteArray array, Serializable value) {
+            if (value == null) {
+                array.put((byte) 0);
+            } else if (value instanceof String) {
+                array.put((byte) 1);
+                CacheMemoryPersister.putString(array, (String) value);
+            } else if (value instanceof byte[]) {
+                byte[] bs = (byte[]) value;
+                array.put((byte) 2);
+                array.putInt(bs.length);
+                array.put(bs);
+            } else if (value instanceof AtomicLong) {
+                array.put((byte) 3);
+                array.putLong(((AtomicLong) value).get());
+            } else {
+                throw new SourceException("Unsupported value type: " + value.getClass());
+            }
+        }
+
+        private static Serializable readValue(ByteBuffer buffer) {
+            byte tag = buffer.get();
+            switch (tag) {
+                case 0:
+                    return null;
+                case 1:
+                    return CacheMemoryPersister.getString(buffer);
+                case 2: {
+                    byte[] bs = new byte[buffer.getInt()];
+                    buffer.get(bs);
+                    return bs;
+                }
+                case 3:
+                    return new AtomicLong(buffer.getLong());
+                default:
+                    throw new SourceException("Unsupported value tag: " + tag);
+            }
+        }
+
+        // zincrby会将score替换为Integer、Long、Float、Double、AtomicInteger、AtomicLong
+        private static void writeScore(ByteArray array, Number score) {
+            if (score instanceof Integer) {
+                array.put((byte) 1);
+                array.putInt(score.intValue());
+            } else if (score instanceof Long) {
+                array.put((byte) 2);
+                array.putLong(score.longValue());
+            } else if (score instanceof Float) {
+                array.put((byte) 3);
+                array.putFloat(score.floatValue());
+            } else if (score instanceof AtomicInteger) {
+                array.put((byte) 5);
+                array.putInt(score.intValue());
+            } else if (score instanceof AtomicLong) {
+                array.put((byte) 6);
+                array.putLong(score.longValue());
+            } else {
+                array.put((byte) 4);
+                array.putDouble(score.doubleValue());
+            }
+        }
+
+        private static Number readScore(ByteBuffer buffer) {
+            byte tag = buffer.get();
+            switch (tag) {
+                case 1:
+                    return buffer.getInt();
+                case 2:
+                    return buffer.getLong();
+                case 3:
+                    return buffer.getFloat();
+                case 5:
+                    return new AtomicInteger(buffer.getInt());
+                case 6:
+                    return new AtomicLong(buffer.getLong());
+                default:
+                    return buffer.getDouble();
+            }
+        }
+
         public CacheEntryType getCacheType() {
             return cacheType;
         }
@@ -2788,6 +3833,26 @@ public final class CacheMemorySource extends AbstractCacheSource {
             return lastAccessed;
         }
 
+        public long getMemory() {
+            return memory;
+        }
+
+        public long getDeadline() {
+            return deadline();
+        }
+
+        /**
+         * 获取衰减后的LFU计数
+         *
+         * @param now 当前时间点
+         * @return int
+         */
+        public int getFrequency(long now) {
+            int counter = this.frequency;
+            long minutes = (now - this.frequencyTime) / 60_000;
+            return minutes > 0 ? (int) Math.max(0, counter - minutes) : counter;
+        }
+
         public String getKey() {
             return key;
         }
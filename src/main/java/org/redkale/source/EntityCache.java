@@ -6,6 +6,7 @@
 package org.redkale.source;
 
 import java.io.Serializable;
+import java.lang.reflect.Array;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
@@ -40,8 +41,12 @@ public final class EntityCache<T> {
     // Flipper.sort转换成Comparator的缓存
     private final Map<String, Comparator<T>> sortComparators = new ConcurrentHashMap<>();
 
+    // 表锁, rowLocks为null时所有更新共用
     private final ReentrantLock tableLock = new ReentrantLock();
 
+    // 按主键哈希分段的行锁, 为null表示使用表锁
+    private final ReentrantLock[] rowLocks;
+
     // Entity类
     private final Class<T> type;
 
@@ -57,6 +62,14 @@ public final class EntityCache<T> {
     // 主键字段
     private final Attribute<T, Serializable> primary;
 
+    // &#064;Index声明的二级索引, key为字段名, 为null表示没有索引; 全量重建时整体替换
+    private volatile Map<String, CacheIndex<T>> indexes;
+
+    // 有索引时记录主键的插入序号, 用于索引命中的记录按插入顺序排列
+    private volatile ConcurrentHashMap<Serializable, Long> sequences = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
     // 新增时的复制器， 排除了标记为&#064;Transient的字段
     private final Copier<T, T> newCopier;
 
@@ -80,12 +93,33 @@ public final class EntityCache<T> {
     private CompletableFuture<List<T>> loadFuture;
 
     public EntityCache(final EntityInfo<T> info, final Entity c) {
-        this(info, c != null && c.cacheable() ? c.cacheInterval() : 0, c != null && c.cacheable() && c.cacheDirect());
+        this(
+                info,
+                c != null && c.cacheable() ? c.cacheInterval() : 0,
+                c != null && c.cacheable() && c.cacheDirect(),
+                c != null && c.cacheable() ? c.cacheLockStripes() : 0);
     }
 
     EntityCache(final EntityInfo<T> info, final int cacheInterval, final boolean cacheDirect) {
+        this(info, cacheInterval, cacheDirect, 0);
+    }
+
+    EntityCache(
+            final EntityInfo<T> info, final int cacheInterval, final boolean cacheDirect, final int lockStripes) {
         this.info = info;
         this.interval = cacheInterval < 0 ? 0 : cacheInterval;
+        if (lockStripes > 0) {
+            int size = 1;
+            while (size < lockStripes && size < (1 << 16)) {
+                size <<= 1;
+            }
+            this.rowLocks = new ReentrantLock[size];
+            for (int i = 0; i < size; i++) {
+                this.rowLocks[i] = new ReentrantLock();
+            }
+        } else {
+            this.rowLocks = null;
+        }
         this.type = info.getType();
         this.arrayer = info.getArrayer();
         this.creator = info.getCreator();
@@ -103,6 +137,19 @@ public final class EntityCache<T> {
             }
         }
         this.needCopy = !direct;
+        Map<String, CacheIndex<T>> idxmap = new HashMap<>();
+        for (Index index : type.getAnnotationsByType(Index.class)) {
+            if (index.columns().length < 1) {
+                continue;
+            }
+            String[] items = index.columns()[0].trim().split("\\s+");
+            Attribute<T, Serializable> attr = findIndexAttribute(items[0]);
+            if (attr == null || attr == this.primary || idxmap.containsKey(attr.field())) {
+                continue;
+            }
+            idxmap.put(attr.field(), new CacheIndex<>(attr, CacheIndex.isSortedType(attr.type())));
+        }
+        this.indexes = idxmap.isEmpty() ? null : idxmap;
         this.newCopier = Copier.create(type, type, (e, c) -> {
             try {
                 return e.getAnnotation(Transient.class) == null
@@ -135,6 +182,7 @@ public final class EntityCache<T> {
             return this.loadFuture;
         }
         if (info.fullLoader == null) {
+            rebuildIndexes(Collections.emptyList());
             this.list = new ConcurrentLinkedQueue();
             this.map = new ConcurrentHashMap();
             this.fullloaded = true;
@@ -145,6 +193,7 @@ public final class EntityCache<T> {
         CompletableFuture<List> allFuture = info.fullLoader.apply(info.source, info);
         this.loadFuture = (CompletableFuture) allFuture;
         if (allFuture == null) {
+            rebuildIndexes(Collections.emptyList());
             this.list = new ConcurrentLinkedQueue();
             this.map = new ConcurrentHashMap();
             this.fullloaded = true;
@@ -169,7 +218,10 @@ public final class EntityCache<T> {
                                     newmap2.put(this.primary.get(x), x);
                                 });
                             }
-                            this.list = all2 == null ? new ConcurrentLinkedQueue() : new ConcurrentLinkedQueue(all2);
+                            ConcurrentLinkedQueue newlist2 =
+                                    all2 == null ? new ConcurrentLinkedQueue() : new ConcurrentLinkedQueue(all2);
+                            rebuildIndexes(newlist2);
+                            this.list = newlist2;
                             this.map = newmap2;
                         } catch (Throwable t) {
                             logger.log(Level.SEVERE, type + " schedule(interval=" + interval + "s) Cacheable error", t);
@@ -191,7 +243,9 @@ public final class EntityCache<T> {
                     newmap.put(this.primary.get(x), x);
                 });
             }
-            this.list = new ConcurrentLinkedQueue(all);
+            ConcurrentLinkedQueue newlist = new ConcurrentLinkedQueue(all);
+            rebuildIndexes(newlist);
+            this.list = newlist;
             this.map = newmap;
             this.fullloaded = true;
             loading.set(false);
@@ -205,6 +259,7 @@ public final class EntityCache<T> {
 
     public int clear() {
         this.fullloaded = false;
+        rebuildIndexes(Collections.emptyList());
         this.list = new ConcurrentLinkedQueue();
         this.map = new ConcurrentHashMap();
         if (this.scheduler != null) {
@@ -334,7 +389,7 @@ public final class EntityCache<T> {
 
     public T find(final SelectColumn selects, FilterNode node) {
         final Predicate<T> filter = node == null ? null : node.createPredicate(this);
-        Stream<T> stream = this.list.stream();
+        Stream<T> stream = filterSource(node).stream();
         if (filter != null) {
             stream = stream.filter(filter);
         }
@@ -374,7 +429,7 @@ public final class EntityCache<T> {
 
     public Serializable findColumn(final String column, final Serializable defValue, FilterNode node) {
         final Predicate<T> filter = node == null ? null : node.createPredicate(this);
-        Stream<T> stream = this.list.stream();
+        Stream<T> stream = filterSource(node).stream();
         if (filter != null) {
             stream = stream.filter(filter);
         }
@@ -425,7 +480,7 @@ public final class EntityCache<T> {
 
     public boolean exists(FilterNode node) {
         final Predicate<T> filter = node == null ? null : node.createPredicate(this);
-        Stream<T> stream = this.list.stream();
+        Stream<T> stream = filterSource(node, false).stream();
         if (filter != null) {
             stream = stream.filter(filter);
         }
@@ -441,7 +496,7 @@ public final class EntityCache<T> {
         final Attribute<T, Serializable> keyAttr = info.getAttribute(keyColumn);
         final Predicate filter = node == null ? null : node.createPredicate(this);
         final Attribute funcAttr = funcColumn == null ? null : info.getAttribute(funcColumn);
-        Stream<T> stream = this.list.stream();
+        Stream<T> stream = filterSource(node).stream();
         if (filter != null) {
             stream = stream.filter(filter);
         }
@@ -511,7 +566,7 @@ public final class EntityCache<T> {
     public Map<Serializable[], Number[]> queryColumnMap(
             final ColumnNode[] funcNodes, final String[] groupByColumns, FilterNode node) {
         final Predicate<T> filter = node == null ? null : node.createPredicate(this);
-        Stream<T> stream = this.list.stream();
+        Stream<T> stream = filterSource(node).stream();
         if (filter != null) {
             stream = stream.filter(filter);
         }
@@ -705,7 +760,8 @@ public final class EntityCache<T> {
             final FilterFunc func, final Number defResult, final String column, final FilterNode node) {
         final Attribute<T, Serializable> attr = column == null ? null : info.getAttribute(column); // COUNT的column=null
         final Function<T, Number> attrFunc = attr == null ? null : x -> (Number) attr.get(x);
-        return getNumberResult(this.list, func, defResult, attr == null ? null : attr.type(), attrFunc, node);
+        return getNumberResult(
+                filterSource(node, false), func, defResult, attr == null ? null : attr.type(), attrFunc, node);
     }
 
     public Sheet<T> querySheet(final SelectColumn selects, final Flipper flipper, final FilterNode node) {
@@ -716,20 +772,40 @@ public final class EntityCache<T> {
         if (keyattrs == null) {
             return stream;
         }
-        final Set<String> keys = new HashSet<>();
-        Predicate<T> filter = t -> {
-            StringBuilder sb = new StringBuilder();
-            for (Attribute attr : keyattrs) {
-                sb.append(attr.get(t));
+        return stream.filter(distinctPredicate(keyattrs));
+    }
+
+    // 有状态的去重过滤器, 每次查询需新建
+    protected Predicate<T> distinctPredicate(final List<Attribute<T, Serializable>> keyattrs) {
+        final Set<Object> keys = new HashSet<>();
+        if (keyattrs.size() == 1) {
+            final Attribute<T, Serializable> attr = keyattrs.get(0);
+            return t -> keys.add(distinctValue(attr.get(t)));
+        }
+        final Attribute<T, Serializable>[] attrs = keyattrs.toArray(new Attribute[keyattrs.size()]);
+        // 复用探测key, 只有新出现的组合才复制一份存入keys
+        final Serializable[] probe = new Serializable[attrs.length];
+        final UniqueSequence probeKey = new UniqueSequence(probe);
+        return t -> {
+            for (int i = 0; i < attrs.length; i++) {
+                probe[i] = distinctValue(attrs[i].get(t));
             }
-            String key = sb.toString();
-            if (keys.contains(key)) {
+            if (keys.contains(probeKey)) {
                 return false;
             }
-            keys.add(key);
+            keys.add(new UniqueSequence(probe.clone()));
             return true;
         };
-        return stream.filter(filter);
+    }
+
+    // AtomicInteger、AtomicLong、LongAdder没有重写equals, 需转换成数值比较
+    private static Serializable distinctValue(Serializable val) {
+        if (val instanceof AtomicInteger) {
+            return ((AtomicInteger) val).intValue();
+        } else if (val instanceof AtomicLong || val instanceof LongAdder) {
+            return ((Number) val).longValue();
+        }
+        return val;
     }
 
     public Sheet<T> querySheet(
@@ -739,9 +815,9 @@ public final class EntityCache<T> {
             final Flipper flipper,
             FilterNode node) {
         final Predicate<T> filter = node == null ? null : node.createPredicate(this);
+        final Collection<T> source = filterSource(node);
         final Comparator<T> comparator = createComparator(flipper);
-        long total = 0;
-        List<Attribute<T, Serializable>> keyattrs = null;
+        Predicate<T> distinctFilter = null;
         if (distinct) {
             final List<Attribute<T, Serializable>> attrs = new ArrayList<>();
             info.forEachAttribute((k, v) -> {
@@ -749,44 +825,81 @@ public final class EntityCache<T> {
                     attrs.add(v);
                 }
             });
-            keyattrs = attrs;
+            distinctFilter = distinctPredicate(attrs);
         }
-        if (needTotal) {
-            Stream<T> stream = this.list.stream();
-            if (filter != null) {
-                stream = stream.filter(filter);
+        final int offset = flipper == null ? 0 : Math.max(0, flipper.getOffset());
+        final int limit = flipper == null ? 0 : flipper.getLimit();
+        // 需要保留的前offset+limit条记录数, 为0表示不限制
+        final int topSize = limit > 0 ? (offset + limit < 0 ? Integer.MAX_VALUE : offset + limit) : 0;
+        long total = 0;
+        List<T> items;
+        if (topSize > 0 && comparator != null) {
+            // 单次遍历, 用大小为offset+limit的最大堆保留排序最靠前的记录, 无需对全部数据排序
+            // 排序值相同的记录按遍历顺序比较, 与稳定排序的结果一致, 翻页时不会重复或遗漏
+            final Comparator<TopItem<T>> order = (a, b) -> {
+                int rs = comparator.compare(a.value, b.value);
+                return rs != 0 ? rs : Long.compare(a.seq, b.seq);
+            };
+            final PriorityQueue<TopItem<T>> heap = new PriorityQueue<>(Math.min(topSize, 64), order.reversed());
+            for (T t : source) {
+                if ((filter != null && !filter.test(t)) || (distinctFilter != null && !distinctFilter.test(t))) {
+                    continue;
+                }
+                total++;
+                if (heap.size() < topSize) {
+                    heap.offer(new TopItem<>(t, total));
+                } else if (comparator.compare(t, heap.peek().value) < 0) { // 相等时后遍历的记录排在后面, 无需替换
+                    heap.poll();
+                    heap.offer(new TopItem<>(t, total));
+                }
+            }
+            int size = heap.size() - offset;
+            if (size <= 0) {
+                items = new ArrayList<>();
+            } else {
+                Object[] array = new Object[size];
+                for (int i = size - 1; i >= 0; i--) {
+                    array[i] = heap.poll().value;
+                }
+                items = (List) Arrays.asList(array);
             }
-            if (distinct) {
-                stream = distinctStream(stream, keyattrs);
+        } else if (topSize > 0) {
+            // 无排序时按原始顺序截取, 不需要总数时取满即可结束
+            items = new ArrayList<>(Math.min(limit, 64));
+            for (T t : source) {
+                if ((filter != null && !filter.test(t)) || (distinctFilter != null && !distinctFilter.test(t))) {
+                    continue;
+                }
+                total++;
+                if (total > offset && items.size() < limit) {
+                    items.add(t);
+                } else if (!needTotal && items.size() >= limit) {
+                    break;
+                }
+            }
+        } else {
+            items = new ArrayList<>();
+            for (T t : source) {
+                if ((filter != null && !filter.test(t)) || (distinctFilter != null && !distinctFilter.test(t))) {
+                    continue;
+                }
+                total++;
+                items.add(t);
+            }
+            if (comparator != null) {
+                items.sort(comparator);
+            }
+            if (offset > 0) {
+                items = offset >= items.size() ? new ArrayList<>() : items.subList(offset, items.size());
             }
-            total = stream.count();
         }
         if (needTotal && total == 0) {
             return new Sheet<>(0, new ArrayList());
         }
-        Stream<T> stream = this.list.stream();
-        if (filter != null) {
-            stream = stream.filter(filter);
-        }
-        if (distinct) {
-            stream = distinctStream(stream, keyattrs);
-        }
-        if (comparator != null) {
-            stream = stream.sorted(comparator);
-        }
-        if (flipper != null && flipper.getOffset() > 0) {
-            stream = stream.skip(flipper.getOffset());
-        }
-        if (flipper != null && flipper.getLimit() > 0) {
-            stream = stream.limit(flipper.getLimit());
-        }
-        final List<T> rs = new ArrayList<>();
+        final List<T> rs = new ArrayList<>(items.size());
         if (selects == null) {
-            Consumer<? super T> action = x -> rs.add(needCopy ? newCopier.apply(x, creator.create()) : x);
-            if (comparator != null) {
-                stream.forEachOrdered(action);
-            } else {
-                stream.forEach(action);
+            for (T x : items) {
+                rs.add(needCopy ? newCopier.apply(x, creator.create()) : x);
             }
         } else {
             final List<Attribute<T, Serializable>> attrs = new ArrayList<>();
@@ -795,17 +908,12 @@ public final class EntityCache<T> {
                     attrs.add(v);
                 }
             });
-            Consumer<? super T> action = x -> {
+            for (T x : items) {
                 final T item = creator.create();
                 for (Attribute attr : attrs) {
                     attr.set(item, attr.get(x));
                 }
                 rs.add(item);
-            };
-            if (comparator != null) {
-                stream.forEachOrdered(action);
-            } else {
-                stream.forEach(action);
             }
         }
         if (!needTotal) {
@@ -819,9 +927,19 @@ public final class EntityCache<T> {
             return 0;
         }
         final T rs = newCopier.apply(entity, this.creator.create()); // 确保同一主键值的map与list中的对象必须共用。
-        T old = this.map.putIfAbsent(this.primary.get(rs), rs);
+        final Serializable pk = this.primary.get(rs);
+        T old = this.map.putIfAbsent(pk, rs);
         if (old == null) {
+            final Map<String, CacheIndex<T>> idxs = this.indexes;
+            if (idxs != null) {
+                this.sequences.put(pk, sequence.incrementAndGet());
+            }
             this.list.add(rs);
+            if (idxs != null) {
+                for (CacheIndex<T> index : idxs.values()) {
+                    index.add(pk, rs);
+                }
+            }
             return 1;
         } else {
             logger.log(Level.WARNING, this.type + " cache repeat insert data: " + entity);
@@ -838,6 +956,13 @@ public final class EntityCache<T> {
             return 0;
         }
         this.list.remove(rs);
+        final Map<String, CacheIndex<T>> idxs = this.indexes;
+        if (idxs != null) {
+            for (CacheIndex<T> index : idxs.values()) {
+                index.remove(pk, index.attr.get(rs));
+            }
+            this.sequences.remove(pk);
+        }
         return 1;
     }
 
@@ -846,7 +971,7 @@ public final class EntityCache<T> {
             return new Serializable[0];
         }
         final Comparator<T> comparator = createComparator(flipper);
-        Stream<T> stream = this.list.stream().filter(node.createPredicate(this));
+        Stream<T> stream = filterSource(node).stream().filter(node.createPredicate(this));
         if (comparator != null) {
             stream = stream.sorted(comparator);
         }
@@ -864,6 +989,13 @@ public final class EntityCache<T> {
             ids[++i] = this.primary.get(t);
             this.map.remove(ids[i]);
             this.list.remove(t);
+            final Map<String, CacheIndex<T>> idxs = this.indexes;
+            if (idxs != null) {
+                for (CacheIndex<T> index : idxs.values()) {
+                    index.remove(ids[i], index.attr.get(t));
+                }
+                this.sequences.remove(ids[i]);
+            }
         }
         return ids;
     }
@@ -876,15 +1008,19 @@ public final class EntityCache<T> {
         if (entity == null) {
             return 0;
         }
-        T rs = this.map.get(this.primary.get(entity));
+        Serializable pk = this.primary.get(entity);
+        T rs = this.map.get(pk);
         if (rs == null) {
             return 0;
         }
-        tableLock.lock(); // 表锁, 可优化成行锁
+        ReentrantLock lock = lock(pk);
+        lock.lock();
         try {
+            Object[] olds = indexValues(rs);
             this.uptCopier.apply(entity, rs);
+            reindex(rs, olds);
         } finally {
-            tableLock.unlock();
+            lock.unlock();
         }
         return 1;
     }
@@ -893,17 +1029,21 @@ public final class EntityCache<T> {
         if (entity == null) {
             return entity;
         }
-        T rs = this.map.get(this.primary.get(entity));
+        Serializable pk = this.primary.get(entity);
+        T rs = this.map.get(pk);
         if (rs == null) {
             return rs;
         }
-        tableLock.lock(); // 表锁, 可优化成行锁
+        ReentrantLock lock = lock(pk);
+        lock.lock();
         try {
+            Object[] olds = indexValues(rs);
             for (Attribute attr : attrs) {
                 attr.set(rs, attr.get(entity));
             }
+            reindex(rs, olds);
         } finally {
-            tableLock.unlock();
+            lock.unlock();
         }
         return rs;
     }
@@ -912,16 +1052,34 @@ public final class EntityCache<T> {
         if (entity == null || node == null) {
             return (T[]) Creator.newArray(type, 0);
         }
-        T[] rms = this.list.stream().filter(node.createPredicate(this)).toArray(arrayer);
-        tableLock.lock(); // 表锁, 可优化成行锁
-        try {
+        T[] rms = filterSource(node).stream().filter(node.createPredicate(this)).toArray(arrayer);
+        if (rowLocks == null) {
+            tableLock.lock();
+            try {
+                for (T rs : rms) {
+                    Object[] olds = indexValues(rs);
+                    for (Attribute attr : attrs) {
+                        attr.set(rs, attr.get(entity));
+                    }
+                    reindex(rs, olds);
+                }
+            } finally {
+                tableLock.unlock();
+            }
+        } else {
             for (T rs : rms) {
-                for (Attribute attr : attrs) {
-                    attr.set(rs, attr.get(entity));
+                ReentrantLock lock = lock(this.primary.get(rs));
+                lock.lock();
+                try {
+                    Object[] olds = indexValues(rs);
+                    for (Attribute attr : attrs) {
+                        attr.set(rs, attr.get(entity));
+                    }
+                    reindex(rs, olds);
+                } finally {
+                    lock.unlock();
                 }
             }
-        } finally {
-            tableLock.unlock();
         }
         return rms;
     }
@@ -932,7 +1090,9 @@ public final class EntityCache<T> {
         }
         T rs = this.map.get(pk);
         if (rs != null) {
+            Object[] olds = indexValues(rs);
             attr.set(rs, fieldValue);
+            reindex(rs, olds);
         }
         return rs;
     }
@@ -941,9 +1101,11 @@ public final class EntityCache<T> {
         if (attr == null || node == null) {
             return (T[]) Creator.newArray(type, 0);
         }
-        T[] rms = this.list.stream().filter(node.createPredicate(this)).toArray(arrayer);
+        T[] rms = filterSource(node).stream().filter(node.createPredicate(this)).toArray(arrayer);
         for (T rs : rms) {
+            Object[] olds = indexValues(rs);
             attr.set(rs, fieldValue);
+            reindex(rs, olds);
         }
         return rms;
     }
@@ -957,14 +1119,17 @@ public final class EntityCache<T> {
         if (rs == null) {
             return rs;
         }
-        tableLock.lock(); // 表锁, 可优化成行锁
+        ReentrantLock lock = lock(pk);
+        lock.lock();
         try {
+            Object[] olds = indexValues(rs);
             for (int i = 0; i < attrs.size(); i++) {
                 ColumnValue cv = values.get(i);
                 updateColumn(attrs.get(i), rs, cv.getExpress(), cv.getValue());
             }
+            reindex(rs, olds);
         } finally {
-            tableLock.unlock();
+            lock.unlock();
         }
         return rs;
     }
@@ -986,16 +1151,35 @@ public final class EntityCache<T> {
             stream = stream.limit(flipper.getLimit());
         }
         T[] rms = stream.filter(node.createPredicate(this)).toArray(arrayer);
-        tableLock.lock(); // 表锁, 可优化成行锁
-        try {
+        if (rowLocks == null) {
+            tableLock.lock();
+            try {
+                for (T rs : rms) {
+                    Object[] olds = indexValues(rs);
+                    for (int i = 0; i < attrs.size(); i++) {
+                        ColumnValue cv = values.get(i);
+                        updateColumn(attrs.get(i), rs, cv.getExpress(), cv.getValue());
+                    }
+                    reindex(rs, olds);
+                }
+            } finally {
+                tableLock.unlock();
+            }
+        } else {
             for (T rs : rms) {
-                for (int i = 0; i < attrs.size(); i++) {
-                    ColumnValue cv = values.get(i);
-                    updateColumn(attrs.get(i), rs, cv.getExpress(), cv.getValue());
+                ReentrantLock lock = lock(this.primary.get(rs));
+                lock.lock();
+                try {
+                    Object[] olds = indexValues(rs);
+                    for (int i = 0; i < attrs.size(); i++) {
+                        ColumnValue cv = values.get(i);
+                        updateColumn(attrs.get(i), rs, cv.getExpress(), cv.getValue());
+                    }
+                    reindex(rs, olds);
+                } finally {
+                    lock.unlock();
                 }
             }
-        } finally {
-            tableLock.unlock();
         }
         return rms;
     }
@@ -1008,11 +1192,15 @@ public final class EntityCache<T> {
         if (rs == null) {
             return rs;
         }
-        tableLock.lock(); // 表锁, 可优化成行锁
+        ReentrantLock lock = lock(pk);
+        lock.lock();
         try {
-            return updateColumn(attr, rs, ColumnExpress.ORR, orvalue);
+            Object[] olds = indexValues(rs);
+            updateColumn(attr, rs, ColumnExpress.ORR, orvalue);
+            reindex(rs, olds);
+            return rs;
         } finally {
-            tableLock.unlock();
+            lock.unlock();
         }
     }
 
@@ -1024,11 +1212,15 @@ public final class EntityCache<T> {
         if (rs == null) {
             return rs;
         }
-        tableLock.lock(); // 表锁, 可优化成行锁
+        ReentrantLock lock = lock(pk);
+        lock.lock();
         try {
-            return updateColumn(attr, rs, ColumnExpress.AND, andvalue);
+            Object[] olds = indexValues(rs);
+            updateColumn(attr, rs, ColumnExpress.AND, andvalue);
+            reindex(rs, olds);
+            return rs;
         } finally {
-            tableLock.unlock();
+            lock.unlock();
         }
     }
 
@@ -1040,11 +1232,15 @@ public final class EntityCache<T> {
         if (rs == null) {
             return rs;
         }
-        tableLock.lock(); // 表锁, 可优化成行锁
+        ReentrantLock lock = lock(pk);
+        lock.lock();
         try {
-            return updateColumn(attr, rs, ColumnExpress.INC, incvalue);
+            Object[] olds = indexValues(rs);
+            updateColumn(attr, rs, ColumnExpress.INC, incvalue);
+            reindex(rs, olds);
+            return rs;
         } finally {
-            tableLock.unlock();
+            lock.unlock();
         }
     }
 
@@ -1056,11 +1252,15 @@ public final class EntityCache<T> {
         if (rs == null) {
             return rs;
         }
-        tableLock.lock(); // 表锁, 可优化成行锁
+        ReentrantLock lock = lock(pk);
+        lock.lock();
         try {
-            return updateColumn(attr, rs, ColumnExpress.DEC, incvalue);
+            Object[] olds = indexValues(rs);
+            updateColumn(attr, rs, ColumnExpress.DEC, incvalue);
+            reindex(rs, olds);
+            return rs;
         } finally {
-            tableLock.unlock();
+            lock.unlock();
         }
     }
 
@@ -1227,6 +1427,228 @@ public final class EntityCache<T> {
         return info.getAttribute(fieldname);
     }
 
+    /**
+     * 是否使用分段行锁
+     *
+     * @return boolean
+     */
+    public boolean isRowLocking() {
+        return rowLocks != null;
+    }
+
+    // 获取主键对应的锁, 未开启分段行锁时返回表锁
+    private ReentrantLock lock(Serializable pk) {
+        final ReentrantLock[] locks = this.rowLocks;
+        if (locks == null) {
+            return tableLock;
+        }
+        int h = pk.hashCode();
+        h ^= (h >>> 16);
+        return locks[h & (locks.length - 1)];
+    }
+
+    // &#064;Index.columns中的字段可以是字段名或数据库列名
+    private Attribute<T, Serializable> findIndexAttribute(String column) {
+        Attribute<T, Serializable> attr = info.getAttribute(column);
+        if (attr != null) {
+            return attr;
+        }
+        for (Attribute<T, Serializable> item : info.attributes) {
+            if (column.equalsIgnoreCase(info.getSQLColumn(null, item.field()))) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    // 全量数据替换时在新的索引实例上重建后整体替换, 重建期间查询仍使用旧索引
+    private void rebuildIndexes(Collection<T> data) {
+        final Map<String, CacheIndex<T>> olds = this.indexes;
+        if (olds == null) {
+            return;
+        }
+        Map<String, CacheIndex<T>> idxmap = new HashMap<>();
+        for (CacheIndex<T> index : olds.values()) {
+            idxmap.put(index.attr.field(), new CacheIndex<>(index.attr, index.sorted));
+        }
+        ConcurrentHashMap<Serializable, Long> seqs = new ConcurrentHashMap<>();
+        for (T t : data) {
+            Serializable pk = this.primary.get(t);
+            seqs.put(pk, sequence.incrementAndGet());
+            for (CacheIndex<T> index : idxmap.values()) {
+                index.add(pk, t);
+            }
+        }
+        this.sequences = seqs;
+        this.indexes = idxmap;
+    }
+
+    // 修改前记录索引字段的值, 没有索引时返回null
+    private Object[] indexValues(T entity) {
+        final Map<String, CacheIndex<T>> idxs = this.indexes;
+        if (idxs == null) {
+            return null;
+        }
+        Object[] vals = new Object[idxs.size()];
+        int i = -1;
+        for (CacheIndex<T> index : idxs.values()) {
+            vals[++i] = index.attr.get(entity);
+        }
+        return vals;
+    }
+
+    // 修改后将值有变化的索引项迁移到新值下
+    private void reindex(T entity, Object[] olds) {
+        if (olds == null) {
+            return;
+        }
+        Serializable pk = null;
+        int i = -1;
+        for (CacheIndex<T> index : indexes.values()) {
+            Object old = olds[++i];
+            if (!Objects.equals(old, index.attr.get(entity))) {
+                if (pk == null) {
+                    pk = this.primary.get(entity);
+                }
+                index.remove(pk, old);
+                index.add(pk, entity);
+            }
+        }
+    }
+
+    /**
+     * 获取FilterNode需要过滤的数据集合, 可使用二级索引时返回索引命中的记录(仍需FilterNode过滤), 否则返回全量数据 <br>
+     * 索引命中的记录保持与全量数据相同的插入顺序
+     *
+     * @param node FilterNode
+     * @return Collection
+     */
+    protected Collection<T> filterSource(FilterNode node) {
+        return filterSource(node, true);
+    }
+
+    /**
+     * 获取FilterNode需要过滤的数据集合
+     *
+     * @param node FilterNode
+     * @param ordered 索引命中的记录是否需要保持插入顺序, 计数、统计等与顺序无关的查询传false
+     * @return Collection
+     */
+    protected Collection<T> filterSource(FilterNode node, boolean ordered) {
+        if (indexes == null || node == null) {
+            return this.list;
+        }
+        Collection<Serializable> pks = indexLookup(node);
+        if (pks == null) {
+            return this.list;
+        }
+        if (pks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (ordered && pks.size() > 1) { // 按插入序号排列, 与list顺序一致, 避免分页结果按哈希顺序排列
+            final Map<Serializable, Long> seqs = this.sequences;
+            List<Serializable> keys = new ArrayList<>(pks);
+            keys.sort(Comparator.comparingLong(pk -> seqs.getOrDefault(pk, Long.MAX_VALUE)));
+            pks = keys;
+        }
+        final Map<Serializable, T> data = this.map;
+        final List<T> rs = new ArrayList<>(pks.size());
+        for (Serializable pk : pks) {
+            T t = data.get(pk);
+            if (t != null) {
+                rs.add(t);
+            }
+        }
+        return rs;
+    }
+
+    // 返回null表示无可用索引
+    private Collection<Serializable> indexLookup(FilterNode node) {
+        if (node.getClass() != FilterNode.class) { // FilterJoinNode等子类的字段不属于当前表
+            return null;
+        }
+        if (node.nodes != null && node.or) {
+            return null;
+        }
+        Collection<Serializable> rs = indexElementLookup(node);
+        if (node.nodes != null) {
+            for (FilterNode item : node.nodes) {
+                Collection<Serializable> sub = indexLookup(item);
+                if (sub != null && (rs == null || sub.size() < rs.size())) {
+                    rs = sub;
+                }
+            }
+        }
+        return rs;
+    }
+
+    private Collection<Serializable> indexElementLookup(FilterNode node) {
+        if (node.column == null || node.express == null) {
+            return null;
+        }
+        final CacheIndex<T> index = indexes.get(node.column);
+        final Object val = node.value;
+        if (index == null || val == null) {
+            return null;
+        }
+        switch (FilterNodes.oldExpress(node.express)) {
+            case EQ: {
+                Object key = index.key(val);
+                return key == null ? null : index.eq(key);
+            }
+            case IN: {
+                List<Object> keys = new ArrayList<>();
+                if (val instanceof Collection) {
+                    for (Object item : (Collection) val) {
+                        Object key = index.key(item);
+                        if (key == null) {
+                            return null;
+                        }
+                        keys.add(key);
+                    }
+                } else if (val.getClass().isArray()) {
+                    for (int i = 0, len = Array.getLength(val); i < len; i++) {
+                        Object key = index.key(Array.get(val, i));
+                        if (key == null) {
+                            return null;
+                        }
+                        keys.add(key);
+                    }
+                } else {
+                    return null;
+                }
+                return index.in(keys);
+            }
+            case GT:
+            case GE: {
+                Object key = index.sorted ? index.key(val) : null;
+                return key == null ? null : index.range(key, null);
+            }
+            case LT:
+            case LE: {
+                Object key = index.sorted ? index.key(val) : null;
+                return key == null ? null : index.range(null, key);
+            }
+            case BETWEEN: {
+                if (!index.sorted || !(val instanceof Range)) {
+                    return null;
+                }
+                Range range = (Range) val;
+                Object min = range.getMin() == null ? null : index.key(range.getMin());
+                Object max = range.getMax() == null ? null : index.key(range.getMax());
+                if ((range.getMin() != null && min == null) || (range.getMax() != null && max == null)) {
+                    return null;
+                }
+                if (min != null && max != null && ((Comparable) max).compareTo(min) < 0) {
+                    max = null; // Range中max小于min表示不限上限
+                }
+                return index.range(min, max);
+            }
+            default:
+                return null;
+        }
+    }
+
     // -------------------------------------------------------------------------------------------------------------------------------
     protected Comparator<T> createComparator(Flipper flipper) {
         if (flipper == null
@@ -1304,6 +1726,159 @@ public final class EntityCache<T> {
         return comparator;
     }
 
+    // querySheet中top-K堆的元素, seq为记录的遍历序号
+    private static final class TopItem<T> {
+
+        final T value;
+
+        final long seq;
+
+        TopItem(T value, long seq) {
+            this.value = value;
+            this.seq = seq;
+        }
+    }
+
+    // 单字段的二级索引, 值为主键集合
+    private static final class CacheIndex<T> {
+
+        final Attribute<T, Serializable> attr;
+
+        // 是否为有序索引, 有序索引支持范围查询
+        final boolean sorted;
+
+        // 字段值的包装类型
+        private final Class keyType;
+
+        private final ConcurrentMap<Object, Set<Serializable>> data;
+
+        // ConcurrentSkipListMap的compute方法非原子性, 需加锁
+        private final ReentrantLock lock;
+
+        public CacheIndex(Attribute<T, Serializable> attr, boolean sorted) {
+            this.attr = attr;
+            this.sorted = sorted;
+            this.keyType = TypeToken.primitiveToWrapper(attr.type());
+            this.data = sorted ? new ConcurrentSkipListMap<>() : new ConcurrentHashMap<>();
+            this.lock = sorted ? new ReentrantLock() : null;
+        }
+
+        public void add(Serializable pk, T entity) {
+            Object key = attr.get(entity);
+            if (key == null) {
+                return;
+            }
+            if (lock == null) { // add须在compute内执行, 否则可能被remove移除的空集合吞掉
+                data.compute(key, (k, v) -> {
+                    Set<Serializable> pks = v == null ? ConcurrentHashMap.newKeySet() : v;
+                    pks.add(pk);
+                    return pks;
+                });
+                return;
+            }
+            lock.lock();
+            try {
+                data.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(pk);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void remove(Serializable pk, Object key) {
+            if (key == null) {
+                return;
+            }
+            if (lock == null) {
+                data.computeIfPresent(key, (k, v) -> v.remove(pk) && v.isEmpty() ? null : v);
+                return;
+            }
+            lock.lock();
+            try {
+                Set<Serializable> pks = data.get(key);
+                if (pks != null && pks.remove(pk) && pks.isEmpty()) {
+                    data.remove(key);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // 数值和时间类型的字段建立有序索引, 支持范围查询; 其他类型建立哈希索引
+        static boolean isSortedType(Class type) {
+            Class clazz = TypeToken.primitiveToWrapper(type);
+            if (!Comparable.class.isAssignableFrom(clazz)) {
+                return false;
+            }
+            return Number.class.isAssignableFrom(clazz)
+                    || Date.class.isAssignableFrom(clazz)
+                    || java.time.temporal.Temporal.class.isAssignableFrom(clazz);
+        }
+
+        // 将查询值转换成与字段相同的类型, 无法转换时返回null
+        public Object key(Object val) {
+            if (val == null) {
+                return null;
+            }
+            if (keyType.isInstance(val)) {
+                return val;
+            }
+            if (val instanceof Number) {
+                Number num = (Number) val;
+                if (keyType == Integer.class) {
+                    return num.intValue();
+                } else if (keyType == Long.class) {
+                    return num.longValue();
+                } else if (keyType == Short.class) {
+                    return num.shortValue();
+                } else if (keyType == Byte.class) {
+                    return num.byteValue();
+                } else if (keyType == Float.class) {
+                    return num.floatValue();
+                } else if (keyType == Double.class) {
+                    return num.doubleValue();
+                }
+            }
+            return null;
+        }
+
+        public Collection<Serializable> eq(Object key) {
+            Set<Serializable> pks = data.get(key);
+            return pks == null ? Collections.emptyList() : pks;
+        }
+
+        public Collection<Serializable> in(Collection<Object> keys) {
+            if (keys.size() == 1) {
+                return eq(keys.iterator().next());
+            }
+            Set<Serializable> rs = new HashSet<>();
+            for (Object key : keys) {
+                Set<Serializable> pks = data.get(key);
+                if (pks != null) {
+                    rs.addAll(pks);
+                }
+            }
+            return rs;
+        }
+
+        // 闭区间, 边界值由FilterNode再次过滤
+        public Collection<Serializable> range(Object min, Object max) {
+            ConcurrentNavigableMap<Object, Set<Serializable>> sorts =
+                    (ConcurrentNavigableMap<Object, Set<Serializable>>) data;
+            if (min != null && max != null) {
+                sorts = sorts.subMap(min, true, max, true);
+            } else if (min != null) {
+                sorts = sorts.tailMap(min, true);
+            } else if (max != null) {
+                sorts = sorts.headMap(max, true);
+            }
+            List<Serializable> rs = new ArrayList<>();
+            for (Set<Serializable> pks : sorts.values()) {
+                rs.addAll(pks);
+            }
+            return rs;
+        }
+    }
+
     private static class UniqueSequence implements Serializable {
 
         private final Serializable[] value;
@@ -1330,7 +1905,7 @@ public final class EntityCache<T> {
                 return false;
             }
             for (int i = 0; i < value.length; i++) {
-                if (!value[i].equals(other.value[i])) {
+                if (!Objects.deepEquals(value[i], other.value[i])) {
                     return false;
                 }
             }
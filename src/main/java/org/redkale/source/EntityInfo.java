@@ -729,10 +729,12 @@ public final class EntityInfo<T> {
         boolean cacheable = false;
         int interval = 0;
         boolean direct = false;
+        int lockStripes = 0;
         if (en != null) {
             cacheable = en.cacheable();
             interval = en.cacheInterval();
             direct = en.cacheDirect();
+            lockStripes = en.cacheLockStripes();
         } else {
             org.redkale.persistence.VirtualEntity ve = type.getAnnotation(org.redkale.persistence.VirtualEntity.class);
             if (ve != null) {
@@ -741,7 +743,7 @@ public final class EntityInfo<T> {
             }
         }
         if (this.table == null || (!cacheForbidden && cacheable)) {
-            this.cache = new EntityCache<>(this, interval, direct);
+            this.cache = new EntityCache<>(this, interval, direct, lockStripes);
         } else {
             this.cache = null;
         }
@@ -106,11 +106,15 @@ public abstract class Flows {
 
     private static final Function<Object, CompletableFuture> reactorFluxFunction;
 
+    // reactor.adapter.JdkFlowAdapter.publisherToFlowPublisher
+    private static final Method reactorFlowAdapterMethod;
+
     static {
         Class reactorMonoClass0 = null;
         Class reactorFluxClass0 = null;
         Function<Object, CompletableFuture> reactorMonoFunction0 = null;
         Function<Object, CompletableFuture> reactorFluxFunction0 = null;
+        Method reactorFlowAdapterMethod0 = null;
 
         if (!"executable".equals(System.getProperty("org.graalvm.nativeimage.kind"))) { // not native-image
             try {
@@ -143,6 +147,10 @@ public abstract class Flows {
                 }
                 RedkaleClassLoader.putReflectionDeclaredConstructors(fluxFuncClass, fluxFuncClass.getName());
                 reactorFluxFunction0 = fluxFuncClass.getDeclaredConstructor().newInstance();
+                //
+                Class adapterClass = classLoader.loadClass("reactor.adapter.JdkFlowAdapter");
+                reactorFlowAdapterMethod0 = adapterClass.getMethod(
+                        "publisherToFlowPublisher", classLoader.loadClass("org.reactivestreams.Publisher"));
             } catch (Throwable t) {
                 // do nothing
             }
@@ -152,6 +160,7 @@ public abstract class Flows {
         reactorFluxClass = reactorFluxClass0;
         reactorMonoFunction = reactorMonoFunction0;
         reactorFluxFunction = reactorFluxFunction0;
+        reactorFlowAdapterMethod = reactorFlowAdapterMethod0;
     }
 
     Flows() {}
@@ -219,6 +228,26 @@ public abstract class Flows {
         return value;
     }
 
+    /**
+     * 将多元素的第三方Publisher(如: Flux)转换成Flow.Publisher, 用于流式输出
+     *
+     * @param value Publisher对象
+     * @return 不是多元素的Publisher时返回null
+     */
+    public static Flow.Publisher maybeFluxToFlowPublisher(Object value) {
+        if (value == null || reactorFlowAdapterMethod == null) {
+            return null;
+        }
+        if (!reactorFluxClass.isAssignableFrom(value.getClass())) {
+            return null;
+        }
+        try {
+            return (Flow.Publisher) reactorFlowAdapterMethod.invoke(null, value);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
     public static final <T> CompletableFuture<List<T>> createFluxFuture(Flow.Publisher<T> publisher) {
         SubscriberListFuture<T> future = new SubscriberListFuture<>();
         publisher.subscribe(future);
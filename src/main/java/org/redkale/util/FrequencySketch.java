@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.util;
+
+/**
+ * 基于Count-Min Sketch的访问频率估算器, 用于TinyLFU准入策略 <br>
+ * 计数表分为4行, 每行width个4位计数器(每个long存放16个), 元素在每行各对应一个计数器, 取4个计数器的最小值作为估算频率 <br>
+ * width为元素数量上限的4倍, 计数表共占用与元素数量上限相同个数的long <br>
+ * 增加频率时采用保守更新, 只增加等于最小值的计数器, 以减少哈希冲突带来的高估; 计数上限为15 <br>
+ * 累计增加次数达到元素数量上限的10倍后所有计数器减半, 以淘汰历史热度 <br>
+ * 非线程安全, 并发下的少量丢失更新不影响估算
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @since 2.8.0
+ */
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+
+    // 计数器上限
+    private static final int MAX_COUNT = 15;
+
+    // 元素数量上限的最大值
+    private static final int MAX_SIZE = 1 << 24;
+
+    // 每个4位计数器右移一位后去掉借入的高位
+    private static final long HALF_MASK = 0x7777777777777777L;
+
+    private long[] table;
+
+    // 每行计数器个数, 2的幂
+    private int width;
+
+    // 每行占用的long个数
+    private int rowLongs;
+
+    private int sampleSize;
+
+    private int additions;
+
+    public FrequencySketch(long maximumSize) {
+        ensureCapacity(maximumSize);
+    }
+
+    /**
+     * 按元素数量上限调整计数表大小, 调整后历史计数会清空
+     *
+     * @param maximumSize 元素数量上限
+     */
+    public void ensureCapacity(long maximumSize) {
+        int max = (int) Math.min(Math.max(maximumSize, 16), MAX_SIZE);
+        if (table != null && table.length >= max) {
+            return;
+        }
+        int capacity = Integer.highestOneBit(max - 1) << 1;
+        this.width = capacity << 2;
+        this.rowLongs = capacity >>> 2;
+        this.table = new long[capacity];
+        this.sampleSize = capacity * 10;
+        this.additions = 0;
+    }
+
+    /**
+     * 获取元素的估算访问频率, 最大值为15
+     *
+     * @param hashCode 元素的hashCode
+     * @return int
+     */
+    public int frequency(int hashCode) {
+        long hash = mix(hashCode);
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, count(row, column(hash, row)));
+        }
+        return min;
+    }
+
+    /**
+     * 增加元素的访问频率
+     *
+     * @param hashCode 元素的hashCode
+     */
+    public void increment(int hashCode) {
+        long hash = mix(hashCode);
+        int c0 = column(hash, 0);
+        int c1 = column(hash, 1);
+        int c2 = column(hash, 2);
+        int c3 = column(hash, 3);
+        int n0 = count(0, c0);
+        int n1 = count(1, c1);
+        int n2 = count(2, c2);
+        int n3 = count(3, c3);
+        int min = Math.min(Math.min(n0, n1), Math.min(n2, n3));
+        if (min >= MAX_COUNT) {
+            return;
+        }
+        if (n0 == min) {
+            add(0, c0);
+        }
+        if (n1 == min) {
+            add(1, c1);
+        }
+        if (n2 == min) {
+            add(2, c2);
+        }
+        if (n3 == min) {
+            add(3, c3);
+        }
+        if (++additions >= sampleSize) {
+            halve();
+        }
+    }
+
+    private void add(int row, int col) {
+        table[row * rowLongs + (col >>> 4)] += 1L << ((col & 15) << 2);
+    }
+
+    private int count(int row, int col) {
+        return (int) (table[row * rowLongs + (col >>> 4)] >>> ((col & 15) << 2)) & 0xf;
+    }
+
+    // 所有计数器减半
+    private void halve() {
+        long[] t = this.table;
+        for (int i = 0; i < t.length; i++) {
+            t[i] = (t[i] >>> 1) & HALF_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    // 双重哈希: 由一个64位哈希的高低两半推导出每行的位置
+    private int column(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return (h1 + row * h2) & (width - 1);
+    }
+
+    // murmur3的fmix64
+    private static long mix(int hashCode) {
+        long h = hashCode;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
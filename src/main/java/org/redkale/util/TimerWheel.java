@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.util;
+
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮, 用于大量元素的过期管理, 推进时只处理到期的槽位, 开销与到期元素数量成正比 <br>
+ * 各层槽位跨度依次约为: 1秒、65秒、70分钟、18.6小时、12.4天, 超出范围的放入最后一层的溢出槽位 <br>
+ * 非线程安全, 需由调用方加锁
+ *
+ * <p>详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @param <E> 元素类型
+ * @since 2.8.0
+ */
+public class TimerWheel<E extends TimerWheel.Node> {
+
+    // 各层的槽位数
+    static final int[] BUCKETS = {64, 64, 32, 4, 1};
+
+    // 各层每个槽位的毫秒跨度的位移
+    static final int[] SHIFTS = {10, 16, 22, 26, 30};
+
+    private final Node[][] wheel;
+
+    // 上次推进的时间点
+    private long millis;
+
+    private int size;
+
+    public TimerWheel() {
+        this(System.currentTimeMillis());
+    }
+
+    public TimerWheel(long nowMillis) {
+        this.millis = nowMillis;
+        this.wheel = new Node[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new Node[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                Node sentinel = new Node();
+                sentinel.timerPrev = sentinel;
+                sentinel.timerNext = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * 元素数量
+     *
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 添加或重新调度元素, expireMillis小于等于0时等同于{@link #deschedule(org.redkale.util.TimerWheel.Node)}
+     *
+     * @param node 元素
+     * @param expireMillis 过期的时间点
+     */
+    public void schedule(E node, long expireMillis) {
+        if (node.timerNext != null) {
+            unlink(node);
+        }
+        if (expireMillis <= 0) {
+            return;
+        }
+        node.timerMillis = expireMillis;
+        link(findBucket(expireMillis), node);
+    }
+
+    /**
+     * 移除元素
+     *
+     * @param node 元素
+     */
+    public void deschedule(E node) {
+        if (node.timerNext != null) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * 推进时间轮, 到期的元素会被移除并回调
+     *
+     * @param nowMillis 当前时间点
+     * @param expired 到期元素的回调
+     */
+    public void advance(long nowMillis, Consumer<E> expired) {
+        long prev = this.millis;
+        if (nowMillis <= prev) {
+            return;
+        }
+        this.millis = nowMillis;
+        for (int i = 0; i < SHIFTS.length; i++) {
+            long prevTicks = prev >>> SHIFTS[i];
+            long delta = (nowMillis >>> SHIFTS[i]) - prevTicks;
+            if (delta <= 0) {
+                break;
+            }
+            expire(i, prevTicks, delta, expired);
+        }
+    }
+
+    /** 清空所有元素 */
+    public void clear() {
+        for (Node[] buckets : wheel) {
+            for (Node sentinel : buckets) {
+                Node node = sentinel.timerNext;
+                while (node != sentinel) {
+                    Node next = node.timerNext;
+                    node.timerPrev = null;
+                    node.timerNext = null;
+                    node = next;
+                }
+                sentinel.timerPrev = sentinel;
+                sentinel.timerNext = sentinel;
+            }
+        }
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expire(int index, long prevTicks, long delta, Consumer<E> expired) {
+        Node[] buckets = wheel[index];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(1 + delta, buckets.length);
+        int start = (int) (prevTicks & mask);
+        int end = start + steps;
+        for (int i = start; i < end; i++) {
+            Node sentinel = buckets[i & mask];
+            Node node = sentinel.timerNext;
+            sentinel.timerPrev = sentinel;
+            sentinel.timerNext = sentinel;
+            while (node != sentinel) {
+                Node next = node.timerNext;
+                node.timerPrev = null;
+                node.timerNext = null;
+                size--;
+                if (node.timerMillis <= this.millis) {
+                    expired.accept((E) node);
+                } else { // 未到期的降级到更精细的层
+                    link(findBucket(node.timerMillis), node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private Node findBucket(long expireMillis) {
+        long duration = expireMillis - this.millis;
+        int last = BUCKETS.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < (1L << SHIFTS[i + 1])) {
+                long ticks = expireMillis >>> SHIFTS[i];
+                return wheel[i][(int) (ticks & (BUCKETS[i] - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+
+    private void link(Node sentinel, Node node) {
+        node.timerPrev = sentinel.timerPrev;
+        node.timerNext = sentinel;
+        sentinel.timerPrev.timerNext = node;
+        sentinel.timerPrev = node;
+        size++;
+    }
+
+    private void unlink(Node node) {
+        node.timerPrev.timerNext = node.timerNext;
+        node.timerNext.timerPrev = node.timerPrev;
+        node.timerPrev = null;
+        node.timerNext = null;
+        size--;
+    }
+
+    /** 时间轮元素的基类 */
+    public static class Node {
+
+        Node timerPrev;
+
+        Node timerNext;
+
+        long timerMillis;
+
+        protected Node() {}
+
+        /**
+         * 是否已在时间轮中
+         *
+         * @return boolean
+         */
+        protected boolean isScheduled() {
+            return timerNext != null;
+        }
+    }
+}
@@ -94,7 +94,10 @@ public class CachedInstanceTest {
         System.out.println("准备设置 updateName");
         instance.updateName2("gege");
         System.out.println("设置结束 updateName");
-        Utility.sleep(10);
+        // 首条广播消息需先生成解码器, 最多等待1秒
+        for (int i = 0; i < 100 && !"gege".equals(instance2.getName2()); i++) {
+            Utility.sleep(10);
+        }
         Assertions.assertEquals("gege", instance.getName2());
         Assertions.assertEquals("gege", instance2.getName2());
         System.out.println("=====================================01============================================");
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.cached;
+
+import org.junit.jupiter.api.*;
+import org.redkale.cached.spi.CachedLocalSource;
+import org.redkale.test.cached.CachedManagerTest.CachingBean;
+import org.redkale.util.Utility;
+
+/**
+ * CachedLocalSource的淘汰与过期测试
+ *
+ * @author zhangjx
+ */
+public class CachedLocalSourceTest {
+
+    public static void main(String[] args) throws Throwable {
+        CachedLocalSourceTest test = new CachedLocalSourceTest();
+        test.run1();
+        test.run2();
+        test.run3();
+    }
+
+    @Test
+    public void run1() throws Exception {
+        CachedLocalSource source = new CachedLocalSource();
+        int limit = 100;
+        for (int i = 0; i < limit; i++) {
+            source.set("hot", "key" + i, limit, 0, String.class, "v" + i);
+        }
+        // 热点数据多次访问
+        for (int k = 0; k < 5; k++) {
+            for (int i = 0; i < limit; i++) {
+                Assertions.assertEquals("v" + i, source.get("hot", "key" + i, String.class));
+            }
+        }
+        // 一次性扫描不应冲掉热点数据
+        for (int i = 0; i < 1000; i++) {
+            source.set("hot", "scan" + i, limit, 0, String.class, "s" + i);
+        }
+        Assertions.assertEquals(limit, source.getSize("hot"));
+        int remain = 0;
+        for (int i = 0; i < limit; i++) {
+            if (source.get("hot", "key" + i, String.class) != null) {
+                remain++;
+            }
+        }
+        Assertions.assertTrue(remain >= limit * 9 / 10, "remain: " + remain);
+        CachedLocalSource.CacheStats stats = source.getStats("hot");
+        Assertions.assertEquals(1000, stats.getEvictions());
+        Assertions.assertEquals(limit * 5 + remain, stats.getHits());
+        Assertions.assertEquals(limit - remain, stats.getMisses());
+    }
+
+    @Test
+    public void run2() throws Exception {
+        CachedLocalSource source = new CachedLocalSource();
+        source.init(null);
+        try {
+            for (int i = 0; i < 50; i++) {
+                source.set("ttl", "key" + i, 0, 100, String.class, "v" + i);
+            }
+            source.set("ttl", "forever", 0, 0, String.class, "v");
+            Assertions.assertEquals(51, source.getSize("ttl"));
+            Utility.sleep(2500);
+            // 未读取的过期数据由时间轮清除
+            Assertions.assertEquals(1, source.getSize("ttl"));
+            Assertions.assertEquals("v", source.get("ttl", "forever", String.class));
+        } finally {
+            source.destroy(null);
+        }
+    }
+
+    @Test
+    public void run3() throws Exception {
+        CachedLocalSource source = new CachedLocalSource();
+        CachingBean bean = new CachingBean("tom", "备注");
+        String json = bean.toString();
+
+        source.setStoreMode(CachedLocalSource.StoreMode.PROTOBUF);
+        source.set("pb", "tom", 0, 0, CachingBean.class, bean);
+        CachingBean rs = source.get("pb", "tom", CachingBean.class);
+        Assertions.assertEquals(json, rs.toString());
+        rs.setRemark("新备注");
+        Assertions.assertEquals(json, source.get("pb", "tom", CachingBean.class).toString());
+
+        source.setStoreMode(CachedLocalSource.StoreMode.OBJECT);
+        source.set("obj", "tom", 0, 0, CachingBean.class, bean);
+        Assertions.assertSame(bean, source.get("obj", "tom", CachingBean.class));
+        // 切换存储方式不影响已写入的数据
+        Assertions.assertEquals(json, source.get("pb", "tom", CachingBean.class).toString());
+    }
+}
@@ -6,11 +6,13 @@ package org.redkale.test.cached;
 import java.time.Duration;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.jupiter.api.*;
 import org.redkale.boot.LoggingBaseHandler;
 import org.redkale.cached.spi.CachedManagerService;
 import org.redkale.convert.json.JsonConvert;
 import org.redkale.source.CacheMemorySource;
+import org.redkale.util.ThrowSupplier;
 import org.redkale.util.Utility;
 
 /** @author zhangjx */
@@ -24,6 +26,8 @@ public class CachedManagerTest {
         init();
         test.run1();
         test.run2();
+        test.run3();
+        test.run4();
     }
 
     @BeforeAll
@@ -119,6 +123,79 @@ public class CachedManagerTest {
         Assertions.assertEquals(2, ParallelBean.c1.get());
     }
 
+    @Test
+    public void run3() throws Exception {
+        CacheMemorySource remoteSource = new CacheMemorySource("cache-stale");
+        remoteSource.init(null);
+        CachedManagerService staleManager = CachedManagerService.create(remoteSource);
+        staleManager.init(null);
+        staleManager.setStaleRatio(1.0);
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        staleManager.setClock(clock::get);
+        staleManager.setRefreshExecutor(Runnable::run); // 后台刷新同步执行, 便于断言
+        AtomicInteger counter = new AtomicInteger();
+        Duration localExpire = Duration.ofSeconds(30);
+        Duration remoteExpire = Duration.ofSeconds(60);
+        ThrowSupplier<String> supplier = () -> "v" + counter.incrementAndGet();
+        Assertions.assertEquals(
+                "v1",
+                staleManager.bothGetSet("stale", "key", String.class, false, 0, localExpire, remoteExpire, supplier));
+        clock.addAndGet(30_000);
+        // 未到逻辑过期时间, 不刷新
+        Assertions.assertEquals(
+                "v1",
+                staleManager.bothGetSet("stale", "key", String.class, false, 0, localExpire, remoteExpire, supplier));
+        Assertions.assertEquals(1, counter.get());
+        clock.addAndGet(31_000);
+        // 已逻辑过期但仍在保留期内, 返回旧数据并由后台刷新
+        Assertions.assertEquals(
+                "v1",
+                staleManager.bothGetSet("stale", "key", String.class, false, 0, localExpire, remoteExpire, supplier));
+        Assertions.assertEquals(2, counter.get());
+        Assertions.assertEquals(
+                "v2",
+                staleManager.bothGetSet("stale", "key", String.class, false, 0, localExpire, remoteExpire, supplier));
+        Assertions.assertEquals(2, counter.get());
+        staleManager.destroy(null);
+        remoteSource.destroy(null);
+    }
+
+    @Test
+    public void run4() throws Exception {
+        CacheMemorySource remoteSource = new CacheMemorySource("cache-xfetch");
+        remoteSource.init(null);
+        CachedManagerService earlyManager = CachedManagerService.create(remoteSource);
+        earlyManager.init(null);
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        earlyManager.setClock(clock::get);
+        earlyManager.setRefreshExecutor(Runnable::run);
+        AtomicInteger counter = new AtomicInteger();
+        Duration expire = Duration.ofSeconds(60);
+        ThrowSupplier<String> supplier = () -> {
+            clock.addAndGet(100); // 模拟加载耗时100毫秒
+            return "v" + counter.incrementAndGet();
+        };
+        earlyManager.setEarlyBeta(0.001);
+        Assertions.assertEquals(
+                "v1", earlyManager.localGetSet("early", "key", String.class, false, 0, expire, supplier));
+        clock.addAndGet(50_000);
+        // -ln(random)最大约为36.8, 距过期10秒 > 100ms * 0.001 * 36.8, 不会提前刷新
+        Assertions.assertEquals(
+                "v1", earlyManager.localGetSet("early", "key", String.class, false, 0, expire, supplier));
+        Assertions.assertEquals(1, counter.get());
+        // 系数足够大时距过期10秒即提前刷新, 本次仍返回旧数据
+        earlyManager.setEarlyBeta(1.0e15);
+        Assertions.assertEquals(
+                "v1", earlyManager.localGetSet("early", "key", String.class, false, 0, expire, supplier));
+        Assertions.assertEquals(2, counter.get());
+        earlyManager.setEarlyBeta(0.001);
+        Assertions.assertEquals(
+                "v2", earlyManager.localGetSet("early", "key", String.class, false, 0, expire, supplier));
+        Assertions.assertEquals(2, counter.get());
+        earlyManager.destroy(null);
+        remoteSource.destroy(null);
+    }
+
     public static class ParallelBean {
 
         public static final AtomicInteger c1 = new AtomicInteger();
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.client;
+
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.redkale.net.AsyncIOGroup;
+import org.redkale.test.client.EchoClient.*;
+
+/**
+ * 类Redis的pipeline行协议下多线程请求的吞吐量, 对比不同的合并写参数
+ *
+ * @author zhangjx
+ */
+@State(Scope.Benchmark)
+public class BenchmarkClientPipelineTest {
+
+    // 单次pipeline的请求数
+    private static final int PIPELINES = 64;
+
+    @Param({"1", "128"})
+    public int writeBatchSize;
+
+    @Param({"0", "20"})
+    public long writeFlushMicros;
+
+    private ServerSocket server;
+
+    private EchoClient client;
+
+    @Setup
+    public void setup() throws Exception {
+        server = EchoClient.startServer();
+        AsyncIOGroup asyncGroup = new AsyncIOGroup(8192, 16);
+        asyncGroup.start();
+        client = new EchoClient(asyncGroup, server.getLocalSocketAddress(), 1, 1024);
+        client.setWriteBatchSize(writeBatchSize);
+        client.setWriteFlushMicros(writeFlushMicros);
+        client.sendAsync(new EchoRequest(0)).join();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINES)
+    public void testPipeline() {
+        CompletableFuture[] futures = new CompletableFuture[PIPELINES];
+        for (int i = 0; i < PIPELINES; i++) {
+            futures[i] = client.sendAsync(new EchoRequest(i));
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkClientPipelineTest.class.getSimpleName())
+                .forks(1)
+                .threads(4)
+                .warmupIterations(1)
+                .measurementIterations(1)
+                .mode(Mode.Throughput)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.client;
+
+import java.net.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.redkale.net.client.*;
+import org.redkale.net.sncp.*;
+
+/**
+ * ClientBalancer负载均衡策略测试
+ *
+ * @author zhangjx
+ */
+public class ClientBalancerTest {
+
+    private static final InetSocketAddress A = new InetSocketAddress("127.0.0.1", 7001);
+
+    private static final InetSocketAddress B = new InetSocketAddress("127.0.0.1", 7002);
+
+    private static final InetSocketAddress C = new InetSocketAddress("127.0.0.1", 7003);
+
+    public static void main(String[] args) throws Throwable {
+        ClientBalancerTest test = new ClientBalancerTest();
+        test.run1();
+        test.run2();
+        test.run3();
+        test.run4();
+        test.run5();
+        test.run6();
+    }
+
+    @Test
+    public void run1() throws Exception {
+        ClientBalancer balancer = ClientBalancer.create(ClientBalancer.ROUND_ROBIN);
+        balancer.update(new SocketAddress[] {A, B, C}, new int[] {5, 1, 1});
+        List<SocketAddress> list = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            list.add(balancer.select(null, null));
+        }
+        Assertions.assertEquals(List.of(A, A, B, A, C, A, A), list);
+    }
+
+    @Test
+    public void run2() throws Exception {
+        ClientBalancer balancer = ClientBalancer.create(ClientBalancer.RANDOM);
+        balancer.update(new SocketAddress[] {A, B, C}, new int[] {80, 20, 0});
+        Map<SocketAddress, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            counts.merge(balancer.select(null, null), 1, Integer::sum);
+        }
+        Assertions.assertNull(counts.get(C));
+        Assertions.assertTrue(counts.get(A) > 7000 && counts.get(A) < 9000, "counts = " + counts);
+    }
+
+    @Test
+    public void run3() throws Exception {
+        ClientBalancer balancer = ClientBalancer.create(ClientBalancer.LEAST_REQUESTS);
+        balancer.update(new SocketAddress[] {A, B, C}, null);
+        Map<SocketAddress, Integer> loads = new HashMap<>(Map.of(A, 0, B, 10, C, 0));
+        Set<SocketAddress> set = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            set.add(balancer.select(null, loads::get));
+        }
+        Assertions.assertEquals(Set.of(A, C), set);
+        // 没有负载信息时轮询
+        set.clear();
+        for (int i = 0; i < 3; i++) {
+            set.add(balancer.select(null, null));
+        }
+        Assertions.assertEquals(Set.of(A, B, C), set);
+        // 空闲时按权重随机, 不会总是选中权重最大的地址
+        balancer.update(new SocketAddress[] {A, B, C}, new int[] {5, 1, 1});
+        Map<SocketAddress, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 7000; i++) {
+            counts.merge(balancer.select(null, addr -> 0), 1, Integer::sum);
+        }
+        Assertions.assertTrue(counts.get(A) > 4000 && counts.get(A) < 6000, "counts = " + counts);
+        Assertions.assertTrue(counts.get(B) > 500 && counts.get(C) > 500, "counts = " + counts);
+    }
+
+    @Test
+    public void run4() throws Exception {
+        ClientBalancer balancer = ClientBalancer.create(ClientBalancer.POWER_OF_TWO);
+        balancer.update(new SocketAddress[] {A, B}, null);
+        Map<SocketAddress, Integer> loads = Map.of(A, 5, B, 1);
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(B, balancer.select(null, loads::get));
+        }
+    }
+
+    @Test
+    public void run5() throws Exception {
+        ClientBalancer balancer = ClientBalancer.create(ClientBalancer.CONSISTENT_HASH);
+        balancer.update(new SocketAddress[] {A, B, C}, null);
+        Map<String, SocketAddress> map = new HashMap<>();
+        Map<SocketAddress, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            String key = "user-" + i;
+            SocketAddress addr = balancer.select(key, null);
+            Assertions.assertEquals(addr, balancer.select(key, null));
+            map.put(key, addr);
+            counts.merge(addr, 1, Integer::sum);
+        }
+        for (int count : counts.values()) {
+            Assertions.assertTrue(count > 500, "counts = " + counts);
+        }
+        // 去掉C后, 原来不在C上的key不变
+        balancer.update(new SocketAddress[] {A, B}, null);
+        for (Map.Entry<String, SocketAddress> en : map.entrySet()) {
+            SocketAddress addr = balancer.select(en.getKey(), null);
+            if (en.getValue() != C) {
+                Assertions.assertEquals(en.getValue(), addr);
+            } else {
+                Assertions.assertNotEquals(C, addr);
+            }
+        }
+    }
+
+    @Test
+    public void run6() throws Exception {
+        SncpRpcGroups groups = new SncpRpcGroups();
+        SncpRpcGroup group = groups.computeIfAbsent("g1", "TCP");
+        group.setBalancer(ClientBalancer.ROUND_ROBIN);
+        group.putAddress(A);
+        group.putAddress(B);
+        Set<InetSocketAddress> set = new HashSet<>();
+        for (int i = 0; i < 2; i++) {
+            set.add(groups.nextGroupAddress("g1", null));
+        }
+        Assertions.assertEquals(Set.of(A, B), set);
+        // 原地修改地址集合
+        group.removeAddress(A);
+        Assertions.assertEquals(B, groups.nextGroupAddress("g1", null));
+
+        groups.putClusterAddress("svc:", new LinkedHashSet<>(List.of(A, C)));
+        Map<SocketAddress, Integer> loads = Map.of(A, 10, C, 0);
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals(C, groups.nextRemoteAddress("svc:", null, loads::get));
+        }
+        Assertions.assertNull(groups.nextRemoteAddress("none:"));
+    }
+
+    @Test
+    public void run7() throws Exception {
+        SncpRpcGroups groups = new SncpRpcGroups();
+        SncpRpcGroup group = groups.computeIfAbsent("g2", "TCP");
+        group.setBalancer(ClientBalancer.CONSISTENT_HASH);
+        group.putAddress(Set.of(A, B, C));
+        // 以调用方地址为key, 同一调用方固定选中同一地址
+        InetSocketAddress caller = new InetSocketAddress("127.0.0.1", 7001);
+        InetSocketAddress addr = groups.nextGroupAddress("g2", caller, null, null);
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(addr, groups.nextGroupAddress("g2", caller, null, null));
+        }
+        // 地址变化后重新选择, 不返回已移除的地址
+        group.removeAddress(addr);
+        InetSocketAddress next = groups.nextGroupAddress("g2", caller, null, null);
+        Assertions.assertNotEquals(addr, next);
+        Assertions.assertEquals(next, groups.nextGroupAddress("g2", caller, null, null));
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.client;
+
+import java.io.IOException;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+import org.redkale.net.AsyncIOGroup;
+import org.redkale.net.client.*;
+import org.redkale.net.sncp.SncpClient;
+import org.redkale.util.AnyValue;
+
+/**
+ * ClientCircuitBreaker地址摘除与熔断测试
+ *
+ * @author zhangjx
+ */
+public class ClientCircuitBreakerTest {
+
+    private static final InetSocketAddress A = new InetSocketAddress("127.0.0.1", 7001);
+
+    private static final InetSocketAddress B = new InetSocketAddress("127.0.0.1", 7002);
+
+    public static void main(String[] args) throws Throwable {
+        ClientCircuitBreakerTest test = new ClientCircuitBreakerTest();
+        test.run1();
+        test.run2();
+        test.run3();
+        test.run4();
+        test.run5();
+        test.run6();
+        test.run7();
+    }
+
+    @Test
+    public void run1() throws Exception {
+        ClientCircuitBreaker breaker = new ClientCircuitBreaker();
+        breaker.setBaseEjectMillis(100);
+        for (int i = 0; i < 4; i++) {
+            breaker.recordFailure(A);
+        }
+        Assertions.assertTrue(breaker.isAvailable(A));
+        breaker.recordFailure(A);
+        Assertions.assertFalse(breaker.isAvailable(A));
+        long first = breaker.getEjectedUntil(A) - System.currentTimeMillis();
+        Assertions.assertTrue(first <= 100);
+        Thread.sleep(120);
+        Assertions.assertTrue(breaker.isAvailable(A));
+        // 到期后的第一个请求失败, 立即再次摘除且时间翻倍
+        breaker.recordFailure(A);
+        Assertions.assertFalse(breaker.isAvailable(A));
+        Assertions.assertTrue(breaker.getEjectedUntil(A) - System.currentTimeMillis() > 100);
+        Thread.sleep(220);
+        breaker.recordSuccess(A, 1);
+        breaker.recordFailure(A);
+        Assertions.assertTrue(breaker.isAvailable(A));
+        Assertions.assertTrue(breaker.isAvailable(B));
+    }
+
+    @Test
+    public void run2() throws Exception {
+        ClientCircuitBreaker breaker = new ClientCircuitBreaker();
+        breaker.setIntervalMillis(50);
+        breaker.setMinRequests(10);
+        for (int i = 0; i < 12; i++) { // 失败率超过50%, 但连续失败次数不够
+            if (i % 3 != 2) {
+                breaker.recordFailure(A);
+            } else {
+                breaker.recordSuccess(A, 1);
+            }
+        }
+        Assertions.assertTrue(breaker.isAvailable(A));
+        Thread.sleep(60);
+        breaker.recordSuccess(A, 1);
+        Assertions.assertFalse(breaker.isAvailable(A));
+    }
+
+    @Test
+    public void run3() throws Exception {
+        ClientCircuitBreaker breaker = new ClientCircuitBreaker();
+        breaker.setIntervalMillis(50);
+        breaker.setMinRequests(10);
+        breaker.setSlowMillis(100);
+        for (int i = 0; i < 20; i++) {
+            breaker.recordSuccess(A, 5);
+            breaker.recordSuccess(B, i < 10 ? 5 : 300);
+        }
+        Thread.sleep(60);
+        breaker.recordSuccess(A, 5);
+        breaker.recordSuccess(B, 5);
+        Assertions.assertTrue(breaker.isAvailable(A));
+        Assertions.assertFalse(breaker.isAvailable(B));
+    }
+
+    @Test
+    public void run4() throws Exception {
+        ClientCircuitBreaker breaker = new ClientCircuitBreaker();
+        ClientAddress address = new ClientAddress(A, B);
+        for (int i = 0; i < 5; i++) {
+            breaker.recordFailure(A);
+        }
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertEquals(B, address.nextAddress(null, null, breaker.availablePredicate()));
+        }
+        for (int i = 0; i < 5; i++) {
+            breaker.recordFailure(B);
+        }
+        // 全部被摘除时不再返回地址
+        Assertions.assertNull(address.nextAddress(null, null, breaker.availablePredicate()));
+        ClientAddress single = new ClientAddress(A);
+        Assertions.assertNull(single.nextAddress(null, null, breaker.availablePredicate()));
+        Assertions.assertEquals(A, single.nextAddress(null, null, null));
+    }
+
+    @Test
+    public void run5() throws Exception {
+        InetSocketAddress addr;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            addr = new InetSocketAddress("127.0.0.1", ss.getLocalPort());
+        }
+        AsyncIOGroup asyncGroup = new AsyncIOGroup(8192, 16);
+        asyncGroup.start();
+        SncpClient client = new SncpClient("", asyncGroup, "0", addr, new ClientAddress(addr), "TCP", 1, 16);
+        Assertions.assertNull(client.getCircuitBreaker()); // 默认不开启
+        client.setCircuitBreaker(new ClientCircuitBreaker());
+        try {
+            for (int i = 0; i < 5; i++) {
+                try {
+                    client.connect().get(5, TimeUnit.SECONDS);
+                    Assertions.fail("connect should fail");
+                } catch (ExecutionException e) {
+                    Assertions.assertInstanceOf(IOException.class, e.getCause());
+                }
+            }
+            Assertions.assertTrue(client.getCircuitBreaker().getEjectedUntil(addr) > System.currentTimeMillis());
+            // 唯一的地址被摘除后负载均衡直接失败
+            try {
+                client.connect().get(5, TimeUnit.SECONDS);
+                Assertions.fail("connect should fail");
+            } catch (ExecutionException e) {
+                Assertions.assertInstanceOf(ClientCircuitOpenException.class, e.getCause());
+            }
+            // 熔断不阻止指定地址的连接, 仍会真实建立连接
+            try {
+                client.connect(addr).get(5, TimeUnit.SECONDS);
+                Assertions.fail("connect should fail");
+            } catch (ExecutionException e) {
+                Assertions.assertInstanceOf(IOException.class, e.getCause());
+                Assertions.assertFalse(String.valueOf(e.getCause().getMessage()).contains("ejected"));
+            }
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void run6() throws Exception {
+        ClientCircuitBreaker breaker = new ClientCircuitBreaker();
+        breaker.setBaseEjectMillis(50);
+        for (int i = 0; i < 5; i++) {
+            breaker.recordFailure(A);
+        }
+        Assertions.assertFalse(breaker.isAvailable(A));
+        Thread.sleep(60);
+        // 半开状态只放行一个探测请求
+        Assertions.assertTrue(breaker.isAvailable(A));
+        Assertions.assertFalse(breaker.isAvailable(A));
+        Assertions.assertFalse(breaker.isAvailable(A));
+        breaker.recordSuccess(A, 1);
+        Assertions.assertTrue(breaker.isAvailable(A));
+        Assertions.assertTrue(breaker.isAvailable(A));
+    }
+
+    @Test
+    public void run7() throws Exception {
+        Assertions.assertNull(ClientCircuitBreaker.create(null));
+        Assertions.assertNull(ClientCircuitBreaker.create(AnyValue.create().addValue("enabled", "false")));
+        ClientCircuitBreaker breaker = ClientCircuitBreaker.create(
+                AnyValue.create().addValue("consecutiveFailures", "3").addValue("slowMillis", "200"));
+        Assertions.assertEquals(3, breaker.getConsecutiveFailures());
+        Assertions.assertEquals(200, breaker.getSlowMillis());
+        Assertions.assertEquals(50, breaker.getFailurePercent());
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.client;
+
+import org.junit.jupiter.api.*;
+import org.redkale.net.client.ClientPipelineLimiter;
+
+/**
+ * 自适应并行数上限测试
+ *
+ * @author zhangjx
+ */
+public class ClientPipelineLimiterTest {
+
+    public static void main(String[] args) throws Throwable {
+        ClientPipelineLimiterTest test = new ClientPipelineLimiterTest();
+        test.run1();
+        test.run2();
+    }
+
+    @Test
+    public void run1() throws Exception {
+        ClientPipelineLimiter limiter = new ClientPipelineLimiter(16, 1, 128);
+        // RTT稳定时上限逐步放大到maxLimit
+        for (int i = 0; i < 20_000; i++) {
+            limiter.sample(1_000_000, 0, limiter.getLimit());
+        }
+        Assertions.assertEquals(128, limiter.getLimit());
+        Assertions.assertEquals(1000, limiter.getRttMicros());
+        // RTT突增说明服务端开始排队, 上限下降
+        for (int i = 0; i < 2_000; i++) {
+            limiter.sample(10_000_000, 500_000, limiter.getLimit());
+        }
+        Assertions.assertTrue(limiter.getLimit() < 32, "limit: " + limiter.getLimit());
+        Assertions.assertTrue(limiter.getQueueDelayMicros() > 0);
+    }
+
+    @Test
+    public void run2() throws Exception {
+        ClientPipelineLimiter limiter = new ClientPipelineLimiter(16, 1, 128);
+        // 在途请求数远小于上限时不再放大
+        for (int i = 0; i < 20_000; i++) {
+            limiter.sample(1_000_000, 0, 2);
+        }
+        Assertions.assertEquals(16, limiter.getLimit());
+        limiter.setMaxLimit(8);
+        Assertions.assertEquals(8, limiter.getLimit());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.client;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+import org.redkale.net.AsyncIOGroup;
+import org.redkale.test.client.EchoClient.*;
+
+/**
+ * ClientConnection多线程合并写测试, 响应须与请求一一对应
+ *
+ * @author zhangjx
+ */
+public class ClientPipelineTest {
+
+    private static ServerSocket server;
+
+    public static void main(String[] args) throws Throwable {
+        ClientPipelineTest test = new ClientPipelineTest();
+        init();
+        try {
+            test.run1();
+            test.run2();
+            test.run3();
+        } finally {
+            shutdown();
+        }
+    }
+
+    @BeforeAll
+    public static void init() throws Exception {
+        server = EchoClient.startServer();
+    }
+
+    @AfterAll
+    public static void shutdown() throws Exception {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void run1() throws Exception {
+        EchoClient client = new EchoClient(createGroup(), server.getLocalSocketAddress(), 1, 128);
+        client.setWriteBatchSize(16);
+        try {
+            send(client, 8, 2000);
+            Assertions.assertEquals(0, client.getRespWaitingCount(server.getLocalSocketAddress()));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void run2() throws Exception {
+        EchoClient client = new EchoClient(createGroup(), server.getLocalSocketAddress(), 2, 128);
+        client.setWriteFlushMicros(50);
+        try {
+            send(client, 4, 2000);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void run3() throws Exception {
+        SocketAddress addr = server.getLocalSocketAddress();
+        EchoClient client = new EchoClient(createGroup(), addr, 1, 64);
+        client.setAdaptivePipelines(true);
+        try {
+            send(client, 8, 2000);
+            int limit = client.getPipelineLimit(addr);
+            Assertions.assertTrue(limit >= 1 && limit <= 64, "limit: " + limit);
+            EchoConnection conn = client.connect(addr).join();
+            Assertions.assertNotNull(conn.getPipelineLimiter());
+            Assertions.assertEquals(0, conn.getPipelineInflight());
+        } finally {
+            client.close();
+        }
+    }
+
+    // Client.close会关闭AsyncIOGroup, 每个Client独立创建
+    private static AsyncIOGroup createGroup() {
+        AsyncIOGroup asyncGroup = new AsyncIOGroup(8192, 16);
+        asyncGroup.start();
+        return asyncGroup;
+    }
+
+    private static void send(EchoClient client, int threads, int count) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> list = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final long base = t * 1_000_000L;
+                list.add(executor.submit(() -> {
+                    List<CompletableFuture<EchoResult>> futures = new ArrayList<>();
+                    List<Long> values = new ArrayList<>();
+                    for (int i = 0; i < count; i++) {
+                        long value = base + i;
+                        values.add(value);
+                        futures.add(client.sendAsync(new EchoRequest(value)));
+                    }
+                    for (int i = 0; i < count; i++) {
+                        Assertions.assertEquals(
+                                values.get(i), futures.get(i).get(10, TimeUnit.SECONDS).value);
+                    }
+                    return count;
+                }));
+            }
+            int sum = 0;
+            for (Future<Integer> f : list) {
+                sum += f.get(30, TimeUnit.SECONDS);
+            }
+            Assertions.assertEquals(threads * count, sum);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.client;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.redkale.net.*;
+import org.redkale.net.client.*;
+import org.redkale.util.ByteArray;
+
+/**
+ * 测试用的行协议Client, 请求为"数字\r\n", 服务端原样返回, 类似Redis的pipeline模式
+ *
+ * @author zhangjx
+ */
+public class EchoClient extends Client<EchoClient.EchoConnection, EchoClient.EchoRequest, EchoClient.EchoResult> {
+
+    public EchoClient(AsyncGroup group, SocketAddress address, int maxConns, int maxPipelines) {
+        super("echo", group, true, new ClientAddress(address), maxConns, maxPipelines);
+    }
+
+    @Override
+    protected EchoConnection createClientConnection(AsyncConnection channel) {
+        return new EchoConnection(this, channel);
+    }
+
+    /**
+     * 启动原样返回数据的服务端
+     *
+     * @return ServerSocket
+     * @throws IOException IOException
+     */
+    public static ServerSocket startServer() throws IOException {
+        ServerSocket server = new ServerSocket(0);
+        Thread thread = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread t = new Thread(() -> {
+                        try (Socket s = socket) {
+                            InputStream in = s.getInputStream();
+                            OutputStream out = s.getOutputStream();
+                            byte[] bs = new byte[8192];
+                            int n;
+                            while ((n = in.read(bs)) > 0) {
+                                out.write(bs, 0, n);
+                            }
+                        } catch (IOException e) {
+                            // do nothing
+                        }
+                    });
+                    t.setDaemon(true);
+                    t.start();
+                } catch (IOException e) {
+                    // do nothing
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    public static class EchoRequest extends ClientRequest {
+
+        private static final byte[] CRLF = "\r\n".getBytes();
+
+        public final long value;
+
+        public EchoRequest(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public void writeTo(ClientConnection conn, ByteArray array) {
+            array.put(String.valueOf(value).getBytes());
+            array.put(CRLF);
+        }
+    }
+
+    public static class EchoResult implements ClientResult {
+
+        public final long value;
+
+        public EchoResult(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean isKeepAlive() {
+            return true;
+        }
+    }
+
+    public static class EchoConnection extends ClientConnection<EchoRequest, EchoResult> {
+
+        public EchoConnection(EchoClient client, AsyncConnection channel) {
+            super(client, channel);
+        }
+
+        @Override
+        protected ClientCodec createCodec() {
+            return new EchoCodec(this);
+        }
+    }
+
+    public static class EchoCodec extends ClientCodec<EchoRequest, EchoResult> {
+
+        public EchoCodec(ClientConnection<EchoRequest, EchoResult> connection) {
+            super(connection);
+        }
+
+        @Override
+        public void decodeMessages(ByteBuffer buffer, ByteArray array) {
+            boolean found = false;
+            while (buffer.hasRemaining()) {
+                int end = -1;
+                for (int i = buffer.position(); i < buffer.limit(); i++) {
+                    if (buffer.get(i) == '\n') {
+                        end = i;
+                        break;
+                    }
+                }
+                if (end < 0) {
+                    if (found) { // 留给下一次decodeMessages
+                        return;
+                    }
+                    while (buffer.hasRemaining()) {
+                        byte b = buffer.get();
+                        if (b != '\r') {
+                            array.put(b);
+                        }
+                    }
+                    return;
+                }
+                while (buffer.position() <= end) {
+                    byte b = buffer.get();
+                    if (b != '\r' && b != '\n') {
+                        array.put(b);
+                    }
+                }
+                long value = Long.parseLong(new String(array.content(), 0, array.length(), StandardCharsets.UTF_8));
+                array.clear();
+                addMessage(nextRequest(), new EchoResult(value));
+                found = true;
+            }
+        }
+    }
+}
@@ -4,12 +4,15 @@
  */
 package org.redkale.test.convert;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.redkale.convert.json.JsonConvert;
 import org.redkale.convert.pb.ProtobufConvert;
+import org.redkale.test.convert.json.World;
 
 /**
  *
@@ -20,9 +23,36 @@ public class BenchmarkConvertTest {
 
     private SimpleEntity entry;
 
+    private byte[] jsonBytes;
+
+    private byte[] pbBytes;
+
+    private byte[] worldJsonBytes;
+
+    private byte[] worldPbBytes;
+
+    // 以ASCII为主的长字符串
+    private TextBean text;
+
+    private ByteBuffer textBuffer;
+
+    // 模拟SNCP响应的读缓冲区: 第一个字节为(byte)0, 后面为pb数据
+    private ByteBuffer pbRespBuffer;
+
     @Setup
     public void setup() {
         entry = SimpleEntity.create();
+        jsonBytes = JsonConvert.root().convertToBytes(entry);
+        pbBytes = ProtobufConvert.root().convertTo(entry);
+        World world = new World();
+        world.setId(8848);
+        world.setRandomNumber(1234567);
+        worldJsonBytes = JsonConvert.root().convertToBytes(world);
+        worldPbBytes = ProtobufConvert.root().convertTo(world);
+        pbRespBuffer = ByteBuffer.allocate(pbBytes.length + 1);
+        pbRespBuffer.put((byte) 0).put(pbBytes).flip();
+        text = TextBean.create();
+        textBuffer = ByteBuffer.allocate(8192);
     }
 
     @TearDown
@@ -40,6 +70,86 @@ public class BenchmarkConvertTest {
         ProtobufConvert.root().convertTo(SimpleEntity.class, entry);
     }
 
+    // 先转成String再解析char[]
+    @Benchmark
+    public SimpleEntity testC_JsonDecodeString() {
+        return JsonConvert.root().convertFrom(SimpleEntity.class, new String(jsonBytes, StandardCharsets.UTF_8));
+    }
+
+    // 直接解析UTF-8字节
+    @Benchmark
+    public SimpleEntity testD_JsonDecodeBytes() {
+        return JsonConvert.root().convertFrom(SimpleEntity.class, jsonBytes);
+    }
+
+    @Benchmark
+    public SimpleEntity testE_ProtobufDecode() {
+        return ProtobufConvert.root().convertFrom(SimpleEntity.class, pbBytes);
+    }
+
+    // 全部为基本类型字段
+    @Benchmark
+    public World testF_JsonDecodeWorld() {
+        return JsonConvert.root().convertFrom(World.class, worldJsonBytes);
+    }
+
+    @Benchmark
+    public World testG_ProtobufDecodeWorld() {
+        return ProtobufConvert.root().convertFrom(World.class, worldPbBytes);
+    }
+
+    // 复制成byte[]后再反序列化
+    @Benchmark
+    public SimpleEntity testH_ProtobufDecodeCopyBuffer() {
+        ByteBuffer buffer = pbRespBuffer;
+        buffer.position(0);
+        byte[] body = new byte[buffer.remaining()];
+        buffer.get(body);
+        return ProtobufConvert.root().convertFrom(SimpleEntity.class, body, 1, body.length - 1);
+    }
+
+    // 直接从读缓冲区反序列化
+    @Benchmark
+    public SimpleEntity testI_ProtobufDecodeInBuffer() {
+        ByteBuffer buffer = pbRespBuffer;
+        buffer.position(1);
+        return ProtobufConvert.root().convertFrom(SimpleEntity.class, buffer, buffer.remaining());
+    }
+
+    @Benchmark
+    public byte[] testJ_JsonEncodeText() {
+        return JsonConvert.root().convertToBytes(TextBean.class, text);
+    }
+
+    @Benchmark
+    public ByteBuffer[] testK_JsonEncodeTextBuffer() {
+        return JsonConvert.root().convertTo(() -> textBuffer.clear(), TextBean.class, text);
+    }
+
+    public static class TextBean {
+
+        public String title;
+
+        public String url;
+
+        public String content;
+
+        public String remark;
+
+        public static TextBean create() {
+            TextBean bean = new TextBean();
+            bean.title = "Redkale JSON writer benchmark title";
+            bean.url = "https://redkale.org/api/v1/users/1234567890/orders?page=1&size=20&sort=createTime";
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                sb.append("The quick brown fox jumps over the lazy dog, ").append(i).append(". ");
+            }
+            bean.content = sb.toString();
+            bean.remark = "line1\nline2 \"quoted\" end";
+            return bean;
+        }
+    }
+
 //    @Test
 //    public void testBenchmark() throws Exception {
 //        Options options = new OptionsBuilder()
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.convert.json;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.*;
+import org.redkale.convert.json.JsonConvert;
+
+/**
+ * 逐个解析json数组元素
+ *
+ * @author zhangjx
+ */
+public class JsonArrayIteratorTest {
+
+    public static void main(String[] args) throws Throwable {
+        JsonArrayIteratorTest test = new JsonArrayIteratorTest();
+        test.run1();
+        test.run2();
+        test.run3();
+        test.run4();
+    }
+
+    @Test
+    public void run1() throws Exception {
+        JsonConvert convert = JsonConvert.root();
+        List<Item> list = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            list.add(i == 5 ? null : new Item(i, "名称" + i));
+        }
+        String json = convert.convertTo(list);
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        Assertions.assertEquals(json, convert.convertTo(toList(convert.convertFromIterator(Item.class, bytes))));
+        Assertions.assertEquals(
+                json,
+                convert.convertTo(
+                        toList(convert.convertFromIterator(Item.class, new ByteArrayInputStream(bytes)))));
+        // 跨多个ByteBuffer
+        ByteBuffer[] buffers = new ByteBuffer[] {
+            ByteBuffer.wrap(bytes, 0, 7).slice(),
+            ByteBuffer.wrap(bytes, 7, 30).slice(),
+            ByteBuffer.wrap(bytes, 37, bytes.length - 37).slice()
+        };
+        Assertions.assertEquals(json, convert.convertTo(toList(convert.convertFromIterator(Item.class, buffers))));
+
+        Assertions.assertFalse(convert.convertFromIterator(Item.class, "[]".getBytes()).hasNext());
+        Assertions.assertFalse(convert.convertFromIterator(Item.class, " [ ] ".getBytes()).hasNext());
+        Assertions.assertFalse(convert.convertFromIterator(Item.class, "null".getBytes()).hasNext());
+        Iterator<Integer> it = convert.convertFromIterator(int.class, "[1, 2,3,]".getBytes());
+        Assertions.assertEquals(Arrays.asList(1, 2, 3), toList(it));
+        Assertions.assertThrows(NoSuchElementException.class, it::next);
+    }
+
+    @Test
+    public void run2() throws Exception {
+        JsonConvert convert = JsonConvert.root();
+        byte[] bytes = "[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"},{\"id\":3,\"name\":\"c\"}]".getBytes();
+        List<String> names = convert.<Item>convertFromStream(Item.class, new ByteArrayInputStream(bytes))
+                .map(Item::getName)
+                .collect(Collectors.toList());
+        Assertions.assertEquals(Arrays.asList("a", "b", "c"), names);
+    }
+
+    @Test
+    public void run3() throws Exception {
+        JsonConvert convert = JsonConvert.root();
+        byte[] bytes = "[{\"id\":1},{\"id\":2},{\"id\":3},{\"id\":4}]".getBytes();
+        Flow.Publisher<Item> publisher = convert.convertFromPublisher(Item.class, bytes);
+        List<Integer> ids = new ArrayList<>();
+        boolean[] completed = new boolean[1];
+        publisher.subscribe(new Flow.Subscriber<Item>() {
+
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Item item) {
+                ids.add(item.getId());
+                subscription.request(1); // 重入request
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                Assertions.fail(t);
+            }
+
+            @Override
+            public void onComplete() {
+                completed[0] = true;
+            }
+        });
+        Assertions.assertEquals(Arrays.asList(1, 2, 3, 4), ids);
+        Assertions.assertTrue(completed[0]);
+
+        // 只允许一个订阅者
+        Throwable[] error = new Throwable[1];
+        publisher.subscribe(new Flow.Subscriber<Item>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Item item) {
+                Assertions.fail("not one subscriber");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                error[0] = t;
+            }
+
+            @Override
+            public void onComplete() {
+                Assertions.fail("not one subscriber");
+            }
+        });
+        Assertions.assertTrue(error[0] instanceof IllegalStateException);
+    }
+
+    @Test
+    public void run4() throws Exception {
+        // 大数组按需读取输入流, 不会一次读完
+        int count = 200_000;
+        CountInputStream in = new CountInputStream(count);
+        Iterator<Item> it = JsonConvert.root().convertFromIterator(Item.class, in);
+        Assertions.assertTrue(it.hasNext());
+        Assertions.assertEquals(0, it.next().getId());
+        Assertions.assertTrue(in.readCount < 64 * 1024, "readCount = " + in.readCount);
+        int size = 1;
+        while (it.hasNext()) {
+            Item item = it.next();
+            Assertions.assertEquals(size, item.getId());
+            size++;
+        }
+        Assertions.assertEquals(count, size);
+        Assertions.assertTrue(in.readCount > 1024 * 1024, "readCount = " + in.readCount);
+    }
+
+    private static <T> List<T> toList(Iterator<T> it) {
+        List<T> list = new ArrayList<>();
+        while (it.hasNext()) {
+            list.add(it.next());
+        }
+        return list;
+    }
+
+    // 按需生成[{"id":0,"name":"item0"},...]
+    private static class CountInputStream extends InputStream {
+
+        private final int count;
+
+        private int index = -1;
+
+        private byte[] current = "[".getBytes();
+
+        private int pos;
+
+        long readCount;
+
+        public CountInputStream(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos >= current.length) {
+                index++;
+                if (index > count) {
+                    return -1;
+                }
+                current = index == count
+                        ? "]".getBytes()
+                        : ((index == 0 ? "" : ",") + "{\"id\":" + index + ",\"name\":\"item" + index + "\"}")
+                                .getBytes();
+                pos = 0;
+            }
+            readCount++;
+            return current[pos++] & 0xff;
+        }
+    }
+
+    public static class Item {
+
+        private int id;
+
+        private String name;
+
+        public Item() {}
+
+        public Item(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.convert.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.redkale.convert.ConvertException;
+import org.redkale.convert.json.*;
+import org.redkale.util.*;
+
+/**
+ * JsonBytesReader直接解析UTF-8字节的结果须与JsonReader一致
+ *
+ * @author zhangjx
+ */
+public class JsonBytesReaderTest {
+
+    public static void main(String[] args) throws Throwable {
+        JsonBytesReaderTest test = new JsonBytesReaderTest();
+        test.run1();
+        test.run2();
+        test.run3();
+        test.run4();
+    }
+
+    @Test
+    public void run1() throws Exception {
+        JsonConvert convert = JsonConvert.root();
+        ReaderEntity entity = new ReaderEntity();
+        entity.id = 1000000001;
+        entity.name = "this is name\n \"test";
+        entity.desc = "中文描述 é ✓ 😀 \\ \t end";
+        entity.addrs = new int[] {22222, -33333, 44444, -55555};
+        entity.lists = Arrays.asList("aaaa", "日本", "cccc");
+        entity.map = new LinkedHashMap<>();
+        entity.map.put("AAA", 111);
+        entity.map.put("中", -222);
+        String json = convert.convertTo(entity);
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ReaderEntity rs1 = convert.convertFrom(ReaderEntity.class, json);
+        ReaderEntity rs2 = convert.convertFrom(ReaderEntity.class, new JsonBytesReader(bytes));
+        Assertions.assertEquals(json, convert.convertTo(rs1));
+        Assertions.assertEquals(json, convert.convertTo(rs2));
+        // 从ByteArray片段解析, 尾部多余的字节不影响结果
+        ByteArray array = new ByteArray();
+        array.put(new byte[] {'x', 'x'});
+        array.put(bytes);
+        array.put(new byte[] {0, 0, 0});
+        ReaderEntity rs3 = convert.convertFrom(ReaderEntity.class, array.content(), 2, bytes.length);
+        Assertions.assertEquals(json, convert.convertTo(rs3));
+    }
+
+    @Test
+    public void run2() throws Exception {
+        JsonConvert convert = JsonConvert.root();
+        String json = "/* 注释 */ {\"ints\": [1, -2, \"3\", 0x1F, 4.5, \"NaN\"], // 单行注释\n"
+                + " unquoted : abc, 'single' : 'v\\'1', \"unknown\" : {\"a\":[1,{\"b\":\"中\"}]},"
+                + " \"nul\": null, \"longs\": [-9223372036854775807, 123456789012], \"flag\": true,"
+                + " \"dbl\": -1.25e3, \"text\": \"\\u4e2d\\u6587\\n\\\"q\\\"文字\"}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        Map<String, Object> map1 = convert.convertFrom(new JsonReader(json));
+        Map<String, Object> map2 = convert.convertFrom(new JsonBytesReader(bytes));
+        Assertions.assertEquals(map1, map2);
+
+        ReaderBean bean1 = convert.convertFrom(ReaderBean.class, json);
+        ReaderBean bean2 = convert.convertFrom(ReaderBean.class, bytes);
+        Assertions.assertEquals(convert.convertTo(bean1), convert.convertTo(bean2));
+        Assertions.assertArrayEquals(new int[] {1, -2, 3, 31, 4, 0}, bean2.ints);
+        Assertions.assertEquals("abc", bean2.unquoted);
+        Assertions.assertEquals("v'1", bean2.single);
+        Assertions.assertNull(bean2.nul);
+        Assertions.assertArrayEquals(new long[] {-9223372036854775807L, 123456789012L}, bean2.longs);
+        Assertions.assertTrue(bean2.flag);
+        Assertions.assertEquals(-1250.0, bean2.dbl);
+        Assertions.assertEquals("中文\n\"q\"文字", bean2.text);
+    }
+
+    @Test
+    public void run3() throws Exception {
+        JsonConvert convert = JsonConvert.root();
+        Assertions.assertNull(convert.convertFrom(ReaderBean.class, "null".getBytes()));
+        Assertions.assertNull(convert.convertFrom(ReaderBean.class, new byte[0]));
+        List<String> list = convert.convertFrom(
+                new TypeToken<List<String>>() {}.getType(), "[\"a\", \"日本\", \"😀\", null]".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(Arrays.asList("a", "日本", "😀", null), list);
+        Object[] rs = convert.convertFrom(
+                new java.lang.reflect.Type[] {int.class, String.class}, "[12, \"ab\"]".getBytes());
+        Assertions.assertArrayEquals(new Object[] {12, "ab"}, rs);
+    }
+
+    @Test
+    public void run4() throws Exception {
+        // 转义字符被截断时不能越过limit读取后面的字节
+        String[][] cases = {{"\"ab\\", "n\""}, {"\"ab\\u4e", "2d\""}, {"\"ab\\n", "\""}};
+        for (String[] item : cases) {
+            String json = item[0];
+            byte[] bytes = (json + item[1]).getBytes(StandardCharsets.UTF_8);
+            JsonBytesReader reader = new JsonBytesReader(bytes, 0, json.length());
+            Assertions.assertThrows(ConvertException.class, () -> reader.readString(), json);
+        }
+    }
+
+    public static class ReaderEntity {
+
+        public int id;
+
+        public String name;
+
+        public String desc;
+
+        public int[] addrs;
+
+        public List<String> lists;
+
+        public Map<String, Integer> map;
+    }
+
+    public static class ReaderBean {
+
+        public int[] ints;
+
+        public String unquoted;
+
+        public String single;
+
+        public String nul;
+
+        public long[] longs;
+
+        public boolean flag;
+
+        public double dbl;
+
+        public String text;
+    }
+}
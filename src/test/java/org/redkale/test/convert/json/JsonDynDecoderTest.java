@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.convert.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.redkale.annotation.ConstructorParameters;
+import org.redkale.convert.*;
+import org.redkale.convert.json.*;
+
+/**
+ * 动态生成的JsonDynDecoder解析结果须与ObjectDecoder一致
+ *
+ * @author zhangjx
+ */
+public class JsonDynDecoderTest {
+
+    public static void main(String[] args) throws Throwable {
+        JsonDynDecoderTest test = new JsonDynDecoderTest();
+        test.run1();
+        test.run2();
+    }
+
+    @Test
+    public void run1() throws Exception {
+        JsonFactory factory = JsonFactory.create();
+        Decodeable decoder = factory.loadDecoder(DynBean.class);
+        Assertions.assertTrue(decoder instanceof JsonDynDecoder, decoder.getClass().getName());
+
+        DynBean bean = new DynBean();
+        bean.id = -123456;
+        bean.name = "中文\"name\n";
+        bean.code = "abc";
+        bean.setFlag(true);
+        bean.setBit((byte) 7);
+        bean.setStatus((short) -3);
+        bean.setLetter('Z');
+        bean.setTime(1234567890123L);
+        bean.setPoint(1.5f);
+        bean.setMoney(-2.25);
+        bean.setAge(18);
+        bean.setTags(Arrays.asList("aa", "bb"));
+        bean.setChild(new DynChild(10, "child"));
+        JsonConvert convert = factory.getConvert();
+        String json = convert.convertTo(bean);
+        DynBean rs1 = convert.convertFrom(DynBean.class, json);
+        DynBean rs2 = convert.convertFrom(DynBean.class, json.getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(json, convert.convertTo(rs1));
+        Assertions.assertEquals(json, convert.convertTo(rs2));
+
+        // 不存在的字段需跳过
+        String json2 = "{\"unknown\":{\"a\":[1,2]},\"id\":5,\"child\":null,\"name\":\"n\"}";
+        DynBean rs3 = convert.convertFrom(DynBean.class, json2);
+        Assertions.assertEquals(5, rs3.id);
+        Assertions.assertEquals("n", rs3.name);
+        Assertions.assertNull(rs3.getAge());
+        Assertions.assertNull(rs3.getChild());
+        Assertions.assertNull(convert.convertFrom(DynBean.class, "null"));
+    }
+
+    @Test
+    public void run2() throws Exception {
+        JsonFactory factory = JsonFactory.create();
+        // 带参数的构造函数仍使用ObjectDecoder
+        Decodeable decoder = factory.loadDecoder(DynChild.class);
+        Assertions.assertFalse(decoder instanceof JsonDynDecoder);
+        DynChild child = factory.getConvert().convertFrom(DynChild.class, "{\"id\":3,\"name\":\"c\"}");
+        Assertions.assertEquals(3, child.getId());
+        Assertions.assertEquals("c", child.getName());
+    }
+
+    public static class DynBean {
+
+        public int id;
+
+        public String name;
+
+        @ConvertSmallString
+        public String code;
+
+        private boolean flag;
+
+        private byte bit;
+
+        private short status;
+
+        private char letter;
+
+        private long time;
+
+        private float point;
+
+        private double money;
+
+        private Integer age;
+
+        private List<String> tags;
+
+        private DynChild child;
+
+        public boolean isFlag() {
+            return flag;
+        }
+
+        public void setFlag(boolean flag) {
+            this.flag = flag;
+        }
+
+        public byte getBit() {
+            return bit;
+        }
+
+        public void setBit(byte bit) {
+            this.bit = bit;
+        }
+
+        public short getStatus() {
+            return status;
+        }
+
+        public void setStatus(short status) {
+            this.status = status;
+        }
+
+        public char getLetter() {
+            return letter;
+        }
+
+        public void setLetter(char letter) {
+            this.letter = letter;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        // 链式setter
+        public DynBean setTime(long time) {
+            this.time = time;
+            return this;
+        }
+
+        public float getPoint() {
+            return point;
+        }
+
+        public void setPoint(float point) {
+            this.point = point;
+        }
+
+        public double getMoney() {
+            return money;
+        }
+
+        public void setMoney(double money) {
+            this.money = money;
+        }
+
+        public Integer getAge() {
+            return age;
+        }
+
+        public void setAge(Integer age) {
+            this.age = age;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        public DynChild getChild() {
+            return child;
+        }
+
+        public void setChild(DynChild child) {
+            this.child = child;
+        }
+    }
+
+    public static class DynChild {
+
+        private final int id;
+
+        private final String name;
+
+        @ConstructorParameters({"id", "name"})
+        public DynChild(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
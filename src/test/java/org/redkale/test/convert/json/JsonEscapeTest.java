@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.convert.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.redkale.convert.ConvertColumn;
+import org.redkale.convert.json.JsonConvert;
+import org.redkale.util.ByteArray;
+
+/**
+ * 字符串转义与UTF-8编码须在各个JsonWriter中一致
+ *
+ * @author zhangjx
+ */
+public class JsonEscapeTest {
+
+    private static final String[] PARTS = {"a", "Z", "0", " ", "\"", "\\", "\n", "\r", "\t", "é", "ÿ", "中", "😀"};
+
+    public static void main(String[] args) throws Throwable {
+        JsonEscapeTest test = new JsonEscapeTest();
+        test.run1();
+        test.run2();
+        test.run3();
+    }
+
+    @Test
+    public void run1() throws Exception {
+        JsonConvert convert = JsonConvert.root();
+        // 特殊字符出现在8字节分组的各个位置
+        for (int len = 0; len < 24; len++) {
+            for (int pos = 0; pos < len; pos++) {
+                for (String part : PARTS) {
+                    StringBuilder sb = new StringBuilder();
+                    for (int i = 0; i < len; i++) {
+                        sb.append(i == pos ? part : String.valueOf((char) ('a' + i % 26)));
+                    }
+                    check(convert, sb.toString());
+                }
+            }
+        }
+        Random random = new Random(20261017);
+        for (int n = 0; n < 2000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int len = random.nextInt(64);
+            for (int i = 0; i < len; i++) {
+                sb.append(
+                        random.nextInt(4) == 0
+                                ? PARTS[random.nextInt(PARTS.length)]
+                                : String.valueOf((char) (' ' + random.nextInt(95))));
+            }
+            check(convert, sb.toString());
+        }
+    }
+
+    @Test
+    public void run2() throws Exception {
+        // 0x80-0xFF的LATIN1字符须输出为合法的UTF-8
+        JsonConvert convert = JsonConvert.root();
+        byte[] bytes = convert.convertToBytes("café\b\f");
+        Assertions.assertEquals("\"café\\b\\f\"", new String(bytes, StandardCharsets.UTF_8));
+        Assertions.assertEquals("café\b\f", convert.convertFrom(String.class, bytes));
+    }
+
+    @Test
+    public void run3() throws Exception {
+        // 预编码的字段名须为UTF-8, 非ASCII字段名只支持序列化
+        JsonConvert convert = JsonConvert.root();
+        NameBean bean = new NameBean();
+        bean.name = "名字";
+        bean.id = 3;
+        String expect = "{\"编号\":3,\"名称\":\"名字\"}";
+        Assertions.assertEquals(expect, new String(convert.convertToBytes(bean), StandardCharsets.UTF_8));
+        Assertions.assertEquals(expect, toUtf8(convert.convertTo(() -> ByteBuffer.allocate(7), NameBean.class, bean)));
+        Assertions.assertEquals(expect, convert.convertTo(bean));
+    }
+
+    private static void check(JsonConvert convert, String value) {
+        byte[] bytes = convert.convertToBytes(value);
+        String json = convert.convertTo(value);
+        Assertions.assertEquals(json, new String(bytes, StandardCharsets.UTF_8), value);
+        Assertions.assertEquals(value, convert.convertFrom(String.class, bytes));
+        // 小容量ByteBuffer, 跨buffer写入
+        String json2 = toUtf8(convert.convertTo(() -> ByteBuffer.allocate(5), String.class, value));
+        Assertions.assertEquals(value, convert.convertFrom(String.class, json2), json2);
+        String json3 = toUtf8(convert.convertTo(() -> ByteBuffer.allocate(1024), String.class, value));
+        Assertions.assertEquals(json2, json3);
+    }
+
+    private static String toUtf8(ByteBuffer[] buffers) {
+        ByteArray array = new ByteArray();
+        for (ByteBuffer buffer : buffers) {
+            array.put(buffer);
+        }
+        byte[] bs = array.getBytes();
+        String rs = new String(bs, StandardCharsets.UTF_8);
+        Assertions.assertArrayEquals(bs, rs.getBytes(StandardCharsets.UTF_8), "invalid utf-8");
+        return rs;
+    }
+
+    public static class NameBean {
+
+        @ConvertColumn(name = "编号", index = 1)
+        public int id;
+
+        @ConvertColumn(name = "名称", index = 2)
+        public String name;
+    }
+}
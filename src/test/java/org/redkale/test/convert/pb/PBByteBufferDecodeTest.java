@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.convert.pb;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.redkale.convert.ConvertColumn;
+import org.redkale.convert.ConvertException;
+import org.redkale.convert.json.JsonConvert;
+import org.redkale.convert.pb.ProtobufConvert;
+
+/**
+ * 从ByteBuffer的指定区间直接反序列化, 不能越界读取后续数据
+ *
+ * @author zhangjx
+ */
+public class PBByteBufferDecodeTest {
+
+    public static void main(String[] args) throws Throwable {
+        PBByteBufferDecodeTest test = new PBByteBufferDecodeTest();
+        test.run1();
+        test.run2();
+        test.run3();
+    }
+
+    @Test
+    public void run1() throws Exception {
+        ProtobufConvert convert = ProtobufConvert.root();
+        SliceBean bean = SliceBean.create();
+        byte[] bytes = convert.convertTo(bean);
+        String json = JsonConvert.root().convertTo(bean);
+        for (ByteBuffer buffer :
+                new ByteBuffer[] {ByteBuffer.allocate(bytes.length + 20), ByteBuffer.allocateDirect(bytes.length + 20)
+                }) {
+            // 前后都有其他数据
+            buffer.put(new byte[] {1, 2, 3});
+            buffer.put(bytes);
+            buffer.put(new byte[] {9, 8, 7, 6});
+            buffer.flip();
+            buffer.position(3);
+            SliceBean rs = convert.convertFrom(SliceBean.class, buffer, bytes.length);
+            Assertions.assertEquals(json, JsonConvert.root().convertTo(rs));
+            Assertions.assertEquals(3 + bytes.length, buffer.position());
+            Assertions.assertEquals(9, buffer.get());
+        }
+    }
+
+    @Test
+    public void run2() throws Exception {
+        ProtobufConvert convert = ProtobufConvert.root();
+        byte[] bytes = convert.convertTo(String.class, "中文string");
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 2);
+        buffer.put(bytes);
+        buffer.put((byte) 5);
+        buffer.flip();
+        Assertions.assertEquals("中文string", convert.convertFrom(String.class, buffer, bytes.length));
+        Assertions.assertEquals(bytes.length, buffer.position());
+        // 数据不完整解析失败时position也须移到数据之后
+        ByteBuffer half = ByteBuffer.wrap(bytes, 0, 2);
+        Assertions.assertThrows(Exception.class, () -> convert.convertFrom(String.class, half, 2));
+        Assertions.assertEquals(2, half.position());
+    }
+
+    @Test
+    public void run3() throws Exception {
+        ProtobufConvert convert = ProtobufConvert.root();
+        byte[] bytes = convert.convertTo(SliceBean.create());
+        String json = JsonConvert.root().convertTo(SliceBean.create());
+        // 同一个读缓冲区中的两个pipeline响应, 第一个响应的结果为null, body只有(byte)0
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 20);
+        buffer.put((byte) 0);
+        buffer.put(new byte[] {0x12, 0x34, 0x56, 0x78}); // 第二个响应的头
+        buffer.put((byte) 0);
+        buffer.put(bytes);
+        buffer.flip();
+        buffer.get();
+        Assertions.assertNull(convert.convertFrom(SliceBean.class, buffer, 0));
+        Assertions.assertEquals(1, buffer.position());
+        buffer.position(buffer.position() + 5);
+        SliceBean rs = convert.convertFrom(SliceBean.class, buffer, bytes.length);
+        Assertions.assertEquals(json, JsonConvert.root().convertTo(rs));
+        Assertions.assertFalse(buffer.hasRemaining());
+
+        // 字符串长度超出length时不能读取之后的数据
+        for (ByteBuffer buf : new ByteBuffer[] {ByteBuffer.wrap(bytes), ByteBuffer.allocateDirect(bytes.length)}) {
+            if (buf.isDirect()) {
+                buf.put(bytes).flip();
+            }
+            Assertions.assertThrows(ConvertException.class, () -> convert.convertFrom(SliceBean.class, buf, 5));
+            Assertions.assertEquals(5, buf.position());
+        }
+    }
+
+    public static class SliceBean {
+
+        @ConvertColumn(index = 1)
+        public int id;
+
+        @ConvertColumn(index = 2)
+        public String name;
+
+        @ConvertColumn(index = 3)
+        public List<String> tags;
+
+        @ConvertColumn(index = 4)
+        public SliceChild child;
+
+        @ConvertColumn(index = 5)
+        public long time;
+
+        public static SliceBean create() {
+            SliceBean bean = new SliceBean();
+            bean.id = 100;
+            bean.name = "中文name";
+            bean.tags = Arrays.asList("aa", "bb", "cc");
+            bean.child = new SliceChild();
+            bean.child.id = 7;
+            bean.child.name = "child";
+            bean.time = 1234567890123L;
+            return bean;
+        }
+    }
+
+    public static class SliceChild {
+
+        @ConvertColumn(index = 1)
+        public int id;
+
+        @ConvertColumn(index = 2)
+        public String name;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.convert.pb;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.redkale.convert.*;
+import org.redkale.convert.json.JsonConvert;
+import org.redkale.convert.pb.*;
+
+/**
+ * 动态生成的ProtobufDynDecoder解析结果须与编码前一致
+ *
+ * @author zhangjx
+ */
+public class PBDynDecoderTest {
+
+    public static void main(String[] args) throws Throwable {
+        PBDynDecoderTest test = new PBDynDecoderTest();
+        test.run1();
+        test.run2();
+    }
+
+    @Test
+    public void run1() throws Exception {
+        ProtobufFactory factory = ProtobufFactory.create();
+        Decodeable decoder = factory.loadDecoder(DynBean.class);
+        Assertions.assertTrue(decoder instanceof ProtobufDynDecoder, decoder.getClass().getName());
+
+        DynBean bean = DynBean.create();
+        ProtobufConvert convert = factory.getConvert();
+        byte[] bytes = convert.convertTo(bean);
+        String json = JsonConvert.root().convertTo(bean);
+        DynBean rs1 = convert.convertFrom(DynBean.class, bytes);
+        DynBean rs2 = convert.convertFrom(DynBean.class, ByteBuffer.wrap(bytes));
+        Assertions.assertEquals(json, JsonConvert.root().convertTo(rs1));
+        Assertions.assertEquals(json, JsonConvert.root().convertTo(rs2));
+    }
+
+    @Test
+    public void run2() throws Exception {
+        // 新版本多出的字段在旧版本中须被跳过
+        DynBean bean = DynBean.create();
+        byte[] bytes = ProtobufConvert.root().convertTo(bean);
+        DynOldBean old = ProtobufConvert.root().convertFrom(DynOldBean.class, bytes);
+        Assertions.assertEquals(bean.id, old.id);
+        Assertions.assertEquals(bean.getMoney(), old.getMoney());
+        Assertions.assertEquals(bean.getChild().name, old.getChild().name);
+    }
+
+    public static class DynBean {
+
+        @ConvertColumn(index = 1)
+        public int id;
+
+        @ConvertColumn(index = 2)
+        public String name;
+
+        @ConvertColumn(index = 3)
+        private boolean flag;
+
+        @ConvertColumn(index = 4)
+        private long time;
+
+        @ConvertColumn(index = 5)
+        private float point;
+
+        @ConvertColumn(index = 6)
+        private List<String> tags;
+
+        @ConvertColumn(index = 7)
+        private Integer age;
+
+        @ConvertColumn(index = 8)
+        private int[] nums;
+
+        @ConvertColumn(index = 9)
+        private DynChild child;
+
+        @ConvertColumn(index = 200)
+        private double money;
+
+        public static DynBean create() {
+            DynBean bean = new DynBean();
+            bean.id = -123456;
+            bean.name = "中文name";
+            bean.flag = true;
+            bean.time = 1234567890123L;
+            bean.point = 1.5f;
+            bean.tags = Arrays.asList("aa", "bb");
+            bean.age = 18;
+            bean.nums = new int[] {1, -2, 300};
+            bean.child = new DynChild();
+            bean.child.id = 10;
+            bean.child.name = "child";
+            bean.money = -2.25;
+            return bean;
+        }
+
+        public boolean isFlag() {
+            return flag;
+        }
+
+        public void setFlag(boolean flag) {
+            this.flag = flag;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public DynBean setTime(long time) {
+            this.time = time;
+            return this;
+        }
+
+        public float getPoint() {
+            return point;
+        }
+
+        public void setPoint(float point) {
+            this.point = point;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        public Integer getAge() {
+            return age;
+        }
+
+        public void setAge(Integer age) {
+            this.age = age;
+        }
+
+        public int[] getNums() {
+            return nums;
+        }
+
+        public void setNums(int[] nums) {
+            this.nums = nums;
+        }
+
+        public DynChild getChild() {
+            return child;
+        }
+
+        public void setChild(DynChild child) {
+            this.child = child;
+        }
+
+        public double getMoney() {
+            return money;
+        }
+
+        public void setMoney(double money) {
+            this.money = money;
+        }
+    }
+
+    public static class DynOldBean {
+
+        @ConvertColumn(index = 1)
+        public int id;
+
+        @ConvertColumn(index = 9)
+        private DynChild child;
+
+        @ConvertColumn(index = 200)
+        private double money;
+
+        public DynChild getChild() {
+            return child;
+        }
+
+        public void setChild(DynChild child) {
+            this.child = child;
+        }
+
+        public double getMoney() {
+            return money;
+        }
+
+        public void setMoney(double money) {
+            this.money = money;
+        }
+    }
+
+    public static class DynChild {
+
+        @ConvertColumn(index = 1)
+        public int id;
+
+        @ConvertColumn(index = 2)
+        public String name;
+    }
+}
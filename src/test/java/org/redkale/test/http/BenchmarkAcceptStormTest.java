@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.http;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.redkale.net.http.HttpServer;
+
+/**
+ * 大量客户端同时短连接时单Accept线程与reusePort多线程accept的建连吞吐对比
+ *
+ * @author zhangjx
+ */
+@State(Scope.Benchmark)
+public class BenchmarkAcceptStormTest {
+
+    @Param({"false", "true"})
+    private boolean reusePort;
+
+    private HttpServer server;
+
+    private int port;
+
+    @Setup
+    public void setup() throws Exception {
+        server = HttpReusePortTest.createServer(reusePort);
+        port = server.getSocketAddress().getPort();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    // 每次操作新建连接, 发送一个请求后关闭
+    @Benchmark
+    public String testConnect() throws Exception {
+        return HttpReusePortTest.request(port);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkAcceptStormTest.class.getSimpleName())
+                .forks(1)
+                .threads(32)
+                .warmupIterations(1)
+                .measurementIterations(3)
+                .mode(Mode.Throughput)
+                .build();
+        new Runner(options).run();
+    }
+}
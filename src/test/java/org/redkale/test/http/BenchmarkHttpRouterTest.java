@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.http;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.redkale.net.http.HttpPathRouter;
+
+/**
+ * 1000个通配路由下radix树匹配与逐个正则匹配的对比
+ *
+ * @author zhangjx
+ */
+@State(Scope.Thread)
+public class BenchmarkHttpRouterTest {
+
+    private String[] mappings;
+
+    private Predicate<String>[] predicates;
+
+    private HttpPathRouter<String> router;
+
+    private String[] uris;
+
+    private int index;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < 950; i++) {
+            list.add("^/api/svc" + i + "/.*");
+        }
+        for (int i = 0; i < 50; i++) {
+            list.add("^/api/item" + i + "/\\d+$");
+        }
+        list.sort(Comparator.reverseOrder());
+        mappings = list.toArray(new String[list.size()]);
+        predicates = new Predicate[mappings.length];
+        for (int i = 0; i < mappings.length; i++) {
+            predicates[i] = Pattern.compile(mappings[i]).asPredicate();
+        }
+        router = new HttpPathRouter<>(mappings, predicates, mappings);
+        Random random = new Random(1000);
+        uris = new String[1024];
+        for (int i = 0; i < uris.length; i++) {
+            uris[i] = "/api/svc" + random.nextInt(950) + "/query/" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        router = null;
+    }
+
+    @Benchmark
+    public String testA_Router() {
+        return router.match(uris[index++ & 1023]);
+    }
+
+    @Benchmark
+    public String testB_Linear() {
+        String uri = uris[index++ & 1023];
+        for (int i = 0; i < predicates.length; i++) {
+            if (predicates[i].test(uri)) {
+                return mappings[i];
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkHttpRouterTest.class.getSimpleName())
+                .forks(1)
+                .threads(1)
+                .warmupIterations(1)
+                .measurementIterations(1)
+                .mode(Mode.Throughput)
+                .build();
+        new Runner(options).run();
+    }
+}
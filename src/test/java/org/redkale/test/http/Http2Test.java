@@ -0,0 +1,453 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.http;
+
+import java.io.*;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.cert.X509Certificate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import javax.net.ssl.*;
+import org.junit.jupiter.api.*;
+import org.redkale.boot.Application;
+import org.redkale.inject.ResourceFactory;
+import org.redkale.net.http.HttpServer;
+import org.redkale.net.http.HttpServlet;
+import org.redkale.util.AnyValue;
+import org.redkale.util.AnyValueWriter;
+
+/**
+ * HTTP/2(h2c prior-knowledge与ALPN h2)测试
+ *
+ * @author zhangjx
+ */
+public class Http2Test {
+
+    private static final String BIG = "0123456789abcdef".repeat(12 * 1024); // 192K, 超过默认流量窗口
+
+    private static HttpServer server;
+
+    private static HttpServer sslServer;
+
+    private static int port;
+
+    private static int sslPort;
+
+    private static File keystore;
+
+    public static void main(String[] args) throws Throwable {
+        Http2Test test = new Http2Test();
+        init();
+        try {
+            test.run1();
+            test.run2();
+            test.run3();
+        } finally {
+            shutdown();
+        }
+    }
+
+    @BeforeAll
+    public static void init() throws Exception {
+        Application application = Application.create(true);
+        ResourceFactory factory = application.getResourceFactory();
+        factory.register("", Application.class, application);
+        server = new HttpServer(factory);
+        server.init(AnyValueWriter.create("port", 0));
+        server.addHttpServlet(new EchoServlet(), "/*");
+        server.start();
+        port = server.getSocketAddress().getPort();
+
+        keystore = Files.createTempFile("redkale-h2", ".jks").toFile();
+        keystore.delete();
+        Process process = new ProcessBuilder(
+                        Paths.get(System.getProperty("java.home"), "bin", "keytool")
+                                .toString(),
+                        "-genkeypair",
+                        "-alias",
+                        "h2",
+                        "-keyalg",
+                        "RSA",
+                        "-dname",
+                        "CN=localhost",
+                        "-ext",
+                        "SAN=dns:localhost,ip:127.0.0.1",
+                        "-validity",
+                        "1",
+                        "-storetype",
+                        "JKS",
+                        "-keystore",
+                        keystore.getPath(),
+                        "-storepass",
+                        "redkale",
+                        "-keypass",
+                        "redkale")
+                .redirectErrorStream(true)
+                .start();
+        process.getInputStream().readAllBytes();
+        Assertions.assertEquals(0, process.waitFor());
+        sslServer = new HttpServer(factory);
+        AnyValueWriter conf = AnyValue.create().addValue("port", 0);
+        conf.addValue(
+                "ssl",
+                AnyValue.create()
+                        .addValue("keystoreFile", keystore.getPath())
+                        .addValue("keystorePass", "redkale")
+                        .addValue("applicationProtocols", "h2,http/1.1"));
+        sslServer.init(conf);
+        sslServer.addHttpServlet(new EchoServlet(), "/*");
+        sslServer.start();
+        sslPort = sslServer.getSocketAddress().getPort();
+    }
+
+    @AfterAll
+    public static void shutdown() throws Exception {
+        if (server != null) {
+            server.shutdown();
+        }
+        if (sslServer != null) {
+            sslServer.shutdown();
+        }
+        if (keystore != null) {
+            keystore.delete();
+        }
+    }
+
+    @Test
+    public void run1() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes());
+            writeFrame(out, 0x4, 0, 0, new byte[0]);
+            // 服务端前言
+            Frame frame = readFrame(in);
+            Assertions.assertEquals(0x4, frame.type);
+            Assertions.assertEquals(0, frame.flags);
+
+            // RFC 7541 C.4: Huffman编码且依赖动态表的三个连续请求
+            writeFrame(out, 0x1, 0x5, 1, hex("828684418cf1e3c2e5f23a6ba0ab90f4ff"));
+            Frame[] rs = readResponse(in, out, 1);
+            Assertions.assertEquals((byte) 0x88, rs[0].payload[0]); // :status 200
+            Assertions.assertEquals("GET / www.example.com - - 0", body(rs));
+
+            writeFrame(out, 0x1, 0x5, 3, hex("828684be5886a8eb10649cbf"));
+            rs = readResponse(in, out, 3);
+            Assertions.assertEquals("GET / www.example.com no-cache - 0", body(rs));
+
+            writeFrame(out, 0x1, 0x5, 5, hex("828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf"));
+            rs = readResponse(in, out, 5);
+            Assertions.assertEquals("GET /index.html www.example.com - custom-value 0", body(rs));
+
+            // POST, 头部块拆分成HEADERS+CONTINUATION, body拆分成两个DATA
+            byte[] block = literals(":method", "POST", ":scheme", "http", ":path", "/echo", ":authority", "h2.test");
+            writeFrame(out, 0x1, 0, 7, Arrays.copyOfRange(block, 0, 10));
+            writeFrame(out, 0x9, 0x4, 7, Arrays.copyOfRange(block, 10, block.length));
+            writeFrame(out, 0x0, 0, 7, "hello ".getBytes());
+            writeFrame(out, 0x0, 0x1, 7, "world".getBytes());
+            rs = readResponse(in, out, 7);
+            Assertions.assertEquals("POST /echo h2.test - - 11 hello world", body(rs));
+
+            // PING
+            writeFrame(out, 0x6, 0, 0, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+            do {
+                frame = readFrame(in);
+            } while (frame.type != 0x6);
+            Assertions.assertEquals(0x1, frame.flags);
+            Assertions.assertArrayEquals(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}, frame.payload);
+
+            // 超过默认流量窗口的响应需等待WINDOW_UPDATE
+            block = literals(":method", "GET", ":scheme", "http", ":path", "/big", ":authority", "h2.test");
+            writeFrame(out, 0x1, 0x5, 9, block);
+            rs = readResponse(in, out, 9);
+            Assertions.assertEquals(BIG, body(rs));
+
+            // 已关闭的stream不可再发送HEADERS
+            writeFrame(out, 0x1, 0x5, 3, block);
+            do {
+                frame = readFrame(in);
+            } while (frame.type != 0x7);
+            Assertions.assertEquals(0x5, frame.payload[7]); // STREAM_CLOSED
+        }
+    }
+
+    @Test
+    public void run2() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write("PRI * HTTP/2.0\r\n\r\nXX\r\n\r\n".getBytes());
+            out.flush();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Assertions.assertEquals(0x4, readFrame(in).type);
+            Frame frame = readFrame(in);
+            Assertions.assertEquals(0x7, frame.type); // GOAWAY
+            Assertions.assertEquals(0x1, frame.payload[7]); // PROTOCOL_ERROR
+            Assertions.assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void run3() throws Exception {
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[] {new TrustAllManager()}, null);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .sslContext(sslContext)
+                .build();
+        String url = "https://127.0.0.1:" + sslPort;
+        HttpResponse<String> resp = client.send(
+                HttpRequest.newBuilder(URI.create(url + "/echo"))
+                        .header("Cache-Control", "no-cache")
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(HttpClient.Version.HTTP_2, resp.version());
+        Assertions.assertEquals(200, resp.statusCode());
+        Assertions.assertEquals("GET /echo 127.0.0.1:" + sslPort + " no-cache - 0", resp.body());
+
+        // 双向超过默认流量窗口
+        resp = client.send(
+                HttpRequest.newBuilder(URI.create(url + "/echo"))
+                        .POST(HttpRequest.BodyPublishers.ofString(BIG))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(HttpClient.Version.HTTP_2, resp.version());
+        Assertions.assertTrue(resp.body().startsWith("POST /echo 127.0.0.1:" + sslPort + " - - " + BIG.length()));
+        resp = client.send(
+                HttpRequest.newBuilder(URI.create(url + "/big")).build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(BIG, resp.body());
+
+        // 多个stream复用同一连接
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(client.sendAsync(
+                    HttpRequest.newBuilder(URI.create(url + "/echo"))
+                            .POST(HttpRequest.BodyPublishers.ofString("body-" + i))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString()));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            HttpResponse<String> rs = futures.get(i).get();
+            Assertions.assertEquals(HttpClient.Version.HTTP_2, rs.version());
+            Assertions.assertTrue(rs.body().endsWith(" body-" + i), rs.body());
+        }
+    }
+
+    @Test
+    public void run4() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes());
+            writeFrame(out, 0x4, 0, 0, new byte[0]);
+            Assertions.assertEquals(0x4, readFrame(in).type);
+
+            // 不合法的请求头须RST_STREAM(PROTOCOL_ERROR), 不可转换成HTTP/1.1文本
+            String[][] malformeds = {
+                {":method", "GET", ":path", "/echo", "cache-control", "x\r\nContent-Length: 5"},
+                {":method", "GET", ":path", "/echo HTTP/1.1\r\nX-Smuggled: 1\r\n\r\nGET /echo"},
+                {":method", "GET", ":path", "/echo", ":authority", "h2.test\r\nX-Smuggled: 1"},
+                {":method", "GET /echo", ":path", "/echo"},
+                {":method", "GET", ":path", "/echo", "Cache-Control", "no-cache"},
+                {":method", "GET", ":path", "/echo", "cache control", "no-cache"},
+                {":method", "GET", ":path", "/echo", "cache-control", " no-cache"},
+                {":method", "GET", ":path", "/echo", "cache-control", "no\0cache"},
+                {":method", "GET", ":path", "/echo", "transfer-encoding", "chunked"},
+                {":method", "GET", ":path", "/echo", "te", "gzip"},
+                {":method", "GET", "cache-control", "no-cache", ":path", "/echo"},
+                {":method", "GET", ":path", "/echo", ":path", "/echo"},
+                {":method", "GET", ":path", "/echo", ":status", "200"},
+                {":method", "GET", ":path", ""},
+                {":method", "GET"}
+            };
+            int streamId = 1;
+            for (String[] fields : malformeds) {
+                writeFrame(out, 0x1, 0x5, streamId, literals(fields));
+                Frame frame;
+                do {
+                    frame = readFrame(in);
+                } while (frame.type == 0x4);
+                Assertions.assertEquals(0x3, frame.type, String.join(" ", fields));
+                Assertions.assertEquals(streamId, frame.streamId);
+                Assertions.assertEquals(0x1, frame.payload[3]); // PROTOCOL_ERROR
+                streamId += 2;
+            }
+
+            // 连接仍可用
+            writeFrame(
+                    out,
+                    0x1,
+                    0x5,
+                    streamId,
+                    literals(":method", "GET", ":path", "/echo", ":authority", "h2.test", "te", "trailers"));
+            Frame[] rs = readResponse(in, out, streamId);
+            Assertions.assertEquals("GET /echo h2.test - - 0", body(rs));
+        }
+    }
+
+    @Test
+    public void run5() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes());
+            writeFrame(out, 0x4, 0, 0, new byte[0]);
+            Assertions.assertEquals(0x4, readFrame(in).type);
+
+            // 无END_HEADERS的CONTINUATION超过maxHeader后须GOAWAY
+            writeFrame(out, 0x1, 0, 1, literals(":method", "GET", ":path", "/echo"));
+            byte[] chunk = new byte[8192];
+            try {
+                for (int i = 0; i < 4; i++) {
+                    writeFrame(out, 0x9, 0, 1, chunk);
+                }
+            } catch (IOException e) {
+                // 服务端已关闭连接
+            }
+            Frame frame;
+            do {
+                frame = readFrame(in);
+            } while (frame.type == 0x4);
+            Assertions.assertEquals(0x7, frame.type); // GOAWAY
+            Assertions.assertEquals(0xb, frame.payload[7]); // ENHANCE_YOUR_CALM
+        }
+    }
+
+    private static String body(Frame[] rs) {
+        return new String(rs[1].payload, StandardCharsets.UTF_8);
+    }
+
+    // 读取stream的响应, 返回HEADERS帧和合并后的DATA
+    private static Frame[] readResponse(DataInputStream in, OutputStream out, int streamId) throws IOException {
+        Frame headers = null;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (; ; ) {
+            Frame frame = readFrame(in);
+            if (frame.type == 0x4 && frame.flags == 0) {
+                writeFrame(out, 0x4, 0x1, 0, new byte[0]);
+            } else if (frame.type == 0x7) {
+                Assertions.fail("GOAWAY received");
+            } else if (frame.streamId == streamId) {
+                Assertions.assertNotEquals(0x3, frame.type, "RST_STREAM received");
+                if (frame.type == 0x1) {
+                    headers = frame;
+                } else if (frame.type == 0x0) {
+                    body.write(frame.payload);
+                    if (frame.payload.length > 0) { // 归还流量窗口
+                        writeFrame(out, 0x8, 0, 0, int4(frame.payload.length));
+                        writeFrame(out, 0x8, 0, streamId, int4(frame.payload.length));
+                    }
+                }
+                if ((frame.flags & 0x1) != 0) {
+                    break;
+                }
+            }
+        }
+        Frame data = new Frame();
+        data.payload = body.toByteArray();
+        return new Frame[] {headers, data};
+    }
+
+    private static Frame readFrame(DataInputStream in) throws IOException {
+        Frame frame = new Frame();
+        int length = (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+        frame.type = in.readUnsignedByte();
+        frame.flags = in.readUnsignedByte();
+        frame.streamId = in.readInt() & 0x7fffffff;
+        frame.payload = new byte[length];
+        in.readFully(frame.payload);
+        return frame;
+    }
+
+    private static void writeFrame(OutputStream out, int type, int flags, int streamId, byte[] payload)
+            throws IOException {
+        int len = payload.length;
+        out.write(new byte[] {(byte) (len >> 16), (byte) (len >> 8), (byte) len, (byte) type, (byte) flags});
+        out.write(int4(streamId));
+        out.write(payload);
+        out.flush();
+    }
+
+    private static byte[] int4(int value) {
+        return new byte[] {(byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value};
+    }
+
+    // 不加入动态表的字面量头部块
+    private static byte[] literals(String... nameValues) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0);
+        for (int i = 0; i < nameValues.length; i++) {
+            if (i > 0 && i % 2 == 0) {
+                out.write(0);
+            }
+            byte[] bs = nameValues[i].getBytes(StandardCharsets.ISO_8859_1);
+            out.write(bs.length);
+            out.writeBytes(bs);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] hex(String value) {
+        byte[] bs = new byte[value.length() / 2];
+        for (int i = 0; i < bs.length; i++) {
+            bs[i] = (byte) Integer.parseInt(value.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bs;
+    }
+
+    private static class Frame {
+
+        int type;
+
+        int flags;
+
+        int streamId;
+
+        byte[] payload;
+    }
+
+    public static class EchoServlet extends HttpServlet {
+
+        @Override
+        public void execute(org.redkale.net.http.HttpRequest req, org.redkale.net.http.HttpResponse resp)
+                throws IOException {
+            if ("/big".equals(req.getRequestPath())) {
+                resp.finish(BIG);
+                return;
+            }
+            String body = req.getBodyUTF8();
+            resp.finish(req.getMethod() + " " + req.getRequestPath() + " " + req.getHost() + " "
+                    + req.getHeader("Cache-Control", "-") + " " + req.getHeader("custom-key", "-") + " "
+                    + body.length() + (body.isEmpty() ? "" : (" " + body)));
+        }
+    }
+
+    private static class TrustAllManager implements X509TrustManager {
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            // do nothing
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            // do nothing
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
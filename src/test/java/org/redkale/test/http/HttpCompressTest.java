@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.http;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.*;
+import org.junit.jupiter.api.*;
+import org.redkale.boot.Application;
+import org.redkale.convert.json.JsonConvert;
+import org.redkale.inject.ResourceFactory;
+import org.redkale.net.http.*;
+import org.redkale.util.AnyValue;
+import org.redkale.util.AnyValueWriter;
+
+/**
+ * HttpResponse压缩输出测试
+ *
+ * @author zhangjx
+ */
+public class HttpCompressTest {
+
+    private static HttpServer server;
+
+    private static int port;
+
+    private static String json;
+
+    private static File webroot;
+
+    public static void main(String[] args) throws Throwable {
+        HttpCompressTest test = new HttpCompressTest();
+        init();
+        try {
+            test.run1();
+            test.run2();
+            test.run3();
+            test.run4();
+            test.run5();
+        } finally {
+            shutdown();
+        }
+    }
+
+    @BeforeAll
+    public static void init() throws Exception {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add("item-" + i);
+        }
+        json = JsonConvert.root().convertTo(list);
+        webroot = Files.createTempDirectory("redkale-compress").toFile();
+        File resDir = new File(webroot, "res");
+        resDir.mkdirs();
+        Files.write(new File(resDir, "big.txt").toPath(), json.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(resDir, "small.txt").toPath(), json.substring(0, 300).getBytes(StandardCharsets.UTF_8));
+        Application application = Application.create(true);
+        ResourceFactory factory = application.getResourceFactory();
+        factory.register("", Application.class, application);
+        server = new HttpServer(factory);
+        AnyValueWriter conf = AnyValue.create().addValue("port", 0);
+        conf.addValue(
+                "response",
+                AnyValue.create()
+                        .addValue(
+                                "compress",
+                                AnyValue.create().addValue("min-length", 512).addValue("level", 6)));
+        server.init(conf);
+        server.addHttpServlet(new CompressServlet(), "/compress/*");
+        server.addHttpServlet(
+                new HttpResourceServlet(),
+                null,
+                AnyValue.create()
+                        .addValue("webroot", webroot.getPath())
+                        .addValue("cache", AnyValue.create().addValue("limit", "1M")),
+                "/res/*");
+        server.start();
+        port = server.getSocketAddress().getPort();
+    }
+
+    @AfterAll
+    public static void shutdown() throws Exception {
+        if (server != null) {
+            server.shutdown();
+        }
+        if (webroot != null) {
+            for (File file : new File(webroot, "res").listFiles()) {
+                file.delete();
+            }
+            new File(webroot, "res").delete();
+            webroot.delete();
+        }
+    }
+
+    @Test
+    public void run1() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            Map<String, String> headers = new HashMap<>();
+            byte[] body = request(socket, "/compress/json", "gzip, deflate", headers);
+            Assertions.assertEquals("gzip", headers.get("content-encoding"));
+            Assertions.assertTrue(body.length < json.length());
+            byte[] bs = new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes();
+            Assertions.assertEquals(json, new String(bs, StandardCharsets.UTF_8));
+            // keep-alive连接复用, 再次压缩
+            headers.clear();
+            body = request(socket, "/compress/json", "deflate", headers);
+            Assertions.assertEquals("deflate", headers.get("content-encoding"));
+            bs = new InflaterInputStream(new ByteArrayInputStream(body)).readAllBytes();
+            Assertions.assertEquals(json, new String(bs, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void run2() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            Map<String, String> headers = new HashMap<>();
+            byte[] body = request(socket, "/compress/json", null, headers);
+            Assertions.assertNull(headers.get("content-encoding"));
+            Assertions.assertEquals("Accept-Encoding", headers.get("vary"));
+            Assertions.assertEquals(json, new String(body, StandardCharsets.UTF_8));
+
+            headers.clear();
+            body = request(socket, "/compress/json", "gzip;q=0, br", headers);
+            Assertions.assertNull(headers.get("content-encoding"));
+            Assertions.assertEquals(json, new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void run3() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            // 小于min-length不压缩
+            Map<String, String> headers = new HashMap<>();
+            byte[] body = request(socket, "/compress/small", "gzip", headers);
+            Assertions.assertNull(headers.get("content-encoding"));
+            Assertions.assertEquals("hello", new String(body, StandardCharsets.UTF_8));
+            // 不在types中的Content-Type不压缩
+            headers.clear();
+            body = request(socket, "/compress/binary", "gzip", headers);
+            Assertions.assertNull(headers.get("content-encoding"));
+            Assertions.assertEquals(4096, body.length);
+            Assertions.assertNull(headers.get("vary"));
+        }
+    }
+
+    @Test
+    public void run4() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            // 静态资源按响应的压缩配置预压缩
+            Map<String, String> headers = new HashMap<>();
+            byte[] body = request(socket, "/res/big.txt", "gzip", headers);
+            Assertions.assertEquals("gzip", headers.get("content-encoding"));
+            Assertions.assertEquals("Accept-Encoding", headers.get("vary"));
+            byte[] bs = new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes();
+            Assertions.assertEquals(json, new String(bs, StandardCharsets.UTF_8));
+
+            headers.clear();
+            body = request(socket, "/res/big.txt", null, headers);
+            Assertions.assertNull(headers.get("content-encoding"));
+            Assertions.assertEquals("Accept-Encoding", headers.get("vary"));
+            Assertions.assertEquals(json, new String(body, StandardCharsets.UTF_8));
+            // 小于min-length不压缩
+            headers.clear();
+            body = request(socket, "/res/small.txt", "gzip", headers);
+            Assertions.assertNull(headers.get("content-encoding"));
+            Assertions.assertEquals(300, body.length);
+        }
+    }
+
+    @Test
+    public void run5() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            // 保留已设置的Vary, 追加Accept-Encoding
+            Map<String, String> headers = new HashMap<>();
+            byte[] body = request(socket, "/compress/vary?vary=Origin", "gzip", headers);
+            Assertions.assertEquals("gzip", headers.get("content-encoding"));
+            Assertions.assertEquals("Origin, Accept-Encoding", headers.get("vary"));
+            byte[] bs = new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes();
+            Assertions.assertEquals(json, new String(bs, StandardCharsets.UTF_8));
+
+            headers.clear();
+            request(socket, "/compress/vary?vary=accept-encoding,%20Origin", "gzip", headers);
+            Assertions.assertEquals("accept-encoding, Origin", headers.get("vary"));
+        }
+    }
+
+    private static byte[] request(Socket socket, String path, String encoding, Map<String, String> headers)
+            throws IOException {
+        OutputStream out = socket.getOutputStream();
+        String req = "GET " + path + " HTTP/1.1\r\nConnection: Keep-Alive\r\n"
+                + (encoding == null ? "" : ("Accept-Encoding: " + encoding + "\r\n")) + "\r\n";
+        out.write(req.getBytes());
+        out.flush();
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        Assertions.assertTrue(readLine(in).startsWith("HTTP/1.1 200"));
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int pos = line.indexOf(':');
+            headers.put(line.substring(0, pos).toLowerCase(), line.substring(pos + 1).trim());
+        }
+        return in.readNBytes(Integer.parseInt(headers.get("content-length")));
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int ch;
+        while ((ch = in.read()) != '\n') {
+            if (ch < 0) {
+                throw new EOFException();
+            }
+            if (ch != '\r') {
+                sb.append((char) ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    public static class CompressServlet extends HttpServlet {
+
+        @HttpMapping(url = "/compress/json")
+        public void json(HttpRequest req, HttpResponse resp) throws IOException {
+            resp.finish("application/json; charset=utf-8", json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @HttpMapping(url = "/compress/vary")
+        public void vary(HttpRequest req, HttpResponse resp) throws IOException {
+            resp.setHeader("Vary", req.getParameter("vary"));
+            resp.finish("application/json; charset=utf-8", json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @HttpMapping(url = "/compress/small")
+        public void small(HttpRequest req, HttpResponse resp) throws IOException {
+            resp.finish("hello");
+        }
+
+        @HttpMapping(url = "/compress/binary")
+        public void binary(HttpRequest req, HttpResponse resp) throws IOException {
+            resp.finish("application/octet-stream", new byte[4096]);
+        }
+    }
+}
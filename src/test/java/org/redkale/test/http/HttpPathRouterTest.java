@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.http;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.*;
+import org.redkale.net.http.HttpPathRouter;
+
+/**
+ * HttpPathRouter的匹配结果须与按顺序逐个正则匹配的结果一致
+ *
+ * @author zhangjx
+ */
+public class HttpPathRouterTest {
+
+    public static void main(String[] args) throws Throwable {
+        HttpPathRouterTest test = new HttpPathRouterTest();
+        test.run1();
+        test.run2();
+        test.run3();
+    }
+
+    @Test
+    public void run1() throws Exception {
+        Assertions.assertEquals("/pipes/user/", HttpPathRouter.literalPrefix("^/pipes/user/.*"));
+        Assertions.assertEquals("", HttpPathRouter.literalPrefix("^.*"));
+        Assertions.assertNull(HttpPathRouter.literalPrefix("^/pipes/user/\\d+$"));
+        Assertions.assertNull(HttpPathRouter.literalPrefix("^/pipes/a.b/.*"));
+        Assertions.assertNull(HttpPathRouter.literalPrefix("/pipes/user/.*"));
+    }
+
+    @Test
+    public void run2() throws Exception {
+        String[] mappings = sort(
+                "^/pipes/user/.*",
+                "^/pipes/.*",
+                "^/pipes/user/info/.*",
+                "^/pipes/user/\\d+$",
+                "^/pipes/u.*",
+                "^/static/.*",
+                "^/st/.*",
+                "^.*\\.do$");
+        String[] uris = {
+            "/pipes/user/1",
+            "/pipes/user/123",
+            "/pipes/user/info/abc",
+            "/pipes/user",
+            "/pipes/us",
+            "/pipes/order/1",
+            "/pipes/",
+            "/pipes",
+            "/static/a.js",
+            "/st/a.js",
+            "/sta",
+            "/login.do",
+            "/static/x.do",
+            "/other",
+            "",
+            "/"
+        };
+        check(mappings, uris);
+    }
+
+    @Test
+    public void run3() throws Exception {
+        Random random = new Random(20241017);
+        String[] segs = {"a", "ab", "abc", "b", "user", "users", "u", "1", "12"};
+        for (int round = 0; round < 50; round++) {
+            Set<String> set = new LinkedHashSet<>();
+            int count = 5 + random.nextInt(60);
+            for (int i = 0; i < count; i++) {
+                StringBuilder sb = new StringBuilder("^");
+                int depth = 1 + random.nextInt(3);
+                for (int j = 0; j < depth; j++) {
+                    sb.append('/').append(segs[random.nextInt(segs.length)]);
+                }
+                int kind = random.nextInt(4);
+                if (kind == 0) {
+                    sb.append("/.*");
+                } else if (kind == 1) {
+                    sb.append(".*");
+                } else if (kind == 2) {
+                    sb.append("/\\d+$");
+                } else {
+                    sb.append("/[a-z]+$");
+                }
+                set.add(sb.toString());
+            }
+            String[] mappings = sort(set.toArray(new String[set.size()]));
+            String[] uris = new String[200];
+            for (int i = 0; i < uris.length; i++) {
+                StringBuilder sb = new StringBuilder();
+                int depth = random.nextInt(5);
+                for (int j = 0; j < depth; j++) {
+                    sb.append('/').append(segs[random.nextInt(segs.length)]);
+                }
+                if (random.nextBoolean()) {
+                    sb.append('/');
+                }
+                uris[i] = sb.toString();
+            }
+            check(mappings, uris);
+        }
+    }
+
+    // 与HttpDispatcherServlet.MappingEntry的排序一致
+    private static String[] sort(String... mappings) {
+        String[] rs = mappings.clone();
+        Arrays.sort(rs, Comparator.reverseOrder());
+        return rs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void check(String[] mappings, String[] uris) {
+        Predicate<String>[] predicates = new Predicate[mappings.length];
+        for (int i = 0; i < mappings.length; i++) {
+            predicates[i] = Pattern.compile(mappings[i]).asPredicate();
+        }
+        HttpPathRouter<String> router = new HttpPathRouter<>(mappings, predicates, mappings);
+        Assertions.assertEquals(mappings.length, router.size());
+        for (String uri : uris) {
+            String expect = null;
+            for (int i = 0; i < mappings.length; i++) {
+                if (predicates[i].test(uri)) {
+                    expect = mappings[i];
+                    break;
+                }
+            }
+            Assertions.assertEquals(expect, router.match(uri), "uri = " + uri);
+        }
+    }
+}
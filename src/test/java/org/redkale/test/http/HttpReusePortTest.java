@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.http;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+import org.redkale.boot.Application;
+import org.redkale.inject.ResourceFactory;
+import org.redkale.net.http.*;
+import org.redkale.util.AnyValue;
+
+/**
+ * reusePort模式下每个IO线程各自accept的测试
+ *
+ * @author zhangjx
+ */
+public class HttpReusePortTest {
+
+    private static HttpServer server;
+
+    private static int port;
+
+    public static void main(String[] args) throws Throwable {
+        HttpReusePortTest test = new HttpReusePortTest();
+        init();
+        try {
+            test.run1();
+        } finally {
+            shutdown();
+        }
+    }
+
+    @BeforeAll
+    public static void init() throws Exception {
+        server = createServer(true);
+        port = server.getSocketAddress().getPort();
+    }
+
+    @AfterAll
+    public static void shutdown() throws Exception {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    public static HttpServer createServer(boolean reusePort) throws Exception {
+        Application application = Application.create(true);
+        ResourceFactory factory = application.getResourceFactory();
+        factory.register("", Application.class, application);
+        HttpServer server = new HttpServer(factory);
+        server.init(AnyValue.create().addValue("port", 0).addValue("reusePort", reusePort));
+        server.addHttpServlet(new ReusePortServlet(), "/reuse/*");
+        server.start();
+        return server;
+    }
+
+    @Test
+    public void run1() throws Exception {
+        int threads = 8;
+        int count = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> list = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                list.add(executor.submit(() -> {
+                    for (int i = 0; i < count; i++) {
+                        Assertions.assertEquals("ok", request(port));
+                    }
+                    return count;
+                }));
+            }
+            int sum = 0;
+            for (Future<Integer> f : list) {
+                sum += f.get(30, TimeUnit.SECONDS);
+            }
+            Assertions.assertEquals(threads * count, sum);
+            Assertions.assertTrue(server.getCreateConnectionCount() >= threads * count);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // 每次请求新建连接, 读完响应后关闭
+    public static String request(int port) throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /reuse/ok HTTP/1.1\r\n\r\n".getBytes());
+            out.flush();
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            int length = 0;
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                if (line.toLowerCase().startsWith("content-length:")) {
+                    length = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
+                }
+            }
+            return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int ch;
+        while ((ch = in.read()) != '\n') {
+            if (ch < 0) {
+                throw new EOFException();
+            }
+            if (ch != '\r') {
+                sb.append((char) ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    public static class ReusePortServlet extends HttpServlet {
+
+        @HttpMapping(url = "/reuse/ok")
+        public void ok(HttpRequest req, HttpResponse resp) throws IOException {
+            resp.finish("ok");
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.http;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.*;
+import org.redkale.boot.Application;
+import org.redkale.convert.json.JsonConvert;
+import org.redkale.inject.ResourceFactory;
+import org.redkale.net.http.*;
+import org.redkale.util.AnyValueWriter;
+
+/**
+ * HttpResponse.finishStream流式输出测试
+ *
+ * @author zhangjx
+ */
+public class HttpStreamTest {
+
+    private static final int COUNT = 20000;
+
+    private static HttpServer server;
+
+    private static int port;
+
+    public static void main(String[] args) throws Throwable {
+        HttpStreamTest test = new HttpStreamTest();
+        init();
+        try {
+            test.run1();
+            test.run2();
+            test.run3();
+            test.run4();
+            test.run5();
+        } finally {
+            shutdown();
+        }
+    }
+
+    @BeforeAll
+    public static void init() throws Exception {
+        Application application = Application.create(true);
+        ResourceFactory factory = application.getResourceFactory();
+        factory.register("", Application.class, application);
+        server = new HttpServer(factory);
+        server.init(AnyValueWriter.create("port", 0));
+        server.addHttpServlet(new StreamServlet(), "/stream/*");
+        server.start();
+        port = server.getSocketAddress().getPort();
+    }
+
+    @AfterAll
+    public static void shutdown() throws Exception {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void run1() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            String body = request(socket, "/stream/array");
+            int[] values = JsonConvert.root().convertFrom(int[].class, body);
+            Assertions.assertEquals(COUNT, values.length);
+            Assertions.assertEquals(COUNT - 1, values[COUNT - 1]);
+            // keep-alive连接可继续使用
+            Assertions.assertEquals("[]", request(socket, "/stream/empty"));
+        }
+    }
+
+    @Test
+    public void run2() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            String body = request(socket, "/stream/lines");
+            String[] lines = body.split("\n");
+            Assertions.assertEquals(COUNT, lines.length);
+            Assertions.assertEquals("\"item-" + (COUNT - 1) + "\"", lines[COUNT - 1]);
+        }
+    }
+
+    @Test
+    public void run3() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /stream/error HTTP/1.1\r\nConnection: Keep-Alive\r\n\r\n").getBytes());
+            out.flush();
+            BufferedInputStream in = new BufferedInputStream(socket.getInputStream());
+            String status = readLine(in);
+            Assertions.assertTrue(status.startsWith("HTTP/1.1 500"), status);
+        }
+    }
+
+    @Test
+    public void run4() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            StringBuilder contentType = new StringBuilder();
+            String body = request(socket, "/stream/events", contentType);
+            Assertions.assertTrue(contentType.toString().startsWith("text/event-stream"), contentType.toString());
+            String expect = "id: 1\nevent: user\ndata: {\"name\":\"haha\"}\n\n"
+                    + ":\n\n"
+                    + "data: line1\ndata: line2\n\n";
+            Assertions.assertEquals(expect, body);
+        }
+    }
+
+    @Test
+    public void run5() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            // pipeline中的事件流无法整体缓存, 直接返回500
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /stream/events HTTP/1.1\r\nConnection: Keep-Alive\r\n\r\n"
+                            + "GET /stream/empty HTTP/1.1\r\nConnection: Keep-Alive\r\n\r\n")
+                    .getBytes());
+            out.flush();
+            BufferedInputStream in = new BufferedInputStream(socket.getInputStream());
+            String status = readLine(in);
+            Assertions.assertTrue(status.startsWith("HTTP/1.1 500"), status);
+        }
+    }
+
+    // 发送请求并解析chunked响应体
+    private static String request(Socket socket, String path) throws IOException {
+        return request(socket, path, new StringBuilder());
+    }
+
+    private static String request(Socket socket, String path, StringBuilder contentType) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET " + path + " HTTP/1.1\r\nConnection: Keep-Alive\r\n\r\n").getBytes());
+        out.flush();
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        Assertions.assertTrue(readLine(in).startsWith("HTTP/1.1 200"));
+        boolean chunked = false;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            if (line.equalsIgnoreCase("Transfer-Encoding: chunked")) {
+                chunked = true;
+            } else if (line.toLowerCase().startsWith("content-type:")) {
+                contentType.append(line.substring(line.indexOf(':') + 1).trim());
+            }
+        }
+        Assertions.assertTrue(chunked);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            int size = Integer.parseInt(readLine(in), 16);
+            byte[] bs = in.readNBytes(size);
+            readLine(in);
+            if (size == 0) {
+                break;
+            }
+            body.write(bs);
+        }
+        return body.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int ch;
+        while ((ch = in.read()) != '\n') {
+            if (ch < 0) {
+                throw new EOFException();
+            }
+            if (ch != '\r') {
+                sb.append((char) ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    public static class StreamServlet extends HttpServlet {
+
+        @HttpMapping(url = "/stream/array")
+        public void array(HttpRequest req, HttpResponse resp) throws IOException {
+            resp.finishStream(int.class, new RangePublisher<>(COUNT, i -> i));
+        }
+
+        @HttpMapping(url = "/stream/empty")
+        public void empty(HttpRequest req, HttpResponse resp) throws IOException {
+            resp.finishStream(int.class, new RangePublisher<>(0, i -> i));
+        }
+
+        @HttpMapping(url = "/stream/lines")
+        public void lines(HttpRequest req, HttpResponse resp) throws IOException {
+            resp.finishStream(
+                    JsonConvert.root(),
+                    String.class,
+                    new RangePublisher<>(COUNT, i -> "item-" + i),
+                    HttpResponse.StreamFormat.LINES);
+        }
+
+        @HttpMapping(url = "/stream/events")
+        public void events(HttpRequest req, HttpResponse resp) throws IOException {
+            // 第一个事件后停顿, 期间输出心跳
+            Flow.Publisher<Object> publisher = subscriber -> {
+                AtomicLong index = new AtomicLong();
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                        long i = index.getAndIncrement();
+                        if (i == 0) {
+                            subscriber.onNext(new HttpEvent<>("user", new EventBean("haha")).id("1"));
+                        } else if (i == 1) {
+                            CompletableFuture.delayedExecutor(1500, TimeUnit.MILLISECONDS)
+                                    .execute(() -> {
+                                        subscriber.onNext("line1\nline2");
+                                        subscriber.onComplete();
+                                    });
+                        }
+                    }
+
+                    @Override
+                    public void cancel() {}
+                });
+            };
+            resp.finishEventStream(JsonConvert.root(), EventBean.class, publisher, 1);
+        }
+
+        @HttpMapping(url = "/stream/error")
+        public void error(HttpRequest req, HttpResponse resp) throws IOException {
+            resp.finishStream(int.class, subscriber -> {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {}
+
+                    @Override
+                    public void cancel() {}
+                });
+                subscriber.onError(new IOException("read error"));
+            });
+        }
+    }
+
+    public static class EventBean {
+
+        private String name;
+
+        public EventBean() {}
+
+        public EventBean(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    // 按需同步生成元素的Publisher
+    public static class RangePublisher<T> implements Flow.Publisher<T> {
+
+        private final int count;
+
+        private final java.util.function.IntFunction<T> mapper;
+
+        public RangePublisher(int count, java.util.function.IntFunction<T> mapper) {
+            this.count = count;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super T> subscriber) {
+            AtomicLong index = new AtomicLong();
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    for (long i = 0; i < n && index.get() < count; i++) {
+                        subscriber.onNext(mapper.apply((int) index.getAndIncrement()));
+                    }
+                    if (index.get() >= count && index.getAndIncrement() == count) {
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    index.set(count + 1);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.source;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.function.BiFunction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.redkale.persistence.Entity;
+import org.redkale.source.*;
+import org.redkale.test.source.BenchmarkEntityCacheTest.BenchmarkCacheBean;
+import org.redkale.util.*;
+
+/**
+ * EntityCache大表DISTINCT查询
+ *
+ * @author zhangjx
+ */
+@State(Scope.Thread)
+public class BenchmarkEntityCacheDistinctTest {
+
+    private static final int ROWS = 200_000;
+
+    private EntityCache<BenchmarkCacheBean> cache;
+
+    private SelectColumn oneColumn;
+
+    private SelectColumn twoColumns;
+
+    @Setup
+    public void setup() throws Exception {
+        Method method = EntityInfo.class.getDeclaredMethod(
+                "load", Class.class, boolean.class, Properties.class, DataSource.class, BiFunction.class);
+        method.setAccessible(true);
+        final EntityInfo<BenchmarkCacheBean> info = (EntityInfo<BenchmarkCacheBean>)
+                method.invoke(null, BenchmarkCacheBean.class, true, new Properties(), null, null);
+        cache = new EntityCache<>(info, BenchmarkCacheBean.class.getAnnotation(Entity.class));
+        cache.fullLoadAsync();
+        for (int i = 1; i <= ROWS; i++) {
+            cache.insert(new BenchmarkCacheBean(i, "name" + (i % 1000), i % 37));
+        }
+        oneColumn = SelectColumn.includes("name");
+        twoColumns = SelectColumn.includes("name", "score");
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.clear();
+        cache = null;
+    }
+
+    @Benchmark
+    public Sheet<BenchmarkCacheBean> testDistinctOneColumn() {
+        return cache.querySheet(false, true, oneColumn, null, null);
+    }
+
+    @Benchmark
+    public Sheet<BenchmarkCacheBean> testDistinctTwoColumns() {
+        return cache.querySheet(false, true, twoColumns, null, null);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(BenchmarkEntityCacheDistinctTest.class.getSimpleName())
+                .forks(1)
+                .threads(1)
+                .warmupIterations(1)
+                .measurementIterations(3)
+                .mode(Mode.Throughput)
+                .build();
+        new Runner(options).run();
+    }
+}
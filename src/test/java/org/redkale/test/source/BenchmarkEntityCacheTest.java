@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.source;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.redkale.persistence.*;
+import org.redkale.source.*;
+import org.redkale.util.Attribute;
+
+/**
+ * EntityCache表锁与分段行锁的更新吞吐对比
+ *
+ * @author zhangjx
+ */
+@State(Scope.Benchmark)
+public class BenchmarkEntityCacheTest {
+
+    private static final int ROWS = 100_000;
+
+    @Param({"table", "row"})
+    private String lockMode;
+
+    private EntityCache<BenchmarkCacheBean> cache;
+
+    private Attribute<BenchmarkCacheBean, Long> scoreAttr;
+
+    @Setup
+    public void setup() throws Exception {
+        Method method = EntityInfo.class.getDeclaredMethod(
+                "load", Class.class, boolean.class, Properties.class, DataSource.class, BiFunction.class);
+        method.setAccessible(true);
+        final EntityInfo<BenchmarkCacheBean> info = (EntityInfo<BenchmarkCacheBean>)
+                method.invoke(null, BenchmarkCacheBean.class, true, new Properties(), null, null);
+        Entity entity = "row".equals(lockMode) ? BenchmarkCacheBean.class.getAnnotation(Entity.class) : null;
+        cache = new EntityCache<>(info, entity);
+        cache.fullLoadAsync();
+        for (int i = 1; i <= ROWS; i++) {
+            cache.insert(new BenchmarkCacheBean(i, "name" + i, 0));
+        }
+        scoreAttr = (Attribute) info.getAttribute("score");
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.clear();
+        cache = null;
+    }
+
+    @Benchmark
+    public BenchmarkCacheBean testUpdateColumnIncrement() {
+        int id = ThreadLocalRandom.current().nextInt(ROWS) + 1;
+        return cache.updateColumnIncrement(id, scoreAttr, 1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int threads : new int[] {1, 2, 4, 8}) {
+            Options options = new OptionsBuilder()
+                    .include(BenchmarkEntityCacheTest.class.getSimpleName() + ".testUpdateColumnIncrement")
+                    .forks(1)
+                    .threads(threads)
+                    .warmupIterations(1)
+                    .measurementIterations(3)
+                    .mode(Mode.Throughput)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    @org.redkale.persistence.VirtualEntity
+    @Entity(cacheable = true, cacheLockStripes = 64)
+    public static class BenchmarkCacheBean {
+
+        @Id
+        private int id;
+
+        private String name;
+
+        private long score;
+
+        public BenchmarkCacheBean() {}
+
+        public BenchmarkCacheBean(int id, String name, long score) {
+            this.id = id;
+            this.name = name;
+            this.score = score;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public long getScore() {
+            return score;
+        }
+
+        public void setScore(long score) {
+            this.score = score;
+        }
+    }
+}
@@ -3,9 +3,12 @@
  */
 package org.redkale.test.source;
 
+import java.io.File;
 import java.lang.reflect.Type;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -17,6 +20,7 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.redkale.convert.json.JsonConvert;
@@ -24,6 +28,7 @@ import org.redkale.source.CacheEventListener;
 import org.redkale.source.CacheMemorySource;
 import org.redkale.source.CacheScoredValue;
 import org.redkale.source.Flipper;
+import org.redkale.util.AnyValue;
 import org.redkale.util.TypeToken;
 import org.redkale.util.Utility;
 
@@ -33,6 +38,16 @@ public class CacheMemorySourceTest {
     public static void main(String[] args) throws Throwable {
         CacheMemorySourceTest test = new CacheMemorySourceTest();
         test.run();
+        test.run2();
+        test.run3();
+        test.run4();
+        test.run5();
+        test.run6();
+        test.run7();
+        test.run8();
+        test.run9();
+        test.run10();
+        test.run11();
     }
 
     @Test
@@ -660,4 +675,338 @@ public class CacheMemorySourceTest {
         source.unsubscribe(listener, channel);
         System.out.println("取消订阅结束");
     }
+
+    @Test
+    public void run2() throws Exception {
+        CacheMemorySource source = new CacheMemorySource("expire");
+        source.init(null);
+        try {
+            for (int i = 0; i < 100; i++) {
+                source.psetexString("expkey" + i, 200, "v" + i);
+            }
+            source.psetexString("persistkey", 200, "v");
+            source.persist("persistkey");
+            source.psetexString("longkey", 200, "v");
+            source.pexpire("longkey", 60_000);
+            source.setString("forever", "v");
+            source.psetexString("delkey", 200, "v");
+            source.del("delkey");
+            Assertions.assertEquals(103, source.dbsize());
+            Utility.sleep(2500);
+            // 未读取的过期key由时间轮清除
+            Assertions.assertEquals(3, source.dbsize());
+            Assertions.assertEquals("v", source.getString("persistkey"));
+            Assertions.assertEquals("v", source.getString("longkey"));
+        } finally {
+            source.destroy(null);
+        }
+    }
+
+    @Test
+    public void run3() throws Exception {
+        CacheMemorySource source = new CacheMemorySource("maxmemory");
+        source.init(AnyValue.create()
+                .addValue(
+                        "properties",
+                        AnyValue.create()
+                                .addValue("maxmemory", "64K")
+                                .addValue("maxmemory-policy", "allkeys-lfu")));
+        try {
+            Assertions.assertEquals(64 * 1024, source.getMaxMemory());
+            String value = "v".repeat(100);
+            source.setString("hotkey", value);
+            for (int i = 0; i < 10000; i++) {
+                source.setString("key" + i, value);
+                source.getString("hotkey");
+            }
+            Map<String, Object> info = source.info();
+            Assertions.assertTrue((Long) info.get("used_memory") <= 64 * 1024, "info: " + info);
+            Assertions.assertTrue((Long) info.get("evicted_keys") > 0, "info: " + info);
+            Assertions.assertEquals("allkeys-lfu", info.get("maxmemory_policy"));
+            Assertions.assertTrue(source.dbsize() < 10000);
+            Assertions.assertEquals(value, source.getString("hotkey"));
+
+            source.flushdb();
+            Assertions.assertEquals(0L, source.info().get("used_memory"));
+            source.setMaxMemory(0);
+            source.setEvictionPolicy(CacheMemorySource.EvictionPolicies.ALLKEYS_LRU);
+            source.setString("hotkey", value);
+            for (int i = 0; i < 200; i++) {
+                source.setString("key" + i, value);
+            }
+            Utility.sleep(5);
+            source.getString("hotkey");
+            long used = (Long) source.info().get("used_memory");
+            source.setMaxMemory(used / 2);
+            Assertions.assertTrue((Long) source.info().get("used_memory") <= used / 2);
+            Assertions.assertEquals(value, source.getString("hotkey"));
+
+            source.setEvictionPolicy(CacheMemorySource.EvictionPolicies.NOEVICTION);
+            source.setMaxMemory(1);
+            Assertions.assertThrows(RuntimeException.class, () -> source.setString("oomkey", value));
+        } finally {
+            source.destroy(null);
+        }
+    }
+
+    @Test
+    public void run5() throws Exception {
+        CacheMemorySource source = new CacheMemorySource("stats");
+        source.init(null);
+        try {
+            source.setString("statkey", "v");
+            source.incr("statnum");
+            source.hsetString("statmap", "f", "v");
+            source.del("statkey", "nokey");
+            Assertions.assertEquals(0L, source.info().get("keyspace_hits"));
+            Assertions.assertEquals(0L, source.info().get("keyspace_misses"));
+            source.getString("statkey");
+            source.getLong("statnum", 0L);
+            source.hgetString("statmap", "f");
+            Assertions.assertEquals(2L, source.info().get("keyspace_hits"));
+            Assertions.assertEquals(1L, source.info().get("keyspace_misses"));
+        } finally {
+            source.destroy(null);
+        }
+    }
+
+    @Test
+    public void run4() throws Exception {
+        File dir = Files.createTempDirectory("redkale-cache").toFile();
+        File aofDir = Files.createTempDirectory("redkale-cache-aof").toFile();
+        try {
+            CacheMemorySource source = createPersistSource(dir);
+            source.setString("str", "value");
+            source.incrby("num", 10);
+            source.psetexString("expkey", 60_000, "v");
+            source.psetexString("shortkey", 50, "v");
+            source.hsetString("hmap", "field", "hvalue");
+            source.rpushString("list", "a", "b", "c");
+            source.saddString("set", "s1", "s2", "s3");
+            source.srem("set", String.class, "s2");
+            source.zadd("zset", 100, "z1");
+            source.zincrby("zset", 5.0, "z1");
+            source.setString("delkey", "v");
+            source.del("delkey");
+            source.setString("oldname", "renamed");
+            source.rename("oldname", "newname");
+            // appendfsync=always时每次变更都已刷盘, 复制日志模拟进程崩溃
+            Files.copy(
+                    new File(dir, "persist.aof").toPath(),
+                    new File(aofDir, "persist.aof").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            source.destroy(null);
+            Assertions.assertTrue(new File(dir, "persist.rdb").isFile());
+            Utility.sleep(100);
+
+            for (File d : new File[] {dir, aofDir}) { // 从快照恢复、从追加日志恢复
+                CacheMemorySource restored = createPersistSource(d);
+                try {
+                    Assertions.assertEquals("value", restored.getString("str"));
+                    Assertions.assertEquals(10L, restored.getLong("num", 0L));
+                    Assertions.assertEquals("v", restored.getString("expkey"));
+                    Assertions.assertTrue(restored.pttl("expkey") > 50_000);
+                    Assertions.assertNull(restored.getString("shortkey"));
+                    Assertions.assertEquals("hvalue", restored.hgetString("hmap", "field"));
+                    Assertions.assertIterableEquals(List.of("a", "b", "c"), restored.lrangeString("list"));
+                    Assertions.assertEquals(Set.of("s1", "s3"), new TreeSet<>(restored.smembersString("set")));
+                    Assertions.assertEquals(105.0, restored.zscoreDouble("zset", "z1"));
+                    Assertions.assertNull(restored.getString("delkey"));
+                    Assertions.assertNull(restored.getString("oldname"));
+                    Assertions.assertEquals("renamed", restored.getString("newname"));
+                    restored.flushdb();
+                } finally {
+                    restored.destroy(null);
+                }
+                CacheMemorySource flushed = createPersistSource(d);
+                try {
+                    Assertions.assertEquals(0, flushed.dbsize());
+                } finally {
+                    flushed.destroy(null);
+                }
+            }
+        } finally {
+            deleteDirectory(dir);
+            deleteDirectory(aofDir);
+        }
+    }
+
+    @Test
+    public void run6() throws Exception {
+        assertRestart(
+                source -> {
+                    source.setString("strkey", "v");
+                    source.getexString("strkey", 60);
+                    source.psetexString("pexpkey", 50, "v");
+                    source.pexpire("pexpkey", 60_000);
+                    source.psetexString("persistkey", 50, "v");
+                    source.persist("persistkey");
+                    source.incrby("num", 10);
+                    source.decr("num");
+                    source.incrbyFloat("dnum", 1.5);
+                },
+                restored -> {
+                    Assertions.assertTrue(restored.pttl("strkey") > 50_000);
+                    Assertions.assertTrue(restored.pttl("pexpkey") > 50_000);
+                    Assertions.assertEquals(-1L, restored.pttl("persistkey"));
+                    Assertions.assertEquals(9L, restored.getLong("num", 0L));
+                    Assertions.assertEquals(1.5, restored.incrbyFloat("dnum", 0.0));
+                });
+    }
+
+    @Test
+    public void run7() throws Exception {
+        assertRestart(
+                source -> {
+                    source.hsetString("hmap", "f1", "v1");
+                    source.hsetString("hmap", "f2", "v2");
+                    source.hdel("hmap", "f1");
+                    source.hincrby("hmap", "num", 3);
+                    source.hincrby("hmap", "num", 2);
+                    source.hsetnxString("hmap", "f3", "v3");
+                },
+                restored -> {
+                    Assertions.assertNull(restored.hgetString("hmap", "f1"));
+                    Assertions.assertEquals("v2", restored.hgetString("hmap", "f2"));
+                    Assertions.assertEquals(5L, restored.hgetLong("hmap", "num", 0L));
+                    Assertions.assertEquals("v3", restored.hgetString("hmap", "f3"));
+                });
+    }
+
+    @Test
+    public void run8() throws Exception {
+        assertRestart(
+                source -> {
+                    source.rpushString("list", "a", "b", "c", "d");
+                    source.lpopString("list");
+                    source.rpopString("list");
+                    source.lpushString("list", "x");
+                    source.linsertBeforeString("list", "c", "y");
+                    source.lremString("list", "b");
+                },
+                restored -> {
+                    Assertions.assertIterableEquals(List.of("x", "y", "c"), restored.lrangeString("list"));
+                });
+    }
+
+    @Test
+    public void run9() throws Exception {
+        assertRestart(
+                source -> {
+                    source.saddString("set1", "a", "b", "c");
+                    source.saddString("set2", "b", "c", "d");
+                    source.smoveString("set1", "set3", "a");
+                    source.sinterstore("set4", "set1", "set2");
+                    source.spopString("set2");
+                },
+                restored -> {
+                    Assertions.assertEquals(Set.of("b", "c"), new TreeSet<>(restored.smembersString("set1")));
+                    Assertions.assertEquals(2, restored.smembersString("set2").size());
+                    Assertions.assertEquals(Set.of("a"), new TreeSet<>(restored.smembersString("set3")));
+                    Assertions.assertEquals(Set.of("b", "c"), new TreeSet<>(restored.smembersString("set4")));
+                });
+    }
+
+    @Test
+    public void run10() throws Exception {
+        assertRestart(
+                source -> {
+                    source.zadd("zset", 1.0, "z1");
+                    source.zadd("zset", 2.0, "z2");
+                    source.zadd("zset", 3.0, "z3");
+                    source.zincrby("zset", 10.0, "z2");
+                    source.zrem("zset", "z1");
+                },
+                restored -> {
+                    Assertions.assertEquals(2L, restored.zcard("zset"));
+                    Assertions.assertNull(restored.zscoreDouble("zset", "z1"));
+                    Assertions.assertEquals(12.0, restored.zscoreDouble("zset", "z2"));
+                });
+    }
+
+    @Test
+    public void run11() throws Exception {
+        CacheMemorySource source = new CacheMemorySource("collection");
+        source.init(null);
+        try {
+            String value = "v".repeat(100);
+            source.rpushString("biglist", value);
+            long used = (Long) source.info().get("used_memory");
+            for (int i = 0; i < 100; i++) {
+                source.rpushString("biglist", value);
+                source.saddString("bigset", value + i);
+                source.hsetString("bigmap", "f" + i, value);
+            }
+            long grown = (Long) source.info().get("used_memory");
+            Assertions.assertTrue(grown > used + 100 * 3 * 100, "used: " + used + ", grown: " + grown);
+            source.ltrim("biglist", 0, 49);
+            source.sremString("bigset", value + 0, value + 1);
+            source.hdel("bigmap", "f0", "f1");
+            Assertions.assertTrue((Long) source.info().get("used_memory") < grown);
+
+            source.setEvictionPolicy(CacheMemorySource.EvictionPolicies.NOEVICTION);
+            source.setMaxMemory(1);
+            Assertions.assertThrows(RuntimeException.class, () -> source.rpushString("biglist", value));
+            Assertions.assertThrows(RuntimeException.class, () -> source.saddString("bigset", "oom"));
+            Assertions.assertThrows(RuntimeException.class, () -> source.hsetString("bigmap", "oom", value));
+            Assertions.assertFalse(source.sismemberString("bigset", "oom"));
+            source.hdel("bigmap", "f2");
+
+            source.setEvictionPolicy(CacheMemorySource.EvictionPolicies.ALLKEYS_LRU);
+            source.setMaxMemory(grown / 2);
+            source.rpushString("biglist", value);
+            Assertions.assertTrue((Long) source.info().get("used_memory") <= grown / 2);
+        } finally {
+            source.destroy(null);
+        }
+    }
+
+    // 写入后分别从快照、追加日志重启并校验
+    private static void assertRestart(Consumer<CacheMemorySource> writer, Consumer<CacheMemorySource> checker)
+            throws Exception {
+        File dir = Files.createTempDirectory("redkale-cache").toFile();
+        File aofDir = Files.createTempDirectory("redkale-cache-aof").toFile();
+        try {
+            CacheMemorySource source = createPersistSource(dir);
+            writer.accept(source);
+            Files.copy(
+                    new File(dir, "persist.aof").toPath(),
+                    new File(aofDir, "persist.aof").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            source.destroy(null);
+            for (File d : new File[] {dir, aofDir}) {
+                CacheMemorySource restored = createPersistSource(d);
+                try {
+                    checker.accept(restored);
+                } finally {
+                    restored.destroy(null);
+                }
+            }
+        } finally {
+            deleteDirectory(dir);
+            deleteDirectory(aofDir);
+        }
+    }
+
+    private static CacheMemorySource createPersistSource(File dir) {
+        CacheMemorySource source = new CacheMemorySource("persist");
+        source.init(AnyValue.create()
+                .addValue(
+                        "properties",
+                        AnyValue.create()
+                                .addValue("persist-dir", dir.getPath())
+                                .addValue("appendonly", "true")
+                                .addValue("appendfsync", "always")));
+        return source;
+    }
+
+    private static void deleteDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.source;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.*;
+import org.redkale.persistence.*;
+import org.redkale.source.*;
+import org.redkale.util.Attribute;
+import org.redkale.util.Sheet;
+
+/**
+ * EntityCache二级索引测试
+ *
+ * @author zhangjx
+ */
+public class EntityCacheIndexTest {
+
+    private EntityCache<IndexTestBean> cache;
+
+    public static void main(String[] args) throws Throwable {
+        EntityCacheIndexTest test = new EntityCacheIndexTest();
+        test.init();
+        test.run1();
+        test.init();
+        test.run2();
+        test.init();
+        test.run3();
+        test.init();
+        test.run4();
+    }
+
+    @BeforeEach
+    public void init() throws Exception {
+        cache = createCache();
+        for (int i = 1; i <= 100; i++) {
+            cache.insert(new IndexTestBean(i, i % 10, i * 10L, "name" + (i % 5)));
+        }
+    }
+
+    private static EntityCache<IndexTestBean> createCache() throws Exception {
+        Method method = EntityInfo.class.getDeclaredMethod(
+                "load", Class.class, boolean.class, Properties.class, DataSource.class, BiFunction.class);
+        method.setAccessible(true);
+        final EntityInfo<IndexTestBean> info = (EntityInfo<IndexTestBean>)
+                method.invoke(null, IndexTestBean.class, true, new Properties(), null, null);
+        EntityCache<IndexTestBean> rs = new EntityCache<>(info, IndexTestBean.class.getAnnotation(Entity.class));
+        rs.fullLoadAsync();
+        return rs;
+    }
+
+    @Test
+    public void run1() throws Exception {
+        Assertions.assertEquals(10, cache.querySheet(null, null, FilterNodes.eq("userid", 3)).getTotal());
+        Assertions.assertEquals(
+                20, cache.querySheet(null, null, FilterNodes.in("userid", new int[] {3, 5})).getTotal());
+        Assertions.assertEquals(
+                3,
+                cache.querySheet(null, null, FilterNodes.eq("userid", 3L).and("createTime", FilterExpress.LE, 230L))
+                        .getTotal());
+        Assertions.assertEquals(
+                10, cache.querySheet(null, null, FilterNodes.gt("createTime", 900L)).getTotal());
+        Assertions.assertEquals(
+                9,
+                cache.querySheet(null, null, FilterNodes.between("createTime", new Range.LongRange(100L, 200L)))
+                        .getTotal());
+        Assertions.assertTrue(cache.exists(FilterNodes.eq("userid", 0)));
+        Assertions.assertFalse(cache.exists(FilterNodes.eq("userid", 11)));
+        Assertions.assertEquals(
+                20, cache.querySheet(null, null, FilterNodes.eq("userid", 3).or("userid", 5)).getTotal());
+    }
+
+    @Test
+    public void run2() throws Exception {
+        Attribute<IndexTestBean, Serializable> attr = cache.getAttribute("userid");
+        cache.update(33, (Attribute) attr, 11);
+        Assertions.assertEquals(9, cache.querySheet(null, null, FilterNodes.eq("userid", 3)).getTotal());
+        Assertions.assertEquals(1, cache.querySheet(null, null, FilterNodes.eq("userid", 11)).getTotal());
+        cache.updateColumnIncrement(34, (Attribute) attr, 100);
+        Assertions.assertEquals(1, cache.querySheet(null, null, FilterNodes.eq("userid", 104)).getTotal());
+        cache.delete(33);
+        Assertions.assertFalse(cache.exists(FilterNodes.eq("userid", 11)));
+        cache.insert(new IndexTestBean(33, 3, 330L));
+        Assertions.assertEquals(10, cache.querySheet(null, null, FilterNodes.eq("userid", 3)).getTotal());
+    }
+
+    @Test
+    public void run3() throws Exception {
+        Sheet<IndexTestBean> sheet = cache.querySheet(null, new Flipper(3, 2), FilterNodes.eq("userid", 3));
+        Assertions.assertEquals(10, sheet.getTotal());
+        Assertions.assertEquals(
+                List.of(23, 33, 43), sheet.stream().map(IndexTestBean::getId).collect(Collectors.toList()));
+
+        sheet = cache.querySheet(null, new Flipper(4), FilterNodes.in("name", List.of("name2", "name4")));
+        Assertions.assertEquals(40, sheet.getTotal());
+        Assertions.assertEquals(
+                List.of(2, 4, 7, 9), sheet.stream().map(IndexTestBean::getId).collect(Collectors.toList()));
+        cache.delete(2);
+        cache.insert(new IndexTestBean(2, 2, 20L, "name2"));
+        sheet = cache.querySheet(null, new Flipper(4), FilterNodes.in("name", List.of("name2", "name4")));
+        Assertions.assertEquals(
+                List.of(4, 7, 9, 12), sheet.stream().map(IndexTestBean::getId).collect(Collectors.toList()));
+        Assertions.assertEquals(9, cache.find(null, FilterNodes.eq("name", "name4").and("userid", 9)).getId());
+    }
+
+    @Test
+    public void run4() throws Exception {
+        final int threads = 4;
+        final int loops = 2000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> list = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int id = 1000 + t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < loops; i++) {
+                    cache.insert(new IndexTestBean(id, 0, 0L, "race"));
+                    cache.delete(id);
+                }
+                cache.insert(new IndexTestBean(id, 0, 0L, "race"));
+            });
+            thread.start();
+            list.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : list) {
+            thread.join();
+        }
+        Assertions.assertEquals(threads, cache.querySheet(null, null, FilterNodes.eq("name", "race")).getTotal());
+    }
+
+    @org.redkale.persistence.VirtualEntity
+    @Entity(cacheable = true)
+    @Index(columns = {"userid"})
+    @Index(columns = {"createTime"})
+    @Index(columns = {"name"})
+    public static class IndexTestBean {
+
+        @Id
+        private int id;
+
+        private int userid;
+
+        private long createTime;
+
+        private String name;
+
+        public IndexTestBean() {}
+
+        public IndexTestBean(int id, int userid, long createTime) {
+            this.id = id;
+            this.userid = userid;
+            this.createTime = createTime;
+        }
+
+        public IndexTestBean(int id, int userid, long createTime, String name) {
+            this(id, userid, createTime);
+            this.name = name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public int getUserid() {
+            return userid;
+        }
+
+        public void setUserid(int userid) {
+            this.userid = userid;
+        }
+
+        public long getCreateTime() {
+            return createTime;
+        }
+
+        public void setCreateTime(long createTime) {
+            this.createTime = createTime;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016-2116 Redkale
+ * All rights reserved.
+ */
+package org.redkale.test.source;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.*;
+import org.redkale.persistence.Entity;
+import org.redkale.source.*;
+import org.redkale.test.source.EntityCacheIndexTest.IndexTestBean;
+import org.redkale.util.SelectColumn;
+import org.redkale.util.Sheet;
+
+/**
+ * EntityCache.querySheet分页测试
+ *
+ * @author zhangjx
+ */
+public class EntityCacheSheetTest {
+
+    private static EntityCache<IndexTestBean> cache;
+
+    private static List<IndexTestBean> all;
+
+    public static void main(String[] args) throws Throwable {
+        EntityCacheSheetTest test = new EntityCacheSheetTest();
+        init();
+        test.run1();
+        test.run2();
+        test.run3();
+        test.run4();
+    }
+
+    @BeforeAll
+    public static void init() throws Exception {
+        cache = createCache();
+        all = new ArrayList<>();
+        Random random = new Random(20);
+        for (int i = 1; i <= 1000; i++) {
+            IndexTestBean bean = new IndexTestBean(i, random.nextInt(50), (i * 7919L) % 100003);
+            all.add(bean);
+            cache.insert(bean);
+        }
+    }
+
+    private static EntityCache<IndexTestBean> createCache() throws Exception {
+        Method method = EntityInfo.class.getDeclaredMethod(
+                "load", Class.class, boolean.class, Properties.class, DataSource.class, BiFunction.class);
+        method.setAccessible(true);
+        final EntityInfo<IndexTestBean> info = (EntityInfo<IndexTestBean>)
+                method.invoke(null, IndexTestBean.class, true, new Properties(), null, null);
+        EntityCache<IndexTestBean> rs = new EntityCache<>(info, IndexTestBean.class.getAnnotation(Entity.class));
+        rs.fullLoadAsync();
+        return rs;
+    }
+
+    @Test
+    public void run1() throws Exception {
+        FilterNode node = FilterNodes.lt("userid", 25);
+        List<Integer> expect = all.stream()
+                .filter(x -> x.getUserid() < 25)
+                .sorted(Comparator.comparing(IndexTestBean::getCreateTime).reversed())
+                .skip(30)
+                .limit(15)
+                .map(IndexTestBean::getId)
+                .collect(Collectors.toList());
+        Sheet<IndexTestBean> sheet = cache.querySheet(null, new Flipper(15, 30, "createTime DESC"), node);
+        Assertions.assertEquals(
+                all.stream().filter(x -> x.getUserid() < 25).count(), sheet.getTotal());
+        Assertions.assertEquals(
+                expect, sheet.stream().map(IndexTestBean::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void run2() throws Exception {
+        Sheet<IndexTestBean> sheet = cache.querySheet(null, new Flipper(10, 995), null);
+        Assertions.assertEquals(1000, sheet.getTotal());
+        Assertions.assertEquals(5, sheet.getRows().size());
+        sheet = cache.querySheet(false, false, null, new Flipper(10, 2000, "createTime"), null);
+        Assertions.assertEquals(0, sheet.getRows().size());
+        sheet = cache.querySheet(null, new Flipper(0, 990, "id"), null);
+        Assertions.assertEquals(10, sheet.getRows().size());
+        Assertions.assertEquals(991, sheet.getRows().iterator().next().getId());
+    }
+
+    @Test
+    public void run3() throws Exception {
+        EntityCache<IndexTestBean> distinctCache = createCache();
+        distinctCache.insert(new IndexTestBean(1, 1, 23));
+        distinctCache.insert(new IndexTestBean(2, 12, 3));
+        distinctCache.insert(new IndexTestBean(3, 12, 3));
+        SelectColumn selects = SelectColumn.includes("userid", "createTime");
+        Sheet<IndexTestBean> sheet = distinctCache.querySheet(true, true, selects, null, null);
+        Assertions.assertEquals(2, sheet.getTotal());
+        sheet = distinctCache.querySheet(true, true, SelectColumn.includes("userid"), null, null);
+        Assertions.assertEquals(2, sheet.getTotal());
+    }
+
+    @Test
+    public void run4() throws Exception {
+        // userid只有50个不同值, 排序值大量重复时逐页翻完应与稳定排序结果一致, 不重复不遗漏
+        FilterNode node = FilterNodes.lt("userid", 40);
+        List<Integer> expect = all.stream()
+                .filter(x -> x.getUserid() < 40)
+                .sorted(Comparator.comparing(IndexTestBean::getUserid).reversed())
+                .map(IndexTestBean::getId)
+                .collect(Collectors.toList());
+        List<Integer> paged = new ArrayList<>();
+        for (int offset = 0; offset < expect.size(); offset += 7) {
+            Sheet<IndexTestBean> sheet = cache.querySheet(null, new Flipper(7, offset, "userid DESC"), node);
+            sheet.forEach(x -> paged.add(x.getId()));
+        }
+        Assertions.assertEquals(expect, paged);
+        Assertions.assertEquals(expect.size(), new HashSet<>(paged).size());
+    }
+}